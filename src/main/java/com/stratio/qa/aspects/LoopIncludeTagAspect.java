@@ -18,29 +18,44 @@ package com.stratio.qa.aspects;
 
 import com.stratio.qa.exceptions.IncludeException;
 import cucumber.runtime.io.Resource;
+import gherkin.ast.Background;
+import gherkin.ast.DataTable;
+import gherkin.ast.DocString;
+import gherkin.ast.Examples;
+import gherkin.ast.GherkinDocument;
+import gherkin.ast.ScenarioDefinition;
+import gherkin.ast.ScenarioOutline;
+import gherkin.ast.Step;
+import gherkin.ast.TableCell;
+import gherkin.ast.TableRow;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
 
 @Aspect
 public class LoopIncludeTagAspect {
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass().getCanonicalName());
 
+    private final ParsedFeatureCache featureCache;
+
+    public LoopIncludeTagAspect() {
+        this(ParsedFeatureCache.SHARED);
+    }
+
+    LoopIncludeTagAspect(ParsedFeatureCache featureCache) {
+        this.featureCache = featureCache;
+    }
+
     @Pointcut("execution (private * cucumber.runtime.model.FeatureParser.read(..)) &&" + "args (resource)")
     protected void featureBuilderRead(Resource resource) {
     }
@@ -52,9 +67,9 @@ public class LoopIncludeTagAspect {
      */
     @Around(value = "featureBuilderRead(resource)")
     public String aroundAddLoopTagPointcutScenario(Resource resource) throws Throwable {
-        List<String> lines = Files.readAllLines(Paths.get(resource.getPath().getRawSchemeSpecificPart()), StandardCharsets.UTF_8);
-        String listParams;
         String path = resource.getPath().getRawSchemeSpecificPart();
+        List<String> lines = new ArrayList<>(featureCache.get(path).getLines());
+        String listParams;
         int endIndex = path.lastIndexOf("/") + 1;
         path = path.substring(0, endIndex);
 
@@ -87,7 +102,7 @@ public class LoopIncludeTagAspect {
         String scenarioName;
         String[] params;
         boolean marked = false;
-        String nwsource = "";
+        StringBuilder nwsource = new StringBuilder();
 
 
         for (int lineOriginalFeature = 0; lineOriginalFeature < lines.size(); lineOriginalFeature++) {
@@ -136,9 +151,9 @@ public class LoopIncludeTagAspect {
                 }
 
             }
-            nwsource += lines.get(lineOriginalFeature) + "\n";
+            nwsource.append(lines.get(lineOriginalFeature)).append("\n");
         }
-        return nwsource;
+        return nwsource.toString();
     }
 
     /**
@@ -196,67 +211,169 @@ public class LoopIncludeTagAspect {
         return parsedFeature;
     }
 
+    /**
+     * Steps of the scenarios with the given name, preceded by the steps of the scenarios they include.
+     *
+     * @param feature      included feature path
+     * @param scenarioName included scenario name
+     * @param params       keys and values to replace, null if none
+     * @return String steps
+     * @throws IncludeException if the feature or the scenario do not exist, or parameters do not match
+     */
     public String featureStepConverter(String feature, String scenarioName, String[] params) throws IncludeException {
-        boolean scenarioexists = false;
-        BufferedReader bufferedFeature = null;
-        String parsedFeature = "";
-        String sCurrentLine;
-
+        return includeScenario(feature, scenarioName, params, new ArrayDeque<>());
+    }
 
+    private String includeScenario(String feature, String scenarioName, String[] params, Deque<String> chain) throws IncludeException {
+        ParsedFeatureCache.Entry included;
         try {
+            included = featureCache.get(feature);
+        } catch (NoSuchFileException e) {
+            logger.warn("-> Feature file were not found: " + feature);
+            throw new IncludeException("-> Feature file were not found: " + feature);
+        } catch (IOException e) {
+            logger.warn("-> An I/O error appeared [featureStepConverter].");
+            throw new IncludeException("-> An I/O error appeared.");
+        }
 
-            bufferedFeature = new BufferedReader(new FileReader(feature));
-            while ((sCurrentLine = bufferedFeature.readLine()) != null) {
-                if (sCurrentLine.contains(scenarioName)) {
-                    scenarioexists = true;
-                    if (sCurrentLine.toUpperCase().contains("OUTLINE") && params == null) {
-                        throw new IncludeException("->  Parameters were not given for this scenario outline.");
-                    } else if (sCurrentLine.toUpperCase().contains("OUTLINE")) {
-                        BufferedReader auxBufferedFeature = bufferedFeature;
-                        String sParamline;
-                        while ((sParamline = auxBufferedFeature.readLine()) != null && !sParamline.toUpperCase().contains("SCENARIO")) {
-                            if (sParamline.contains("|")) {
-                                if (!checkParams(sParamline, params)) {
-                                    throw new IncludeException("-> Wrong number of parameters.");
-                                }
-                            } else if (!sParamline.toUpperCase().contains("EXAMPLES:")) {
-                                parsedFeature = parsedFeature + sParamline + "\n";
-                            }
-                        }
-                    } else if (!sCurrentLine.toUpperCase().contains("OUTLINE") && sCurrentLine.toUpperCase().contains("SCENARIO:")) {
-                        while ((sCurrentLine = bufferedFeature.readLine()) != null && !sCurrentLine.toUpperCase().contains("SCENARIO:") && !sCurrentLine.toUpperCase().contains("EXAMPLES:") && !sCurrentLine.matches("\\s*@[^{].+")) {
-                            parsedFeature = parsedFeature + sCurrentLine + "\n";
+        String link = included.getFile() + ":" + scenarioName;
+        if (chain.contains(link)) {
+            throw new IncludeException("-> Cyclic include of scenario " + scenarioName + " at feature: " + feature);
+        }
+        chain.push(link);
+        StringBuilder parsedFeature = new StringBuilder();
+        boolean scenarioexists;
+        GherkinDocument document = included.getDocument();
+        if (document == null) {
+            scenarioexists = scanLines(included.getLines(), scenarioName, params, parsedFeature);
+        } else {
+            scenarioexists = appendScenarios(included, document, scenarioName, params, parsedFeature, chain);
+        }
+        chain.pop();
+
+        if (!scenarioexists) {
+            logger.warn("-> Scenario not present at the given feature: " + scenarioName);
+            throw new IncludeException("-> Scenario not present at the given feature: " + scenarioName);
+        }
+        if (params != null) {
+            return doReplaceKeys(parsedFeature.toString(), params);
+        }
+        return parsedFeature.toString();
+    }
+
+    private boolean appendScenarios(ParsedFeatureCache.Entry included, GherkinDocument document, String scenarioName, String[] params,
+                                    StringBuilder parsedFeature, Deque<String> chain) throws IncludeException {
+        if (document.getFeature() == null) {
+            return false;
+        }
+        boolean scenarioexists = false;
+        for (ScenarioDefinition definition : document.getFeature().getChildren()) {
+            if (definition instanceof Background || !definition.getName().contains(scenarioName)) {
+                continue;
+            }
+            scenarioexists = true;
+            if (definition instanceof ScenarioOutline) {
+                if (params == null) {
+                    throw new IncludeException("->  Parameters were not given for this scenario outline.");
+                }
+                for (Examples examples : ((ScenarioOutline) definition).getExamples()) {
+                    if (examples.getTableHeader() != null) {
+                        checkExamplesRow(examples.getTableHeader(), params);
+                        for (TableRow row : examples.getTableBody()) {
+                            checkExamplesRow(row, params);
                         }
                     }
                 }
             }
-            if (!scenarioexists) {
-                logger.warn("-> Scenario not present at the given feature: " + scenarioName);
-                throw new IncludeException("-> Scenario not present at the given feature: " + scenarioName);
-            }
 
-        } catch (FileNotFoundException e) {
-            logger.warn("-> Feature file were not found: " + feature);
-            throw new IncludeException("-> Feature file were not found: " + feature);
-        } catch (IOException e) {
-            logger.warn("-> An I/O error appeared [featureStepConverter].");
-            throw new IncludeException("-> An I/O error appeared.");
-        } finally {
-            try {
-                if (bufferedFeature != null) {
-                    bufferedFeature.close();
+            // tags of the scenario are only in the source lines, as gherkin splits @include arguments on blanks
+            List<String> lines = included.getLines();
+            int firstTag = definition.getLocation().getLine() - 1;
+            while (firstTag > 0 && lines.get(firstTag - 1).matches("\\s*@.*")) {
+                firstTag--;
+            }
+            for (int tag = firstTag; tag < definition.getLocation().getLine() - 1; tag++) {
+                if (lines.get(tag).matches("\\s*@include.*")) {
+                    String nestedFeature = included.getFile().resolveSibling(getFeatureName(lines.get(tag))).toString();
+                    parsedFeature.append(includeScenario(nestedFeature, getScenName(lines.get(tag)), getParams(lines.get(tag)), chain));
                 }
-            } catch (IOException ex) {
-                ex.printStackTrace();
+            }
+
+            for (Step step : definition.getSteps()) {
+                appendStep(step, parsedFeature);
             }
         }
+        return scenarioexists;
+    }
 
-        if (params != null) {
-            parsedFeature = doReplaceKeys(parsedFeature, params);
+    private void checkExamplesRow(TableRow row, String[] params) throws IncludeException {
+        if (row.getCells().size() != params.length / 2) {
+            throw new IncludeException("-> Wrong number of parameters.");
         }
+    }
 
-        return parsedFeature;
+    private void appendStep(Step step, StringBuilder parsedFeature) {
+        parsedFeature.append("    ").append(step.getKeyword()).append(step.getText()).append("\n");
+        if (step.getArgument() instanceof DataTable) {
+            for (TableRow row : ((DataTable) step.getArgument()).getRows()) {
+                parsedFeature.append("      |");
+                for (TableCell cell : row.getCells()) {
+                    parsedFeature.append(' ').append(cell.getValue().replace("\\", "\\\\").replace("|", "\\|").replace("\n", "\\n")).append(" |");
+                }
+                parsedFeature.append("\n");
+            }
+        } else if (step.getArgument() instanceof DocString) {
+            DocString docString = (DocString) step.getArgument();
+            parsedFeature.append("      \"\"\"");
+            if (docString.getContentType() != null) {
+                parsedFeature.append(docString.getContentType());
+            }
+            parsedFeature.append("\n");
+            for (String line : docString.getContent().split("\n", -1)) {
+                parsedFeature.append("      ").append(line.replace("\"\"\"", "\\\"\\\"\\\"")).append("\n");
+            }
+            parsedFeature.append("      \"\"\"\n");
+        }
+    }
 
+    /**
+     * Line based lookup, used for features that gherkin can not parse.
+     */
+    private boolean scanLines(List<String> lines, String scenarioName, String[] params, StringBuilder parsedFeature) throws IncludeException {
+        boolean scenarioexists = false;
+        int s = 0;
+        while (s < lines.size()) {
+            String sCurrentLine = lines.get(s++);
+            if (sCurrentLine.contains(scenarioName)) {
+                scenarioexists = true;
+                if (sCurrentLine.toUpperCase().contains("OUTLINE") && params == null) {
+                    throw new IncludeException("->  Parameters were not given for this scenario outline.");
+                } else if (sCurrentLine.toUpperCase().contains("OUTLINE")) {
+                    while (s < lines.size()) {
+                        String sParamline = lines.get(s++);
+                        if (sParamline.toUpperCase().contains("SCENARIO")) {
+                            break;
+                        }
+                        if (sParamline.contains("|")) {
+                            if (!checkParams(sParamline, params)) {
+                                throw new IncludeException("-> Wrong number of parameters.");
+                            }
+                        } else if (!sParamline.toUpperCase().contains("EXAMPLES:")) {
+                            parsedFeature.append(sParamline).append("\n");
+                        }
+                    }
+                } else if (sCurrentLine.toUpperCase().contains("SCENARIO:")) {
+                    while (s < lines.size()) {
+                        sCurrentLine = lines.get(s++);
+                        if (sCurrentLine.toUpperCase().contains("SCENARIO:") || sCurrentLine.toUpperCase().contains("EXAMPLES:") || sCurrentLine.matches("\\s*@[^{].+")) {
+                            break;
+                        }
+                        parsedFeature.append(sCurrentLine).append("\n");
+                    }
+                }
+            }
+        }
+        return scenarioexists;
     }
 
     public boolean checkParams(String sCurrentLine, String[] params) {
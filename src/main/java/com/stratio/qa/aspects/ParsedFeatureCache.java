@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.aspects;
+
+import gherkin.AstBuilder;
+import gherkin.Parser;
+import gherkin.ParserException;
+import gherkin.TokenMatcher;
+import gherkin.ast.GherkinDocument;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Feature files read by {@link LoopIncludeTagAspect}, kept for the whole process.
+ * <p>
+ * Entries are keyed by the normalized path of the file and reloaded when its modification time changes, so every
+ * feature of an include graph is read and parsed once no matter how many times it is included.
+ */
+class ParsedFeatureCache {
+
+    static final ParsedFeatureCache SHARED = new ParsedFeatureCache();
+
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    static final class Entry {
+
+        private final Path file;
+
+        private final FileTime modified;
+
+        private final List<String> lines;
+
+        private boolean parsed;
+
+        private GherkinDocument document;
+
+        private Entry(Path file, FileTime modified, List<String> lines) {
+            this.file = file;
+            this.modified = modified;
+            this.lines = Collections.unmodifiableList(lines);
+        }
+
+        Path getFile() {
+            return file;
+        }
+
+        List<String> getLines() {
+            return lines;
+        }
+
+        /**
+         * Gherkin AST of the feature, parsed on first use.
+         *
+         * @return GherkinDocument, or null if the file is not valid gherkin (i.e. it uses @background blocks)
+         */
+        synchronized GherkinDocument getDocument() {
+            if (!parsed) {
+                try {
+                    document = new Parser<>(new AstBuilder()).parse(String.join("\n", lines), new TokenMatcher());
+                } catch (ParserException e) {
+                    document = null;
+                }
+                parsed = true;
+            }
+            return document;
+        }
+    }
+
+    /**
+     * @param path feature file path
+     * @return cached entry, loaded again if the file has been modified
+     * @throws IOException if the file can not be read
+     */
+    Entry get(String path) throws IOException {
+        Path file = Paths.get(path).toAbsolutePath().normalize();
+        FileTime modified = Files.getLastModifiedTime(file);
+        try {
+            return entries.compute(file, (key, entry) -> {
+                if (entry != null && entry.modified.equals(modified)) {
+                    return entry;
+                }
+                try {
+                    return new Entry(key, modified, read(key));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    List<String> read(Path file) throws IOException {
+        return Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.aspects;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Step text or datatable cell parsed once into literal and placeholder segments (${}, !{} and @{}).
+ * <p>
+ * Templates are cached by their source text, so every distinct string is scanned only once. Strings whose
+ * placeholders can not be told apart without the sequential replacement performed by {@link ReplacementAspect}
+ * (unclosed or nested placeholders) are flagged as not compiled, and must be resolved the old way.
+ */
+final class PlaceholderTemplate {
+
+    static final int MAX_CACHED_TEMPLATES = 10000;
+
+    private static final Map<String, PlaceholderTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private static final PlaceholderTemplate NO_PLACEHOLDERS = new PlaceholderTemplate(false, Collections.emptyList());
+
+    private static final PlaceholderTemplate NOT_COMPILED = new PlaceholderTemplate(true, null);
+
+    enum Kind {
+        ENVIRONMENT('$'), REFLECTION('!'), CODE('@');
+
+        private final char marker;
+
+        Kind(char marker) {
+            this.marker = marker;
+        }
+
+        char getMarker() {
+            return marker;
+        }
+    }
+
+    static final class Segment {
+
+        private final Kind kind;
+
+        private final String text;
+
+        private final String name;
+
+        private final String argument;
+
+        private final String modifier;
+
+        private Segment(Kind kind, String text, String name, String argument, String modifier) {
+            this.kind = kind;
+            this.text = text;
+            this.name = name;
+            this.argument = argument;
+            this.modifier = modifier;
+        }
+
+        /**
+         * @return placeholder kind, null for literal segments
+         */
+        Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return literal text or the whole placeholder, including its markers
+         */
+        String getText() {
+            return text;
+        }
+
+        /**
+         * @return system property, thread property or code property (lower case) referenced by the placeholder
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * @return default value of a ${} placeholder or subproperty of a @{} placeholder, null if not present
+         */
+        String getArgument() {
+            return argument;
+        }
+
+        /**
+         * Apply the .toLower/.toUpper modifier of a ${} placeholder.
+         *
+         * @param value value to modify
+         * @return String
+         */
+        String applyModifier(String value) {
+            if ("toLower".equals(modifier)) {
+                return value.toLowerCase();
+            } else if ("toUpper".equals(modifier)) {
+                return value.toUpperCase();
+            }
+            return value;
+        }
+
+        /**
+         * Resolve a ${} placeholder against system properties, modifier not applied.
+         *
+         * @return String, null if not defined and no default value is given
+         */
+        String systemProperty() {
+            return argument == null ? System.getProperty(name) : System.getProperty(name, argument);
+        }
+
+        static Segment literal(String text) {
+            return new Segment(null, text, null, null, null);
+        }
+
+        static Segment environment(String placeholder) {
+            String modifier = "";
+            String sysProp;
+            String defaultValue = "";
+            String placeholderAux = "";
+            boolean emptyDefault = false;
+
+            if (placeholder.contains(":-")) {
+                defaultValue = placeholder.substring(placeholder.indexOf(":-") + 2, placeholder.length() - 1);
+                if ("''".equals(defaultValue)) {
+                    emptyDefault = true;
+                    defaultValue = "";
+                }
+                placeholderAux = placeholder.substring(0, placeholder.indexOf(":-")) + "}";
+            }
+
+            if (placeholderAux.contains(".")) {
+                sysProp = placeholderAux.substring(2, placeholderAux.indexOf("."));
+                modifier = placeholderAux.substring(placeholderAux.indexOf(".") + 1, placeholderAux.length() - 1);
+            } else if (defaultValue.isEmpty() && !emptyDefault) {
+                if (placeholder.contains(".")) {
+                    modifier = placeholder.substring(placeholder.indexOf(".") + 1, placeholder.length() - 1);
+                    sysProp = placeholder.substring(2, placeholder.indexOf("."));
+                } else {
+                    sysProp = placeholder.substring(2, placeholder.length() - 1);
+                }
+            } else {
+                sysProp = placeholder.substring(2, placeholder.indexOf(":-"));
+            }
+
+            String argument = (defaultValue.isEmpty() && !emptyDefault) ? null : defaultValue;
+            return new Segment(Kind.ENVIRONMENT, placeholder, sysProp, argument, modifier);
+        }
+
+        static Segment reflection(String placeholder) {
+            return new Segment(Kind.REFLECTION, placeholder, placeholder.substring(2, placeholder.length() - 1), null, null);
+        }
+
+        static Segment code(String placeholder) {
+            if (placeholder.contains(".")) {
+                return new Segment(Kind.CODE, placeholder, placeholder.substring(2, placeholder.indexOf(".")).toLowerCase(),
+                        placeholder.substring(placeholder.indexOf(".") + 1, placeholder.length() - 1), null);
+            }
+            return new Segment(Kind.CODE, placeholder, placeholder.substring(2, placeholder.length() - 1).toLowerCase(), null, null);
+        }
+    }
+
+    private final boolean placeholders;
+
+    private final List<Segment> segments;
+
+    private PlaceholderTemplate(boolean placeholders, List<Segment> segments) {
+        this.placeholders = placeholders;
+        this.segments = segments;
+    }
+
+    /**
+     * @return true if the source text contains any placeholder marker
+     */
+    boolean hasPlaceholders() {
+        return placeholders;
+    }
+
+    /**
+     * @return false if the source text has to be resolved by sequential replacement
+     */
+    boolean isCompiled() {
+        return segments != null;
+    }
+
+    List<Segment> getSegments() {
+        return segments;
+    }
+
+    boolean contains(Kind kind) {
+        for (Segment segment : segments) {
+            if (segment.getKind() == kind) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Obtain the (cached) template for a step text or datatable cell.
+     *
+     * @param source text to compile
+     * @return PlaceholderTemplate
+     */
+    static PlaceholderTemplate compile(String source) {
+        if (source.indexOf('{') < 0) {
+            return NO_PLACEHOLDERS;
+        }
+        PlaceholderTemplate template = CACHE.get(source);
+        if (template == null) {
+            template = parse(source);
+            if (CACHE.size() >= MAX_CACHED_TEMPLATES) {
+                CACHE.clear();
+            }
+            CACHE.put(source, template);
+        }
+        return template;
+    }
+
+    static void clearCache() {
+        CACHE.clear();
+    }
+
+    static int cacheSize() {
+        return CACHE.size();
+    }
+
+    private static PlaceholderTemplate parse(String source) {
+        List<Segment> segments = new ArrayList<>();
+        int position = 0;
+        try {
+            while (true) {
+                int open = nextMarker(source, position);
+                if (open < 0) {
+                    break;
+                }
+                int close = source.indexOf('}', open);
+                if (close < 0) {
+                    return NOT_COMPILED;
+                }
+                if (nextMarker(source.substring(open + 2, close), 0) >= 0) {
+                    return NOT_COMPILED;
+                }
+                if (open > position) {
+                    segments.add(Segment.literal(source.substring(position, open)));
+                }
+                String placeholder = source.substring(open, close + 1);
+                switch (source.charAt(open)) {
+                    case '$':
+                        segments.add(Segment.environment(placeholder));
+                        break;
+                    case '!':
+                        segments.add(Segment.reflection(placeholder));
+                        break;
+                    default:
+                        segments.add(Segment.code(placeholder));
+                }
+                position = close + 1;
+            }
+        } catch (RuntimeException e) {
+            return NOT_COMPILED;
+        }
+        if (segments.isEmpty()) {
+            return NO_PLACEHOLDERS;
+        }
+        if (position < source.length()) {
+            segments.add(Segment.literal(source.substring(position)));
+        }
+        return new PlaceholderTemplate(true, Collections.unmodifiableList(segments));
+    }
+
+    private static int nextMarker(String text, int from) {
+        int next = -1;
+        for (Kind kind : Kind.values()) {
+            int index = text.indexOf(kind.getMarker() + "{", from);
+            if (index >= 0 && (next < 0 || index < next)) {
+                next = index;
+            }
+        }
+        return next;
+    }
+}
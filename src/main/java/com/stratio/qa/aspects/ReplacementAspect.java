@@ -23,6 +23,7 @@ import com.stratio.qa.exceptions.NonReplaceableException;
 import com.stratio.qa.specs.CommonG;
 import com.stratio.qa.specs.HookGSpec;
 import com.stratio.qa.utils.ExceptionList;
+import com.stratio.qa.utils.ResourceCache;
 import com.stratio.qa.utils.StepException;
 import com.stratio.qa.utils.ThreadProperty;
 import cucumber.api.PickleStepTestStep;
@@ -30,6 +31,7 @@ import cucumber.api.Result.Type;
 import cucumber.api.Scenario;
 import cucumber.runner.AmbiguousStepDefinitionsException;
 import cucumber.runner.EventBus;
+import cucumber.runner.Runner;
 import cucumber.runtime.Backend;
 import cucumber.runtime.CucumberException;
 import cucumber.runtime.RuntimeOptions;
@@ -49,9 +51,16 @@ import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.aspectj.lang.annotation.After;
 import org.aspectj.lang.annotation.Aspect;
@@ -63,9 +72,17 @@ public class ReplacementAspect {
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass().getCanonicalName());
 
-    private Glue glue;
+    /**
+     * Glue of every runner. Each runner has its own backends, and so its own cucumber world
+     */
+    private final Map<Runner, Glue> glues = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Glue of the runner running a pickle in the current thread
+     */
+    private final ThreadLocal<Glue> glue = new ThreadLocal<>();
 
-    private List<String> undefinedSteps = new ArrayList<>();
+    private final Set<String> undefinedSteps = Collections.synchronizedSet(new LinkedHashSet<>());
 
     private String lastEchoedStep = "";
 
@@ -76,10 +93,11 @@ public class ReplacementAspect {
 
     @After(value = "runnerInit(bus, backends, runtimeOptions)")
     public void runnerInitGlue(JoinPoint jp, EventBus bus, Collection<? extends Backend> backends, RuntimeOptions runtimeOptions) throws Throwable {
-        glue = new Glue(bus);
+        Glue runnerGlue = new Glue(bus);
         for (Backend backend : backends) {
-            backend.loadGlue(glue, runtimeOptions.getGlue());
+            backend.loadGlue(runnerGlue, runtimeOptions.getGlue());
         }
+        glues.put((Runner) jp.getThis(), runnerGlue);
     }
 
     @Pointcut("execution (* cucumber.runtime.formatter.DefaultSummaryPrinter.printSnippets(..))")
@@ -88,10 +106,12 @@ public class ReplacementAspect {
 
     @Around(value = "print()")
     public void printSnippets(ProceedingJoinPoint pjp) throws Throwable {
-        if (!undefinedSteps.isEmpty()) {
-            logger.error("The following steps are undefined:");
-            for (String undefinedStep:undefinedSteps) {
-                logger.error("    {}", undefinedStep);
+        synchronized (undefinedSteps) {
+            if (!undefinedSteps.isEmpty()) {
+                logger.error("The following steps are undefined:");
+                for (String undefinedStep:undefinedSteps) {
+                    logger.error("    {}", undefinedStep);
+                }
             }
         }
     }
@@ -103,6 +123,7 @@ public class ReplacementAspect {
 
     @Before(value = "replacementScenarios(pickle)")
     public void aroundScenarios(JoinPoint jp, PickleEvent pickle) throws Throwable {
+        glue.set(glues.get((Runner) jp.getThis()));
         String scenarioName = pickle.pickle.getName();
         String newScenarioName;
         try {
@@ -210,7 +231,7 @@ public class ReplacementAspect {
 
                     // Run step
                     try {
-                        StepDefinitionMatch definitionMatch = glue.stepDefinitionMatch(uri, step);
+                        StepDefinitionMatch definitionMatch = glue.get().stepDefinitionMatch(uri, step);
                         if (definitionMatch != null) {
                             if (!skipSteps) {
                                 definitionMatch.runStep(scenario);
@@ -222,9 +243,7 @@ public class ReplacementAspect {
                         } else {
                             logger.error("Undefined step!! {}", newName);
                             String undefinedStep = scenario.getUri() + " # " + newName;
-                            if (!undefinedSteps.contains(undefinedStep)) {
-                                undefinedSteps.add(undefinedStep);
-                            }
+                            undefinedSteps.add(undefinedStep);
                             return Type.UNDEFINED;
                         }
                     } catch (AmbiguousStepDefinitionsException asde) {
@@ -240,6 +259,29 @@ public class ReplacementAspect {
     }
 
     protected String replacedElement(String el, JoinPoint jp) throws NonReplaceableException {
+        PlaceholderTemplate template = PlaceholderTemplate.compile(el);
+        if (!template.hasPlaceholders()) {
+            return el;
+        }
+        if (template.isCompiled()) {
+            String rendered = renderTemplate(el, template, jp);
+            if (rendered != null) {
+                return rendered;
+            }
+        }
+        return replacedElementSequentially(el, jp);
+    }
+
+    /**
+     * Replaces placeholders by scanning the element again after every replacement. Used for elements
+     * whose placeholders are nested or whose values introduce new placeholders.
+     *
+     * @param el element to be replaced
+     * @param jp JoinPoint
+     * @return String
+     * @throws NonReplaceableException exception
+     */
+    protected String replacedElementSequentially(String el, JoinPoint jp) throws NonReplaceableException {
         if (el.contains("${")) {
             el = replaceEnvironmentPlaceholders(el, jp);
         }
@@ -252,6 +294,157 @@ public class ReplacementAspect {
         return el;
     }
 
+    /**
+     * Renders a compiled template resolving ${}, !{} and @{} placeholders, in this order, without scanning
+     * the element again. Every distinct placeholder is resolved once, like in sequential replacement.
+     *
+     * @param el       element to be replaced
+     * @param template compiled element
+     * @param jp       JoinPoint
+     * @return String, or null if a resolved value could introduce new placeholders and the element
+     * must be replaced sequentially
+     * @throws NonReplaceableException exception
+     */
+    protected String renderTemplate(String el, PlaceholderTemplate template, JoinPoint jp) throws NonReplaceableException {
+        List<PlaceholderTemplate.Segment> segments = template.getSegments();
+        String[] values = new String[segments.size()];
+        boolean environmentReplaced = false;
+
+        if (template.contains(PlaceholderTemplate.Kind.ENVIRONMENT)) {
+            Map<String, String> resolved = new HashMap<>();
+            environmentReplaced = true;
+            for (int i = 0; i < segments.size() && environmentReplaced; i++) {
+                PlaceholderTemplate.Segment segment = segments.get(i);
+                if (segment.getKind() == PlaceholderTemplate.Kind.ENVIRONMENT) {
+                    String value = resolved.get(segment.getText());
+                    if (value == null) {
+                        String prop = segment.systemProperty();
+                        if (prop == null && (jp.getThis() instanceof CucumberReporter.TestMethod)) {
+                            environmentReplaced = false;
+                            Arrays.fill(values, null);
+                            continue;
+                        } else if (prop == null) {
+                            logger.error("{} -> {} env var has not been defined.", el, segment.getName());
+                            throw new NonReplaceableException("Unreplaceable placeholder: " + segment.getText());
+                        }
+                        value = segment.applyModifier(prop);
+                        if (introducesPlaceholders(value, "${", "!{", "@{")) {
+                            return null;
+                        }
+                        resolved.put(segment.getText(), value);
+                    }
+                    values[i] = value;
+                }
+            }
+        }
+
+        if (template.contains(PlaceholderTemplate.Kind.REFLECTION)) {
+            Map<String, String> resolved = new HashMap<>();
+            for (int i = 0; i < segments.size(); i++) {
+                PlaceholderTemplate.Segment segment = segments.get(i);
+                if (segment.getKind() == PlaceholderTemplate.Kind.REFLECTION) {
+                    String prop = resolved.get(segment.getText());
+                    if (prop == null) {
+                        prop = ThreadProperty.get(segment.getName());
+                        if (prop == null && (jp.getThis() instanceof CucumberReporter.TestMethod)) {
+                            clearValues(segments, values, PlaceholderTemplate.Kind.REFLECTION);
+                            break;
+                        } else if (prop == null) {
+                            logger.error("{} -> {} local var has not been saved correctly previously.", joinSegments(segments, values), segment.getName());
+                            throw new NonReplaceableException("Unreplaceable placeholder: " + segment.getText());
+                        }
+                        if (introducesPlaceholders(prop, "${", "!{", "@{")) {
+                            return null;
+                        }
+                        resolved.put(segment.getText(), prop);
+                    }
+                    values[i] = prop;
+                }
+            }
+        }
+
+        if (template.contains(PlaceholderTemplate.Kind.CODE)) {
+            Map<String, String> resolved = new HashMap<>();
+            for (int i = 0; i < segments.size(); i++) {
+                PlaceholderTemplate.Segment segment = segments.get(i);
+                if (segment.getKind() == PlaceholderTemplate.Kind.CODE) {
+                    String value = resolved.get(segment.getText());
+                    if (value == null) {
+                        if (segment.getArgument() == null) {
+                            if (jp.getThis() instanceof CucumberReporter.TestMethod) {
+                                // Already resolved placeholders are still replaced, as in sequential replacement
+                                for (int j = i + 1; j < segments.size(); j++) {
+                                    if (segments.get(j).getKind() == PlaceholderTemplate.Kind.CODE) {
+                                        values[j] = resolved.get(segments.get(j).getText());
+                                    }
+                                }
+                                break;
+                            } else {
+                                clearValues(segments, values, PlaceholderTemplate.Kind.CODE);
+                                logger.error("{} -> {} placeholded element has not been replaced previously.", joinSegments(segments, values), segment.getName());
+                                throw new NonReplaceableException("Unreplaceable placeholder: " + segment.getText());
+                            }
+                        }
+                        value = resolveCodePlaceholder(segment.getName(), segment.getArgument());
+                        if (value == null || value.contains("@{")) {
+                            return null;
+                        }
+                        resolved.put(segment.getText(), value);
+                    }
+                    values[i] = value;
+                }
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(el.length() + 16);
+        for (int i = 0; i < segments.size(); i++) {
+            String text = values[i] != null ? values[i] : segments.get(i).getText();
+            if (!text.isEmpty() && text.charAt(0) == '{' && sb.length() > 0) {
+                char previous = sb.charAt(sb.length() - 1);
+                if (previous == '$' || previous == '!' || previous == '@') {
+                    return null;
+                }
+            }
+            sb.append(text);
+        }
+        String newVal = sb.toString();
+
+        // Allow setting empty string as default value
+        if (environmentReplaced && newVal.equalsIgnoreCase("\"\"")) {
+            newVal = "";
+        }
+        return newVal;
+    }
+
+    private boolean introducesPlaceholders(String value, String... markers) {
+        for (String marker : markers) {
+            if (value.contains(marker)) {
+                return true;
+            }
+        }
+        if (!value.isEmpty()) {
+            char last = value.charAt(value.length() - 1);
+            return last == '$' || last == '!' || last == '@';
+        }
+        return false;
+    }
+
+    private void clearValues(List<PlaceholderTemplate.Segment> segments, String[] values, PlaceholderTemplate.Kind kind) {
+        for (int i = 0; i < segments.size(); i++) {
+            if (segments.get(i).getKind() == kind) {
+                values[i] = null;
+            }
+        }
+    }
+
+    private String joinSegments(List<PlaceholderTemplate.Segment> segments, String[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < segments.size(); i++) {
+            sb.append(values[i] != null ? values[i] : segments.get(i).getText());
+        }
+        return sb.toString();
+    }
+
     /**
      * Replaces every placeholded element, enclosed in @{} with the
      * corresponding attribute value in local Common class
@@ -278,7 +471,6 @@ public class ReplacementAspect {
             String placeholder = newVal.substring(newVal.indexOf("@{"), newVal.indexOf("}", newVal.indexOf("@{")) + 1);
             String property = placeholder.substring(2, placeholder.length() - 1).toLowerCase();
             String subproperty = "";
-            CommonG commonJson;
             if (placeholder.contains(".")) {
                 property = placeholder.substring(2, placeholder.indexOf(".")).toLowerCase();
                 subproperty = placeholder.substring(placeholder.indexOf(".") + 1, placeholder.length() - 1);
@@ -291,41 +483,52 @@ public class ReplacementAspect {
                 }
             }
 
-            switch (property) {
-                case "ip":
-                    boolean found = false;
-                    if (!subproperty.isEmpty()) {
-                        Enumeration<InetAddress> ifs = null;
-                        try {
-                            ifs = NetworkInterface.getByName(subproperty).getInetAddresses();
-                        } catch (SocketException e) {
-                            this.logger.error(e.getMessage());
-                        }
-                        while (ifs.hasMoreElements() && !found) {
-                            InetAddress itf = ifs.nextElement();
-                            if (itf instanceof Inet4Address) {
-                                String ip = itf.getHostAddress();
-                                newVal = newVal.replace(placeholder, ip);
-                                found = true;
-                            }
-                        }
+            newVal = newVal.replace(placeholder, resolveCodePlaceholder(property, subproperty));
+        }
+        return newVal;
+    }
+
+
+    /**
+     * Resolves the value of a @{} placeholder with a subproperty
+     *
+     * @param property    lower case property (ip, json or file)
+     * @param subproperty interface name or path to file
+     * @return String
+     * @throws NonReplaceableException exception
+     */
+    protected String resolveCodePlaceholder(String property, String subproperty) throws NonReplaceableException {
+        CommonG commonJson;
+        switch (property) {
+            case "ip":
+                if (!subproperty.isEmpty()) {
+                    Enumeration<InetAddress> ifs = null;
+                    try {
+                        ifs = NetworkInterface.getByName(subproperty).getInetAddresses();
+                    } catch (SocketException e) {
+                        this.logger.error(e.getMessage());
                     }
-                    if (!found) {
-                        throw new NonReplaceableException("Interface " + subproperty + " not available");
+                    while (ifs.hasMoreElements()) {
+                        InetAddress itf = ifs.nextElement();
+                        if (itf instanceof Inet4Address) {
+                            return itf.getHostAddress();
+                        }
                     }
-                    break;
-                case "json":
-                case "file":
-                    commonJson = new CommonG();
-                    newVal = newVal.replace(placeholder, commonJson.retrieveData(subproperty, property));
-                    break;
-                default:
-                    commonJson = new CommonG();
-                    commonJson.getLogger().error("Replacement with an undefined option ({})", property);
-                    newVal = newVal.replace(placeholder, "");
-            }
+                }
+                throw new NonReplaceableException("Interface " + subproperty + " not available");
+            case "json":
+            case "file":
+                String data = ResourceCache.getInstance().get(subproperty, property);
+                if (data == null) {
+                    logger.error("File does not exist: {}", subproperty);
+                    return "ERR! File not found: " + subproperty;
+                }
+                return data;
+            default:
+                commonJson = new CommonG();
+                commonJson.getLogger().error("Replacement with an undefined option ({})", property);
+                return "";
         }
-        return newVal;
     }
 
 
@@ -24,24 +24,29 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 public class LoopConverter {
+
+    private static final int MAX_CACHED_TAGS = 10000;
+
+    private static final Map<String, LoopTag> LOOP_TAGS = new ConcurrentHashMap<>();
+
     public static List<PickleEvent> transformPickleEventWithLoopTags(PickleEvent pe) {
         List<PickleEvent> pickleEventList = new ArrayList<>();
         for (PickleTag pickleTag : pe.pickle.getTags()) {
-            // Loop
-            if (pickleTag.getName().toUpperCase().matches("\\s*@LOOP.*")) {
-                transformLoop(pe, pickleTag, pickleEventList);
+            LoopTag loopTag = LoopTag.of(pickleTag.getName());
+            if (loopTag.getKind() == LoopTag.Kind.LOOP) {
+                transformLoop(pe, loopTag, pickleEventList);
                 break;
             }
-            // ProgLoop
-            if (pickleTag.getName().toUpperCase().matches("\\s*@PROGLOOP.*")) {
-                transformProgLoop(pe, pickleTag, pickleEventList);
+            if (loopTag.getKind() == LoopTag.Kind.PROGLOOP) {
+                transformProgLoop(pe, loopTag, pickleEventList);
                 break;
             }
-            // MultiLoop
-            if (pickleTag.getName().toUpperCase().matches("\\s*@MULTILOOP.*")) {
-                transformMultiLoop(pe, pickleTag, pickleEventList);
+            if (loopTag.getKind() == LoopTag.Kind.MULTILOOP) {
+                transformMultiLoop(pe, loopTag, pickleEventList);
                 break;
             }
         }
@@ -51,20 +56,16 @@ public class LoopConverter {
         return pickleEventList;
     }
 
-    private static void transformLoop(PickleEvent pe, PickleTag pickleTag, List<PickleEvent> pickleEventList) {
-        String listParams = pickleTag.getName().substring((pickleTag.getName().lastIndexOf("(") + 1), (pickleTag.getName().length()) - 1).split(",")[0];
+    private static void transformLoop(PickleEvent pe, LoopTag loopTag, List<PickleEvent> pickleEventList) {
+        String listParams = loopTag.getArguments()[0];
         try {
             String value = System.getProperty(listParams, ThreadProperty.get(listParams));
             if (value == null) {
                 throw new Exception("@errorMessage(Variable__" + listParams + "__is__not__defined.)");
             }
             String[] elems = value.split(",");
-            String paramReplace = pickleTag.getName().substring((pickleTag.getName().lastIndexOf("(") + 1), (pickleTag.getName().length()) - 1).split(",")[1];
-            int numElem = 0;
-            for (String elem : elems) {
-                pickleEventList.add(generatePickleEvent(elem, numElem, paramReplace, pe.uri, pe.pickle.getName(), pe.pickle.getLanguage(), pe.pickle.getSteps(), pe.pickle.getTags(), pe.pickle.getLocations()));
-                numElem++;
-            }
+            String paramReplace = loopTag.getArguments()[1];
+            addPickleEvents(pe, elems, paramReplace, pickleEventList);
         } catch (Exception e) {
             String message = e.getMessage();
             if (!message.contains("@errorMessage")) {
@@ -78,8 +79,8 @@ public class LoopConverter {
         }
     }
 
-    private static void transformProgLoop(PickleEvent pe, PickleTag pickleTag, List<PickleEvent> pickleEventList) {
-        String listParams = pickleTag.getName().substring((pickleTag.getName().lastIndexOf("(") + 1), (pickleTag.getName().length()) - 1).split(",")[0];
+    private static void transformProgLoop(PickleEvent pe, LoopTag loopTag, List<PickleEvent> pickleEventList) {
+        String listParams = loopTag.getArguments()[0];
         try {
             String elem = System.getProperty(listParams, ThreadProperty.get(listParams));
             if (elem == null) {
@@ -93,12 +94,8 @@ public class LoopConverter {
                 for (Integer i = 1; i <= times; i++) {
                     elems[i - 1] = i.toString();
                 }
-                String paramReplace = pickleTag.getName().substring((pickleTag.getName().lastIndexOf("(") + 1), (pickleTag.getName().length()) - 1).split(",")[1];
-                int numElem = 0;
-                for (String elemAux : elems) {
-                    pickleEventList.add(generatePickleEvent(elemAux, numElem, paramReplace, pe.uri, pe.pickle.getName(), pe.pickle.getLanguage(), pe.pickle.getSteps(), pe.pickle.getTags(), pe.pickle.getLocations()));
-                    numElem++;
-                }
+                String paramReplace = loopTag.getArguments()[1];
+                addPickleEvents(pe, elems, paramReplace, pickleEventList);
             }
         } catch (Exception e) {
             String message = e.getMessage();
@@ -116,9 +113,9 @@ public class LoopConverter {
         }
     }
 
-    private static void transformMultiLoop(PickleEvent pe, PickleTag pickleTag, List<PickleEvent> pickleEventList) {
+    private static void transformMultiLoop(PickleEvent pe, LoopTag loopTag, List<PickleEvent> pickleEventList) {
         Map<String, String[]> params = new HashMap<>();
-        String[] elements = pickleTag.getName().substring((pickleTag.getName().lastIndexOf("(") + 1), (pickleTag.getName().length()) - 1).split(",");
+        String[] elements = loopTag.getArguments();
         try {
             for (String element : elements) {
                 String[] elementParts = element.split("=>");
@@ -168,8 +165,17 @@ public class LoopConverter {
                     numRepetitions = numRepetitions * keyValues.length;
                 }
             }
+            String[] placeholders = new String[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                placeholders[i] = "<" + keys[i] + ">";
+            }
+            PickleTemplate template = PickleTemplate.compile(pe, placeholders, placeholders);
             for (String[] values : replacedValues) {
-                pickleEventList.add(generatePickleEvent(keys, values, pe.uri, pe.pickle.getName(), pe.pickle.getLanguage(), pe.pickle.getSteps(), pe.pickle.getTags(), pe.pickle.getLocations()));
+                if (template != null && SubstitutionPlan.areSafeValues(values)) {
+                    pickleEventList.add(template.expand(values, values));
+                } else {
+                    pickleEventList.add(generatePickleEvent(keys, values, pe.uri, pe.pickle.getName(), pe.pickle.getLanguage(), pe.pickle.getSteps(), pe.pickle.getTags(), pe.pickle.getLocations()));
+                }
             }
         } catch (Exception e) {
             String message = e.getMessage();
@@ -184,6 +190,24 @@ public class LoopConverter {
         }
     }
 
+    private static void addPickleEvents(PickleEvent pe, String[] elems, String paramReplace, List<PickleEvent> pickleEventList) {
+        String placeholder = "<" + paramReplace + ">";
+        String idPlaceholder = "<" + paramReplace + ".id>";
+        String[] placeholders = new String[]{placeholder, idPlaceholder};
+        PickleTemplate template = PickleTemplate.compile(pe, placeholders, placeholders);
+        int numElem = 0;
+        for (String elem : elems) {
+            String id = String.valueOf(numElem);
+            if (template != null && SubstitutionPlan.areSafeValues(elem)) {
+                // as in generatePickleEvent, ids in data tables are replaced with the element
+                pickleEventList.add(template.expand(new String[]{elem, id}, new String[]{elem, elem}));
+            } else {
+                pickleEventList.add(generatePickleEvent(elem, numElem, paramReplace, pe.uri, pe.pickle.getName(), pe.pickle.getLanguage(), pe.pickle.getSteps(), pe.pickle.getTags(), pe.pickle.getLocations()));
+            }
+            numElem++;
+        }
+    }
+
     private static PickleEvent generatePickleEvent(String elem, int numElem, String paramReplace, String uri, String name, String language, List<PickleStep> steps, List<PickleTag> tags, List<PickleLocation> locations) {
         List<PickleStep> newSteps = new ArrayList<>();
         for (PickleStep step : steps) {
@@ -239,4 +263,156 @@ public class LoopConverter {
         }
         return argumentListReplaced;
     }
+
+    /**
+     * Loop tag of a scenario, parsed once per tag.
+     */
+    static final class LoopTag {
+
+        enum Kind { LOOP, PROGLOOP, MULTILOOP, NONE }
+
+        private static final Pattern LOOP = Pattern.compile("\\s*@LOOP.*");
+
+        private static final Pattern PROGLOOP = Pattern.compile("\\s*@PROGLOOP.*");
+
+        private static final Pattern MULTILOOP = Pattern.compile("\\s*@MULTILOOP.*");
+
+        private final String name;
+
+        private final Kind kind;
+
+        private String[] arguments;
+
+        private LoopTag(String name, Kind kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+
+        static LoopTag of(String name) {
+            LoopTag loopTag = LOOP_TAGS.get(name);
+            if (loopTag == null) {
+                String upperName = name.toUpperCase();
+                Kind kind = Kind.NONE;
+                if (LOOP.matcher(upperName).matches()) {
+                    kind = Kind.LOOP;
+                } else if (PROGLOOP.matcher(upperName).matches()) {
+                    kind = Kind.PROGLOOP;
+                } else if (MULTILOOP.matcher(upperName).matches()) {
+                    kind = Kind.MULTILOOP;
+                }
+                loopTag = new LoopTag(name, kind);
+                if (LOOP_TAGS.size() >= MAX_CACHED_TAGS) {
+                    LOOP_TAGS.clear();
+                }
+                LOOP_TAGS.put(name, loopTag);
+            }
+            return loopTag;
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return comma separated arguments between the last '(' and the closing character of the tag
+         */
+        String[] getArguments() {
+            if (arguments == null) {
+                arguments = name.substring((name.lastIndexOf("(") + 1), (name.length()) - 1).split(",");
+            }
+            return arguments.clone();
+        }
+    }
+
+    /**
+     * Scenario name, step texts and data table cells of a pickle compiled into substitution plans.
+     */
+    static final class PickleTemplate {
+
+        private final PickleEvent pe;
+
+        private final SubstitutionPlan name;
+
+        private final List<SubstitutionPlan> stepTexts = new ArrayList<>();
+
+        // plans by step, argument, row and cell; null for arguments other than data tables
+        private final List<List<List<List<SubstitutionPlan>>>> cells = new ArrayList<>();
+
+        private PickleTemplate(PickleEvent pe, SubstitutionPlan name) {
+            this.pe = pe;
+            this.name = name;
+        }
+
+        /**
+         * @param pe                   pickle
+         * @param textPlaceholders     placeholders of the name and step texts
+         * @param argumentPlaceholders placeholders of the data table cells
+         * @return PickleTemplate, or null if the placeholders can not be compiled
+         */
+        static PickleTemplate compile(PickleEvent pe, String[] textPlaceholders, String[] argumentPlaceholders) {
+            Pattern[] textPatterns = SubstitutionPlan.compilePlaceholders(textPlaceholders);
+            Pattern[] argumentPatterns = SubstitutionPlan.compilePlaceholders(argumentPlaceholders);
+            if (textPatterns == null || argumentPatterns == null) {
+                return null;
+            }
+            PickleTemplate template = new PickleTemplate(pe, SubstitutionPlan.compile(pe.pickle.getName(), textPlaceholders, textPatterns));
+            for (PickleStep step : pe.pickle.getSteps()) {
+                template.stepTexts.add(SubstitutionPlan.compile(step.getText(), textPlaceholders, textPatterns));
+                List<List<List<SubstitutionPlan>>> stepCells = new ArrayList<>();
+                for (Argument argument : step.getArgument()) {
+                    if (argument instanceof PickleTable) {
+                        List<List<SubstitutionPlan>> tableCells = new ArrayList<>();
+                        for (PickleRow row : ((PickleTable) argument).getRows()) {
+                            List<SubstitutionPlan> rowCells = new ArrayList<>();
+                            for (PickleCell cell : row.getCells()) {
+                                rowCells.add(SubstitutionPlan.compile(cell.getValue(), argumentPlaceholders, argumentPatterns));
+                            }
+                            tableCells.add(rowCells);
+                        }
+                        stepCells.add(tableCells);
+                    } else {
+                        stepCells.add(null);
+                    }
+                }
+                template.cells.add(stepCells);
+            }
+            return template;
+        }
+
+        /**
+         * @param textValues     values of the name and step text placeholders
+         * @param argumentValues values of the data table placeholders
+         * @return expanded pickle
+         */
+        PickleEvent expand(String[] textValues, String[] argumentValues) {
+            List<PickleStep> steps = pe.pickle.getSteps();
+            List<PickleStep> newSteps = new ArrayList<>(steps.size());
+            for (int s = 0; s < steps.size(); s++) {
+                PickleStep step = steps.get(s);
+                List<Argument> arguments = new ArrayList<>(step.getArgument().size());
+                for (int a = 0; a < step.getArgument().size(); a++) {
+                    Argument argument = step.getArgument().get(a);
+                    List<List<SubstitutionPlan>> tableCells = cells.get(s).get(a);
+                    if (tableCells == null) {
+                        arguments.add(argument);
+                        continue;
+                    }
+                    List<PickleRow> rows = ((PickleTable) argument).getRows();
+                    List<PickleRow> newRows = new ArrayList<>(rows.size());
+                    for (int r = 0; r < rows.size(); r++) {
+                        List<PickleCell> rowCells = rows.get(r).getCells();
+                        List<PickleCell> newCells = new ArrayList<>(rowCells.size());
+                        for (int c = 0; c < rowCells.size(); c++) {
+                            newCells.add(new PickleCell(rowCells.get(c).getLocation(), tableCells.get(r).get(c).expand(argumentValues)));
+                        }
+                        newRows.add(new PickleRow(newCells));
+                    }
+                    arguments.add(new PickleTable(newRows));
+                }
+                newSteps.add(new PickleStep(stepTexts.get(s).expand(textValues), arguments, step.getLocations()));
+            }
+            Pickle pickle = new Pickle(name.expand(textValues), pe.pickle.getLanguage(), newSteps, pe.pickle.getTags(), pe.pickle.getLocations());
+            return new PickleEvent(pe.uri, pickle);
+        }
+    }
 }
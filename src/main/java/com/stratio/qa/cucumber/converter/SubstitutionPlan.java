@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.cucumber.converter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Text compiled once into literal segments and placeholder slots, expanded for every loop element with a single
+ * StringBuilder.
+ * <p>
+ * Placeholders are the same regular expressions applied one after the other with {@link String#replaceAll} by the
+ * loop converter. The text is only split when doing so gives exactly the same result: every '&lt;' of the text
+ * starts a placeholder, placeholders do not overlap and values do not contain '&lt;'. Otherwise the placeholders
+ * are replaced one by one.
+ */
+final class SubstitutionPlan {
+
+    private static final Pattern SAFE_PLACEHOLDER = Pattern.compile("<[\\w .:=-]*>");
+
+    private final String text;
+
+    private final String[] placeholders;
+
+    private final String[] literals;
+
+    private final int[] slots;
+
+    private SubstitutionPlan(String text, String[] placeholders, String[] literals, int[] slots) {
+        this.text = text;
+        this.placeholders = placeholders;
+        this.literals = literals;
+        this.slots = slots;
+    }
+
+    /**
+     * Compile the placeholders of an expansion.
+     *
+     * @param placeholders placeholder regular expressions, in replacement order
+     * @return patterns, or null if any placeholder uses regular expression features other than '.'
+     */
+    static Pattern[] compilePlaceholders(String... placeholders) {
+        Pattern[] patterns = new Pattern[placeholders.length];
+        for (int i = 0; i < placeholders.length; i++) {
+            if (!SAFE_PLACEHOLDER.matcher(placeholders[i]).matches()) {
+                return null;
+            }
+            patterns[i] = Pattern.compile(placeholders[i]);
+        }
+        return patterns;
+    }
+
+    /**
+     * Values that can be used to expand a plan: replacement strings without group references or escapes, that can
+     * not start a new placeholder.
+     *
+     * @param values values
+     * @return true if every value is safe
+     */
+    static boolean areSafeValues(String... values) {
+        for (String value : values) {
+            if (value.indexOf('<') >= 0 || value.indexOf('$') >= 0 || value.indexOf('\\') >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param text         text
+     * @param placeholders placeholder regular expressions, in replacement order
+     * @param patterns     placeholders compiled with {@link #compilePlaceholders}
+     * @return SubstitutionPlan
+     */
+    static SubstitutionPlan compile(String text, String[] placeholders, Pattern[] patterns) {
+        // start and end of every placeholder found, by position in the text
+        int[] ends = new int[text.length()];
+        int[] slotAt = new int[text.length()];
+        int found = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            Matcher matcher = patterns[i].matcher(text);
+            while (matcher.find()) {
+                if (ends[matcher.start()] != 0) {
+                    return new SubstitutionPlan(text, placeholders, null, null);
+                }
+                ends[matcher.start()] = matcher.end();
+                slotAt[matcher.start()] = i;
+                found++;
+            }
+        }
+
+        List<String> literals = new ArrayList<>(found + 1);
+        int[] slots = new int[found];
+        int literalStart = 0;
+        int position = 0;
+        while (position < text.length()) {
+            if (ends[position] != 0) {
+                if (position < literalStart) {
+                    // overlapping placeholders
+                    return new SubstitutionPlan(text, placeholders, null, null);
+                }
+                slots[literals.size()] = slotAt[position];
+                literals.add(text.substring(literalStart, position));
+                literalStart = ends[position];
+            } else if (text.charAt(position) == '<') {
+                return new SubstitutionPlan(text, placeholders, null, null);
+            }
+            position++;
+        }
+        literals.add(text.substring(literalStart));
+        return new SubstitutionPlan(text, placeholders, literals.toArray(new String[0]), slots);
+    }
+
+    boolean isCompiled() {
+        return literals != null;
+    }
+
+    /**
+     * Replace the placeholders. Values must be {@link #areSafeValues safe}.
+     *
+     * @param values value of each placeholder
+     * @return expanded text
+     */
+    String expand(String... values) {
+        if (literals == null) {
+            String result = text;
+            for (int i = 0; i < placeholders.length; i++) {
+                result = result.replaceAll(placeholders[i], values[i]);
+            }
+            return result;
+        }
+        if (slots.length == 0) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length() + 16 * slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            sb.append(literals[i]).append(values[slots[i]]);
+        }
+        return sb.append(literals[slots.length]).toString();
+    }
+}
@@ -26,17 +26,28 @@ import cucumber.api.StepDefinitionReporter;
 import gherkin.pickles.PickleStep;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
 public final class Glue implements cucumber.runtime.Glue {
+    static final int MAX_CACHED_STEP_TEXTS = 5000;
+
     final Map<String, StepDefinition> stepDefinitionsByPattern = new TreeMap<>();
 
-    final Map<String, StepDefinition> stepDefinitionsByStepText = new HashMap<>();
+    // Loop expanded scenarios produce an unbounded number of step texts, least recently used ones are evicted.
+    // Reads reorder the entries, so every access is synchronized, as steps of concurrent scenarios are matched here
+    final Map<String, StepDefinition> stepDefinitionsByStepText = Collections.synchronizedMap(
+            new LinkedHashMap<String, StepDefinition>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, StepDefinition> eldest) {
+                    return size() > MAX_CACHED_STEP_TEXTS;
+                }
+            });
 
     final List<HookDefinition> beforeHooks = new ArrayList<>();
 
@@ -48,17 +59,21 @@ public final class Glue implements cucumber.runtime.Glue {
 
     private final EventBus bus;
 
+    // Built on first use, and again after step definitions change
+    private volatile IndexedStepDefinitions indexedStepDefinitions;
+
     public Glue(EventBus bus) {
         this.bus = bus;
     }
 
     @Override
-    public void addStepDefinition(StepDefinition stepDefinition) {
+    public synchronized void addStepDefinition(StepDefinition stepDefinition) {
         StepDefinition previous = stepDefinitionsByPattern.get(stepDefinition.getPattern());
         if (previous != null) {
             throw new DuplicateStepDefinitionException(previous, stepDefinition);
         }
         stepDefinitionsByPattern.put(stepDefinition.getPattern(), stepDefinition);
+        indexedStepDefinitions = null;
         // Custom glue, we don't send StepDefinedEvent to bus
         //bus.send(new StepDefinedEvent(bus.getTime(), bus.getTimeMillis(), stepDefinition));
     }
@@ -133,7 +148,10 @@ public final class Glue implements cucumber.runtime.Glue {
 
     private List<PickleStepDefinitionMatch> stepDefinitionMatches(String featurePath, PickleStep step) {
         List<PickleStepDefinitionMatch> result = new ArrayList<PickleStepDefinitionMatch>();
-        for (StepDefinition stepDefinition : stepDefinitionsByPattern.values()) {
+        IndexedStepDefinitions indexed = getIndexedStepDefinitions();
+        BitSet candidates = indexed.index.candidates(step.getText());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            StepDefinition stepDefinition = indexed.stepDefinitions.get(i);
             List<Argument> arguments = stepDefinition.matchedArguments(step);
             if (arguments != null) {
                 result.add(new PickleStepDefinitionMatch(arguments, stepDefinition, featurePath, step));
@@ -142,20 +160,59 @@ public final class Glue implements cucumber.runtime.Glue {
         return result;
     }
 
-    void reportStepDefinitions(StepDefinitionReporter stepDefinitionReporter) {
+    private IndexedStepDefinitions getIndexedStepDefinitions() {
+        IndexedStepDefinitions indexed = indexedStepDefinitions;
+        if (indexed == null) {
+            synchronized (this) {
+                indexed = indexedStepDefinitions;
+                if (indexed == null) {
+                    indexed = new IndexedStepDefinitions(new ArrayList<>(stepDefinitionsByPattern.values()));
+                    indexedStepDefinitions = indexed;
+                }
+            }
+        }
+        return indexed;
+    }
+
+    /**
+     * Step definitions and the index of their patterns, by position.
+     */
+    private static final class IndexedStepDefinitions {
+
+        private final List<StepDefinition> stepDefinitions;
+
+        private final StepDefinitionIndex index;
+
+        private IndexedStepDefinitions(List<StepDefinition> stepDefinitions) {
+            this.stepDefinitions = stepDefinitions;
+            List<String> patterns = new ArrayList<>(stepDefinitions.size());
+            for (StepDefinition stepDefinition : stepDefinitions) {
+                patterns.add(stepDefinition.getPattern());
+            }
+            this.index = new StepDefinitionIndex(patterns);
+        }
+    }
+
+    synchronized void reportStepDefinitions(StepDefinitionReporter stepDefinitionReporter) {
         for (StepDefinition stepDefinition : stepDefinitionsByPattern.values()) {
             stepDefinitionReporter.stepDefinition(stepDefinition);
         }
     }
 
     @Override
-    public void removeScenarioScopedGlue() {
+    public synchronized void removeScenarioScopedGlue() {
         removeScenarioScopedHooks(beforeHooks);
         removeScenarioScopedHooks(beforeStepHooks);
         removeScenarioScopedHooks(afterHooks);
         removeScenarioScopedHooks(afterStepHooks);
+        int stepDefinitions = stepDefinitionsByPattern.size();
         removeScenariosScopedStepDefinitions(stepDefinitionsByPattern);
-        removeScenariosScopedStepDefinitions(stepDefinitionsByStepText);
+        synchronized (stepDefinitionsByStepText) {
+            removeScenariosScopedStepDefinitions(stepDefinitionsByStepText);
+        }
+        if (stepDefinitionsByPattern.size() != stepDefinitions) {
+            indexedStepDefinitions = null;
+        }
     }
 
     private void removeScenarioScopedHooks(List<HookDefinition> beforeHooks) {
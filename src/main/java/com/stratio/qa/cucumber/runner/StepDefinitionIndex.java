@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.cucumber.runner;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of step definition patterns by the literal text every matching step must contain.
+ * <p>
+ * For each pattern (regular expression or cucumber expression) the literal prefix the step text must start with
+ * is stored in a trie, and the other literal tokens the step text must contain are kept aside. Looking up a step
+ * text returns the ordinals of the patterns that may match it, so only those have to be evaluated. Patterns whose
+ * literals can not be safely extracted are always returned as candidates.
+ */
+final class StepDefinitionIndex {
+
+    private static final int MIN_TOKEN_LENGTH = 2;
+
+    private final TrieNode root = new TrieNode();
+
+    private final List<List<String>> tokens = new ArrayList<>();
+
+    private final int size;
+
+    StepDefinitionIndex(List<String> patterns) {
+        this.size = patterns.size();
+        for (int ordinal = 0; ordinal < patterns.size(); ordinal++) {
+            Literals literals = Literals.of(patterns.get(ordinal));
+            tokens.add(literals.getTokens());
+            TrieNode node = root;
+            for (int i = 0; i < literals.getPrefix().length(); i++) {
+                node = node.children.computeIfAbsent(literals.getPrefix().charAt(i), c -> new TrieNode());
+            }
+            node.ordinals.add(ordinal);
+        }
+    }
+
+    /**
+     * @return number of indexed patterns
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Obtain the patterns that may match a step text.
+     *
+     * @param stepText step text
+     * @return ordinals (in indexing order) of the candidate patterns
+     */
+    BitSet candidates(String stepText) {
+        BitSet result = new BitSet(size);
+        TrieNode node = root;
+        int position = 0;
+        while (node != null) {
+            for (int ordinal : node.ordinals) {
+                if (containsAll(stepText, tokens.get(ordinal))) {
+                    result.set(ordinal);
+                }
+            }
+            node = position < stepText.length() ? node.children.get(stepText.charAt(position++)) : null;
+        }
+        return result;
+    }
+
+    private static boolean containsAll(String stepText, List<String> required) {
+        for (String token : required) {
+            if (!stepText.contains(token)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class TrieNode {
+
+        private final Map<Character, TrieNode> children = new HashMap<>();
+
+        private final List<Integer> ordinals = new ArrayList<>();
+    }
+
+    /**
+     * Literal text required by a step pattern: the prefix every matching step starts with, and the tokens
+     * (prefix excluded) every matching step contains.
+     */
+    static final class Literals {
+
+        private static final Literals NONE = new Literals("", Collections.emptyList());
+
+        private final String prefix;
+
+        private final List<String> tokens;
+
+        private Literals(String prefix, List<String> tokens) {
+            this.prefix = prefix;
+            this.tokens = tokens;
+        }
+
+        String getPrefix() {
+            return prefix;
+        }
+
+        List<String> getTokens() {
+            return tokens;
+        }
+
+        static Literals of(String pattern) {
+            if (pattern.startsWith("^") || pattern.endsWith("$")) {
+                return ofRegularExpression(pattern);
+            }
+            return ofCucumberExpression(pattern);
+        }
+
+        /**
+         * Only literals outside groups and character classes are extracted. Top level alternatives and
+         * inline flags discard every literal.
+         */
+        static Literals ofRegularExpression(String pattern) {
+            if (pattern.matches(".*\\(\\?[a-zA-Z-].*")) {
+                return NONE;
+            }
+            Extractor extractor = new Extractor(pattern.startsWith("^"));
+            int i = pattern.startsWith("^") ? 1 : 0;
+            while (i < pattern.length()) {
+                char c = pattern.charAt(i);
+                switch (c) {
+                    case '\\':
+                        if (i + 1 >= pattern.length()) {
+                            return NONE;
+                        }
+                        char escaped = pattern.charAt(i + 1);
+                        if (escaped == 'Q' || escaped == 'E') {
+                            return NONE;
+                        }
+                        if (Character.isLetterOrDigit(escaped)) {
+                            extractor.endRun();
+                        } else {
+                            extractor.append(escaped);
+                        }
+                        i += 2;
+                        break;
+                    case '(':
+                    case '[':
+                        extractor.endRun();
+                        i = skipBlock(pattern, i);
+                        if (i < 0) {
+                            return NONE;
+                        }
+                        break;
+                    case '?':
+                    case '*':
+                    case '{':
+                        // previous character is optional
+                        extractor.dropLast();
+                        extractor.endRun();
+                        if (c == '{') {
+                            i = pattern.indexOf('}', i);
+                            if (i < 0) {
+                                return NONE;
+                            }
+                        }
+                        i++;
+                        break;
+                    case '|':
+                    case ')':
+                    case ']':
+                        return NONE;
+                    case '.':
+                    case '+':
+                    case '^':
+                    case '$':
+                        extractor.endRun();
+                        i++;
+                        break;
+                    default:
+                        extractor.append(c);
+                        i++;
+                }
+            }
+            return extractor.build();
+        }
+
+        /**
+         * Only literals outside parameters and optional text are extracted. Words with alternatives are skipped.
+         */
+        static Literals ofCucumberExpression(String expression) {
+            Extractor extractor = new Extractor(true);
+            int i = 0;
+            while (i < expression.length()) {
+                char c = expression.charAt(i);
+                switch (c) {
+                    case '\\':
+                        if (i + 1 >= expression.length()) {
+                            return NONE;
+                        }
+                        extractor.append(expression.charAt(i + 1));
+                        i += 2;
+                        break;
+                    case '(':
+                    case '{':
+                        extractor.endRun();
+                        i = expression.indexOf(c == '(' ? ')' : '}', i);
+                        if (i < 0) {
+                            return NONE;
+                        }
+                        i++;
+                        break;
+                    case '/':
+                        // drop the word the alternative belongs to, unless it started in a previous run
+                        if (!extractor.dropWord()) {
+                            return NONE;
+                        }
+                        extractor.endRun();
+                        while (i < expression.length() && expression.charAt(i) != ' ') {
+                            i++;
+                        }
+                        break;
+                    default:
+                        extractor.append(c);
+                        i++;
+                }
+            }
+            return extractor.build();
+        }
+
+        private static int skipBlock(String pattern, int start) {
+            int depth = 0;
+            boolean inClass = false;
+            for (int i = start; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (inClass) {
+                    if (c == ']') {
+                        inClass = false;
+                        if (depth == 0) {
+                            return i + 1;
+                        }
+                    }
+                } else if (c == '[') {
+                    inClass = true;
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                    if (depth == 0) {
+                        return i + 1;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Collects the literal runs of a pattern. The first run is the prefix if the pattern is anchored at the
+     * beginning of the step text, every other run long enough is a required token.
+     */
+    private static final class Extractor {
+
+        private final StringBuilder run = new StringBuilder();
+
+        private final List<String> tokens = new ArrayList<>();
+
+        private String prefix;
+
+        private Extractor(boolean anchored) {
+            this.prefix = anchored ? null : "";
+        }
+
+        private void append(char c) {
+            run.append(c);
+        }
+
+        private void dropLast() {
+            if (run.length() > 0) {
+                run.setLength(run.length() - 1);
+            }
+        }
+
+        private boolean dropWord() {
+            int wordStart = run.lastIndexOf(" ");
+            if (wordStart < 0) {
+                return false;
+            }
+            run.setLength(wordStart + 1);
+            return true;
+        }
+
+        private void endRun() {
+            if (prefix == null) {
+                prefix = run.toString();
+            } else if (run.length() >= MIN_TOKEN_LENGTH) {
+                tokens.add(run.toString());
+            }
+            run.setLength(0);
+        }
+
+        private Literals build() {
+            endRun();
+            return new Literals(prefix, Collections.unmodifiableList(tokens));
+        }
+    }
+}
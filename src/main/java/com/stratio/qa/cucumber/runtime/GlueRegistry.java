@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.cucumber.runtime;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Glue classes, step definitions and event listeners recorded at compile time by
+ * {@link com.stratio.qa.processor.GlueRegistryProcessor}.
+ * <p>
+ * Every jar (or classes folder) compiled with the processor contains a {@value #RESOURCE} file, with one entry per
+ * line: {@code glue <package>}, {@code class <glue class>} or {@code listener <listener class>}. All of them are merged
+ * when loading the registry.
+ */
+public final class GlueRegistry {
+
+    public static final String RESOURCE = "META-INF/bdt/glue.registry";
+
+    public static final String GLUE = "glue";
+
+    public static final String CLASS = "class";
+
+    public static final String LISTENER = "listener";
+
+    private final Set<String> gluePackages = new LinkedHashSet<>();
+
+    private final Set<String> glueClasses = new LinkedHashSet<>();
+
+    private final Set<String> listenerClasses = new LinkedHashSet<>();
+
+    GlueRegistry() {
+    }
+
+    /**
+     * Load every registry available in the classpath.
+     *
+     * @param classLoader class loader
+     * @return GlueRegistry, empty if no registry has been generated
+     * @throws IOException exception
+     */
+    public static GlueRegistry load(ClassLoader classLoader) throws IOException {
+        GlueRegistry registry = new GlueRegistry();
+        Enumeration<URL> resources = classLoader.getResources(RESOURCE);
+        while (resources.hasMoreElements()) {
+            try (Reader reader = new InputStreamReader(resources.nextElement().openStream(), StandardCharsets.UTF_8)) {
+                registry.read(reader);
+            }
+        }
+        return registry;
+    }
+
+    void read(Reader reader) throws IOException {
+        BufferedReader br = new BufferedReader(reader);
+        String line;
+        while ((line = br.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#") || line.indexOf(' ') < 0) {
+                continue;
+            }
+            String kind = line.substring(0, line.indexOf(' '));
+            String value = line.substring(line.indexOf(' ') + 1);
+            switch (kind) {
+                case GLUE:
+                    gluePackages.add(value);
+                    break;
+                case CLASS:
+                    glueClasses.add(value);
+                    break;
+                case LISTENER:
+                    listenerClasses.add(value);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return gluePackages.isEmpty() && listenerClasses.isEmpty();
+    }
+
+    public Set<String> getGluePackages() {
+        return Collections.unmodifiableSet(gluePackages);
+    }
+
+    public Set<String> getGlueClasses() {
+        return Collections.unmodifiableSet(glueClasses);
+    }
+
+    public Set<String> getListenerClasses() {
+        return Collections.unmodifiableSet(listenerClasses);
+    }
+
+    /**
+     * @return glue packages as cucumber glue paths
+     */
+    public List<URI> getGlue() {
+        List<URI> glue = new ArrayList<>();
+        for (String gluePackage : gluePackages) {
+            glue.add(URI.create("classpath:" + gluePackage.replace('.', '/')));
+        }
+        return glue;
+    }
+
+    /**
+     * Obtain the registered glue classes in a package or its subpackages.
+     *
+     * @param packageName package name
+     * @return class names
+     */
+    public List<String> getGlueClasses(String packageName) {
+        List<String> classes = new ArrayList<>();
+        for (String glueClass : glueClasses) {
+            if (glueClass.startsWith(packageName + ".")) {
+                classes.add(glueClass);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * @param packageName package name
+     * @return true if the package, or a parent package, is a registered glue package
+     */
+    public boolean isGluePackage(String packageName) {
+        for (String gluePackage : gluePackages) {
+            if (packageName.equals(gluePackage) || packageName.startsWith(gluePackage + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
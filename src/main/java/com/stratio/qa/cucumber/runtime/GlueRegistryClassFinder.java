@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.cucumber.runtime;
+
+import cucumber.runtime.ClassFinder;
+import cucumber.runtime.CucumberException;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * ClassFinder adding the classes recorded in the {@link GlueRegistry} to the glue package lookups. Classes found by
+ * the delegate are always kept, so glue classes compiled without the processor in a registered package are not lost.
+ * Lookups of any other package (backends, object factories...) are only delegated.
+ */
+public class GlueRegistryClassFinder implements ClassFinder {
+
+    private final GlueRegistry registry;
+
+    private final ClassFinder delegate;
+
+    private final ClassLoader classLoader;
+
+    public GlueRegistryClassFinder(GlueRegistry registry, ClassFinder delegate, ClassLoader classLoader) {
+        this.registry = registry;
+        this.delegate = delegate;
+        this.classLoader = classLoader;
+    }
+
+    @Override
+    public <T> Collection<Class<? extends T>> getDescendants(Class<T> parentType, URI packageName) {
+        String pkg = packageName.getSchemeSpecificPart().replace('/', '.');
+        if (!registry.isGluePackage(pkg)) {
+            return delegate.getDescendants(parentType, packageName);
+        }
+        Set<Class<? extends T>> result = new LinkedHashSet<>();
+        for (String className : registry.getGlueClasses(pkg)) {
+            try {
+                Class<?> clazz = Class.forName(className, false, classLoader);
+                if (parentType.isAssignableFrom(clazz) && !clazz.equals(parentType)) {
+                    result.add(clazz.asSubclass(parentType));
+                }
+            } catch (ClassNotFoundException e) {
+                throw new CucumberException("Registered glue class not found: " + className, e);
+            }
+        }
+        result.addAll(delegate.getDescendants(parentType, packageName));
+        return result;
+    }
+
+    @Override
+    public <T> Class<? extends T> loadClass(String className) throws ClassNotFoundException {
+        return delegate.loadClass(className);
+    }
+}
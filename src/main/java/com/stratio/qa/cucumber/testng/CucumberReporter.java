@@ -29,60 +29,61 @@ import gherkin.pickles.*;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.*;
-import org.w3c.dom.Node;
-
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import java.io.*;
 import java.math.BigDecimal;
-import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 
+/**
+ * TestNG and JUnit xml reports, streamed.
+ * <p>
+ * Every test method is written to a spool file next to the report as soon as it finishes. When the run finishes,
+ * the report is written with the totals in its header followed by the spooled results, so memory does not grow with
+ * the number of test methods.
+ */
 public class CucumberReporter implements EventListener, StrictAware {
 
     public static final int DURATION_STRING = 1000000;
 
     public static final int DEFAULT_MAX_LENGTH = 140;
 
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+    static final String SPOOL_SUFFIX = ".part";
 
-    private static final String STATUS = "status";
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
 
-    private final Document document;
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
 
-    private final Document jUnitDocument;
+    private static final String STATUS = "status";
 
-    private final Element results;
+    private final ReportStream report;
 
-    private final Element jUnitResults;
+    private final ReportStream jUnitReport;
 
-    private final Element suite;
+    private boolean classStarted;
 
-    private final Element jUnitSuite;
+    private TestMethod testMethod;
 
-    private final Element test;
+    private int testMethods;
 
-    private Writer writer;
+    private int passed;
 
-    private Writer  writerJunit;
+    private int failed;
 
-    private Element clazz;
+    private int skipped;
 
-    private Element root;
+    private int jUnitFailures;
 
-    private Element jUnitRoot;
+    private int jUnitSkipped;
 
-    private TestMethod testMethod;
+    private double totalDuration;
 
     private static String callerClass;
 
@@ -126,37 +127,22 @@ public class CucumberReporter implements EventListener, StrictAware {
      */
     public CucumberReporter(String url, String cClass) throws IOException {
         try {
-            this.writer = new OutputStreamWriter(new FileOutputStream(url + cClass + "TESTNG.xml"), Charset.forName("UTF-8"));
-        } catch (Exception e) {
+            this.report = new ReportStream(new File(url + cClass + "TESTNG.xml"));
+        } catch (IOException | XMLStreamException e) {
             logger.error("error writing TESTNG.xml file", e);
+            throw new IOException("Error writing TESTNG.xml file", e);
         }
         try {
-            this.writerJunit = new OutputStreamWriter(new FileOutputStream(url + cClass + "JUNIT.xml"), Charset.forName("UTF-8"));
-        } catch (Exception e) {
+            this.jUnitReport = new ReportStream(new File(url + cClass + "JUNIT.xml"));
+        } catch (IOException | XMLStreamException e) {
             logger.error("error writing JUNIT.xml file", e);
+            throw new IOException("Error writing JUNIT.xml file", e);
         }
         TestMethod.currentFeatureFile = null;
         TestMethod.treatConditionallySkippedAsFailure = false;
         TestMethod.previousTestCaseName = "";
         TestMethod.exampleNumber = 1;
         callerClass = cClass;
-
-        try {
-            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-            results = document.createElement("testng-results");
-            suite = document.createElement("suite");
-            test = document.createElement("test");
-            suite.appendChild(test);
-            results.appendChild(suite);
-            document.appendChild(results);
-            jUnitDocument = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-            jUnitResults = jUnitDocument.createElement("testsuites");
-            jUnitSuite = jUnitDocument.createElement("testsuite");
-            jUnitDocument.appendChild(jUnitResults);
-            jUnitResults.appendChild(jUnitSuite);
-        } catch (ParserConfigurationException e) {
-            throw new CucumberException("Error initializing DocumentBuilder.", e);
-        }
     }
 
     @Override
@@ -172,27 +158,29 @@ public class CucumberReporter implements EventListener, StrictAware {
     }
 
     private void handleTestCaseStarted(TestCaseStarted event) {
-        if (TestMethod.currentFeatureFile == null || !TestMethod.currentFeatureFile.equals(event.testCase.getUri())) {
-            TestMethod.currentFeatureFile = event.testCase.getUri();
-            TestMethod.previousTestCaseName = "";
-            TestMethod.exampleNumber = 1;
-            clazz = document.createElement("class");
-            clazz.setAttribute("name", callerClass);
-            test.appendChild(clazz);
+        try {
+            writeUnfinishedTestMethod();
+            if (TestMethod.currentFeatureFile == null || !TestMethod.currentFeatureFile.equals(event.testCase.getUri())) {
+                TestMethod.currentFeatureFile = event.testCase.getUri();
+                TestMethod.previousTestCaseName = "";
+                TestMethod.exampleNumber = 1;
+                XMLStreamWriter xml = report.body();
+                if (classStarted) {
+                    xml.writeEndElement();
+                    xml.writeCharacters("\n");
+                }
+                xml.writeStartElement("class");
+                xml.writeAttribute("name", callerClass);
+                xml.writeCharacters("\n");
+                classStarted = true;
+            }
+        } catch (XMLStreamException e) {
+            throw new CucumberException("Error writing report.", e);
         }
         testMethod = new TestMethod(event.testCase);
-        String scenarioName = testMethod.calculateElementName(event.testCase);
-        //TestNG
-        root = document.createElement("test-method");
-        clazz.appendChild(root);
-        root.setAttribute("name", scenarioName);
-        root.setAttribute("started-at", DATE_FORMAT.format(new Date()));
-        //JUnit
-        jUnitRoot = testMethod.createElement(jUnitDocument);
-        jUnitRoot.setAttribute("classname", callerClass);
-        jUnitRoot.setAttribute("name", scenarioName);
-        jUnitSuite.appendChild(jUnitRoot);
-        increaseAttributeValue(jUnitSuite, "tests");
+        testMethod.name = testMethod.calculateElementName(event.testCase);
+        testMethod.startedAt = DATE_FORMAT.format(LocalDateTime.now());
+        testMethods++;
     }
 
     private void handleTestStepFinished(TestStepFinished event) {
@@ -205,135 +193,181 @@ public class CucumberReporter implements EventListener, StrictAware {
     }
 
     private void handleTestCaseFinished(TestCaseFinished event) {
-        testMethod.finish(document, root, jUnitDocument, jUnitRoot, event.result);
+        try {
+            testMethod.finish(report.body(), jUnitReport.body(), event.result);
+            report.flush();
+            jUnitReport.flush();
+        } catch (XMLStreamException | IOException e) {
+            throw new CucumberException("Error writing report.", e);
+        }
+        totalDuration += testMethod.duration;
+        if ("PASS".equals(testMethod.status)) {
+            passed++;
+        } else if ("FAIL".equals(testMethod.status)) {
+            failed++;
+        } else {
+            skipped++;
+        }
+        if (testMethod.jUnitFailure != null) {
+            jUnitFailures++;
+        }
+        if (testMethod.jUnitSkipped) {
+            jUnitSkipped++;
+        }
+        testMethod = null;
+    }
+
+    /**
+     * Test method started but not finished, reported without status as it was.
+     */
+    private void writeUnfinishedTestMethod() throws XMLStreamException {
+        if (testMethod != null) {
+            XMLStreamWriter xml = report.body();
+            xml.writeEmptyElement("test-method");
+            xml.writeAttribute("name", testMethod.name);
+            xml.writeAttribute("started-at", testMethod.startedAt);
+            xml.writeCharacters("\n");
+            XMLStreamWriter xmlJunit = jUnitReport.body();
+            xmlJunit.writeEmptyElement("testcase");
+            xmlJunit.writeAttribute("classname", callerClass);
+            xmlJunit.writeAttribute("name", testMethod.name);
+            xmlJunit.writeCharacters("\n");
+            testMethod = null;
+        }
     }
 
     private void finishReport() {
         try {
+            writeUnfinishedTestMethod();
+            if (classStarted) {
+                report.body().writeEndElement();
+                report.body().writeCharacters("\n");
+            }
+
             // TestNG
-            results.setAttribute("total", String.valueOf(getElementsCountByAttribute(suite, "status", ".*")));
-            results.setAttribute("passed", String.valueOf(getElementsCountByAttribute(suite, "status", "PASS")));
-            results.setAttribute("failed", String.valueOf(getElementsCountByAttribute(suite, "status", "FAIL")));
-            results.setAttribute("skipped", String.valueOf(getElementsCountByAttribute(suite, "status", "SKIP")));
-            suite.setAttribute("name", CucumberReporter.class.getName());
-            suite.setAttribute("duration-ms", String.valueOf(getTotalDuration(suite.getElementsByTagName("test-method"))));
-            test.setAttribute("name", CucumberReporter.class.getName());
-            test.setAttribute("duration-ms", String.valueOf(getTotalDuration(suite.getElementsByTagName("test-method"))));
-
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            StreamResult streamResult = new StreamResult(writer);
-            DOMSource domSource = new DOMSource(document);
-            transformer.transform(domSource, streamResult);
-            closeQuietly(writer);
+            XMLStreamWriter xml = report.open();
+            xml.writeStartElement("testng-results");
+            xml.writeAttribute("failed", String.valueOf(failed));
+            xml.writeAttribute("passed", String.valueOf(passed));
+            xml.writeAttribute("skipped", String.valueOf(skipped));
+            xml.writeAttribute("total", String.valueOf(passed + failed + skipped));
+            xml.writeCharacters("\n");
+            xml.writeStartElement("suite");
+            xml.writeAttribute("duration-ms", String.valueOf(totalDuration));
+            xml.writeAttribute("name", CucumberReporter.class.getName());
+            xml.writeCharacters("\n");
+            xml.writeStartElement("test");
+            xml.writeAttribute("duration-ms", String.valueOf(totalDuration));
+            xml.writeAttribute("name", CucumberReporter.class.getName());
+            xml.writeCharacters("\n");
+            report.close(xml);
 
             // JUnit
-            // set up a transformer
-            jUnitSuite.setAttribute("name", callerClass + "." + TestSourcesModelUtil.INSTANCE.getTestSourcesModel().getFeatureName(TestMethod.currentFeatureFile));
-            jUnitSuite.setAttribute("failures", String.valueOf(jUnitSuite.getElementsByTagName("failure").getLength()));
-            jUnitSuite.setAttribute("skipped", String.valueOf(jUnitSuite.getElementsByTagName("skipped").getLength()));
-            jUnitSuite.setAttribute("time", sumTimes(jUnitSuite.getElementsByTagName("testcase")));
-            jUnitSuite.setAttribute("tests", String.valueOf(getElementsCountByAttribute(suite, STATUS, ".*")));
-            jUnitSuite.setAttribute("errors", String.valueOf(getElementsCountByAttribute(suite, STATUS, "FAIL")));
-            jUnitSuite.setAttribute("timestamp", new java.util.Date().toString());
-            jUnitSuite.setAttribute("time",
-                    String.valueOf(BigDecimal.valueOf(getTotalDurationMs(suite.getElementsByTagName("test-method"))).setScale(3, BigDecimal.ROUND_HALF_UP).floatValue()));
-
-            if (jUnitSuite.getElementsByTagName("testcase").getLength() == 0) {
-                addDummyTestCase(); // to avoid failed Jenkins jobs
+            XMLStreamWriter xmlJunit = jUnitReport.open();
+            xmlJunit.writeStartElement("testsuites");
+            xmlJunit.writeCharacters("\n");
+            xmlJunit.writeStartElement("testsuite");
+            xmlJunit.writeAttribute("errors", String.valueOf(failed));
+            xmlJunit.writeAttribute("failures", String.valueOf(jUnitFailures));
+            xmlJunit.writeAttribute("name", callerClass + "." + TestSourcesModelUtil.INSTANCE.getTestSourcesModel().getFeatureName(TestMethod.currentFeatureFile));
+            xmlJunit.writeAttribute("skipped", String.valueOf(jUnitSkipped));
+            xmlJunit.writeAttribute("tests", String.valueOf(passed + failed + skipped));
+            xmlJunit.writeAttribute("time", String.valueOf(BigDecimal.valueOf(totalDuration / 1000).setScale(3, BigDecimal.ROUND_HALF_UP).floatValue()));
+            xmlJunit.writeAttribute("timestamp", new java.util.Date().toString());
+            xmlJunit.writeCharacters("\n");
+            if (testMethods == 0) {
+                addDummyTestCase(xmlJunit); // to avoid failed Jenkins jobs
             }
-            TransformerFactory transfac = TransformerFactory.newInstance();
-            Transformer trans = transfac.newTransformer();
-            trans.setOutputProperty(OutputKeys.INDENT, "yes");
-            StreamResult result = new StreamResult(writerJunit);
-            DOMSource source = new DOMSource(jUnitDocument);
-            trans.transform(source, result);
-            closeQuietly(writerJunit);
-        } catch (TransformerException e) {
-            throw new CucumberException("Error transforming report.", e);
+            jUnitReport.close(xmlJunit);
+        } catch (XMLStreamException | IOException e) {
+            throw new CucumberException("Error writing report.", e);
         }
     }
 
-    private int getElementsCountByAttribute(Node node, String attributeName, String attributeValue) {
-        int count = 0;
+    private void addDummyTestCase(XMLStreamWriter xmlJunit) throws XMLStreamException {
+        xmlJunit.writeStartElement("testcase");
+        xmlJunit.writeAttribute("classname", "dummy");
+        xmlJunit.writeAttribute("name", "dummy");
+        xmlJunit.writeEmptyElement("skipped");
+        xmlJunit.writeAttribute("message", "No features found");
+        xmlJunit.writeEndElement();
+        xmlJunit.writeCharacters("\n");
+    }
 
-        for (int i = 0; i < node.getChildNodes().getLength(); i++) {
-            count += getElementsCountByAttribute(node.getChildNodes().item(i), attributeName, attributeValue);
-        }
+    private static void writeCData(XMLStreamWriter xml, String data) throws XMLStreamException {
+        // a CDATA section can not contain its own end marker
+        xml.writeCData(data.replace("]]>", "]]]]><![CDATA[>"));
+    }
 
-        NamedNodeMap attributes = node.getAttributes();
-        if (attributes != null) {
-            Node namedItem = attributes.getNamedItem(attributeName);
-            if (namedItem != null && namedItem.getNodeValue().matches(attributeValue)) {
-                count++;
-            }
+    private static void closeQuietly(Closeable out) {
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // go gentle into that good night
         }
-        return count;
     }
 
-    private double getTotalDuration(NodeList testCaseNodes) {
-        double totalDuration = 0;
-        for (int i = 0; i < testCaseNodes.getLength(); i++) {
-            try {
-                String duration = "0";
-                Node durationms = testCaseNodes.item(i).getAttributes().getNamedItem("duration-ms");
-                if (durationms != null) {
-                    duration = durationms.getNodeValue();
-                }
-                totalDuration += Double.parseDouble(duration);
-            } catch (NumberFormatException e) {
-                throw new CucumberException(e);
-            }
+    /**
+     * Report file whose results are written to a spool file as they finish, and copied after the report header
+     * once the totals are known.
+     */
+    private static final class ReportStream {
+
+        private final File file;
+
+        private final File spool;
+
+        private final OutputStream spoolOut;
+
+        private final XMLStreamWriter spoolWriter;
+
+        private OutputStream out;
+
+        ReportStream(File file) throws IOException, XMLStreamException {
+            this.file = file;
+            this.spool = new File(file.getPath() + SPOOL_SUFFIX);
+            this.spoolOut = new BufferedOutputStream(new FileOutputStream(spool));
+            this.spoolWriter = XML_OUTPUT_FACTORY.createXMLStreamWriter(spoolOut, "UTF-8");
         }
-        return totalDuration;
-    }
 
-    private double getTotalDurationMs(NodeList testCaseNodes) {
-        return getTotalDuration(testCaseNodes) / 1000;
-    }
+        XMLStreamWriter body() {
+            return spoolWriter;
+        }
 
-    private void increaseAttributeValue(Element element, String attribute) {
-        int value = 0;
-        if (element.hasAttribute(attribute)) {
-            value = Integer.parseInt(element.getAttribute(attribute));
+        void flush() throws XMLStreamException, IOException {
+            spoolWriter.flush();
+            spoolOut.flush();
         }
-        element.setAttribute(attribute, String.valueOf(++value));
-    }
 
-    private void addDummyTestCase() {
-        Element dummy = jUnitDocument.createElement("testcase");
-        dummy.setAttribute("classname", "dummy");
-        dummy.setAttribute("name", "dummy");
-        jUnitSuite.appendChild(dummy);
-        Element skipped = jUnitDocument.createElement("skipped");
-        skipped.setAttribute("message", "No features found");
-        dummy.appendChild(skipped);
-    }
+        /**
+         * @return writer for the report header, whose last start tag must be closed
+         */
+        XMLStreamWriter open() throws IOException, XMLStreamException {
+            spoolWriter.flush();
+            spoolWriter.close();
+            closeQuietly(spoolOut);
+            out = new BufferedOutputStream(new FileOutputStream(file));
+            XMLStreamWriter xml = XML_OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeCharacters("\n");
+            return xml;
+        }
 
-    private String sumTimes(NodeList testCaseNodes) {
-        double totalDurationSecondsForAllTimes = 0.0d;
-        for (int i = 0; i < testCaseNodes.getLength(); i++) {
+        /**
+         * Copy the spooled results after the header and close every element opened by it.
+         */
+        void close(XMLStreamWriter xml) throws IOException, XMLStreamException {
             try {
-                double testCaseTime =
-                        Double.parseDouble(testCaseNodes.item(i).getAttributes().getNamedItem("time").getNodeValue());
-                totalDurationSecondsForAllTimes += testCaseTime;
-            } catch (NumberFormatException e) {
-                throw new CucumberException(e);
-            } catch (NullPointerException e) {
-                throw new CucumberException(e);
+                xml.flush();
+                Files.copy(spool.toPath(), out);
+                xml.writeEndDocument();
+                xml.close();
+                out.flush();
+            } finally {
+                closeQuietly(out);
+                Files.deleteIfExists(spool.toPath());
             }
         }
-        DecimalFormat nfmt = (DecimalFormat) NumberFormat.getNumberInstance(Locale.US);
-        nfmt.applyPattern("0.######");
-        return nfmt.format(totalDurationSecondsForAllTimes);
-    }
-
-    private static void closeQuietly(Closeable out) {
-        try {
-            out.close();
-        } catch (IOException ignored) {
-            // go gentle into that good night
-        }
     }
 
     public static class TestMethod {
@@ -354,6 +388,18 @@ public class CucumberReporter implements EventListener, StrictAware {
 
         private List<Result> hooks = new ArrayList<Result>();
 
+        private String name;
+
+        private String startedAt;
+
+        private String status;
+
+        private double duration;
+
+        private String jUnitFailure;
+
+        private boolean jUnitSkipped;
+
         private static final DecimalFormat NUMBER_FORMAT = (DecimalFormat) NumberFormat.getNumberInstance(Locale.US);
 
         static {
@@ -365,82 +411,99 @@ public class CucumberReporter implements EventListener, StrictAware {
         }
 
         /**
-         * Builds a test result xml document
+         * Writes the test result to both reports
          *
-         * @param doc report document
-         * @param element scenario execution result
-         * @param docJunit docJunit report document
-         * @param Junit Junit scenario execution result
+         * @param xml TestNG report writer
+         * @param xmlJunit JUnit report writer
+         * @param eventResult scenario execution result
+         * @throws XMLStreamException exception
          */
-        public void finish(Document doc, Element element, Document docJunit, Element Junit, Result eventResult) {
-            if (steps.isEmpty()) {
-                createExceptionJunit(docJunit, "The scenario has no steps", "");
-            }
-            //JUnit
-            Junit.setAttribute("time", calculateTotalDurationString(eventResult));
-            //TestNG
-            element.setAttribute("duration-ms", String.valueOf(calculateTotalDurationString()));
-            element.setAttribute("finished-at", DATE_FORMAT.format(new Date()));
+        public void finish(XMLStreamWriter xml, XMLStreamWriter xmlJunit, Result eventResult) throws XMLStreamException {
+            duration = calculateTotalDurationString();
 
             StringBuilder stringBuilder = new StringBuilder();
             addStepAndResultListing(stringBuilder);
-            Result skipped = null;
-            Result failed = null;
+            Result skippedResult = null;
+            Result failedResult = null;
             for (Result result : results) {
                 if (result.is(Result.Type.FAILED) || result.is(Result.Type.AMBIGUOUS)) {
-                    failed = result;
+                    failedResult = result;
                 }
                 if (result.is(Result.Type.UNDEFINED) || result.is(Result.Type.PENDING)) {
-                    skipped = result;
+                    skippedResult = result;
                 }
             }
             for (Result result : hooks) {
-                if (failed == null && result.is(Result.Type.FAILED)) {
-                    failed = result;
+                if (failedResult == null && result.is(Result.Type.FAILED)) {
+                    failedResult = result;
                 }
             }
-            if (failed != null) {
-                element.setAttribute("status", "FAIL");
-                StringWriter stringWriter = new StringWriter();
-                if (failed.getErrorMessage().contains("An important scenario has failed!")) {
-                    String message = "This scenario was skipped because an important scenario has failed.";
-                    element.setAttribute(STATUS, "SKIP");
-                    Element exception = createException(doc, "NonRealException", message, " ");
-                    element.appendChild(exception);
-                    Element skippedElementJunit = docJunit.createElement("skipped");
-                    Junit.appendChild(skippedElementJunit);
-                    Element systemOut = systemOutPrintJunit(docJunit, message);
-                    Junit.appendChild(systemOut);
-                } else if (failed.getErrorMessage().contains("NonReplaceableException")) {
-                    Element exception = createException(doc, "The scenario has unreplaced variables.",
-                            "The scenario has unreplaced variables.", " ");
-                    element.appendChild(exception);
-                    Element exceptionJunit = createExceptionJunit(docJunit, "The scenario has unreplaced variables.", " ");
-                    Junit.appendChild(exceptionJunit);
-                    Element systemOut = systemOutPrintJunit(docJunit, stringBuilder.toString());
-                    Junit.appendChild(systemOut);
+
+            String exceptionClass = "NonRealException";
+            String message = stringBuilder.toString();
+            String stacktrace = " ";
+            String jUnitStacktrace = null;
+            String systemOut = stringBuilder.toString();
+            if (failedResult != null) {
+                status = "FAIL";
+                if (failedResult.getErrorMessage().contains("An important scenario has failed!")) {
+                    status = "SKIP";
+                    message = "This scenario was skipped because an important scenario has failed.";
+                    jUnitSkipped = true;
+                    systemOut = message;
+                } else if (failedResult.getErrorMessage().contains("NonReplaceableException")) {
+                    exceptionClass = "The scenario has unreplaced variables.";
+                    message = "The scenario has unreplaced variables.";
+                    jUnitFailure = message;
+                    jUnitStacktrace = " ";
                 } else {
-                    failed.getError().printStackTrace(new PrintWriter(stringWriter));
-                    Element exception = createException(doc, failed.getError().getClass().getName(), stringBuilder.toString(), stringWriter.toString());
-                    element.appendChild(exception);
-                    Element exceptionJunit = createExceptionJunit(docJunit, stringBuilder.toString(), stringWriter.toString());
-                    Junit.appendChild(exceptionJunit);
+                    StringWriter stringWriter = new StringWriter();
+                    failedResult.getError().printStackTrace(new PrintWriter(stringWriter));
+                    exceptionClass = failedResult.getError().getClass().getName();
+                    stacktrace = stringWriter.toString();
+                    jUnitFailure = stringBuilder.toString();
+                    jUnitStacktrace = stacktrace;
+                    systemOut = null;
                 }
-            } else if (skipped != null) {
-                element.setAttribute("status", "SKIP");
-                Element exception = createException(doc, "NonRealException", stringBuilder.toString(), " ");
-                element.appendChild(exception);
-                Element skippedElementJunit = docJunit.createElement("skipped");
-                Junit.appendChild(skippedElementJunit);
-                Element systemOut = systemOutPrintJunit(docJunit, stringBuilder.toString());
-                Junit.appendChild(systemOut);
+            } else if (skippedResult != null) {
+                status = "SKIP";
+                jUnitSkipped = true;
             } else {
-                element.setAttribute("status", "PASS");
-                Element exception = createException(doc, "NonRealException", stringBuilder.toString(), " ");
-                element.appendChild(exception);
-                Element systemOut = systemOutPrintJunit(docJunit, stringBuilder.toString());
-                Junit.appendChild(systemOut);
+                status = "PASS";
+            }
+
+            //TestNG
+            xml.writeStartElement("test-method");
+            xml.writeAttribute("duration-ms", String.valueOf(duration));
+            xml.writeAttribute("finished-at", DATE_FORMAT.format(LocalDateTime.now()));
+            xml.writeAttribute("name", name);
+            xml.writeAttribute("started-at", startedAt);
+            xml.writeAttribute(STATUS, status);
+            writeException(xml, exceptionClass, message, stacktrace);
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+
+            //JUnit
+            xmlJunit.writeStartElement("testcase");
+            xmlJunit.writeAttribute("classname", callerClass);
+            xmlJunit.writeAttribute("name", name);
+            xmlJunit.writeAttribute("time", calculateTotalDurationString(eventResult));
+            if (jUnitFailure != null) {
+                xmlJunit.writeStartElement("failure");
+                xmlJunit.writeAttribute("message", "\r\n" + jUnitFailure + "\r\n");
+                writeCData(xmlJunit, jUnitStacktrace);
+                xmlJunit.writeEndElement();
             }
+            if (jUnitSkipped) {
+                xmlJunit.writeEmptyElement("skipped");
+            }
+            if (systemOut != null) {
+                xmlJunit.writeStartElement("system-out");
+                writeCData(xmlJunit, "\r\n" + systemOut + "\r\n");
+                xmlJunit.writeEndElement();
+            }
+            xmlJunit.writeEndElement();
+            xmlJunit.writeCharacters("\n");
         }
 
         private double calculateTotalDurationString() {
@@ -518,25 +581,20 @@ public class CucumberReporter implements EventListener, StrictAware {
             return "";
         }
 
-        private Element createException(Document doc, String clazz, String message, String stacktrace) {
-            Element exceptionElement = doc.createElement("exception");
-            exceptionElement.setAttribute("class", clazz);
+        private void writeException(XMLStreamWriter xml, String clazz, String message, String stacktrace) throws XMLStreamException {
+            xml.writeStartElement("exception");
+            xml.writeAttribute("class", clazz);
 
             if (message != null) {
-                Element messageElement = doc.createElement("message");
-                messageElement.appendChild(doc.createCDATASection("\r\n<pre>\r\n" + message + "\r\n</pre>\r\n"));
-                exceptionElement.appendChild(messageElement);
+                xml.writeStartElement("message");
+                writeCData(xml, "\r\n<pre>\r\n" + message + "\r\n</pre>\r\n");
+                xml.writeEndElement();
             }
 
-            Element stacktraceElement = doc.createElement("full-stacktrace");
-            stacktraceElement.appendChild(doc.createCDATASection(stacktrace));
-            exceptionElement.appendChild(stacktraceElement);
-
-            return exceptionElement;
-        }
-
-        private Element createElement(Document doc) {
-            return doc.createElement("testcase");
+            xml.writeStartElement("full-stacktrace");
+            writeCData(xml, stacktrace);
+            xml.writeEndElement();
+            xml.writeEndElement();
         }
 
         public String calculateElementName(cucumber.api.TestCase testCase) {
@@ -552,20 +610,5 @@ public class CucumberReporter implements EventListener, StrictAware {
                 return testCaseName;
             }
         }
-
-        private Element createExceptionJunit(Document doc, String message, String stacktrace) {
-            Element exceptionElement = doc.createElement("failure");
-            if (message != null) {
-                exceptionElement.setAttribute("message", "\r\n" + message + "\r\n");
-            }
-            exceptionElement.appendChild(doc.createCDATASection(stacktrace));
-            return exceptionElement;
-        }
-
-        private Element systemOutPrintJunit(Document doc, String message) {
-            Element systemOut = doc.createElement("system-out");
-            systemOut.appendChild(doc.createCDATASection("\r\n" + message + "\r\n"));
-            return systemOut;
-        }
     }
 }
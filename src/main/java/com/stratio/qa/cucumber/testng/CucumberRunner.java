@@ -17,8 +17,12 @@
 package com.stratio.qa.cucumber.testng;
 
 import com.stratio.qa.cucumber.converter.LoopConverter;
+import com.stratio.qa.cucumber.runtime.GlueRegistry;
+import com.stratio.qa.cucumber.runtime.GlueRegistryClassFinder;
 import com.stratio.qa.cucumber.runtime.RuntimeOptionsFactoryCustom;
+import com.stratio.qa.utils.ThreadProperty;
 import cucumber.api.event.ConcurrentEventListener;
+import cucumber.api.event.Event;
 import cucumber.api.event.TestRunFinished;
 import cucumber.api.event.TestRunStarted;
 import cucumber.runner.Runner;
@@ -40,6 +44,7 @@ import cucumber.runtime.io.ResourceLoader;
 import cucumber.runtime.io.ResourceLoaderClassFinder;
 import cucumber.runtime.model.CucumberFeature;
 import gherkin.events.PickleEvent;
+import gherkin.pickles.PickleTag;
 import org.reflections.Reflections;
 
 import java.io.File;
@@ -49,11 +54,30 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class CucumberRunner {
 
+    /**
+     * When set to true, glue classes and event listeners are loaded from the {@link GlueRegistry} generated at compile
+     * time instead of scanning the classpath, and its glue packages are added to the usual ones. If no registry is
+     * found the classpath is scanned as usual.
+     */
+    public static final String GLUE_REGISTRY_PROPERTY = "GLUE_REGISTRY";
+
+    private static final Pattern PARALLEL_LOOP_TAG = Pattern.compile("\\s*@PARALLELLOOP\\((\\d+)\\)\\s*");
+
     private final EventBus bus;
 
     private final Filters filters;
@@ -62,6 +86,10 @@ public class CucumberRunner {
 
     private final ThreadLocalRunnerSupplier runnerSupplier;
 
+    private final BackendModuleBackendSupplier backendSupplier;
+
+    private final Queue<RecordingRunner> loopRunners = new ConcurrentLinkedQueue<>();
+
     private final RuntimeOptions runtimeOptions;
 
     private final Plugins plugins;
@@ -86,17 +114,32 @@ public class CucumberRunner {
         new File(targetExecutionsPath).mkdirs();
         CucumberReporter reporterTestNG = new CucumberReporter(targetExecutionsPath, clazz.getCanonicalName());
 
-        addGlue();
+        GlueRegistry glueRegistry = null;
+        if (Boolean.parseBoolean(System.getProperty(GLUE_REGISTRY_PROPERTY, "false"))) {
+            glueRegistry = GlueRegistry.load(classLoader);
+            if (glueRegistry.isEmpty()) {
+                glueRegistry = null;
+            }
+        }
 
+        addGlue();
         ClassFinder classFinder = new ResourceLoaderClassFinder(resourceLoader, classLoader);
-        BackendModuleBackendSupplier backendSupplier = new BackendModuleBackendSupplier(resourceLoader, classFinder, runtimeOptions);
+        if (glueRegistry != null) {
+            for (URI glue : glueRegistry.getGlue()) {
+                if (!runtimeOptions.getGlue().contains(glue)) {
+                    runtimeOptions.getGlue().add(glue);
+                }
+            }
+            classFinder = new GlueRegistryClassFinder(glueRegistry, classFinder, classLoader);
+        }
+
+        backendSupplier = new BackendModuleBackendSupplier(resourceLoader, classFinder, runtimeOptions);
         bus = new TimeServiceEventBus(TimeService.SYSTEM);
 
         plugins = new Plugins(classLoader, new PluginFactory(), runtimeOptions);
         plugins.addPlugin(reporterTestNG);
 
-        Set<Class<? extends ConcurrentEventListener>> implementers = new Reflections("com.stratio.qa.utils").getSubTypesOf(ConcurrentEventListener.class);
-        for (Class<? extends ConcurrentEventListener> implementerClazz : implementers) {
+        for (Class<? extends ConcurrentEventListener> implementerClazz : getEventListeners(glueRegistry, classLoader)) {
             Constructor<?> ctor = implementerClazz.getConstructor();
             ctor.setAccessible(true);
             Object newPlugin = ctor.newInstance();
@@ -109,6 +152,21 @@ public class CucumberRunner {
         featureSupplier = new FeaturePathFeatureSupplier(featureLoader, runtimeOptions);
     }
 
+    private Set<Class<? extends ConcurrentEventListener>> getEventListeners(GlueRegistry glueRegistry, ClassLoader classLoader) {
+        if (glueRegistry == null) {
+            return new Reflections("com.stratio.qa.utils").getSubTypesOf(ConcurrentEventListener.class);
+        }
+        Set<Class<? extends ConcurrentEventListener>> listeners = new HashSet<>();
+        for (String listener : glueRegistry.getListenerClasses()) {
+            try {
+                listeners.add(Class.forName(listener, true, classLoader).asSubclass(ConcurrentEventListener.class));
+            } catch (ClassNotFoundException e) {
+                throw new CucumberException("Registered event listener not found: " + listener, e);
+            }
+        }
+        return listeners;
+    }
+
     private void addGlue() throws URISyntaxException {
         List<URI> uniqueGlue = new ArrayList<>();
         uniqueGlue.add(new URI("classpath:com/stratio/cct/testsAT/specs"));
@@ -164,10 +222,20 @@ public class CucumberRunner {
         Throwable e = null;
         Runner runner = runnerSupplier.get();
         List<PickleEvent> pickleEventList = getPickleEventListFromTags(pickle);
-        for (PickleEvent pickleEvent : pickleEventList) {
+        int parallelLoopThreads = getParallelLoopThreads(pickle);
+        List<List<Event>> parallelLoopEvents = null;
+        long replayed = 0;
+        if (parallelLoopThreads > 1 && pickleEventList.size() > 1) {
+            parallelLoopEvents = runParallelLoop(pickleEventList, parallelLoopThreads);
+        }
+        for (int i = 0; i < pickleEventList.size(); i++) {
             try {
                 TestCaseResultListener testCaseResultListener = new TestCaseResultListener(runner.getBus(), runtimeOptions.isStrict());
-                runner.runPickle(pickleEvent);
+                if (parallelLoopEvents == null) {
+                    runner.runPickle(pickleEventList.get(i));
+                } else {
+                    replayed = RecordingRunner.replay(parallelLoopEvents.get(i), runner.getBus(), replayed);
+                }
                 testCaseResultListener.finishExecutionUnit();
 
                 if (!testCaseResultListener.isPassed()) {
@@ -182,6 +250,64 @@ public class CucumberRunner {
         }
     }
 
+    /**
+     * Run the pickles of a loop expansion concurrently, each one with a copy of the current thread properties.
+     * Variables saved by the pickles are not visible afterwards.
+     *
+     * @param pickleEventList pickles
+     * @param threads         maximum number of pickles running at the same time
+     * @return events of each pickle, in the original order
+     */
+    private List<List<Event>> runParallelLoop(List<PickleEvent> pickleEventList, int threads) throws Throwable {
+        Properties properties = ThreadProperty.snapshot();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, pickleEventList.size()));
+        try {
+            List<Future<List<Event>>> futures = new ArrayList<>();
+            for (int i = 0; i < pickleEventList.size(); i++) {
+                PickleEvent pickleEvent = pickleEventList.get(i);
+                futures.add(executor.submit(() -> {
+                    ThreadProperty.restore(properties);
+                    ThreadProperty.set("feature", TestSourcesModelUtil.INSTANCE.getTestSourcesModel().getFeatureName(pickleEvent.uri));
+                    ThreadProperty.set("scenario", pickleEvent.pickle.getName());
+                    RecordingRunner loopRunner = loopRunners.poll();
+                    if (loopRunner == null) {
+                        loopRunner = new RecordingRunner(backendSupplier, runtimeOptions);
+                    }
+                    try {
+                        return loopRunner.run(pickleEvent);
+                    } finally {
+                        loopRunners.add(loopRunner);
+                    }
+                }));
+            }
+            List<List<Event>> events = new ArrayList<>();
+            for (Future<List<Event>> future : futures) {
+                try {
+                    events.add(future.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause();
+                }
+            }
+            return events;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param pe pickle
+     * @return number of threads set with the @parallelLoop(n) tag, 0 if not tagged
+     */
+    private int getParallelLoopThreads(PickleEvent pe) {
+        for (PickleTag pickleTag : pe.pickle.getTags()) {
+            Matcher matcher = PARALLEL_LOOP_TAG.matcher(pickleTag.getName().toUpperCase());
+            if (matcher.matches()) {
+                return Integer.parseInt(matcher.group(1));
+            }
+        }
+        return 0;
+    }
+
     public void finish() {
         bus.send(new TestRunFinished(bus.getTime(), bus.getTimeMillis()));
     }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.cucumber.testng;
+
+import cucumber.api.event.EmbedEvent;
+import cucumber.api.event.Event;
+import cucumber.api.event.EventHandler;
+import cucumber.api.event.TestCaseFinished;
+import cucumber.api.event.TestCaseStarted;
+import cucumber.api.event.TestStepFinished;
+import cucumber.api.event.TestStepStarted;
+import cucumber.api.event.WriteEvent;
+import cucumber.runner.EventBus;
+import cucumber.runner.Runner;
+import cucumber.runner.TimeService;
+import cucumber.runner.TimeServiceEventBus;
+import cucumber.runtime.BackendSupplier;
+import cucumber.runtime.RuntimeOptions;
+import gherkin.events.PickleEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runner recording the events of the pickles it runs instead of publishing them, so pickles run concurrently
+ * can be reported afterwards in their original order.
+ * <p>
+ * Serial reporters sort the events of test cases sharing a location (loop expansions) by time stamp, so the events
+ * of each pickle are replayed one pickle after another, starting when they are replayed. Intervals between the events
+ * of a pickle, and so durations, are kept.
+ */
+final class RecordingRunner {
+
+    private final Runner runner;
+
+    private List<Event> events = new ArrayList<>();
+
+    RecordingRunner(BackendSupplier backendSupplier, RuntimeOptions runtimeOptions) {
+        EventBus bus = new TimeServiceEventBus(TimeService.SYSTEM);
+        bus.registerHandlerFor(Event.class, new EventHandler<Event>() {
+            @Override
+            public void receive(Event event) {
+                events.add(event);
+            }
+        });
+        runner = new Runner(bus, backendSupplier.get(), runtimeOptions);
+    }
+
+    /**
+     * Run a pickle.
+     *
+     * @param pickleEvent pickle
+     * @return events sent while running the pickle
+     */
+    List<Event> run(PickleEvent pickleEvent) {
+        events = new ArrayList<>();
+        runner.runPickle(pickleEvent);
+        return events;
+    }
+
+    /**
+     * Send the events of a pickle, moved to start now, or after the events replayed before.
+     *
+     * @param events    events of the pickle
+     * @param bus       bus
+     * @param notBefore time stamp after the last event replayed before
+     * @return time stamp after the last event replayed
+     */
+    static long replay(List<Event> events, EventBus bus, long notBefore) {
+        if (events.isEmpty()) {
+            return notBefore;
+        }
+        long shift = Math.max(bus.getTime(), notBefore) - events.get(0).getTimeStamp();
+        long next = notBefore;
+        for (Event event : events) {
+            Event moved = move(event, shift);
+            bus.send(moved);
+            next = Math.max(next, moved.getTimeStamp() + 1);
+        }
+        return next;
+    }
+
+    /**
+     * @return copy of the event with its time stamps moved, the event itself if it is not bound to a test case
+     */
+    private static Event move(Event event, long shift) {
+        long timeStamp = event.getTimeStamp() + shift;
+        long timeStampMillis = event.getTimeStampMillis() + TimeUnit.NANOSECONDS.toMillis(shift);
+        if (event instanceof TestCaseStarted) {
+            TestCaseStarted started = (TestCaseStarted) event;
+            return new TestCaseStarted(timeStamp, timeStampMillis, started.testCase);
+        } else if (event instanceof TestStepStarted) {
+            TestStepStarted started = (TestStepStarted) event;
+            return new TestStepStarted(timeStamp, timeStampMillis, started.testCase, started.testStep);
+        } else if (event instanceof TestStepFinished) {
+            TestStepFinished finished = (TestStepFinished) event;
+            return new TestStepFinished(timeStamp, timeStampMillis, finished.testCase, finished.testStep, finished.result);
+        } else if (event instanceof TestCaseFinished) {
+            TestCaseFinished finished = (TestCaseFinished) event;
+            return new TestCaseFinished(timeStamp, timeStampMillis, finished.testCase, finished.result);
+        } else if (event instanceof WriteEvent) {
+            WriteEvent write = (WriteEvent) event;
+            return new WriteEvent(timeStamp, timeStampMillis, write.testCase, write.text);
+        } else if (event instanceof EmbedEvent) {
+            EmbedEvent embed = (EmbedEvent) event;
+            return new EmbedEvent(timeStamp, timeStampMillis, embed.testCase, embed.data, embed.mimeType);
+        }
+        return event;
+    }
+}
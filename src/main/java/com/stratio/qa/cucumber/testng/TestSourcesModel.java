@@ -21,18 +21,24 @@ import gherkin.*;
 import gherkin.ast.*;
 import gherkin.pickles.PickleStep;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TestSourcesModel {
-    private final Map<String, TestSourceRead> pathToReadEventMap = new HashMap();
+    private final Map<String, TestSourceRead> pathToReadEventMap = new ConcurrentHashMap<>();
 
-    private final Map<String, GherkinDocument> pathToAstMap = new HashMap();
+    private final Map<String, int[]> pathToLineStartsMap = new ConcurrentHashMap<>();
 
-    private final Map<String, Map<Integer, TestSourcesModel.AstNode>> pathToNodeMap = new HashMap();
+    private final Map<String, List<String>> pathToStepKeywordsMap = new ConcurrentHashMap<>();
 
-    private final Map<String, Map<Integer, PickleStep>> replacedStepsMap = new HashMap();
+    private final Map<String, GherkinDocument> pathToAstMap = new ConcurrentHashMap<>();
+
+    private final Map<String, Map<Integer, TestSourcesModel.AstNode>> pathToNodeMap = new ConcurrentHashMap<>();
+
+    private final Map<String, Map<Integer, PickleStep>> replacedStepsMap = new ConcurrentHashMap<>();
 
     public TestSourcesModel() {
     }
@@ -43,6 +49,31 @@ public class TestSourcesModel {
 
     public void addTestSourceReadEvent(String path, TestSourceRead event) {
         this.pathToReadEventMap.put(path, event);
+        this.pathToLineStartsMap.put(path, lineStarts(event.source));
+        this.pathToStepKeywordsMap.remove(path);
+    }
+
+    /**
+     * Offsets where every line of the source starts, so any line can be located without splitting the source.
+     *
+     * @param source feature source
+     * @return int[] with the offset of line N at position N - 1
+     */
+    static int[] lineStarts(String source) {
+        int lines = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        int[] lineStarts = new int[lines];
+        int line = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                lineStarts[line++] = i + 1;
+            }
+        }
+        return lineStarts;
     }
 
     Feature getFeature(String path) {
@@ -63,15 +94,20 @@ public class TestSourcesModel {
 
     public String getKeywordFromSource(String uri, int stepLine) {
         Feature feature = this.getFeature(uri);
-        if (feature != null) {
-            TestSourceRead event = this.getTestSourceReadEvent(uri);
-            String trimmedSourceLine = event.source.split("\n")[stepLine - 1].trim();
-            GherkinDialect dialect = (new GherkinDialectProvider(feature.getLanguage())).getDefaultDialect();
-            Iterator var7 = dialect.getStepKeywords().iterator();
+        int[] lineStarts = this.pathToLineStartsMap.get(uri);
+        if (feature != null && lineStarts != null && stepLine >= 1 && stepLine <= lineStarts.length) {
+            String source = this.getTestSourceReadEvent(uri).source;
+            int start = lineStarts[stepLine - 1];
+            int end = stepLine < lineStarts.length ? lineStarts[stepLine] - 1 : source.length();
+            while (start < end && source.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && source.charAt(end - 1) <= ' ') {
+                end--;
+            }
 
-            while (var7.hasNext()) {
-                String keyword = (String) var7.next();
-                if (trimmedSourceLine.startsWith(keyword)) {
+            for (String keyword : this.getStepKeywords(uri, feature)) {
+                if (keyword.length() <= end - start && source.startsWith(keyword, start)) {
                     return keyword;
                 }
             }
@@ -80,6 +116,16 @@ public class TestSourcesModel {
         return "";
     }
 
+    private List<String> getStepKeywords(String uri, Feature feature) {
+        List<String> keywords = this.pathToStepKeywordsMap.get(uri);
+        if (keywords == null) {
+            GherkinDialect dialect = (new GherkinDialectProvider(feature.getLanguage())).getDefaultDialect();
+            keywords = new ArrayList<>(dialect.getStepKeywords());
+            this.pathToStepKeywordsMap.put(uri, keywords);
+        }
+        return keywords;
+    }
+
     private TestSourceRead getTestSourceReadEvent(String uri) {
         return this.pathToReadEventMap.containsKey(uri) ? (TestSourceRead) this.pathToReadEventMap.get(uri) : null;
     }
@@ -97,7 +143,7 @@ public class TestSourcesModel {
             try {
                 GherkinDocument gherkinDocument = (GherkinDocument) parser.parse(((TestSourceRead) this.pathToReadEventMap.get(path)).source, matcher);
                 this.pathToAstMap.put(path, gherkinDocument);
-                Map<Integer, TestSourcesModel.AstNode> nodeMap = new HashMap();
+                Map<Integer, TestSourcesModel.AstNode> nodeMap = new ConcurrentHashMap<>();
                 TestSourcesModel.AstNode currentParent = new TestSourcesModel.AstNode(gherkinDocument.getFeature(), (TestSourcesModel.AstNode) null);
                 Iterator var7 = gherkinDocument.getFeature().getChildren().iterator();
 
@@ -150,13 +196,12 @@ public class TestSourcesModel {
     }
 
     public void addReplacedStep(String feature, int stepLine, PickleStep replacedStep) {
-        Map<Integer, PickleStep> featureMap = replacedStepsMap.get(feature) != null ? replacedStepsMap.get(feature) : new HashMap<>();
-        featureMap.put(stepLine, replacedStep);
-        replacedStepsMap.put(feature, featureMap);
+        replacedStepsMap.computeIfAbsent(feature, k -> new ConcurrentHashMap<>()).put(stepLine, replacedStep);
     }
 
     public PickleStep getReplacedStep(String feature, int stepLine) {
-        return replacedStepsMap.get(feature) != null ? replacedStepsMap.get(feature).get(stepLine) : null;
+        Map<Integer, PickleStep> featureMap = replacedStepsMap.get(feature);
+        return featureMap != null ? featureMap.get(stepLine) : null;
     }
 
     public class AstNode {
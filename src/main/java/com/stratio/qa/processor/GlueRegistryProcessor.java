@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.processor;
+
+import com.stratio.qa.cucumber.runtime.GlueRegistry;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Annotation processor generating the {@link GlueRegistry} of the compiled sources: classes with step definitions,
+ * hooks or type registry configurations (and their packages), and the event listeners CucumberRunner registers.
+ */
+@SupportedAnnotationTypes("*")
+public class GlueRegistryProcessor extends AbstractProcessor {
+
+    static final String STEP_DEF_ANNOTATION = "cucumber.runtime.java.StepDefAnnotation";
+
+    static final List<String> HOOK_ANNOTATIONS = Arrays.asList("cucumber.api.java.Before", "cucumber.api.java.After",
+            "cucumber.api.java.BeforeStep", "cucumber.api.java.AfterStep");
+
+    static final String TYPE_REGISTRY_CONFIGURER = "cucumber.api.TypeRegistryConfigurer";
+
+    static final String EVENT_LISTENER = "cucumber.api.event.ConcurrentEventListener";
+
+    static final String LISTENERS_PACKAGE = "com.stratio.qa.utils";
+
+    private final Set<String> gluePackages = new TreeSet<>();
+
+    private final Set<String> glueClasses = new TreeSet<>();
+
+    private final Set<String> listenerClasses = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeRegistry();
+        } else {
+            for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+                processType(type);
+            }
+        }
+        return false;
+    }
+
+    private void processType(TypeElement type) {
+        String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+        boolean glue = isConcreteClass(type) && isSubtype(type, TYPE_REGISTRY_CONFIGURER);
+
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            for (AnnotationMirror annotation : method.getAnnotationMirrors()) {
+                TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+                if (HOOK_ANNOTATIONS.contains(annotationType.getQualifiedName().toString()) || isStepDefinition(annotationType)) {
+                    glue = true;
+                }
+            }
+        }
+
+        if (glue) {
+            glueClasses.add(className);
+            gluePackages.add(processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString());
+        }
+
+        if (isConcreteClass(type) && type.getModifiers().contains(Modifier.PUBLIC) && isSubtype(type, EVENT_LISTENER)
+                && className.startsWith(LISTENERS_PACKAGE + ".")) {
+            listenerClasses.add(className);
+        }
+
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+            if (nested.getModifiers().contains(Modifier.STATIC)) {
+                processType(nested);
+            }
+        }
+    }
+
+    private boolean isConcreteClass(TypeElement type) {
+        return type.getKind() == ElementKind.CLASS && !type.getModifiers().contains(Modifier.ABSTRACT);
+    }
+
+    private boolean isSubtype(TypeElement type, String superType) {
+        TypeElement superElement = processingEnv.getElementUtils().getTypeElement(superType);
+        if (superElement == null) {
+            return false;
+        }
+        TypeMirror erasure = processingEnv.getTypeUtils().erasure(superElement.asType());
+        return processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type.asType()), erasure);
+    }
+
+    private boolean isStepDefinition(TypeElement annotationType) {
+        for (AnnotationMirror meta : annotationType.getAnnotationMirrors()) {
+            Element metaType = meta.getAnnotationType().asElement();
+            if (STEP_DEF_ANNOTATION.equals(((TypeElement) metaType).getQualifiedName().toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeRegistry() {
+        if (glueClasses.isEmpty() && listenerClasses.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", GlueRegistry.RESOURCE);
+            try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("# Generated by " + GlueRegistryProcessor.class.getName() + "\n");
+                for (String gluePackage : gluePackages) {
+                    writer.write(GlueRegistry.GLUE + " " + gluePackage + "\n");
+                }
+                for (String glueClass : glueClasses) {
+                    writer.write(GlueRegistry.CLASS + " " + glueClass + "\n");
+                }
+                for (String listenerClass : listenerClasses) {
+                    writer.write(GlueRegistry.LISTENER + " " + listenerClass + "\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write glue registry: " + e.getMessage());
+        }
+    }
+}
@@ -26,6 +26,7 @@ import com.stratio.qa.models.mesos.MesosTask;
 import com.stratio.qa.models.mesos.MesosTasksResponse;
 import com.stratio.qa.utils.CCTUtils;
 import com.stratio.qa.utils.ThreadProperty;
+import com.stratio.qa.utils.Waiter;
 import cucumber.api.java.en.Given;
 import cucumber.api.java.en.Then;
 import cucumber.api.java.en.When;
@@ -44,7 +45,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.Future;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.testng.Assert.fail;
@@ -220,24 +221,13 @@ public class CCTSpec extends BaseGSpec {
     public void readLogsInLessEachFromService(Integer timeout, Integer wait, String logType, String service, String taskAttrType, String taskNameOrID, String logToCheck, Integer lastLinesToRead) throws Exception {
         // Set REST connection
         commonspec.setCCTConnection(null, null);
-        lastLinesToRead = lastLinesToRead == null ? -1 : lastLinesToRead;
-        String logOfTask = null;
-        for (int x = 0; x <= timeout; x += wait) {
-            try {
-                logOfTask = getLog(logType, lastLinesToRead, service, taskNameOrID, 0, null, taskAttrType);
-                if (logOfTask != null && logOfTask.contains(logToCheck)) {
-                    break;
-                }
-            } catch (Exception e) {
-
-            }
-            commonspec.getLogger().info(logToCheck + " not found after " + x + " seconds");
-            if (x < timeout) {
-                Thread.sleep(wait * 1000);
-            }
-        }
+        int lastLines = lastLinesToRead == null ? -1 : lastLinesToRead;
+        Waiter.Outcome<String> outcome = logWaiter(timeout, wait, logToCheck)
+                .until(() -> getLog(logType, lastLines, service, taskNameOrID, 0, null, taskAttrType),
+                        log -> log != null && log.contains(logToCheck));
+        String logOfTask = outcome.getValue();
         Assert.assertNotNull(logOfTask, "Error downloading log file");
-        if (!logOfTask.contains(logToCheck)) {
+        if (!outcome.isSatisfied()) {
             Files.write(Paths.get(System.getProperty("user.dir") + "/target/test-classes/log.txt"), logOfTask.getBytes());
             fail("The log '" + logToCheck + "' is not contained in the task logs after " + timeout + " seconds. Last log downloaded is saved in target/test-classes/log.txt");
         }
@@ -258,34 +248,39 @@ public class CCTSpec extends BaseGSpec {
     public void readLogsModifiedInLessEachFromService(Integer timeout, Integer wait, Integer lastLinesToRead, String logType, String service, String taskAttrType, String taskNameOrID, String modifyingCommand, String logToCheck) throws Exception {
         // Set REST connection
         commonspec.setCCTConnection(null, null);
-        String logOfTask = null;
-        for (int x = 0; x <= timeout; x += wait) {
-            try {
-                logOfTask = getLog(logType, lastLinesToRead, service, taskNameOrID, 0, null, taskAttrType);
-                if (logOfTask != null) {
-                    Files.write(Paths.get(System.getProperty("user.dir") + "/target/test-classes/log.txt"), logOfTask.getBytes());
+        Waiter.Outcome<String> outcome = logWaiter(timeout, wait, logToCheck)
+                .until(() -> getLog(logType, lastLinesToRead, service, taskNameOrID, 0, null, taskAttrType), log -> {
+                    if (log == null) {
+                        return false;
+                    }
+                    Files.write(Paths.get(System.getProperty("user.dir") + "/target/test-classes/log.txt"), log.getBytes());
                     commonspec.runLocalCommand("cat target/test-classes/log.txt | " + modifyingCommand);
                     commonspec.getLogger().debug("Log result modified =  " + commonspec.getCommandResult());
-                    if (commonspec.getCommandResult().contains(logToCheck)) {
-                        break;
-                    }
-                }
-            } catch (Exception e) {
-
-            }
-            commonspec.getLogger().info(logToCheck + " not found after " + x + " seconds");
-            if (x < timeout) {
-                Thread.sleep(wait * 1000);
-            }
-        }
+                    return commonspec.getCommandResult().contains(logToCheck);
+                });
+        String logOfTask = outcome.getValue();
         Assert.assertNotNull(logOfTask, "Error downloading log file");
-        if (!commonspec.getCommandResult().contains(logToCheck)) {
+        if (!outcome.isSatisfied()) {
             Files.write(Paths.get(System.getProperty("user.dir") + "/target/test-classes/log.txt"), logOfTask.getBytes());
             commonspec.getLogger().error("Last log result modified =  " + commonspec.getCommandResult());
             fail("The log '" + logToCheck + "' is not contained in the task logs after " + timeout + " seconds. Last log downloaded is saved in target/test-classes/log.txt");
         }
     }
 
+    /**
+     * Waiter for log checks, retrying on download errors
+     *
+     * @param timeout    : maximun waiting time
+     * @param wait       : check interval
+     * @param logToCheck : expression to look for
+     * @return Waiter
+     */
+    private Waiter logWaiter(Integer timeout, Integer wait, String logToCheck) {
+        return Waiter.atMost(timeout, TimeUnit.SECONDS).pollEvery(wait, TimeUnit.SECONDS)
+                .ignoring(Exception.class)
+                .onRetry((attempt, elapsed, error) -> commonspec.getLogger().info(logToCheck + " not found after " + TimeUnit.NANOSECONDS.toSeconds(elapsed) + " seconds"));
+    }
+
     /**
      * Obtain last lines of log
      *
@@ -539,24 +534,21 @@ public class CCTSpec extends BaseGSpec {
         // Set REST connection
         commonspec.setCCTConnection(null, null);
 
-        String endPoint = "/service/deploy-api/deployments/service?instanceName=" + service;
-        if (ThreadProperty.get("cct-marathon-services_id") != null) {
-            endPoint = "/service/cct-marathon-services/v1/services/" + service + "?tsize=100";
-        }
-        boolean statusService = false;
-        for (int i = 0; (i <= timeout) && (!statusService); i += wait) {
-            try {
-                Future<Response> response = commonspec.generateRequest("GET", false, null, null, endPoint, "", null);
-                commonspec.setResponse(endPoint, response.get());
-                statusService = checkServiceStatusInResponse(expectedStatus, commonspec.getResponse().getResponse(), numTasks, taskType);
-            } catch (Exception e) {
-                commonspec.getLogger().warn("Error in request " + endPoint + " - " + e.toString());
-            }
-            if (i < timeout) {
-                Thread.sleep(wait * 1000);
-            }
-        }
-        if (!statusService) {
+        String endPoint = ThreadProperty.get("cct-marathon-services_id") != null ? "/service/cct-marathon-services/v1/services/" + service + "?tsize=100"
+                : "/service/deploy-api/deployments/service?instanceName=" + service;
+        Waiter.Outcome<Boolean> outcome = Waiter.atMost(timeout, TimeUnit.SECONDS).pollEvery(wait, TimeUnit.SECONDS)
+                .ignoring(Exception.class)
+                .onRetry((attempt, elapsed, error) -> {
+                    if (error != null) {
+                        commonspec.getLogger().warn("Error in request " + endPoint + " - " + error.toString());
+                    }
+                })
+                .until(() -> {
+                    Future<Response> response = commonspec.generateRequest("GET", false, null, null, endPoint, "", null);
+                    commonspec.setResponse(endPoint, response.get());
+                    return checkServiceStatusInResponse(expectedStatus, commonspec.getResponse().getResponse(), numTasks, taskType);
+                });
+        if (!outcome.isSatisfied()) {
             fail(expectedStatus + " status not found after " + timeout + " seconds for service " + service);
         }
     }
@@ -644,43 +636,39 @@ public class CCTSpec extends BaseGSpec {
         // Set REST connection
         commonspec.setCCTConnection(null, null);
 
-        String endPoint = "/service/deploy-api/deployments/service?instanceName=" + service;
-        boolean useMarathonServices = false;
-        if (ThreadProperty.get("cct-marathon-services_id") != null) {
-            endPoint = "/service/cct-marathon-services/v1/services/" + service + "?tsize=100";
-            useMarathonServices = true;
-        }
-        boolean found = false;
-        boolean isDeployed = false;
-
-        for (int i = 0; (i <= timeout); i += wait) {
-            try {
-                Future<Response> response = commonspec.generateRequest("GET", false, null, null, endPoint, "", null);
-                commonspec.setResponse(endPoint, response.get());
-                found = checkServiceStatusInResponse(expectedStatus, commonspec.getResponse().getResponse(), useMarathonServices);
-                if (numTasks != null) {
-                    isDeployed = checkServiceDeployed(commonspec.getResponse().getResponse(), numTasks, useMarathonServices);
-                }
-            } catch (Exception e) {
-                commonspec.getLogger().debug("Error in request " + endPoint + " - " + e.toString());
-            }
-            if ((found && (numTasks == null)) || (found && (numTasks != null) && isDeployed)) {
-                break;
-            } else {
-                if (!found) {
-                    commonspec.getLogger().info(expectedStatus + " status or tasks not found after " + i + " seconds for service " + service);
-                } else if (numTasks != null && !isDeployed) {
-                    commonspec.getLogger().info("Tasks have not been deployed successfully after " + i + " seconds for service " + service);
-                }
-                if (i < timeout) {
-                    Thread.sleep(wait * 1000);
-                }
-            }
-        }
-        if (!found) {
+        boolean useMarathonServices = ThreadProperty.get("cct-marathon-services_id") != null;
+        String endPoint = useMarathonServices ? "/service/cct-marathon-services/v1/services/" + service + "?tsize=100"
+                : "/service/deploy-api/deployments/service?instanceName=" + service;
+        // status found and tasks deployed in the last check
+        boolean[] checked = new boolean[2];
+
+        Waiter.atMost(timeout, TimeUnit.SECONDS).pollEvery(wait, TimeUnit.SECONDS)
+                .ignoring(Exception.class)
+                .onRetry((attempt, elapsed, error) -> {
+                    if (error != null) {
+                        commonspec.getLogger().debug("Error in request " + endPoint + " - " + error.toString());
+                    }
+                    if (!checked[0]) {
+                        commonspec.getLogger().info(expectedStatus + " status or tasks not found after " + TimeUnit.NANOSECONDS.toSeconds(elapsed) + " seconds for service " + service);
+                    } else if (numTasks != null && !checked[1]) {
+                        commonspec.getLogger().info("Tasks have not been deployed successfully after " + TimeUnit.NANOSECONDS.toSeconds(elapsed) + " seconds for service " + service);
+                    }
+                })
+                .until(() -> {
+                    checked[0] = false;
+                    checked[1] = false;
+                    Future<Response> response = commonspec.generateRequest("GET", false, null, null, endPoint, "", null);
+                    commonspec.setResponse(endPoint, response.get());
+                    checked[0] = checkServiceStatusInResponse(expectedStatus, commonspec.getResponse().getResponse(), useMarathonServices);
+                    if (numTasks != null) {
+                        checked[1] = checkServiceDeployed(commonspec.getResponse().getResponse(), numTasks, useMarathonServices);
+                    }
+                    return checked[0] && (numTasks == null || checked[1]);
+                });
+        if (!checked[0]) {
             fail(expectedStatus + " status not found after " + timeout + " seconds for service " + service);
         }
-        if ((numTasks != null) && !isDeployed) {
+        if ((numTasks != null) && !checked[1]) {
             fail("Tasks have not been deployed successfully after " + timeout + " seconds for service " + service);
         }
     }
@@ -1001,67 +989,16 @@ public class CCTSpec extends BaseGSpec {
         String endPoint = "/service/" + ThreadProperty.get("configuration_api_id") + "/network";
         String requestType = operation.equals("create") ? "PUT" : "POST";
 
-        Boolean searchUntilContains;
-        if (contains == null || contains.isEmpty()) {
-            searchUntilContains = Boolean.TRUE;
-        } else {
-            searchUntilContains = Boolean.FALSE;
-        }
-        Boolean found = !searchUntilContains;
-        AssertionError ex = null;
-
-        Future<Response> response;
-
-        Pattern pattern = CommonG.matchesOrContains(responseVal);
-
         if (wait == null || timeout == null) {
             timeout = 0;
             wait = 0;
         }
 
-        for (int i = 0; (i <= timeout); i += wait) {
-            if (found && searchUntilContains) {
-                break;
-            }
-            try {
-                commonspec.getLogger().debug("Generating request {} to {} with data {} as {}", requestType, endPoint, modifiedData, type);
-                response = commonspec.generateRequest(requestType, false, null, null, endPoint, modifiedData, type);
-                commonspec.getLogger().debug("Saving response");
-                commonspec.setResponse(requestType, response.get());
-                commonspec.getLogger().debug("Checking response value");
-
-                if (searchUntilContains) {
-                    assertThat(commonspec.getResponse().getResponse()).containsPattern(pattern);
-                    found = true;
-                    timeout = i;
-                } else {
-                    assertThat(commonspec.getResponse().getResponse()).doesNotContain(responseVal);
-                    found = false;
-                    timeout = i;
-                }
-            } catch (AssertionError | Exception e) {
-                if (!found) {
-                    commonspec.getLogger().info("Response value not found after " + i + " seconds");
-                } else {
-                    commonspec.getLogger().info("Response value found after " + i + " seconds");
-                }
-                Thread.sleep(wait * 1000);
-                if (e instanceof AssertionError) {
-                    ex = (AssertionError) e;
-                }
-            }
-            if (!found && !searchUntilContains) {
-                break;
-            }
-        }
-        if ((!found && searchUntilContains) || (found && !searchUntilContains)) {
-            throw (ex);
-        }
-        if (searchUntilContains) {
-            commonspec.getLogger().info("Success! Response value found after " + timeout + " seconds");
-        } else {
-            commonspec.getLogger().info("Success! Response value not found after " + timeout + " seconds");
-        }
+        boolean searchUntilContains = contains == null || contains.isEmpty();
+        commonspec.checkResponseWithPolling(timeout, wait, requestType, () -> {
+            commonspec.getLogger().debug("Generating request {} to {} with data {} as {}", requestType, endPoint, modifiedData, type);
+            return commonspec.generateRequest(requestType, false, null, null, endPoint, modifiedData, type);
+        }, searchUntilContains, responseVal);
     }
 
     /**
@@ -1090,62 +1027,11 @@ public class CCTSpec extends BaseGSpec {
             wait = 0;
         }
 
-        Boolean searchUntilContains;
-        if (contains == null || contains.isEmpty()) {
-            searchUntilContains = Boolean.TRUE;
-        } else {
-            searchUntilContains = Boolean.FALSE;
-        }
-        Boolean found = !searchUntilContains;
-        AssertionError ex = null;
-
-        Future<Response> response;
-
-        Pattern pattern = CommonG.matchesOrContains(responseVal);
-
-        for (int i = 0; (i <= timeout); i += wait) {
-            if (found && searchUntilContains) {
-                break;
-            }
-            try {
-                commonspec.getLogger().debug("Generating request {} to {} with data {} as {}", requestType, endPoint, null, null);
-                response = commonspec.generateRequest(requestType, false, null, null, endPoint, null, null);
-                commonspec.getLogger().debug("Saving response");
-                commonspec.setResponse(requestType, response.get());
-                commonspec.getLogger().debug("Checking response value");
-
-                if (searchUntilContains) {
-                    assertThat(commonspec.getResponse().getResponse()).containsPattern(pattern);
-                    found = true;
-                    timeout = i;
-                } else {
-                    assertThat(commonspec.getResponse().getResponse()).doesNotContain(responseVal);
-                    found = false;
-                    timeout = i;
-                }
-            } catch (AssertionError | Exception e) {
-                if (!found) {
-                    commonspec.getLogger().info("Response value not found after " + i + " seconds");
-                } else {
-                    commonspec.getLogger().info("Response value found after " + i + " seconds");
-                }
-                Thread.sleep(wait * 1000);
-                if (e instanceof AssertionError) {
-                    ex = (AssertionError) e;
-                }
-            }
-            if (!found && !searchUntilContains) {
-                break;
-            }
-        }
-        if ((!found && searchUntilContains) || (found && !searchUntilContains)) {
-            throw (ex);
-        }
-        if (searchUntilContains) {
-            commonspec.getLogger().info("Success! Response value found after " + timeout + " seconds");
-        } else {
-            commonspec.getLogger().info("Success! Response value not found after " + timeout + " seconds");
-        }
+        boolean searchUntilContains = contains == null || contains.isEmpty();
+        commonspec.checkResponseWithPolling(timeout, wait, requestType, () -> {
+            commonspec.getLogger().debug("Generating request {} to {} with data {} as {}", requestType, endPoint, null, null);
+            return commonspec.generateRequest(requestType, false, null, null, endPoint, null, null);
+        }, searchUntilContains, responseVal);
     }
 
     /**
@@ -2142,23 +2028,7 @@ public class CCTSpec extends BaseGSpec {
      */
     @Then("^service '(.+?)' status in cluster '(.+?)' is '(suspended|running|deploying)'( in less than '(\\d+)')?( seconds checking every '(\\d+)' seconds)?")
     public void serviceStatusCheck(String service, String cluster, String status, String sTotalWait, String sInterval) throws Exception {
-        Integer totalWait = sTotalWait != null ? Integer.parseInt(sTotalWait) : null;
-        Integer interval = sInterval != null ? Integer.parseInt(sInterval) : null;
-        String response;
-        Integer i = 0;
-        boolean matched;
-
-        response = commonspec.retrieveServiceStatus(service, cluster);
-
-        if (totalWait != null && interval != null) {
-            matched = status.matches(response);
-            while (!matched && i < totalWait) {
-                this.commonspec.getLogger().info("Service status not found yet after " + i + " seconds");
-                i = i + interval;
-                response = commonspec.retrieveServiceStatus(service, cluster);
-                matched = status.matches(response);
-            }
-        }
+        String response = retrieveWithPolling(() -> commonspec.retrieveServiceStatus(service, cluster), status, sTotalWait, sInterval, "Service status");
 
         assertThat(status).as("Expected status: " + status + " doesn't match obtained one: " + response).matches(response);
     }
@@ -2173,27 +2043,32 @@ public class CCTSpec extends BaseGSpec {
      */
     @Then("^service '(.+?)' health status in cluster '(.+?)' is '(unhealthy|healthy|unknown)'( in less than '(\\d+)')?( seconds checking every '(\\d+)' seconds)?")
     public void serviceHealthStatusCheck(String service, String cluster, String status, String sTotalWait, String sInterval) throws Exception {
-        Integer totalWait = sTotalWait != null ? Integer.parseInt(sTotalWait) : null;
-        Integer interval = sInterval != null ? Integer.parseInt(sInterval) : null;
-        String response;
-        Integer i = 0;
-        boolean matched;
-
-        response = commonspec.retrieveHealthServiceStatus(service, cluster);
-
-        if (totalWait != null && interval != null) {
-            matched = status.matches(response);
-            while (!matched && i < totalWait) {
-                this.commonspec.getLogger().info("Service health status not found yet after " + i + " seconds");
-                i = i + interval;
-                response = commonspec.retrieveHealthServiceStatus(service, cluster);
-                matched = status.matches(response);
-            }
-        }
+        String response = retrieveWithPolling(() -> commonspec.retrieveHealthServiceStatus(service, cluster), status, sTotalWait, sInterval, "Service health status");
 
         assertThat(status).as("Expected status: " + status + " doesn't match obtained one: " + response).matches(response);
     }
 
+    /**
+     * Retrieve a status, retrying until it matches the expected one if a total wait and interval are given
+     *
+     * @param retrieve   : retrieves the status
+     * @param status     : status expected
+     * @param sTotalWait : maximun waiting time, optional
+     * @param sInterval  : check interval, optional
+     * @param name       : name of the status, for logs
+     * @return last status retrieved
+     * @throws Exception exception
+     */
+    private String retrieveWithPolling(Waiter.Probe<String> retrieve, String status, String sTotalWait, String sInterval, String name) throws Exception {
+        if (sTotalWait == null || sInterval == null) {
+            return retrieve.probe();
+        }
+        return Waiter.atMost(Integer.parseInt(sTotalWait), TimeUnit.SECONDS).pollEvery(Integer.parseInt(sInterval), TimeUnit.SECONDS)
+                .onRetry((attempt, elapsed, error) -> this.commonspec.getLogger().info(name + " not found yet after " + TimeUnit.NANOSECONDS.toSeconds(elapsed) + " seconds"))
+                .until(retrieve, response -> status.matches(response))
+                .getValue();
+    }
+
     /**
      * Get service status
      *
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.specs;
+
+import com.stratio.qa.utils.DiscoveryCache;
+import com.stratio.qa.utils.HttpResponse;
+import com.stratio.qa.utils.RemoteSSHConnectionsUtil;
+import com.stratio.qa.utils.ThreadProperty;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Cluster discovery of @dcos scenarios, recorded so that the next scenarios reproduce all of its effects without
+ * querying the cluster again:
+ * <ul>
+ * <li>thread variables and system properties added or changed</li>
+ * <li>REST protocol, host and port, last response and last command result of CommonG</li>
+ * <li>SSH connections closed, and the current one, which the discovery leaves unset after closing the bootstrap
+ * connection</li>
+ * <li>local files created or modified, the discovery runs again if any of them is missing</li>
+ * </ul>
+ * SSO cookies are not recorded, the session is opened again in every scenario through the SSO token cache.
+ */
+final class ClusterDiscovery {
+
+    static final String THREAD = "thread.";
+
+    static final String SYSTEM = "system.";
+
+    static final String FILE = "file.";
+
+    static final String CLOSED_CONNECTION = "ssh.closed.";
+
+    static final String CURRENT_CONNECTION = "ssh.current";
+
+    static final String REST_PROTOCOL = "commong.restProtocol";
+
+    static final String REST_HOST = "commong.restHost";
+
+    static final String REST_PORT = "commong.restPort";
+
+    static final String RESPONSE_STATUS = "commong.response.status";
+
+    static final String RESPONSE_BODY = "commong.response.body";
+
+    static final String COMMAND_RESULT = "commong.commandResult";
+
+    static final String COMMAND_EXIT_STATUS = "commong.commandExitStatus";
+
+    /**
+     * Steps of the discovery, or of the opening of the session.
+     */
+    @FunctionalInterface
+    interface Steps {
+        void run() throws Exception;
+    }
+
+    private final CommonG commonspec;
+
+    private final File directory;
+
+    /**
+     * @param commonspec common steps of the scenario
+     * @param directory  directory where the discovery leaves its files
+     */
+    ClusterDiscovery(CommonG commonspec, File directory) {
+        this.commonspec = commonspec;
+        this.directory = directory;
+    }
+
+    /**
+     * Runs the discovery of the cluster, or reproduces the one of a previous scenario.
+     *
+     * @param cache     discoveries of previous scenarios
+     * @param cluster   identity of the cluster
+     * @param discovery steps of the discovery
+     * @param session   steps opening the REST session the discovery leaves, run when it is reproduced
+     * @return true if the discovery ran
+     * @throws Exception exception thrown by the steps
+     */
+    boolean setup(DiscoveryCache cache, String cluster, Steps discovery, Steps session) throws Exception {
+        boolean[] discovered = {false};
+        DiscoveryCache.Discovery recorded = () -> {
+            discovered[0] = true;
+            return record(discovery);
+        };
+        Properties state = cache.get(cluster, ClusterDiscovery::producedFiles, recorded);
+        if (!discovered[0]) {
+            replay(state);
+            session.run();
+        }
+        return discovered[0];
+    }
+
+    /**
+     * Runs the discovery and records its effects.
+     */
+    Properties record(Steps discovery) throws Exception {
+        Properties threadBefore = ThreadProperty.snapshot();
+        Properties systemBefore = new Properties();
+        systemBefore.putAll(System.getProperties());
+        Set<String> connectionsBefore = new HashSet<>(RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().keySet());
+        Map<String, String> filesBefore = files();
+
+        discovery.run();
+
+        Properties state = new Properties();
+        Properties threadAfter = ThreadProperty.snapshot();
+        for (String name : threadAfter.stringPropertyNames()) {
+            if (!threadAfter.getProperty(name).equals(threadBefore.getProperty(name))) {
+                state.setProperty(THREAD + name, threadAfter.getProperty(name));
+            }
+        }
+        Properties systemAfter = System.getProperties();
+        for (String name : systemAfter.stringPropertyNames()) {
+            if (!systemAfter.getProperty(name).equals(systemBefore.getProperty(name))) {
+                state.setProperty(SYSTEM + name, systemAfter.getProperty(name));
+            }
+        }
+        for (String id : connectionsBefore) {
+            if (!RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().containsKey(id)) {
+                state.setProperty(CLOSED_CONNECTION + id, id);
+            }
+        }
+        String current = RemoteSSHConnectionsUtil.getLastRemoteSSHConnectionId();
+        if (current != null && RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().containsKey(current) && !connectionsBefore.contains(current)) {
+            throw new IllegalStateException("Discovery left the SSH connection " + current + " open, it cannot be reproduced");
+        }
+        state.setProperty(CURRENT_CONNECTION, current == null ? "" : current);
+
+        int produced = 0;
+        for (Map.Entry<String, String> file : files().entrySet()) {
+            if (!file.getValue().equals(filesBefore.get(file.getKey()))) {
+                state.setProperty(FILE + produced++, file.getKey());
+            }
+        }
+
+        setIfNotNull(state, REST_PROTOCOL, commonspec.getRestProtocol());
+        setIfNotNull(state, REST_HOST, commonspec.getRestHost());
+        setIfNotNull(state, REST_PORT, commonspec.getRestPort());
+        if (commonspec.getResponse() != null) {
+            state.setProperty(RESPONSE_STATUS, String.valueOf(commonspec.getResponse().getStatusCode()));
+            setIfNotNull(state, RESPONSE_BODY, commonspec.getResponse().getResponse());
+        }
+        setIfNotNull(state, COMMAND_RESULT, commonspec.getCommandResult());
+        state.setProperty(COMMAND_EXIT_STATUS, String.valueOf(commonspec.getCommandExitStatus()));
+        return state;
+    }
+
+    /**
+     * Reproduces the effects of a recorded discovery.
+     */
+    void replay(Properties state) {
+        for (String name : state.stringPropertyNames()) {
+            String value = state.getProperty(name);
+            if (name.startsWith(THREAD)) {
+                ThreadProperty.set(name.substring(THREAD.length()), value);
+            } else if (name.startsWith(SYSTEM)) {
+                System.setProperty(name.substring(SYSTEM.length()), value);
+            } else if (name.startsWith(CLOSED_CONNECTION)) {
+                RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().remove(value);
+            }
+        }
+        String current = state.getProperty(CURRENT_CONNECTION, "");
+        RemoteSSHConnectionsUtil.setLastRemoteSSHConnectionId(current.isEmpty() ? null : current);
+        RemoteSSHConnectionsUtil.setLastRemoteSSHConnection(current.isEmpty() ? null : RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().get(current));
+
+        if (state.getProperty(REST_PROTOCOL) != null) {
+            commonspec.setRestProtocol(state.getProperty(REST_PROTOCOL));
+        }
+        if (state.getProperty(REST_HOST) != null) {
+            commonspec.setRestHost(state.getProperty(REST_HOST));
+        }
+        if (state.getProperty(REST_PORT) != null) {
+            commonspec.setRestPort(state.getProperty(REST_PORT));
+        }
+        if (state.getProperty(RESPONSE_STATUS) != null) {
+            commonspec.setResponse(new HttpResponse(Integer.valueOf(state.getProperty(RESPONSE_STATUS)), state.getProperty(RESPONSE_BODY), new ArrayList<>()));
+        }
+        if (state.getProperty(COMMAND_RESULT) != null) {
+            commonspec.setCommandResult(state.getProperty(COMMAND_RESULT));
+        }
+        commonspec.setCommandExitStatus(Integer.parseInt(state.getProperty(COMMAND_EXIT_STATUS, "0")));
+    }
+
+    /**
+     * @return files recorded in the state
+     */
+    static List<String> producedFiles(Properties state) {
+        return state.stringPropertyNames().stream().filter(name -> name.startsWith(FILE)).map(state::getProperty)
+                .sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * @return modification time and size of every file in the directory, by path
+     */
+    private Map<String, String> files() throws IOException {
+        Map<String, String> files = new HashMap<>();
+        if (!directory.isDirectory()) {
+            return files;
+        }
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                File file = path.toFile();
+                files.put(file.getPath(), file.lastModified() + "/" + file.length());
+            }
+        }
+        return files;
+    }
+
+    private static void setIfNotNull(Properties state, String name, String value) {
+        if (value != null) {
+            state.setProperty(name, value);
+        }
+    }
+}
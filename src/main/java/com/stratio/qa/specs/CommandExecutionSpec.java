@@ -17,20 +17,23 @@
 package com.stratio.qa.specs;
 
 import com.jcraft.jsch.Session;
+import com.stratio.qa.utils.NodeFanOut;
 import com.stratio.qa.utils.RemoteSSHConnection;
 import com.stratio.qa.utils.RemoteSSHConnectionsUtil;
 import com.stratio.qa.utils.ThreadProperty;
+import com.stratio.qa.utils.Waiter;
 import cucumber.api.java.en.Given;
 import cucumber.api.java.en.Then;
 import cucumber.api.java.en.When;
 import org.assertj.core.api.Assertions;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.net.URLEncoder;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.stratio.qa.assertions.Assertions.assertThat;
 
@@ -41,6 +44,12 @@ import static com.stratio.qa.assertions.Assertions.assertThat;
  */
 public class CommandExecutionSpec extends BaseGSpec {
 
+    /**
+     * Channels opened at once in the active SSH connection when running in all nodes remotely, below the 10 sessions
+     * per connection sshd allows by default (MaxSessions)
+     */
+    static final int MAX_REMOTE_CHANNELS = 8;
+
     /**
      * Generic constructor.
      *
@@ -63,20 +72,20 @@ public class CommandExecutionSpec extends BaseGSpec {
     public void openSSHConnection(String remoteHost, String remotePort, String user, String password, String pemFile, String sshConnectionId) throws Exception {
         String sshConnectionIdAux = sshConnectionId != null ? sshConnectionId : remoteHost + "_" + user;
         if (RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().get(sshConnectionId) != null) {
-            RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().get(sshConnectionId).getSession().disconnect();
+            RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().get(sshConnectionId).closeConnection();
         }
         if ((pemFile == null) || (pemFile.equals("none"))) {
             if (password == null) {
                 throw new Exception("You have to provide a password or a pem file to be used for connection");
             }
-            commonspec.setRemoteSSHConnection(new RemoteSSHConnection(user, password, remoteHost, remotePort, null), sshConnectionIdAux);
+            commonspec.setRemoteSSHConnection(RemoteSSHConnection.pooled(user, password, remoteHost, remotePort, null), sshConnectionIdAux);
             commonspec.getLogger().debug("Opening ssh connection with password: { " + password + "}", sshConnectionIdAux);
         } else {
             File pem = new File(pemFile);
             if (!pem.exists()) {
                 throw new Exception("Pem file: " + pemFile + " does not exist");
             }
-            commonspec.setRemoteSSHConnection(new RemoteSSHConnection(user, null, remoteHost, remotePort, pemFile), sshConnectionIdAux);
+            commonspec.setRemoteSSHConnection(RemoteSSHConnection.pooled(user, null, remoteHost, remotePort, pemFile), sshConnectionIdAux);
             commonspec.getLogger().debug("Opening ssh connection with pemFile: {}", sshConnectionIdAux);
         }
     }
@@ -172,30 +181,15 @@ public class CommandExecutionSpec extends BaseGSpec {
     @Then("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, the local command output '(.+?)' contains '(.*?)'( with exit status '(\\d+)')?$")
     public void assertCommandExistsOnTimeOutLocal(Integer timeout, Integer wait, String command, String search, String sExitStatus) throws Exception {
         Integer exitStatus = sExitStatus != null ? Integer.valueOf(sExitStatus) : null;
-        Boolean found = false;
-        for (int i = 0; (i <= timeout); i += wait) {
-            if (found) {
-                break;
-            }
+        waitForOutput(timeout, wait, "Local command output", () -> {
             commonspec.getLogger().debug("Checking local output value");
             commonspec.runLocalCommand(command);
-            try {
-                if (exitStatus != null) {
-                    assertThat(commonspec.getCommandExitStatus()).isEqualTo(exitStatus);
-                }
-                assertThat(commonspec.getCommandResult()).as("Contains " + search + ".").contains(search);
-                found = true;
-                timeout = i;
-            } catch (AssertionError e) {
-                commonspec.getLogger().info("Local command output don't found yet after " + i + " seconds");
-                Thread.sleep(wait * 1000);
+            if (exitStatus != null) {
+                assertThat(commonspec.getCommandExitStatus()).isEqualTo(exitStatus);
             }
-        }
-
-        if (!found) {
-            throw new Exception("Local command output don't found yet after " + timeout + " seconds");
-        }
-        commonspec.getLogger().info("Local command output found after " + timeout + " seconds");
+            assertThat(commonspec.getCommandResult()).as("Contains " + search + ".").contains(search);
+            return true;
+        });
     }
 
     /**
@@ -213,30 +207,15 @@ public class CommandExecutionSpec extends BaseGSpec {
     @Then("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, the local command output '(.+?)' is equal to '(.*?)'( with exit status '(\\d+)')?$")
     public void assertCommandIsEqualToOnTimeOut(Integer timeout, Integer wait, String command, String search, String sExitStatus) throws Exception {
         Integer exitStatus = sExitStatus != null ? Integer.valueOf(sExitStatus) : null;
-        Boolean found = false;
-        for (int i = 0; (i <= timeout); i += wait) {
-            if (found) {
-                break;
-            }
+        waitForOutput(timeout, wait, "Local command output", () -> {
             commonspec.getLogger().debug("Checking local output value");
             commonspec.runLocalCommand(command);
-            try {
-                if (exitStatus != null) {
-                    assertThat(commonspec.getCommandExitStatus()).isEqualTo(exitStatus);
-                }
-                assertThat(commonspec.getCommandResult()).as("Equal to " + search + ".").isEqualTo(search);
-                found = true;
-                timeout = i;
-            } catch (AssertionError e) {
-                commonspec.getLogger().info("Local command output don't found yet after " + i + " seconds");
-                Thread.sleep(wait * 1000);
+            if (exitStatus != null) {
+                assertThat(commonspec.getCommandExitStatus()).isEqualTo(exitStatus);
             }
-        }
-
-        if (!found) {
-            throw new Exception("Local command output don't found yet after " + timeout + " seconds");
-        }
-        commonspec.getLogger().info("Local command output found after " + timeout + " seconds");
+            assertThat(commonspec.getCommandResult()).as("Equal to " + search + ".").isEqualTo(search);
+            return true;
+        });
     }
 
     /**
@@ -254,37 +233,21 @@ public class CommandExecutionSpec extends BaseGSpec {
     @Then("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, the command output '(.+?)'( not)? contains '(.*?)'( with exit status '(\\d+)')?$")
     public void assertCommandExistsOnTimeOut(Integer timeout, Integer wait, String command, String contains, String search, String sExitStatus) throws Exception {
         Integer exitStatus = sExitStatus != null ? Integer.valueOf(sExitStatus) : null;
-        Boolean found = false;
-
-        command = "set -o pipefail && alias grep='grep --color=never' && " + command;
-        for (int i = 0; (i <= timeout); i += wait) {
-            if (found) {
-                break;
-            }
+        String remoteCommand = "set -o pipefail && alias grep='grep --color=never' && " + command;
+        waitForOutput(timeout, wait, "Command output", () -> {
             commonspec.getLogger().debug("Checking output value");
-            commonspec.getRemoteSSHConnection().runCommand(command);
+            commonspec.getRemoteSSHConnection().runCommand(remoteCommand);
             commonspec.setCommandResult(commonspec.getRemoteSSHConnection().getResult());
-            try {
-                if (exitStatus != null) {
-                    assertThat(commonspec.getRemoteSSHConnection().getExitStatus()).isEqualTo(exitStatus);
-                }
-                if (contains == null || contains.isEmpty()) {
-                    assertThat(commonspec.getCommandResult()).as("Contains " + search + ".").contains(search);
-                } else {
-                    assertThat(commonspec.getCommandResult()).as("doesn't contains " + search + ".").doesNotContain(search);
-                }
-                found = true;
-                timeout = i;
-            } catch (AssertionError e) {
-                commonspec.getLogger().info("Command output don't found yet after " + i + " seconds");
-                Thread.sleep(wait * 1000);
+            if (exitStatus != null) {
+                assertThat(commonspec.getRemoteSSHConnection().getExitStatus()).isEqualTo(exitStatus);
             }
-        }
-
-        if (!found) {
-            throw new Exception("Command output don't found yet after " + timeout + " seconds");
-        }
-        commonspec.getLogger().info("Command output found after " + timeout + " seconds");
+            if (contains == null || contains.isEmpty()) {
+                assertThat(commonspec.getCommandResult()).as("Contains " + search + ".").contains(search);
+            } else {
+                assertThat(commonspec.getCommandResult()).as("doesn't contains " + search + ".").doesNotContain(search);
+            }
+            return true;
+        });
     }
 
     /**
@@ -302,37 +265,41 @@ public class CommandExecutionSpec extends BaseGSpec {
     @Then("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, the command output '(.+?)' is( not)? equal to '(.*?)'( with exit status '(\\d+)')?$")
     public void assertCommandIsEqualToOnTimeOut(Integer timeout, Integer wait, String command, String notEqual, String search, String sExitStatus) throws Exception {
         Integer exitStatus = sExitStatus != null ? Integer.valueOf(sExitStatus) : null;
-        Boolean found = false;
-
-        command = "set -o pipefail && alias grep='grep --color=never' && " + command;
-        for (int i = 0; (i <= timeout); i += wait) {
-            if (found) {
-                break;
-            }
+        String remoteCommand = "set -o pipefail && alias grep='grep --color=never' && " + command;
+        waitForOutput(timeout, wait, "Command output", () -> {
             commonspec.getLogger().debug("Checking output value");
-            commonspec.getRemoteSSHConnection().runCommand(command);
+            commonspec.getRemoteSSHConnection().runCommand(remoteCommand);
             commonspec.setCommandResult(commonspec.getRemoteSSHConnection().getResult());
-            try {
-                if (exitStatus != null) {
-                    assertThat(commonspec.getRemoteSSHConnection().getExitStatus()).isEqualTo(exitStatus);
-                }
-                if (notEqual == null || notEqual.isEmpty()) {
-                    assertThat(commonspec.getCommandResult()).as("Equal to " + search + ".").isEqualTo(search);
-                } else {
-                    assertThat(commonspec.getCommandResult()).as("Not equal to " + search + ".").isNotEqualTo(search);
-                }
-                found = true;
-                timeout = i;
-            } catch (AssertionError e) {
-                commonspec.getLogger().info("Command output don't found yet after " + i + " seconds");
-                Thread.sleep(wait * 1000);
+            if (exitStatus != null) {
+                assertThat(commonspec.getRemoteSSHConnection().getExitStatus()).isEqualTo(exitStatus);
             }
-        }
+            if (notEqual == null || notEqual.isEmpty()) {
+                assertThat(commonspec.getCommandResult()).as("Equal to " + search + ".").isEqualTo(search);
+            } else {
+                assertThat(commonspec.getCommandResult()).as("Not equal to " + search + ".").isNotEqualTo(search);
+            }
+            return true;
+        });
+    }
 
-        if (!found) {
-            throw new Exception("Command output don't found yet after " + timeout + " seconds");
+    /**
+     * Run the check until its assertions pass.
+     *
+     * @param timeout maximum time, in seconds
+     * @param wait    time between checks, in seconds
+     * @param output  name of the checked output, for logs
+     * @param check   check
+     * @throws Exception if the assertions do not pass in time
+     */
+    private void waitForOutput(Integer timeout, Integer wait, String output, Waiter.Probe<Boolean> check) throws Exception {
+        Waiter.Outcome<Boolean> outcome = Waiter.atMost(timeout, TimeUnit.SECONDS).pollEvery(wait, TimeUnit.SECONDS)
+                .ignoring(AssertionError.class)
+                .onRetry((attempt, elapsed, error) -> commonspec.getLogger().info(output + " don't found yet after " + TimeUnit.NANOSECONDS.toSeconds(elapsed) + " seconds"))
+                .until(check);
+        if (!outcome.isSatisfied()) {
+            throw new Exception(output + " don't found yet after " + timeout + " seconds");
         }
-        commonspec.getLogger().info("Command output found after " + timeout + " seconds");
+        commonspec.getLogger().info(output + " found after " + outcome.getElapsed(TimeUnit.SECONDS) + " seconds");
     }
 
     /**
@@ -383,11 +350,17 @@ public class CommandExecutionSpec extends BaseGSpec {
      * @param command
      * @param user
      * @param pem
+     * @param failFast stop the rest of nodes when one fails, and fail the step
      *
      */
-    @Then(value = "^I execute( remotely)? the command '(.*?)' in '(.*?)' nodes of my cluster with user '(.+?)' and pem '(.+?)'$")
+    @Then(value = "^I execute( remotely)? the command '(.*?)' in '(.*?)' nodes of my cluster with user '(.+?)' and pem '(.+?)'( failing fast)?$")
+    public void runInAllNodes(String remote, String command, String nodes, String user, String pem, String failFast) throws Exception {
+        executeInAllNodes(remote, command, null, nodes, user, pem, failFast != null ? NodeFanOut.Policy.FAIL_FAST : NodeFanOut.Policy.COLLECT_ALL);
+    }
+
+    @Deprecated
     public void runInAllNodes(String remote, String command, String nodes, String user, String pem) throws Exception {
-        executeScriptInAllnodes(remote, command, null, nodes, user, pem);
+        runInAllNodes(remote, command, nodes, user, pem, null);
     }
 
     /**
@@ -397,68 +370,60 @@ public class CommandExecutionSpec extends BaseGSpec {
      * @param remotePath
      * @param user
      * @param pem
+     * @param failFast stop the rest of nodes when one fails, and fail the step
      *
      */
-    @Then(value = "^I copy( remotely file)? '(.*?)' in '(.*?)' path in '(.*?)' nodes of my cluster with user '(.+?)' and pem '(.+?)'$")
-    public void copyFileInAllnodes(String remote, String localPath, String remotePath, String nodes, String user, String pem) throws Exception {
-        executeScriptInAllnodes(remote, localPath, remotePath, nodes, user, pem);
+    @Then(value = "^I copy( remotely file)? '(.*?)' in '(.*?)' path in '(.*?)' nodes of my cluster with user '(.+?)' and pem '(.+?)'( failing fast)?$")
+    public void copyFileInAllnodes(String remote, String localPath, String remotePath, String nodes, String user, String pem, String failFast) throws Exception {
+        executeInAllNodes(remote, localPath, remotePath, nodes, user, pem, failFast != null ? NodeFanOut.Policy.FAIL_FAST : NodeFanOut.Policy.COLLECT_ALL);
     }
 
+    @Deprecated
+    public void copyFileInAllnodes(String remote, String localPath, String remotePath, String nodes, String user, String pem) throws Exception {
+        copyFileInAllnodes(remote, localPath, remotePath, nodes, user, pem, null);
+    }
 
-    private void executeScriptInAllnodes(String remotely, String commandOrLocalPath, String remotePath, String nodes, String user, String pem) throws Exception {
-        String baseFolder = remotely != null ? "/tmp" : "target/test-classes";
-        String tmpFileBase = baseFolder + "/parallel-script-";
-        long timestamp = new Date().getTime();
-        String finalFile = tmpFileBase + timestamp + ".sh";
-        String pemFile = remotely != null ? baseFolder + "/key" + timestamp + ".pem" : pem;
-        String[] aNodes = obtainNodes(nodes);
-        StringBuilder finalCmd = new StringBuilder("#!/bin/bash\n");
-
-        commonspec.getLogger().debug("Creating script file:" + finalFile);
-
-        //Prepare script command in parallel
-        for (String node : aNodes) {
-            if (remotePath != null) {
-                finalCmd.append(constructSshParallelCopyFileCmd(commandOrLocalPath, remotePath, user, pemFile, node));
-            } else {
-                finalCmd.append(constructSshParallelCmd(commandOrLocalPath, user, pemFile, node));
-            }
-        }
-
-        finalCmd.append("wait");
-
-        //Save the script and send it to the running ssh (dcos-cli) connection and execute it
-        BufferedWriter writer = new BufferedWriter(new FileWriter(finalFile));
-        writer.write(finalCmd.toString());
-        writer.close();
+    /**
+     * Run a command or copy a file in all nodes, at most NODES_PARALLELISM (10 by default) at once. Nodes are reached
+     * through pooled SSH sessions, or with ssh/scp from the active SSH connection when run remotely, then with at most
+     * {@value #MAX_REMOTE_CHANNELS} at once. The command result is the report of all nodes and the exit status is 1 if
+     * any node fails, the step only fails when failing fast.
+     */
+    private void executeInAllNodes(String remotely, String commandOrLocalPath, String remotePath, String nodes, String user, String pem, NodeFanOut.Policy policy) throws Exception {
+        List<String> aNodes = Arrays.stream(obtainNodes(nodes)).map(String::trim).filter(node -> !node.isEmpty()).collect(Collectors.toList());
+        int parallelism = Integer.parseInt(System.getProperty("NODES_PARALLELISM", "10"));
+        NodeFanOut.Report report;
 
         if (remotely != null) {
-            commonspec.getLogger().debug("Uploading script file:" + finalFile);
-            copyToRemoteFile(finalFile, baseFolder);
+            NodeFanOut fanOut = new NodeFanOut(Math.min(parallelism, MAX_REMOTE_CHANNELS), policy);
+            // nodes are only reachable from the remote host
+            String pemFile = "/tmp/key" + new Date().getTime() + ".pem";
+            RemoteSSHConnection remoteConnection = commonspec.getRemoteSSHConnection();
             copyToRemoteFile(pem, pemFile);
-        }
-
-        //Now launch it
-        commonspec.getLogger().debug("Giving permissions:" + finalFile);
-        if (remotely != null) {
-            commonspec.getRemoteSSHConnection().runCommand("chmod +x " + finalFile);
-            commonspec.getRemoteSSHConnection().runCommand("chmod 400 " + pemFile);
-        } else {
-            commonspec.runLocalCommand("chmod +x " + finalFile);
-        }
-
-        commonspec.getLogger().debug("Executing script file:" + finalFile);
-        if (remotely != null) {
-            commonspec.runCommandAndGetResult(finalFile);
+            remoteConnection.runCommand("chmod 400 " + pemFile);
+            try {
+                report = fanOut.run(aNodes, node -> remoteConnection.execute(remotePath != null
+                        ? constructSshCopyFileCmd(commandOrLocalPath, remotePath, user, pemFile, node)
+                        : constructSshCmd(commandOrLocalPath, user, pemFile, node), 0, TimeUnit.SECONDS));
+            } finally {
+                remoteConnection.runCommand("rm -Rf " + pemFile);
+            }
         } else {
-            commonspec.runLocalCommand(finalFile);
+            report = new NodeFanOut(parallelism, policy).run(aNodes, node -> {
+                RemoteSSHConnection connection = RemoteSSHConnection.pooled(user, null, node, null, pem);
+                if (remotePath != null) {
+                    connection.copyTo(commandOrLocalPath, remotePath);
+                    return new RemoteSSHConnection.CommandResult("", "", 0);
+                }
+                return connection.execute(commandOrLocalPath, 0, TimeUnit.SECONDS);
+            });
         }
 
-        //Delete file
-        commonspec.runLocalCommand("rm -Rf " + finalFile);
-        if (remotely != null) {
-            commonspec.getRemoteSSHConnection().runCommand("rm -Rf " + finalFile);
-            commonspec.getRemoteSSHConnection().runCommand("rm -Rf " + pemFile);
+        commonspec.getLogger().debug("Execution in nodes:\n" + report);
+        commonspec.setCommandResult(report.toString());
+        commonspec.setCommandExitStatus(report.isSuccessful() ? 0 : 1);
+        if (policy == NodeFanOut.Policy.FAIL_FAST) {
+            assertThat(report.isSuccessful()).as("Execution in nodes:\n" + report).isTrue();
         }
     }
 
@@ -481,20 +446,20 @@ public class CommandExecutionSpec extends BaseGSpec {
         return splitted;
     }
 
-    private String constructSshParallelCmd(String command, String user, String pem, String node) {
+    private String constructSshCmd(String command, String user, String pem, String node) {
         return "ssh -o StrictHostKeyChecking=no -o " +
                 "UserKnownHostsFile=/dev/null " +
                 "-i " + pem + " " +
                 user + "@" + node + " '" +
-                command + "' &\n";
+                command + "'";
     }
 
-    private String constructSshParallelCopyFileCmd(String localPath, String remotePath, String user, String pem, String node) {
+    private String constructSshCopyFileCmd(String localPath, String remotePath, String user, String pem, String node) {
         return "scp -o StrictHostKeyChecking=no -o " +
                 "UserKnownHostsFile=/dev/null " +
                 "-rp -i " + pem + " " + localPath + " " +
                 user + "@" + node + ":" +
-                remotePath + " &\n";
+                remotePath;
     }
 
     /**
@@ -515,7 +480,7 @@ public class CommandExecutionSpec extends BaseGSpec {
      **/
     @Then("^I close SSH connection with id '(.+?)'$")
     public void closeSSHConnection(String sshConnectionId) throws Exception {
-        RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().get(sshConnectionId).getSession().disconnect();
+        RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().get(sshConnectionId).closeConnection();
         RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().remove(sshConnectionId);
     }
 
@@ -535,7 +500,7 @@ public class CommandExecutionSpec extends BaseGSpec {
     public void openSshTunnelTo(String host, String user, String pemFilePath, String tunnelHostIp, String tunnelHostPort, String tunnelLocalPort, String sshConnectionId) throws Exception {
         String sshConnectionIdAux = sshConnectionId != null ? sshConnectionId : host + "_" + user + "_tunnel";
         if (RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().get(sshConnectionId) != null) {
-            RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().get(sshConnectionId).getSession().disconnect();
+            RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().get(sshConnectionId).closeConnection();
         }
         commonspec.setRemoteSSHConnection(new RemoteSSHConnection(user, null, host, null, pemFilePath), sshConnectionIdAux);
         commonspec.getRemoteSSHConnection().openSshTunnel(host, user, pemFilePath, tunnelHostIp, tunnelHostPort, tunnelLocalPort);
@@ -76,17 +76,15 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static com.stratio.qa.assertions.Assertions.assertThat;
 import static org.testng.Assert.fail;
 
-import java.text.ParseException;
-import java.util.Date;
 
 import org.everit.json.schema.loader.SchemaLoader;
 import org.testng.Assert;
@@ -97,6 +95,8 @@ public class CommonG {
 
     private static final int DEFAULT_SLEEP_TIME = 1500;
 
+    private static final List<String> JSON_TYPES = Arrays.asList("array", "object", "string", "number", "long", "boolean", "null");
+
     private final Logger logger = LoggerFactory.getLogger(ThreadProperty.get("class"));
 
     private RemoteWebDriver driver = null;
@@ -683,6 +683,10 @@ public class CommonG {
         return response;
     }
 
+    public void setResponse(HttpResponse response) {
+        this.response = response;
+    }
+
     public void setResponse(String endpoint, Response response) throws IOException {
         Integer statusCode = response.getStatusCode();
         String httpResponse = response.getResponseBody();
@@ -690,6 +694,40 @@ public class CommonG {
         this.response = new HttpResponse(statusCode, httpResponse, cookies);
     }
 
+    /**
+     * Sends a request until its response contains, or stops containing, the expected value. Every response is saved.
+     *
+     * @param timeout             maximum time, in seconds
+     * @param wait                time between requests, in seconds
+     * @param requestType         type of request, used to save the response
+     * @param request             sends the request
+     * @param searchUntilContains true to wait until the response contains the value, false to wait until it does not
+     * @param responseVal         expected value, it can be a regular expression when searching until it is contained
+     * @throws Exception the last assertion or request error if the response is not the expected one in time
+     */
+    public void checkResponseWithPolling(Integer timeout, Integer wait, String requestType, Waiter.AsyncProbe<Response> request,
+                                         boolean searchUntilContains, String responseVal) throws Exception {
+        Pattern pattern = matchesOrContains(responseVal);
+        Waiter.Outcome<Response> outcome = Waiter.atMost(timeout, TimeUnit.SECONDS).pollEvery(wait, TimeUnit.SECONDS)
+                .ignoring(AssertionError.class, Exception.class)
+                .onRetry((attempt, elapsed, error) -> getLogger().info("Response value " + (searchUntilContains ? "not found" : "found")
+                        + " after " + TimeUnit.NANOSECONDS.toSeconds(elapsed) + " seconds"))
+                .untilAsync(request, response -> {
+                    getLogger().debug("Saving response");
+                    setResponse(requestType, response);
+                    getLogger().debug("Checking response value");
+                    if (searchUntilContains) {
+                        assertThat(getResponse().getResponse()).containsPattern(pattern);
+                    } else {
+                        assertThat(getResponse().getResponse()).doesNotContain(responseVal);
+                    }
+                    return true;
+                });
+        outcome.getOrThrow();
+        getLogger().info("Success! Response value " + (searchUntilContains ? "found" : "not found") + " after "
+                + outcome.getElapsed(TimeUnit.SECONDS) + " seconds");
+    }
+
     /**
      * Returns the information contained in file passed as parameter
      *
@@ -698,42 +736,11 @@ public class CommonG {
      * @return String
      */
     public String retrieveData(String baseData, String type) {
-        String result;
-
-        InputStream stream = getClass().getClassLoader().getResourceAsStream(baseData);
-
-        Writer writer = new StringWriter();
-        char[] buffer = new char[1024];
-        Reader reader;
-
-        if (stream == null) {
+        String result = ResourceCache.getInstance().get(baseData, type);
+        if (result == null) {
             this.getLogger().error("File does not exist: {}", baseData);
             return "ERR! File not found: " + baseData;
         }
-
-        try {
-            reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
-            int n;
-            while ((n = reader.read(buffer)) != -1) {
-                writer.write(buffer, 0, n);
-            }
-        } catch (Exception readerexception) {
-            this.getLogger().error(readerexception.getMessage());
-        } finally {
-            try {
-                stream.close();
-            } catch (Exception closeException) {
-                this.getLogger().error(closeException.getMessage());
-            }
-        }
-        String text = writer.toString();
-
-        if ("json".equals(type) || "scim".equals(type)) {
-            String std = text.replace("\r", "").replace("\n", ""); // make sure we have unix style text regardless of the input
-            result = JsonValue.readHjson(std).asObject().toString();
-        } else {
-            result = text;
-        }
         return result;
     }
 
@@ -828,259 +835,182 @@ public class CommonG {
      * @throws Exception
      */
     public String modifyData(String data, String type, DataTable modifications) throws Exception {
+        if ("json".equals(type) || "gov".equals(type) || "scim".equals(type)) {
+            return modifyJsonData(data, modifications);
+        }
+
         String modifiedData = data;
-        String typeJsonObject = "";
-        String nullValue = "";
+        for (int i = 0; i < modifications.cells().size(); i++) {
+            String value = modifications.cells().get(i).get(0);
+            String operation = modifications.cells().get(i).get(1);
+            String newValue = modifications.cells().get(i).get(2);
+
+            switch (operation.toUpperCase()) {
+                case "DELETE":
+                    modifiedData = modifiedData.replace(value, "");
+                    break;
+                case "ADD":
+                case "APPEND":
+                    modifiedData = modifiedData + newValue;
+                    break;
+                case "UPDATE":
+                case "REPLACE":
+                    modifiedData = modifiedData.replace(value, newValue);
+                    break;
+                case "PREPEND":
+                    modifiedData = newValue + modifiedData;
+                    break;
+                case "HEADER":
+                    this.headers.put(value, newValue);
+                    break;
+                default:
+                    throw new Exception("Modification type does not exist: " + operation);
+            }
+        }
+        return modifiedData;
+    }
 
-        JSONArray jArray;
-        JSONObject jObject;
-        Double jNumber;
-        Long jLong;
-        Boolean jBoolean;
-        boolean array = false;
+    /**
+     * Applies the modifications over the json parsed only once, and serialises it once all of them are applied
+     *
+     * @param data          json (or Hjson) to be modified
+     * @param modifications modifications, as in {@link #modifyData(String, String, DataTable)}
+     * @return String
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    private String modifyJsonData(String data, DataTable modifications) throws Exception {
+        List<List<String>> rows = modifications.cells();
+        if (rows.isEmpty()) {
+            return data;
+        }
 
-        if ("json".equals(type) || "gov".equals(type) || "scim".equals(type)) {
-            LinkedHashMap jsonAsMap = new LinkedHashMap();
-            for (int i = 0; i < modifications.cells().size(); i++) {
-                String composeKey = modifications.cells().get(i).get(0);
-                String operation = modifications.cells().get(i).get(1);
-                String newValue = modifications.cells().get(i).get(2);
-
-                if (modifications.cells().get(0).size() == 4) {
-                    typeJsonObject = modifications.cells().get(i).get(3);
-                }
+        // arrays are wrapped in an object, keys are relative to it
+        boolean array = data.startsWith("[") && data.endsWith("]");
+        Map<String, Object> root;
+        if (array) {
+            root = new LinkedHashMap<>();
+            root.put("content", Configuration.defaultConfiguration().jsonProvider().parse(data));
+        } else {
+            root = (Map<String, Object>) Configuration.defaultConfiguration().jsonProvider().parse(JsonValue.readHjson(data).asObject().toString());
+        }
+        removeNulls(root);
+        DocumentContext document = JsonPath.parse(root);
 
-                if (modifiedData.startsWith("[") && modifiedData.endsWith("]")) {
-                    modifiedData = "{\"content\":" + modifiedData + "}";
-                    array = true;
-                } else {
-                    JsonObject object = new JsonObject(JsonValue.readHjson(modifiedData).asObject());
-                    removeNulls(object);
-                    modifiedData = JsonValue.readHjson(object.toString()).toString();
-                }
+        String typeJsonObject = "";
+        for (List<String> row : rows) {
+            String composeKey = row.get(0);
+            String operation = row.get(1);
+            String newValue = row.get(2);
 
-                switch (operation.toUpperCase()) {
-                    case "DELETE":
-                        if (array) {
-                            composeKey = "$.content" + composeKey.substring(1);
-                        }
-                        jsonAsMap = JsonPath.parse(modifiedData).delete(composeKey).json();
-                        break;
-                    case "ADD":
-                        if (array) {
-                            composeKey = "$.content" + composeKey.substring(1);
-                        }
-                        // Get the last key
-                        String newKey;
-                        String newComposeKey;
-                        if (composeKey.contains(".")) {
-                            newKey = composeKey.substring(composeKey.lastIndexOf('.') + 1);
-                            newComposeKey = composeKey.substring(0, composeKey.lastIndexOf('.'));
-                        } else {
-                            newKey = composeKey;
-                            newComposeKey = "$";
-                        }
+            if (rows.get(0).size() == 4) {
+                typeJsonObject = row.get(3);
+            }
+            if (array) {
+                composeKey = "$.content" + composeKey.substring(1);
+            }
 
-                        if ("array".equals(typeJsonObject)) {
-                            jArray = new JSONArray();
-                            if (!"[]".equals(newValue)) {
-                                jArray = new JSONArray(newValue);
-                            }
-                            jsonAsMap = JsonPath.parse(modifiedData).put(newComposeKey, newKey, jArray).json();
-                            break;
-                        } else if ("object".equals(typeJsonObject)) {
-                            jObject = new JSONObject();
-                            if (!"{}".equals(newValue)) {
-                                jObject = new JSONObject(newValue);
-                            }
-                            jsonAsMap = JsonPath.parse(modifiedData).put(newComposeKey, newKey, jObject).json();
-                            break;
-                        } else if ("string".equals(typeJsonObject)) {
-                            jsonAsMap = JsonPath.parse(modifiedData).put(newComposeKey, newKey, newValue).json();
-                            break;
-                        } else if ("number".equals(typeJsonObject)) {
-                            jNumber = new Double(newValue);
-                            jsonAsMap = JsonPath.parse(modifiedData).put(newComposeKey, newKey, jNumber).json();
-                            break;
-                        } else if ("long".equals(typeJsonObject)) {
-                            jLong = new Long(newValue);
-                            jsonAsMap = JsonPath.parse(modifiedData).set(composeKey, jLong).json();
-                            break;
-                        } else if ("boolean".equals(typeJsonObject)) {
-                            jBoolean = new Boolean(newValue);
-                            jsonAsMap = JsonPath.parse(modifiedData).put(newComposeKey, newKey, jBoolean).json();
-                            break;
-                        } else if ("null".equals(typeJsonObject)) {
-                            nullValue = JsonPath.parse(modifiedData).put(newComposeKey, newKey, null).jsonString();
-                            break;
-                        } else {
-                            String replaceValue = JsonPath.parse(modifiedData).read(composeKey);
-                            String toBeReplaced = newValue.split("->")[0];
-                            String replacement = newValue.split("->")[1];
-                            newValue = replaceValue.replace(toBeReplaced, replacement);
-                            jsonAsMap = JsonPath.parse(modifiedData).put(newComposeKey, newKey, newValue).json();
-                            break;
-                        }
-//                        jsonAsMap = JsonPath.parse(modifiedData).put(newComposeKey, newKey, newValue).json();
-//                        break;
-                    case "UPDATE":
-                        if (array) {
-                            composeKey = "$.content" + composeKey.substring(1);
-                        }
-                        jsonAsMap = JsonPath.parse(modifiedData).set(composeKey, newValue).json();
-                        break;
-                    case "APPEND":
-                        if (array) {
-                            composeKey = "$.content" + composeKey.substring(1);
-                        }
-                        String appendValue = JsonPath.parse(modifiedData).read(composeKey);
-                        jsonAsMap = JsonPath.parse(modifiedData).set(composeKey, appendValue + newValue).json();
-                        break;
-                    case "PREPEND":
-                        if (array) {
-                            composeKey = "$.content" + composeKey.substring(1);
-                        }
-                        String prependValue = JsonPath.parse(modifiedData).read(composeKey);
-                        jsonAsMap = JsonPath.parse(modifiedData).set(composeKey, newValue + prependValue).json();
-                        break;
-                    case "REPLACE":
-                        if (array) {
-                            composeKey = "$.content" + composeKey.substring(1);
-                        }
-                        if ("array".equals(typeJsonObject)) {
-                            jArray = new JSONArray();
-                            if (!"[]".equals(newValue)) {
-                                jArray = new JSONArray(newValue);
-                            }
-                            jsonAsMap = JsonPath.parse(modifiedData).set(composeKey, jArray).json();
-                            break;
-                        } else if ("object".equals(typeJsonObject)) {
-                            jObject = new JSONObject();
-                            if (!"{}".equals(newValue)) {
-                                jObject = new JSONObject(newValue);
-                            }
-                            jsonAsMap = JsonPath.parse(modifiedData).set(composeKey, jObject).json();
-                            break;
-                        } else if ("string".equals(typeJsonObject)) {
-                            jsonAsMap = JsonPath.parse(modifiedData).set(composeKey, newValue).json();
-                            break;
-                        } else if ("number".equals(typeJsonObject)) {
-                            jNumber = new Double(newValue);
-                            jsonAsMap = JsonPath.parse(modifiedData).set(composeKey, jNumber).json();
-                            break;
-                        } else if ("long".equals(typeJsonObject)) {
-                            jLong = new Long(newValue);
-                            jsonAsMap = JsonPath.parse(modifiedData).set(composeKey, jLong).json();
-                            break;
-                        } else if ("boolean".equals(typeJsonObject)) {
-                            jBoolean = new Boolean(newValue);
-                            jsonAsMap = JsonPath.parse(modifiedData).set(composeKey, jBoolean).json();
-                            break;
-                        } else if ("null".equals(typeJsonObject)) {
-                            nullValue = JsonPath.parse(modifiedData).set(composeKey, null).jsonString();
-                            break;
-                        } else {
-                            String replaceValue = JsonPath.parse(modifiedData).read(composeKey);
-                            String toBeReplaced = newValue.split("->")[0];
-                            String replacement = newValue.split("->")[1];
-                            newValue = replaceValue.replace(toBeReplaced, replacement);
-                            jsonAsMap = JsonPath.parse(modifiedData).set(composeKey, newValue).json();
-                            break;
-                        }
-                    case "ADDTO":
-                        if (array) {
-                            composeKey = "$.content" + composeKey.substring(1);
-                        }
-                        if ("array".equals(typeJsonObject)) {
-                            jArray = new JSONArray();
-                            if (!"[]".equals(newValue)) {
-                                jArray = new JSONArray(newValue);
-                            }
-                            jsonAsMap = JsonPath.parse(modifiedData).add(composeKey, jArray).json();
-                            break;
-                        } else if ("object".equals(typeJsonObject)) {
-                            jObject = new JSONObject();
-                            if (!"{}".equals(newValue)) {
-                                jObject = new JSONObject(newValue);
-                            }
-                            jsonAsMap = JsonPath.parse(modifiedData).add(composeKey, jObject).json();
-                            break;
-                        } else if ("string".equals(typeJsonObject)) {
-                            jsonAsMap = JsonPath.parse(modifiedData).add(composeKey, newValue).json();
-                            break;
-                        } else if ("number".equals(typeJsonObject)) {
-                            jNumber = new Double(newValue);
-                            jsonAsMap = JsonPath.parse(modifiedData).add(composeKey, jNumber).json();
-                            break;
-                        } else if ("long".equals(typeJsonObject)) {
-                            jLong = new Long(newValue);
-                            jsonAsMap = JsonPath.parse(modifiedData).set(composeKey, jLong).json();
-                            break;
-                        } else if ("boolean".equals(typeJsonObject)) {
-                            jBoolean = new Boolean(newValue);
-                            jsonAsMap = JsonPath.parse(modifiedData).add(composeKey, jBoolean).json();
-                            break;
-                        } else if ("null".equals(typeJsonObject)) {
-                            nullValue = JsonPath.parse(modifiedData).add(composeKey, null).jsonString();
-                            break;
-                        } else {
-                            // TO-DO: understand  newValue.split("->")[0];  and  newValue.split("->")[1];
-                            break;
-                        }
-                    case "HEADER":
-                        if (array) {
-                            composeKey = "$.content" + composeKey.substring(1);
-                        }
-                        this.headers.put(composeKey, newValue);
-                        jsonAsMap = JsonPath.parse(modifiedData).json();
-                        break;
-                    default:
-                        throw new Exception("Modification type does not exist: " + operation);
-                }
+            switch (operation.toUpperCase()) {
+                case "DELETE":
+                    document.delete(JsonPath.compile(composeKey));
+                    break;
+                case "ADD":
+                    // Get the last key
+                    String newKey;
+                    String newComposeKey;
+                    if (composeKey.contains(".")) {
+                        newKey = composeKey.substring(composeKey.lastIndexOf('.') + 1);
+                        newComposeKey = composeKey.substring(0, composeKey.lastIndexOf('.'));
+                    } else {
+                        newKey = composeKey;
+                        newComposeKey = "$";
+                    }
 
-                modifiedData = new JSONObject(jsonAsMap).toString();
-                if (!"".equals(nullValue)) {
-                    modifiedData = nullValue;
-                }
-                modifiedData = modifiedData.replaceAll("\"TO_BE_NULL\"", "null");
-            }
-        } else {
-            for (int i = 0; i < modifications.cells().size(); i++) {
-                String value = modifications.cells().get(i).get(0);
-                String operation = modifications.cells().get(i).get(1);
-                String newValue = modifications.cells().get(i).get(2);
-
-                switch (operation.toUpperCase()) {
-                    case "DELETE":
-                        modifiedData = modifiedData.replace(value, "");
-                        break;
-                    case "ADD":
-                    case "APPEND":
-                        modifiedData = modifiedData + newValue;
-                        break;
-                    case "UPDATE":
-                    case "REPLACE":
-                        modifiedData = modifiedData.replace(value, newValue);
-                        break;
-                    case "PREPEND":
-                        modifiedData = newValue + modifiedData;
-                        break;
-                    case "HEADER":
-                        this.headers.put(value, newValue);
-                        break;
-                    default:
-                        throw new Exception("Modification type does not exist: " + operation);
-                }
+                    if ("long".equals(typeJsonObject)) {
+                        document.set(JsonPath.compile(composeKey), Long.valueOf(newValue));
+                    } else if (JSON_TYPES.contains(typeJsonObject)) {
+                        document.put(JsonPath.compile(newComposeKey), newKey, toJsonValue(newValue, typeJsonObject));
+                    } else {
+                        document.put(JsonPath.compile(newComposeKey), newKey, replaceValue(document, JsonPath.compile(composeKey), newValue));
+                    }
+                    break;
+                case "UPDATE":
+                    document.set(JsonPath.compile(composeKey), newValue);
+                    break;
+                case "APPEND":
+                    JsonPath appendPath = JsonPath.compile(composeKey);
+                    String appendValue = document.read(appendPath);
+                    document.set(appendPath, appendValue + newValue);
+                    break;
+                case "PREPEND":
+                    JsonPath prependPath = JsonPath.compile(composeKey);
+                    String prependValue = document.read(prependPath);
+                    document.set(prependPath, newValue + prependValue);
+                    break;
+                case "REPLACE":
+                    JsonPath replacePath = JsonPath.compile(composeKey);
+                    if (JSON_TYPES.contains(typeJsonObject)) {
+                        document.set(replacePath, toJsonValue(newValue, typeJsonObject));
+                    } else {
+                        document.set(replacePath, replaceValue(document, replacePath, newValue));
+                    }
+                    break;
+                case "ADDTO":
+                    if ("long".equals(typeJsonObject)) {
+                        document.set(JsonPath.compile(composeKey), Long.valueOf(newValue));
+                    } else if (JSON_TYPES.contains(typeJsonObject)) {
+                        document.add(JsonPath.compile(composeKey), toJsonValue(newValue, typeJsonObject));
+                    }
+                    // TO-DO: understand  newValue.split("->")[0];  and  newValue.split("->")[1];
+                    break;
+                case "HEADER":
+                    this.headers.put(composeKey, newValue);
+                    break;
+                default:
+                    throw new Exception("Modification type does not exist: " + operation);
             }
         }
 
+        // org.json discards keys with null value
+        removeNulls(root);
+        String modifiedData = new JSONObject(root).toString().replaceAll("\"TO_BE_NULL\"", "null");
         if (array) {
             modifiedData = modifiedData.substring(11, modifiedData.length() - 1);
         }
-
         return modifiedData;
     }
 
+    /**
+     * @return value of the given json type (array|object|string|number|long|boolean|null)
+     */
+    private static Object toJsonValue(String value, String jsonType) {
+        switch (jsonType) {
+            case "array":
+                return new JSONArray(value).toList();
+            case "object":
+                return new JSONObject(value).toMap();
+            case "number":
+                return Double.valueOf(value);
+            case "long":
+                return Long.valueOf(value);
+            case "boolean":
+                return Boolean.valueOf(value);
+            case "null":
+                return null;
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * @param replacement CHANGE FROM -> TO
+     * @return current value in path with the replacement applied
+     */
+    private static String replaceValue(DocumentContext document, JsonPath path, String replacement) {
+        String value = document.read(path);
+        return value.replace(replacement.split("->")[0], replacement.split("->")[1]);
+    }
+
     /**
      * Eliminates null occurrences, replacing them with "TO_BE_NULL"
      *
@@ -1100,6 +1030,22 @@ public class CommonG {
         return object;
     }
 
+    /**
+     * Eliminates null occurrences in a parsed json, replacing them with "TO_BE_NULL" as {@link #removeNulls(JsonObject)}
+     *
+     * @param object json where to replace null ocurrences
+     */
+    @SuppressWarnings("unchecked")
+    private void removeNulls(Map<String, Object> object) {
+        for (Map.Entry<String, Object> entry : object.entrySet()) {
+            if (entry.getValue() instanceof Map) {
+                removeNulls((Map<String, Object>) entry.getValue());
+            } else if (entry.getValue() == null) {
+                entry.setValue("TO_BE_NULL");
+            }
+        }
+    }
+
     /**
      * Generates the request based on the type of request, the end point, the data and type passed
      *
@@ -1559,95 +1505,28 @@ public class CommonG {
      */
     public void resultsMustBeCSV(DataTable expectedResults) throws Exception {
         if (getCSVResults() != null) {
-            //Map for cucumber expected results
-            List<Map<String, String>> resultsListExpected = new ArrayList<Map<String, String>>();
-            Map<String, String> resultsCucumber;
-
-            for (int e = 1; e < expectedResults.cells().size(); e++) {
-                resultsCucumber = new HashMap<String, String>();
-
-                for (int i = 0; i < expectedResults.cells().get(0).size(); i++) {
-                    resultsCucumber.put(expectedResults.cells().get(0).get(i), expectedResults.cells().get(e).get(i));
-
-                }
-                resultsListExpected.add(resultsCucumber);
-            }
-            getLogger().debug("Expected Results: " + resultsListExpected.toString());
+            ResultsTable expected = ResultsTable.of(expectedResults);
+            getLogger().debug("Expected Results: {}", expected);
 
             getLogger().debug("Obtained Results: " + getCSVResults().toString());
 
             //First, we check that the number of rows are equals
-            assertThat(resultsListExpected.size()).overridingErrorMessage("The number of rows of expected result is %s but the csv file contains %s", resultsListExpected.size(), getCSVResults().size()).isEqualTo(getCSVResults().size());
-            //Then we check the CSV content
-            for (int i = 0; i < resultsListExpected.size(); i++) {
-                Map<String, String> expectedRow = resultsListExpected.get(i);
+            assertThat(expected.size()).overridingErrorMessage("The number of rows of expected result is %s but the csv file contains %s", expected.size(), getCSVResults().size()).isEqualTo(getCSVResults().size());
+            //Then we check the headers of every row
+            Set<String> headers = new HashSet<>(expected.getColumns());
+            for (int i = 0; i < getCSVResults().size(); i++) {
                 Map<String, String> obtainedRow = getCSVResults().get(i);
-                //First we check the number of columns
-                assertThat(expectedRow.size()).overridingErrorMessage("The number columns of row %s has to be %s but was %s", i, expectedRow.size(), obtainedRow.size()).isEqualTo(obtainedRow.size());
-                //Check the headers values
-                assertThat(expectedRow.keySet()).overridingErrorMessage("The headers do not match").isEqualTo(obtainedRow.keySet());
-                //Now, we are going to check the values
-                Set<String> keys = expectedRow.keySet();
-                for (String key : keys) {
-                    if (expectedRow.get(key).contains("regex") || expectedRow.get(key).contains("not_check") || expectedRow.get(key).contains("not_empty")) {
-                        if (expectedRow.get(key).contains("regex-timestamp")) {
-                            String[] format = expectedRow.get(key).split("_");
-                            assertThat(true).overridingErrorMessage("The values of key %s and %s line are not a valid timestamp", expectedRow.get(key), i).isEqualTo(isThisDateValid(obtainedRow.get(key), format[1]));
-                        }
-                        if (expectedRow.get(key).contains("regex-uuid")) {
-                            assertThat(true).overridingErrorMessage("The values of key %s and %s line are not an UIDD", expectedRow.get(key), i).isEqualTo(isUUID(obtainedRow.get(key)));
-                        }
-                        if (expectedRow.get(key).contains("not_empty")) {
-                            assertThat(false).overridingErrorMessage("The values of key %s and %s line are empty", expectedRow.get(key), i).isEqualTo(obtainedRow.get(key).isEmpty());
-                        }
-                    } else {
-                        assertThat(expectedRow.get(key)).overridingErrorMessage("The values of key %s and %s line are not equals", expectedRow.get(key), i).isEqualTo(obtainedRow.get(key));
-                    }
-                }
+                assertThat(headers.size()).overridingErrorMessage("The number columns of row %s has to be %s but was %s", i, headers.size(), obtainedRow.size()).isEqualTo(obtainedRow.size());
+                assertThat(headers).overridingErrorMessage("The headers do not match").isEqualTo(obtainedRow.keySet());
             }
+            //Now, we are going to check the values
+            List<String> mismatches = expected.rowMismatches(ResultsTable.of(headers, getCSVResults(), Map::get), true);
+            assertThat(mismatches).overridingErrorMessage("%s", ResultsTable.describe(mismatches)).isEmpty();
         } else {
             throw new Exception("You must execute a query before trying to get results");
         }
     }
 
-    /**
-     * Check if a string is a UUID
-     *
-     * @param uuid - UUID value
-     * @return true if it is a UUID or false if it is not an UUID
-     */
-    private boolean isUUID(String uuid) {
-        try {
-            UUID.fromString(uuid);
-            return true;
-        } catch (Exception ex) {
-            return false;
-        }
-    }
-
-    /**
-     * Check is a String is a valid timestamp format
-     *
-     * @param dateToValidate
-     * @param dateFromat
-     * @return true/false
-     */
-    private boolean isThisDateValid(String dateToValidate, String dateFromat) {
-        if (dateToValidate == null) {
-            return false;
-        }
-        SimpleDateFormat sdf = new SimpleDateFormat(dateFromat);
-        sdf.setLenient(false);
-        try {
-            //if not valid, it will throw ParseException
-            Date date = sdf.parse(dateToValidate);
-        } catch (ParseException e) {
-            e.printStackTrace();
-            return false;
-        }
-        return true;
-    }
-
     /**
      * Checks the different results of a previous query to Cassandra database
      *
@@ -1665,73 +1544,19 @@ public class CommonG {
      */
     public void resultsMustBeCassandra(DataTable expectedResults) throws Exception {
         if (getCassandraResults() != null) {
-            //Map for query results
             ColumnDefinitions columns = getCassandraResults().getColumnDefinitions();
-            List<Row> rows = getCassandraResults().all();
-
-            List<Map<String, Object>> resultsListObtained = new ArrayList<Map<String, Object>>();
-            Map<String, Object> results;
-
-            for (int i = 0; i < rows.size(); i++) {
-                results = new HashMap<String, Object>();
-                for (int e = 0; e < columns.size(); e++) {
-                    results.put(columns.getName(e), rows.get(i).getObject(e));
-
-                }
-                resultsListObtained.add(results);
-
-            }
-            getLogger().debug("Results: " + resultsListObtained.toString());
-            //Map for cucumber expected results
-            List<Map<String, Object>> resultsListExpected = new ArrayList<Map<String, Object>>();
-            Map<String, Object> resultsCucumber;
-
-            for (int e = 1; e < expectedResults.cells().size(); e++) {
-                resultsCucumber = new HashMap<String, Object>();
-
-                for (int i = 0; i < expectedResults.cells().get(0).size(); i++) {
-                    resultsCucumber.put(expectedResults.cells().get(0).get(i), expectedResults.cells().get(e).get(i));
-
-                }
-                resultsListExpected.add(resultsCucumber);
-            }
-            getLogger().debug("Expected Results: " + resultsListExpected.toString());
-
-            //Comparisons
-            int occurrencesObtained = 0;
-            int iterations = 0;
-            int occurrencesExpected = 0;
-            String nextKey;
-            for (int e = 0; e < resultsListExpected.size(); e++) {
-                iterations = 0;
-                occurrencesObtained = 0;
-                occurrencesExpected = Integer.parseInt(resultsListExpected.get(e).get("occurrences").toString());
-
-                for (int i = 0; i < resultsListObtained.size(); i++) {
-
-                    Iterator<String> it = resultsListExpected.get(0).keySet().iterator();
-
-                    while (it.hasNext()) {
-                        nextKey = it.next();
-                        if (!nextKey.equals("occurrences")) {
-                            if (resultsListObtained.get(i).get(nextKey).toString().equals(resultsListExpected.get(e).get(nextKey).toString())) {
-                                iterations++;
-                            }
-
-                        }
-
-                        if (iterations == resultsListExpected.get(0).keySet().size() - 1) {
-                            occurrencesObtained++;
-                            iterations = 0;
-                        }
-                    }
-
-                    iterations = 0;
-                }
-                assertThat(occurrencesExpected).overridingErrorMessage("In row " + e + " have been found "
-                        + occurrencesObtained + " results and " + occurrencesExpected + " were expected").isEqualTo(occurrencesObtained);
-
+            Map<String, Integer> indexes = new HashMap<>();
+            for (int e = 0; e < columns.size(); e++) {
+                indexes.put(columns.getName(e), e);
             }
+            ResultsTable expected = ResultsTable.of(expectedResults);
+            ResultsTable obtained = ResultsTable.of(expected.getColumns(), getCassandraResults().all(),
+                    (row, column) -> indexes.containsKey(column) ? row.getObject(indexes.get(column)) : null);
+            getLogger().debug("Results: {}", obtained);
+            getLogger().debug("Expected Results: {}", expected);
+
+            List<String> mismatches = expected.occurrenceMismatches(obtained);
+            assertThat(mismatches).overridingErrorMessage("%s", ResultsTable.describe(mismatches)).isEmpty();
         } else {
             throw new Exception("You must execute a query before trying to get results");
         }
@@ -1755,70 +1580,18 @@ public class CommonG {
      */
     public void resultsMustBeMongo(DataTable expectedResults) throws Exception {
         if (getMongoResults() != null) {
-            //Map for cucumber expected results
-            List<Map<String, Object>> resultsListExpected = new ArrayList<Map<String, Object>>();
-            Map<String, Object> resultsCucumber;
-
-            for (int e = 1; e < expectedResults.cells().size(); e++) {
-                resultsCucumber = new HashMap<String, Object>();
-
-                for (int i = 0; i < expectedResults.cells().get(0).size(); i++) {
-                    resultsCucumber.put(expectedResults.cells().get(0).get(i), expectedResults.cells().get(e).get(i));
-
-                }
-                resultsListExpected.add(resultsCucumber);
-            }
-            getLogger().debug("Expected Results: " + resultsListExpected.toString());
-
-            //Comparisons
-            int occurrencesObtained = 0;
-            int iterations = 0;
-            int occurrencesExpected = 0;
-            String nextKey;
-            for (int e = 0; e < resultsListExpected.size(); e++) {
-                iterations = 0;
-                occurrencesObtained = 0;
-                occurrencesExpected = Integer.parseInt(resultsListExpected.get(e).get("occurrences").toString());
-
-                String resultsListObtained = "[";
-                DBCursor cursor = getMongoResults();
-                while (cursor.hasNext()) {
-
-                    DBObject row = cursor.next();
-
-                    resultsListObtained = resultsListObtained + row.toString();
-                    if (cursor.hasNext()) {
-                        resultsListObtained = ", " + resultsListObtained;
-                    }
-
-                    Iterator<String> it = resultsListExpected.get(0).keySet().iterator();
+            ResultsTable expected = ResultsTable.of(expectedResults);
+            getLogger().debug("Expected Results: {}", expected);
 
-                    while (it.hasNext()) {
-                        nextKey = it.next();
-                        if (!nextKey.equals("occurrences")) {
-                            if (row.get(nextKey).toString().equals(resultsListExpected.get(e).get(nextKey).toString())) {
-                                iterations++;
-                            }
-                        }
-
-                        if (iterations == resultsListExpected.get(0).keySet().size() - 1) {
-                            occurrencesObtained++;
-                            iterations = 0;
-                        }
-                    }
-                    iterations = 0;
-                    if (cursor.hasNext()) {
-                        resultsListObtained = resultsListObtained + ",";
-                    }
-                }
-
-                resultsListObtained = resultsListObtained + "]";
-                getLogger().debug("Results: " + resultsListObtained);
-
-                assertThat(occurrencesExpected).overridingErrorMessage("In row " + e + " have been found "
-                        + occurrencesObtained + " results and " + occurrencesExpected + " were expected").isEqualTo(occurrencesObtained);
+            List<DBObject> rows = new ArrayList<>();
+            DBCursor cursor = getMongoResults();
+            while (cursor.hasNext()) {
+                rows.add(cursor.next());
             }
+            getLogger().debug("Results: {}", rows);
 
+            List<String> mismatches = expected.occurrenceMismatches(ResultsTable.of(expected.getColumns(), rows, DBObject::get));
+            assertThat(mismatches).overridingErrorMessage("%s", ResultsTable.describe(mismatches)).isEmpty();
         } else {
             throw new Exception("You must execute a query before trying to get results");
         }
@@ -1841,24 +1614,14 @@ public class CommonG {
      */
     public void resultsMustBeElasticsearch(DataTable expectedResults) throws Exception {
         if (getElasticsearchResults() != null) {
-            List<List<String>> expectedResultList = expectedResults.cells();
+            ResultsTable expected = ResultsTable.of(expectedResults);
             //Check size
-            assertThat(expectedResultList.size() - 1).overridingErrorMessage(
-                    "Expected number of columns to be" + (expectedResultList.size() - 1)
+            assertThat(expected.size()).overridingErrorMessage(
+                    "Expected number of columns to be" + expected.size()
                             + "but was " + previousElasticsearchResults.size())
                     .isEqualTo(previousElasticsearchResults.size());
-            List<String> columnNames = expectedResultList.get(0);
-            for (int i = 0; i < previousElasticsearchResults.size(); i++) {
-                for (int j = 0; j < columnNames.size(); j++) {
-                    assertThat(expectedResultList.get(i + 1).get(j)).overridingErrorMessage("In row " + i + "and "
-                            + "column " + j
-                            + "have "
-                            + "been "
-                            + "found "
-                            + expectedResultList.get(i + 1).get(j) + " results and " + previousElasticsearchResults.get(i).get(columnNames.get(j)).toString() + " were "
-                            + "expected").isEqualTo(previousElasticsearchResults.get(i).get(columnNames.get(j)).toString());
-                }
-            }
+            List<String> mismatches = expected.rowMismatches(ResultsTable.of(expected.getColumns(), previousElasticsearchResults, JSONObject::opt), false);
+            assertThat(mismatches).overridingErrorMessage("%s", ResultsTable.describe(mismatches)).isEmpty();
         } else {
             throw new Exception("You must execute a query before trying to get results");
         }
@@ -1870,37 +1633,35 @@ public class CommonG {
      * @param command command used to be run locally
      */
     public void runLocalCommand(String command) throws Exception {
+        runLocalCommand(command, 0, TimeUnit.SECONDS);
+    }
 
-        String result = "";
-        String line;
-        Process p;
+    /**
+     * Runs a command locally, killing it if it does not finish in time
+     *
+     * @param command command used to be run locally
+     * @param timeout maximum time to wait for the command, 0 to wait indefinitely
+     * @param unit    unit of the timeout
+     * @throws java.util.concurrent.TimeoutException if the command does not finish in time
+     */
+    public void runLocalCommand(String command, long timeout, TimeUnit unit) throws Exception {
+        LocalCommandExecutor.Result result;
         try {
-            p = Runtime.getRuntime().exec(new String[]{"/bin/sh", "-c", command});
-            p.waitFor();
-        } catch (java.io.IOException e) {
+            result = LocalCommandExecutor.getInstance().run(command, timeout, unit);
+        } catch (IOException e) {
             this.commandExitStatus = 1;
             this.commandResult = "Error";
             return;
         }
-
-        BufferedReader input = new BufferedReader(new InputStreamReader(p.getInputStream()));
-        while ((line = input.readLine()) != null) {
-            if (result.isEmpty()) {
-                result += line;
-            } else {
-                result += "\n" + line;
-            }
-        }
-        input.close();
-        this.commandResult = result;
-        this.commandExitStatus = p.exitValue();
-
-        p.destroy();
-
-        if (p.isAlive()) {
-            p.destroyForcibly();
+        String output = result.getOutput();
+        // without the line break ending the output
+        if (output.endsWith("\r\n")) {
+            output = output.substring(0, output.length() - 2);
+        } else if (output.endsWith("\n")) {
+            output = output.substring(0, output.length() - 1);
         }
-
+        this.commandResult = output;
+        this.commandExitStatus = result.getExitStatus();
     }
 
     public int getCommandExitStatus() {
@@ -1969,7 +1730,7 @@ public class CommonG {
                 aux = matcher.group(1);
                 op = matcher.group(2);
             }
-            LinkedHashMap auxData = JsonPath.parse(jsonString).read(aux);
+            LinkedHashMap auxData = parseJson(jsonString).read(aux);
             JSONObject json = new JSONObject(auxData);
             List<String> keys = IteratorUtils.toList(json.keys());
             List<String> stringKeys = new ArrayList<String>();
@@ -1997,8 +1758,7 @@ public class CommonG {
 
             }
         } else {
-            String result = JsonValue.readHjson(jsonString).toString();
-            Object data = JsonPath.parse(result).read(expr);
+            Object data = parseJson(jsonString).read(expr);
             if (position != null) {
                 JSONArray jsonArray = new JSONArray(data.toString());
                 value = jsonArray.get(Integer.parseInt(position)).toString();
@@ -2041,6 +1801,17 @@ public class CommonG {
         return JsonPath.parse(jsonString).set(key, value).jsonString();
     }
 
+    /**
+     * @param jsonString json (or Hjson) to be read
+     * @return parsed json, the one of the last response when it is the same json
+     */
+    private DocumentContext parseJson(String jsonString) {
+        if (response != null && response.getResponse() != null && jsonString.equals(response.getResponse())) {
+            return response.getDocument();
+        }
+        return JsonPath.parse(JsonValue.readHjson(jsonString).toString());
+    }
+
     /**
      * Evaluate an expression.
      * <p>
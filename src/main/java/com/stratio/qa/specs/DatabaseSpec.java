@@ -203,15 +203,16 @@ public class DatabaseSpec extends BaseGSpec {
         try {
             commonspec.getCassandraClient().useKeyspace(keyspace);
             int attrLength = datatable.cells().get(0).size();
-            Map<String, Object> fields = new HashMap<String, Object>();
+            List<Map<String, Object>> rows = new ArrayList<>();
             for (int e = 1; e < datatable.cells().size(); e++) {
+                Map<String, Object> fields = new LinkedHashMap<String, Object>();
                 for (int i = 0; i < attrLength; i++) {
                     fields.put(datatable.cells().get(0).get(i), datatable.cells().get(e).get(i));
 
                 }
-                commonspec.getCassandraClient().insertData(keyspace + "." + table, fields);
-
+                rows.add(fields);
             }
+            commonspec.getCassandraClient().insertRows(keyspace + "." + table, rows);
         } catch (Exception e) {
             commonspec.getLogger().debug("Exception captured");
             commonspec.getLogger().debug(e.toString());
@@ -350,6 +351,19 @@ public class DatabaseSpec extends BaseGSpec {
         commonspec.getMongoDBClient().insertDocIntoMongoDBCollection(collection, retrievedDoc);
     }
 
+    /**
+     * Insert the documents of a file in a MongoDB table.
+     *
+     * @param dataBase   Mongo database
+     * @param collection Mongo collection
+     * @param file       file with a JSON document per line, or a .csv file with name-Type columns
+     */
+    @Given("^I insert into MongoDB database '(.+?)' and collection '(.+?)' the documents from file '(.+?)'$")
+    public void loadIntoMongoTable(String dataBase, String collection, String file) throws Exception {
+        commonspec.getMongoDBClient().connectToMongoDBDataBase(dataBase);
+        commonspec.getMongoDBClient().loadIntoMongoDBCollection(collection, file);
+    }
+
     /**
      * Connect to JDBC secured/not secured database
      *
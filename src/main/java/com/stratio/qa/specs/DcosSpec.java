@@ -19,9 +19,12 @@ package com.stratio.qa.specs;
 import com.auth0.jwt.JWTSigner;
 import com.jayway.jsonpath.JsonPath;
 import com.ning.http.client.Response;
+import com.stratio.qa.utils.DescriptorInfo;
+import com.stratio.qa.utils.DiscoveryCache;
 import com.stratio.qa.utils.GosecSSOUtils;
 import com.stratio.qa.utils.RemoteSSHConnection;
 import com.stratio.qa.utils.RemoteSSHConnectionsUtil;
+import com.stratio.qa.utils.SsoTokenCache;
 import com.stratio.qa.utils.ThreadProperty;
 import com.stratio.qa.utils.vaultansible.VaultAnsible;
 import cucumber.api.java.en.Given;
@@ -53,6 +56,29 @@ import static org.testng.Assert.fail;
  */
 public class DcosSpec extends BaseGSpec {
 
+    /**
+     * Content of a descriptor, with the SSH connection and path it was read from
+     */
+    private static final class Descriptor {
+
+        private final RemoteSSHConnection connection;
+
+        private final String path;
+
+        private final String content;
+
+        private Descriptor(RemoteSSHConnection connection, String path, String content) {
+            this.connection = connection;
+            this.path = path;
+            this.content = content;
+        }
+    }
+
+    /**
+     * Descriptor read in the scenario
+     */
+    private Descriptor descriptor;
+
     private final Logger logger = LoggerFactory.getLogger(DcosSpec.class);
 
     String descriptorPath = "/stratio_volume/descriptor.json";
@@ -107,7 +133,7 @@ public class DcosSpec extends BaseGSpec {
      * @throws Exception exception
      */
     private void authenticateDCOS(String remoteHost, String email, String user, String password, String pemFile, String remotePort) throws Exception {
-        commonspec.setRemoteSSHConnection(new RemoteSSHConnection(user, password, remoteHost, remotePort, pemFile), remoteHost + "_" + user);
+        commonspec.setRemoteSSHConnection(RemoteSSHConnection.pooled(user, password, remoteHost, remotePort, pemFile), remoteHost + "_" + user);
         commonspec.getRemoteSSHConnection().runCommand("sudo cat /var/lib/dcos/dcos-oauth/auth-token-secret");
         String DCOSsecret = commonspec.getRemoteSSHConnection().getResult().trim();
         setDCOSCookie(DCOSsecret, email);
@@ -144,7 +170,9 @@ public class DcosSpec extends BaseGSpec {
         if (set == null) {
             GosecSSOUtils ssoUtils = new GosecSSOUtils(ssoHost, userName, passWord, tenant, gov);
             ssoUtils.setVerifyHost(hostVerifier == null);
-            HashMap<String, String> ssoCookies = ssoUtils.ssoTokenGenerator(pathWithoutLogin == null);
+            String kind = (gov != null ? "governance" : "management") + (pathWithoutLogin != null ? " without login path" : "");
+            HashMap<String, String> ssoCookies = SsoTokenCache.getInstance().getTokens(ssoHost, userName, passWord, tenant, kind,
+                    () -> ssoUtils.ssoTokenGenerator(pathWithoutLogin == null));
 
             String[] tokenList = {"user", "dcos-acs-auth-cookie"};
             if (gov != null) {
@@ -185,7 +213,8 @@ public class DcosSpec extends BaseGSpec {
     public void setGoSecSSOCookieforDiscovery(String ssoHost, String userName, String passWord, String tenant, String hostVerifier, String discoveryCookie) throws Exception {
         GosecSSOUtils ssoUtils = new GosecSSOUtils(ssoHost, userName, passWord, tenant, null);
         ssoUtils.setVerifyHost(hostVerifier == null);
-        HashMap<String, String> ssoCookies = ssoUtils.ssoTokenGenerator();
+        HashMap<String, String> ssoCookies = SsoTokenCache.getInstance().getTokens(ssoHost, userName, passWord, tenant, "management",
+                ssoUtils::ssoTokenGenerator);
         String[] tokenList = new String[]{discoveryCookie};
         List<com.ning.http.client.cookie.Cookie> cookiesAtributes = this.commonspec.addSsoToken(ssoCookies, tokenList);
         this.commonspec.getLogger().debug("Discovery Cookie to set:");
@@ -760,102 +789,51 @@ public class DcosSpec extends BaseGSpec {
      */
     @Given("^I obtain '(MASTERS|NODES|PRIV_NODES|PUBLIC_NODES|PUBLIC_NODE|GOSEC_NODES|ID|DNS_SEARCH|INTERNAL_DOMAIN|ARTIFACT_REPO|DOCKER_REGISTRY|EXTERNAL_DOCKER_REGISTRY|REALM|KDC_HOST|KDC_PORT|KADMIN_HOST|KADMIN_PORT|LDAP_HOST|VAULT_HOST|IP|ADMIN_USER|TENANT|ACCESS_POINT|LDAP_URL|LDAP_PORT|LDAP_USER_DN|LDAP_GROUP_DN|LDAP_BASE|LDAP_ADMIN_GROUP)' from descriptor and save it in environment variable '(.+?)'$")
     public void obtainInfoFromDescriptor(String info, String envVar) throws Exception {
-        String jqExpression = "";
+        String value;
+        try {
+            value = DescriptorInfo.of(readDescriptor()).get(info);
+        } catch (IllegalArgumentException e) {
+            throw new Exception("Error obtaining info from json file: " + e.getMessage(), e);
+        }
 
-        switch (info) {
-            case "MASTERS":
-                jqExpression = "jq -crM '.nodes[] | select(.role ?== \"master\") | .networking[0].ip' | paste -sd \",\" -";
-                break;
-            case "NODES":
-                jqExpression = "jq -crM '.nodes[] | select(.role ?== \"agent\") | .networking[0].ip' | paste -sd \",\" -";
-                break;
-            case "PRIV_NODES":
-                jqExpression = "jq -crM '.nodes[] | select((.role ?== \"agent\") and .public ?== false) | .networking[0].ip' | paste -sd \",\" -";
-                break;
-            case "PUBLIC_NODES":
-                jqExpression = "jq -crM '.nodes[] | select((.role ?== \"agent\") and .public ?== true) | .networking[0].ip' | paste -sd \",\" -";
-                break;
-            case "PUBLIC_NODE":
-                jqExpression = "jq -cM '.nodes[] | select((.role ?== \"agent\") and .public ?== true) | .networking[0].ip' | jq -crMs '.[0]'";
-                break;
-            case "GOSEC_NODES":
-                jqExpression = "jq -crM '.nodes[] | select(.role ?== \"gosec\") | .networking[0].ip' | paste -sd \",\" -";
-                break;
-            case "ID":
-                jqExpression = "jq -crM .id";
-                break;
-            case "DNS_SEARCH":
-                jqExpression = "jq -crM .dnsSearch";
-                break;
-            case "INTERNAL_DOMAIN":
-                jqExpression = "jq -crM .internalDomain";
-                break;
-            case "ARTIFACT_REPO":
-                jqExpression = "jq -crM .artifactRepository";
-                break;
-            case "DOCKER_REGISTRY":
-                jqExpression = "jq -crM .dockerRegistry";
-                break;
-            case "EXTERNAL_DOCKER_REGISTRY":
-                jqExpression = "jq -crM .externalDockerRegistry";
-                break;
-            case "REALM":
-                jqExpression = "jq -crM .security.kerberos.realm";
-                break;
-            case "KDC_HOST":
-                jqExpression = "jq -crM .security.kerberos.kdcHost";
-                break;
-            case "KDC_PORT":
-                jqExpression = "jq -crM .security.kerberos.kdcPort";
-                break;
-            case "KADMIN_HOST":
-                jqExpression = "jq -crM .security.kerberos.kadminHost";
-                break;
-            case "KADMIN_PORT":
-                jqExpression = "jq -crM .security.kerberos.kadminPort";
-                break;
-            case "LDAP_HOST":
-                jqExpression = "jq -crM .security.ldap.url";
-                break;
-            case "VAULT_HOST":
-                jqExpression = "jq -crM '.nodes[] | select(.role ?== \"gosec\") | .networking[0].ip' | paste -sd \",\" - | cut -d, -f1";
-                break;
-            case "IP":
-                jqExpression = "jq -crM '.nodes[] | select(.role ?== \"master\") | .networking[0].ip' | paste -sd \",\" - | cut -d, -f1";
-                break;
-            case "ADMIN_USER":
-                jqExpression = "jq -crM .security.ldap.adminUserUuid";
-                break;
-            case "TENANT":
-                jqExpression = "jq -crM .security.tenantSSODefault | sed 's/null/NONE/g'";
-                break;
-            case "ACCESS_POINT":
-                jqExpression = "jq -crM .proxyAccessPointURL | sed 's/https:\\/\\///g'";
-                break;
-            case "LDAP_URL":
-                jqExpression = "jq -crM .security.ldap.url";
-                break;
-            case "LDAP_PORT":
-                jqExpression = "jq -crM .security.ldap.port";
-                break;
-            case "LDAP_USER_DN":
-                jqExpression = "jq -crM .security.ldap.userDn";
-                break;
-            case "LDAP_GROUP_DN":
-                jqExpression = "jq -crM .security.ldap.groupDN";
-                break;
-            case "LDAP_BASE":
-                jqExpression = "jq -crM .security.ldap.ldapBase";
-                break;
-            case "LDAP_ADMIN_GROUP":
-                jqExpression = "jq -crM .security.ldap.adminrouterAuthorizedGroup";
-                break;
-            default:
-                break;
+        if (value == null) {
+            commonspec.getLogger().debug("Info " + info + " not found in descriptor.");
+            throw new Exception("Info obtained from descriptor: " + info + ", is null.");
         }
 
-        obtainInfoFromFile(jqExpression, this.descriptorPath, envVar);
+        ThreadProperty.set(envVar, value);
+    }
 
+    /**
+     * Read the descriptor again in the next steps, after modifying it in the bootstrap
+     */
+    @Given("^I read the descriptor again$")
+    public void refreshDescriptor() {
+        descriptor = null;
+    }
+
+    /**
+     * Content of the descriptor in the bootstrap of the current SSH connection. It is read once per scenario, and
+     * again when the connection changes or after {@link #refreshDescriptor()}.
+     */
+    private String readDescriptor() throws Exception {
+        RemoteSSHConnection connection = commonspec.getRemoteSSHConnection();
+        if (connection == null) {
+            commonspec.getLogger().debug("SSH connection not opened.");
+            throw new Exception("SSH connection not opened.");
+        }
+        if (descriptor != null && descriptor.connection == connection && descriptor.path.equals(descriptorPath)) {
+            return descriptor.content;
+        }
+
+        connection.runCommand("cat " + descriptorPath);
+        if (connection.getExitStatus() != 0) {
+            commonspec.getLogger().debug("File passed as parameter: " + descriptorPath + ", does not exist in remote system");
+            throw new Exception("File: " + descriptorPath + " does not exist in remote system.");
+        }
+        String content = connection.getResult();
+        descriptor = new Descriptor(connection, descriptorPath, content);
+        return content;
     }
 
     /**
@@ -917,7 +895,7 @@ public class DcosSpec extends BaseGSpec {
 
         // Open connection to bootstrap
         commonspec.getLogger().debug("Openning connection to bootstrap to obtain descriptor file: " + descriptorPath);
-        commonspec.setRemoteSSHConnection(new RemoteSSHConnection(bootstrap_user, null, bootstrap_ip, remotePort, bootstrap_pem), "bootstrap_connection");
+        commonspec.setRemoteSSHConnection(RemoteSSHConnection.pooled(bootstrap_user, null, bootstrap_ip, remotePort, bootstrap_pem), "bootstrap_connection");
 
         // Make local copy of vault response file
         commonspec.getLogger().debug("Copying vault_response file to: " + localVaultResponseFilePath);
@@ -1252,7 +1230,7 @@ public class DcosSpec extends BaseGSpec {
 
         if (!bootstrapInfoObtained) {
             commonspec.getLogger().debug("Openning connection to bootstrap to obtain descriptor file: " + descriptorPath);
-            commonspec.setRemoteSSHConnection(new RemoteSSHConnection(bootstrap_user, null, bootstrap_ip, remotePort, bootstrap_pem), "bootstrap_connection");
+            commonspec.setRemoteSSHConnection(RemoteSSHConnection.pooled(bootstrap_user, null, bootstrap_ip, remotePort, bootstrap_pem), "bootstrap_connection");
 
             commonspec.getLogger().debug("Copying descriptor file to: " + localDescriptorFilePath);
             commonspec.getRemoteSSHConnection().copyFrom(descriptorPath, localDescriptorFilePath);
@@ -1312,6 +1290,14 @@ public class DcosSpec extends BaseGSpec {
     }
 
 
+    /**
+     * Discards the cluster information obtained by the setup of @dcos scenarios, the next one obtains it again
+     */
+    @Given("^I invalidate the cached cluster discovery$")
+    public void invalidateDiscoveryCache() {
+        DiscoveryCache.getInstance().invalidate();
+    }
+
     /**
      * Obtains info from a json stored in a variable and expose it in a thread variable
      *
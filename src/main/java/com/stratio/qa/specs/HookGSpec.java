@@ -16,10 +16,11 @@
 
 package com.stratio.qa.specs;
 
-import com.ning.http.client.AsyncHttpClient;
-import com.ning.http.client.AsyncHttpClientConfig;
 import com.stratio.qa.clients.k8s.KubernetesClient;
 import com.stratio.qa.exceptions.SuppressableException;
+import com.stratio.qa.utils.CookiesUtils;
+import com.stratio.qa.utils.DiscoveryCache;
+import com.stratio.qa.utils.HttpClientPool;
 import com.stratio.qa.utils.StepException;
 import com.stratio.qa.utils.ThreadProperty;
 import cucumber.api.Result;
@@ -39,7 +40,6 @@ import org.openqa.selenium.remote.http.HttpClient;
 import org.openqa.selenium.remote.internal.ApacheHttpClient;
 import org.openqa.selenium.remote.internal.HttpClientFactory;
 
-import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Collection;
@@ -114,6 +114,7 @@ public class HookGSpec extends BaseGSpec {
     public void globalSetup() {
         commonspec.getExceptions().clear();
         StepException.INSTANCE.setException(null);
+        CookiesUtils.clear();
     }
 
 
@@ -287,10 +288,9 @@ public class HookGSpec extends BaseGSpec {
 
     @Before(order = ORDER_10, value = "@rest or @dcos or @keos")
     public void restClientSetup() throws Exception {
-        commonspec.getLogger().debug("Starting a REST client");
+        commonspec.getLogger().debug("Using the shared REST client");
 
-        commonspec.setClient(new AsyncHttpClient(new AsyncHttpClientConfig.Builder().setAcceptAnyCertificate(true).setAllowPoolingConnections(false)
-                .build()));
+        commonspec.setClient(HttpClientPool.getSharedClient());
         commonspec.initClients();
     }
 
@@ -299,10 +299,12 @@ public class HookGSpec extends BaseGSpec {
         commonspec.initKubernetesClient();
     }
 
+    /**
+     * The shared REST client is not closed, its connections are kept for the next scenarios.
+     */
     @After(order = ORDER_10, value = "@rest or @dcos or @keos")
-    public void restClientTeardown() throws IOException {
-        commonspec.getLogger().debug("Shutting down REST client");
-        commonspec.getClient().close();
+    public void restClientTeardown() {
+        commonspec.getLogger().debug("Releasing REST client");
     }
 
     private boolean isTagIncludedInScenario(Scenario scenario, String customTAG) {
@@ -310,15 +312,27 @@ public class HookGSpec extends BaseGSpec {
         return tags.contains(customTAG);
     }
 
+    /**
+     * The cluster is discovered by the first @dcos scenario, the rest reproduce its effects (see {@link ClusterDiscovery}).
+     */
     @Before(order = ORDER_20, value = "@dcos")
     public void dcosSetup() throws Exception {
         DcosSpec dcosSpec = new DcosSpec(commonspec);
         MiscSpec miscspec = new MiscSpec(commonspec);
-        dcosSpec.obtainBasicInfoFromWorkspace();
-        dcosSpec.obtainBasicInfoFromDescriptor(null);
-        dcosSpec.getServicesInfoFromMarathon(null);
-        dcosSpec.obtainBasicInfoFromETCD();
-        miscspec.setGosecVariables();
+        String bootstrapIp = ThreadProperty.get("BOOTSTRAP_IP") != null ? ThreadProperty.get("BOOTSTRAP_IP") : System.getProperty("BOOTSTRAP_IP");
+        String cluster = System.getProperty("EOS_CLUSTER_ID") != null ? "EOS_CLUSTER_ID=" + System.getProperty("EOS_CLUSTER_ID")
+                : "BOOTSTRAP_IP=" + bootstrapIp + ":" + System.getProperty("EOS_NEW_SSH_PORT", "22");
+        new ClusterDiscovery(commonspec, new File("./target/test-classes")).setup(DiscoveryCache.getInstance(), cluster, () -> {
+            dcosSpec.obtainBasicInfoFromWorkspace();
+            dcosSpec.obtainBasicInfoFromDescriptor(null);
+            dcosSpec.getServicesInfoFromMarathon(null);
+            dcosSpec.obtainBasicInfoFromETCD();
+            miscspec.setGosecVariables();
+        }, () -> {
+            // same REST session the discovery leaves
+            String dcosPassword = ThreadProperty.get("DCOS_PASSWORD") != null ? ThreadProperty.get("DCOS_PASSWORD") : System.getProperty("DCOS_PASSWORD");
+            dcosSpec.setGoSecSSOCookie(null, null, ThreadProperty.get("EOS_ACCESS_POINT"), ThreadProperty.get("DCOS_USER"), dcosPassword, ThreadProperty.get("DCOS_TENANT"), null, null);
+        });
     }
 
     @Before(order = ORDER_20, value = "@keos")
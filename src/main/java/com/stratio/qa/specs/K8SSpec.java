@@ -21,6 +21,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
 import com.stratio.qa.utils.GosecSSOUtils;
 import com.stratio.qa.utils.ThreadProperty;
+import com.stratio.qa.utils.Waiter;
 import cucumber.api.java.en.Given;
 import cucumber.api.java.en.Then;
 import cucumber.api.java.en.When;
@@ -36,6 +37,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
@@ -228,141 +230,74 @@ public class K8SSpec extends BaseGSpec {
     }
 
     @When("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, pod with name '(.+?)' in namespace '(.+?)' has '(running|failed|succeeded)' status( and '(ready|not ready)' state)?$")
-    public void assertPodStatus(Integer timeout, Integer wait, String podName, String namespace, String expectedStatus, String expectedState) throws InterruptedException {
-        boolean found = false;
+    public void assertPodStatus(Integer timeout, Integer wait, String podName, String namespace, String expectedStatus, String expectedState) throws Exception {
         Boolean readyStatusExpected = expectedState != null ? expectedState.equals("ready") : null;
-        int i = 0;
-        while (!found && i <= timeout) {
+        waitFor(timeout, wait, "Expected state/status don't found", () -> {
             Pod pod = commonspec.kubernetesClient.getPod(podName, namespace);
-            try {
-                Assert.assertEquals(pod.getStatus().getPhase().toLowerCase(), expectedStatus, "Expected status");
-                if (readyStatusExpected != null) {
-                    Assert.assertEquals(pod.getStatus().getContainerStatuses().get(pod.getStatus().getContainerStatuses().size() - 1).getReady().booleanValue(), readyStatusExpected.booleanValue(), "Pod ready?");
-                }
-                found = true;
-            } catch (AssertionError | Exception e) {
-                getCommonSpec().getLogger().info("Expected state/status don't found after " + i + " seconds");
-                if (i >= timeout) {
-                    throw e;
-                }
-                Thread.sleep(wait * 1000);
+            Assert.assertEquals(pod.getStatus().getPhase().toLowerCase(), expectedStatus, "Expected status");
+            if (readyStatusExpected != null) {
+                Assert.assertEquals(pod.getStatus().getContainerStatuses().get(pod.getStatus().getContainerStatuses().size() - 1).getReady().booleanValue(), readyStatusExpected.booleanValue(), "Pod ready?");
             }
-            i += wait;
-        }
+            return true;
+        });
     }
 
     @When("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, we have '(\\d+)' pod/s with label filter '(.+?)' in namespace '(.+?)' having '(running|failed|succeeded)' status( and '(ready|not ready)' state)?$")
-    public void assertPodStatusWithLabelFilter(Integer timeout, Integer wait, Integer expectedPods, String podSelector, String namespace, String expectedStatus, String expectedState) throws InterruptedException {
-        boolean found = false;
+    public void assertPodStatusWithLabelFilter(Integer timeout, Integer wait, Integer expectedPods, String podSelector, String namespace, String expectedStatus, String expectedState) throws Exception {
         Boolean readyStatusExpected = expectedState != null ? expectedState.equals("ready") : null;
-        int i = 0;
-        while (!found && i <= timeout) {
-            try {
-                String[] podsList = {};
-                String pods = commonspec.kubernetesClient.getPodsFilteredByLabel(podSelector, namespace);
-                if (!pods.equals("")) {
-                    podsList = pods.split("\n");
-                }
-                Assert.assertEquals(podsList.length, expectedPods.intValue(), "Expected pods");
-                for (String podName : podsList) {
-                    Pod pod = commonspec.kubernetesClient.getPod(podName, namespace);
-                    Assert.assertEquals(pod.getStatus().getPhase().toLowerCase(), expectedStatus, "Expected status");
-                    if (readyStatusExpected != null) {
-                        Assert.assertEquals(pod.getStatus().getContainerStatuses().get(pod.getStatus().getContainerStatuses().size() - 1).getReady().booleanValue(), readyStatusExpected.booleanValue(), "Pod ready?");
-                    }
-                }
-                found = true;
-            } catch (AssertionError | Exception e) {
-                getCommonSpec().getLogger().info("Expected state/status don't found or pods number are not expected number after " + i + " seconds");
-                if (i >= timeout) {
-                    throw e;
+        waitFor(timeout, wait, "Expected state/status don't found or pods number are not expected number", () -> {
+            String[] podsList = {};
+            String pods = commonspec.kubernetesClient.getPodsFilteredByLabel(podSelector, namespace);
+            if (!pods.equals("")) {
+                podsList = pods.split("\n");
+            }
+            Assert.assertEquals(podsList.length, expectedPods.intValue(), "Expected pods");
+            for (String podName : podsList) {
+                Pod pod = commonspec.kubernetesClient.getPod(podName, namespace);
+                Assert.assertEquals(pod.getStatus().getPhase().toLowerCase(), expectedStatus, "Expected status");
+                if (readyStatusExpected != null) {
+                    Assert.assertEquals(pod.getStatus().getContainerStatuses().get(pod.getStatus().getContainerStatuses().size() - 1).getReady().booleanValue(), readyStatusExpected.booleanValue(), "Pod ready?");
                 }
-                Thread.sleep(wait * 1000);
             }
-            i += wait;
-        }
+            return true;
+        });
     }
 
     @When("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, deployment with name '(.+?)' in namespace '(.+?)' has '(\\d+)' replicas ready$")
-    public void assertDeploymentStatus(Integer timeout, Integer wait, String deploymentName, String namespace, Integer readyReplicas) throws InterruptedException {
-        boolean found = false;
-        int i = 0;
-        while (!found && i <= timeout) {
+    public void assertDeploymentStatus(Integer timeout, Integer wait, String deploymentName, String namespace, Integer readyReplicas) throws Exception {
+        waitFor(timeout, wait, "Expected replicas ready don't found", () -> {
             Deployment deployment = commonspec.kubernetesClient.getDeployment(deploymentName, namespace);
-            try {
-                Assert.assertEquals(deployment.getStatus().getReadyReplicas().intValue(), readyReplicas.intValue(), "# Ready Replicas");
-                found = true;
-            } catch (AssertionError | Exception e) {
-                getCommonSpec().getLogger().info("Expected replicas ready don't found after " + i + " seconds");
-                if (i >= timeout) {
-                    throw e;
-                }
-                Thread.sleep(wait * 1000);
-            }
-            i += wait;
-        }
+            Assert.assertEquals(deployment.getStatus().getReadyReplicas().intValue(), readyReplicas.intValue(), "# Ready Replicas");
+            return true;
+        });
     }
 
     @When("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, statefulset with name '(.+?)' in namespace '(.+?)' has '(\\d+)' replicas ready$")
-    public void assertStatefulsetStatus(Integer timeout, Integer wait, String statefulsetName, String namespace, Integer readyReplicas) throws InterruptedException {
-        boolean found = false;
-        int i = 0;
-        while (!found && i <= timeout) {
-
+    public void assertStatefulsetStatus(Integer timeout, Integer wait, String statefulsetName, String namespace, Integer readyReplicas) throws Exception {
+        waitFor(timeout, wait, "Expected replicas ready don't found", () -> {
             StatefulSet statefulSet = commonspec.kubernetesClient.getStateFulSet(statefulsetName, namespace);
-            try {
-                Assert.assertEquals(statefulSet.getStatus().getReadyReplicas().intValue(), readyReplicas.intValue(), "# Ready Replicas");
-                found = true;
-            } catch (AssertionError | Exception e) {
-                getCommonSpec().getLogger().info("Expected replicas ready don't found after " + i + " seconds");
-                if (i >= timeout) {
-                    throw e;
-                }
-                Thread.sleep(wait * 1000);
-            }
-            i += wait;
-        }
+            Assert.assertEquals(statefulSet.getStatus().getReadyReplicas().intValue(), readyReplicas.intValue(), "# Ready Replicas");
+            return true;
+        });
     }
 
     @When("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, custom resource '(.+?)' with name '(.+?)' in namespace '(.+?)' has '(\\d+)' replicas ready$")
-    public void assertCustomResourceStatus(Integer timeout, Integer wait, String name, String nameItem, String namespace, Integer readyReplicas) throws InterruptedException, IOException {
-        boolean found = false;
-        int i = 0;
-        while (!found && i <= timeout) {
-            try {
-                Assert.assertEquals((commonspec.kubernetesClient.getReadyReplicasCustomResource(name, nameItem, namespace)).intValue(), readyReplicas.intValue(), "# Ready Replicas");
-                found = true;
-            } catch (AssertionError | Exception e) {
-                getCommonSpec().getLogger().info("Expected replicas ready don't found after " + i + " seconds");
-                if (i >= timeout) {
-                    throw e;
-                }
-                Thread.sleep(wait * 1000);
-            }
-            i += wait;
-        }
+    public void assertCustomResourceStatus(Integer timeout, Integer wait, String name, String nameItem, String namespace, Integer readyReplicas) throws Exception {
+        waitFor(timeout, wait, "Expected replicas ready don't found", () -> {
+            Assert.assertEquals((commonspec.kubernetesClient.getReadyReplicasCustomResource(name, nameItem, namespace)).intValue(), readyReplicas.intValue(), "# Ready Replicas");
+            return true;
+        });
     }
 
     @When("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, custom resource '(.+?)' with name '(.+?)' in namespace '(.+?)' has '(.+?)' global status( and description '(.+?)')?$")
-    public void assertCustomResourceStatus(Integer timeout, Integer wait, String name, String nameItem, String namespace, String status, String description) throws InterruptedException, IOException {
-        boolean found = false;
-        int i = 0;
-        while (!found && i <= timeout) {
-            try {
-                Assert.assertEquals((commonspec.kubernetesClient.getGlobalStatusCustomResource(name, nameItem, namespace)), status, "# Global Status");
-                if (description != null) {
-                    Assert.assertEquals((commonspec.kubernetesClient.getGlobalStatusDescriptionCustomResource(name, nameItem, namespace)), description, "# Global Status Description");
-                }
-                found = true;
-            } catch (AssertionError | Exception e) {
-                getCommonSpec().getLogger().info("Expected global status " + status + " don't found after " + i + " seconds");
-                if (i >= timeout) {
-                    throw e;
-                }
-                Thread.sleep(wait * 1000);
+    public void assertCustomResourceStatus(Integer timeout, Integer wait, String name, String nameItem, String namespace, String status, String description) throws Exception {
+        waitFor(timeout, wait, "Expected global status " + status + " don't found", () -> {
+            Assert.assertEquals((commonspec.kubernetesClient.getGlobalStatusCustomResource(name, nameItem, namespace)), status, "# Global Status");
+            if (description != null) {
+                Assert.assertEquals((commonspec.kubernetesClient.getGlobalStatusDescriptionCustomResource(name, nameItem, namespace)), description, "# Global Status Description");
             }
-            i += wait;
-        }
+            return true;
+        });
     }
 
     @When("^I create deployment with name '(.+?)', in namespace '(.+?)', with image '(.+?)'( and image pull policy '(.+?)')?$")
@@ -421,23 +356,12 @@ public class K8SSpec extends BaseGSpec {
     }
 
     @Given("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, log of pod '(.+?)' in namespace '(.+?)' contains '(.+?)'$")
-    public void readLogsInLessEachFromPod(Integer timeout, Integer wait, String podName, String namespace, String expectedLog) throws InterruptedException {
-        boolean found = false;
-        int i = 0;
-        while (!found && i <= timeout) {
-            try {
-                String log = commonspec.kubernetesClient.getPodLog(podName, namespace);
-                assertThat(log).contains(expectedLog);
-                found = true;
-            } catch (AssertionError | Exception e) {
-                getCommonSpec().getLogger().info("'" + expectedLog + "' don't found in log after " + i + " seconds");
-                if (i >= timeout) {
-                    throw e;
-                }
-                Thread.sleep(wait * 1000);
-            }
-            i += wait;
-        }
+    public void readLogsInLessEachFromPod(Integer timeout, Integer wait, String podName, String namespace, String expectedLog) throws Exception {
+        waitFor(timeout, wait, "'" + expectedLog + "' don't found in log", () -> {
+            String log = commonspec.kubernetesClient.getPodLog(podName, namespace);
+            assertThat(log).contains(expectedLog);
+            return true;
+        });
     }
 
     @When("^I delete (pod|deployment|service) with name '(.+?)' in namespace '(.+?)'$")
@@ -528,4 +452,21 @@ public class K8SSpec extends BaseGSpec {
     public void closePortForward() throws IOException {
         commonspec.kubernetesClient.closePortForward();
     }
+
+    /**
+     * Run the check until it passes, retrying while it fails or throws an exception.
+     *
+     * @param timeout  maximum time, in seconds
+     * @param wait     time between checks, in seconds
+     * @param notFound message logged after each failed check
+     * @param check    check
+     * @throws Exception error of the last check
+     */
+    private void waitFor(Integer timeout, Integer wait, String notFound, Waiter.Probe<Boolean> check) throws Exception {
+        Waiter.atMost(timeout, TimeUnit.SECONDS).pollEvery(wait, TimeUnit.SECONDS)
+                .ignoring(AssertionError.class, Exception.class)
+                .onRetry((attempt, elapsed, error) -> getCommonSpec().getLogger().info(notFound + " after " + TimeUnit.NANOSECONDS.toSeconds(elapsed) + " seconds"))
+                .until(check)
+                .getOrThrow();
+    }
 }
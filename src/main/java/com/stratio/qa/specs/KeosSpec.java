@@ -18,6 +18,7 @@ package com.stratio.qa.specs;
 
 import com.ning.http.client.cookie.Cookie;
 import com.stratio.qa.utils.GosecSSOUtils;
+import com.stratio.qa.utils.SsoTokenCache;
 import com.stratio.qa.utils.ThreadProperty;
 import cucumber.api.java.en.Given;
 import org.json.JSONObject;
@@ -55,7 +56,8 @@ public class KeosSpec extends BaseGSpec {
     public void setGoSecSSOCookieKeos(String ssoHost, String userName, String password, String tenant) throws Exception {
         GosecSSOUtils ssoUtils = new GosecSSOUtils(ssoHost + "/service/cct-ui/", userName, password, tenant, null);
         ssoUtils.setVerifyHost(false);
-        HashMap<String, String> ssoCookies = ssoUtils.ssoTokenGenerator(false);
+        HashMap<String, String> ssoCookies = SsoTokenCache.getInstance().getTokens(ssoHost, userName, password, tenant, "keos",
+                () -> ssoUtils.ssoTokenGenerator(false));
         String[] tokenList = {"_oauth2_proxy"};
         List<Cookie> cookiesAtributes = commonspec.addSsoToken(ssoCookies, tokenList);
         commonspec.setCookies(cookiesAtributes);
@@ -18,6 +18,7 @@ package com.stratio.qa.specs;
 
 import com.stratio.qa.models.marathon.*;
 import com.stratio.qa.utils.ThreadProperty;
+import com.stratio.qa.utils.Waiter;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -34,6 +35,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class MarathonSpec extends BaseGSpec {
 
@@ -93,142 +95,71 @@ public class MarathonSpec extends BaseGSpec {
 
     @Then("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, service with id '(.*)' has '(\\d+)' task[s]? in '(running|finished|failed|staging|starting|killed)' state in Marathon$")
     public void checkNumberOfTasksStateWithPolling(int timeout, int pause, String appId, int numberOfTasks, String state) throws Exception {
-        VersionedAppResponse app;
-        Collection<Task> tasks;
-        int count;
         String translatedState = MarathonConstants.statesDict.get(state);
 
-        int time = 0;
-        while (time < timeout) {
-            app = this.commonspec.marathonClient.getApp(appId);
-            if (app.getApp() != null) {
-                tasks = app.getApp().getTasks();
+        Waiter.Outcome<VersionedAppResponse> outcome = Waiter.atMost(timeout, TimeUnit.SECONDS).pollEvery(pause, TimeUnit.SECONDS)
+                .until(() -> this.commonspec.marathonClient.getApp(appId),
+                        app -> app.getApp() != null && countTasksInState(app.getApp(), translatedState) == numberOfTasks);
 
-                count = (int) tasks.stream().filter(task -> task.getState().equals(translatedState)).count();
-                if (count == numberOfTasks) {
-                    return;
-                }
-            }
-
-            Thread.sleep(pause * 1000);
-            time += pause;
-        }
-
-        assertThat(false)
+        assertThat(outcome.isSatisfied())
                 .as("Number of task in state " + translatedState + " for service " + appId + " does not match after " + timeout + " seconds.")
                 .isTrue();
     }
 
     @Then("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, service with id '(.*)' has all tasks in '(running|finished|failed|staging|starting|killed)' state in Marathon$")
     public void checkAllTasksStateWithPolling(int timeout, int pause, String appId, String state) throws Exception {
-        VersionedAppResponse app;
-        Collection<Task> tasks;
-
         String translatedState = MarathonConstants.statesDict.get(state);
-        int count;
-
-        int time = 0;
-        while (time < timeout) {
-            app = this.commonspec.marathonClient.getApp(appId);
-            if (app.getApp() != null) {
-                tasks = app.getApp().getTasks();
 
-                count = (int) tasks.stream().filter(task -> task.getState().equals(translatedState)).count();
-                if (count == tasks.size()) {
-                    return;
-                }
-            }
-
-            Thread.sleep(pause * 1000);
-            time += pause;
-        }
+        Waiter.Outcome<VersionedAppResponse> outcome = Waiter.atMost(timeout, TimeUnit.SECONDS).pollEvery(pause, TimeUnit.SECONDS)
+                .until(() -> this.commonspec.marathonClient.getApp(appId),
+                        app -> app.getApp() != null && countTasksInState(app.getApp(), translatedState) == app.getApp().getTasks().size());
 
-        assertThat(false)
+        assertThat(outcome.isSatisfied())
                 .as("Number of task in state " + translatedState + " for service " + appId + " does not match after " + timeout + " seconds.")
                 .isTrue();
     }
 
     @Then("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, service with id '(.*)' has '(\\d+)' '(healthy|unhealthy|staged|running)' task[s]? in Marathon$")
     public void checkNumberOfTasksHealthinessWithPolling(int timeout, int pause, String appId, int numberOfTasks, String state) throws Exception {
-        VersionedAppResponse app;
-        int count = 0;
-
-        int time = 0;
-        while (time < timeout) {
-            app = this.commonspec.marathonClient.getApp(appId);
-
-            if (app.getApp() != null) {
-                switch (state) {
-                    case "healthy":
-                        count = app.getApp().getTasksHealthy();
-                        break;
-                    case "unhealthy":
-                        count = app.getApp().getTasksUnhealthy();
-                        break;
-                    case "staged":
-                        count = app.getApp().getTasksStaged();
-                        break;
-                    case "running":
-                        count = app.getApp().getTasksRunning();
-                        break;
-                    default:
-                        count = 0;
-                }
-
-                if (count == numberOfTasks) {
-                    return;
-                }
-            }
-
-            Thread.sleep(pause * 1000);
-            time += pause;
-        }
+        Waiter.Outcome<VersionedAppResponse> outcome = Waiter.atMost(timeout, TimeUnit.SECONDS).pollEvery(pause, TimeUnit.SECONDS)
+                .until(() -> this.commonspec.marathonClient.getApp(appId),
+                        app -> app.getApp() != null && countTasksWithHealth(app.getApp(), state) == numberOfTasks);
 
-        assertThat(false)
+        assertThat(outcome.isSatisfied())
                 .as("Number of task(s) " + state + " for service " + appId + " does not match after " + timeout + " seconds.")
                 .isTrue();
     }
 
     @Then("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, service with id '(.*)' has all tasks '(healthy|unhealthy|unknown)' in Marathon$")
     public void checkAllTasksHealthinessWithPolling(int timeout, int pause, String appId, String state) throws Exception {
-        VersionedAppResponse app;
-        int count = 0;
-
-        int time = 0;
-        while (time < timeout) {
-            app = this.commonspec.marathonClient.getApp(appId);
-            if (app.getApp() != null) {
-                switch (state) {
-                    case "healthy":
-                        count = app.getApp().getTasksHealthy();
-                        break;
-                    case "unhealthy":
-                        count = app.getApp().getTasksUnhealthy();
-                        break;
-                    case "staged":
-                        count = app.getApp().getTasksStaged();
-                        break;
-                    case "running":
-                        count = app.getApp().getTasksRunning();
-                        break;
-                    default:
-                        count = 0;
-                }
-
-                if (count == app.getApp().getTasks().size()) {
-                    return;
-                }
-            }
+        Waiter.Outcome<VersionedAppResponse> outcome = Waiter.atMost(timeout, TimeUnit.SECONDS).pollEvery(pause, TimeUnit.SECONDS)
+                .until(() -> this.commonspec.marathonClient.getApp(appId),
+                        app -> app.getApp() != null && countTasksWithHealth(app.getApp(), state) == app.getApp().getTasks().size());
 
-            Thread.sleep(pause * 1000);
-            time += pause;
-        }
-
-        assertThat(false)
+        assertThat(outcome.isSatisfied())
                 .as("Number of task(s) " + state + " for service " + appId + " does not match after " + timeout + " seconds.")
                 .isTrue();
     }
 
+    private int countTasksInState(VersionedApp app, String translatedState) {
+        return (int) app.getTasks().stream().filter(task -> task.getState().equals(translatedState)).count();
+    }
+
+    private int countTasksWithHealth(VersionedApp app, String state) {
+        switch (state) {
+            case "healthy":
+                return app.getTasksHealthy();
+            case "unhealthy":
+                return app.getTasksUnhealthy();
+            case "staged":
+                return app.getTasksStaged();
+            case "running":
+                return app.getTasksRunning();
+            default:
+                return 0;
+        }
+    }
+
     @When("^I get taskId for task '(.+?)' in service with id '(.+?)' from Marathon and save the value in environment variable '(.+?)'$")
     public void getTaskId(String taskName, String serviceId, String envVar) throws Exception {
         String taskId = this.commonspec.marathonUtils.getTaskId(taskName, serviceId);
@@ -21,10 +21,12 @@ import com.stratio.qa.clients.mesos.MesosApiClient;
 import com.stratio.qa.models.mesos.MesosConstants;
 import com.stratio.qa.models.mesos.MesosTask;
 import com.stratio.qa.utils.ThreadProperty;
+import com.stratio.qa.utils.Waiter;
 import cucumber.api.java.en.Then;
 import cucumber.api.java.en.When;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -48,20 +50,11 @@ public class MesosSpec extends BaseGSpec {
 
     @Then("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, task with id '(.+?)'( does not)? exist[s]? in mesos$")
     public void checkTaskIdWithPolling(int timeout, int pause, String taskId, String notExist) throws Exception {
-        int time = 0;
-        while (time < timeout) {
+        Waiter.Outcome<Boolean> outcome = Waiter.atMost(timeout, TimeUnit.SECONDS).pollEvery(pause, TimeUnit.SECONDS)
+                .until(() -> (this.commonspec.mesosApiClient.getMesosTask(taskId).getTasks().size() == 0) == (notExist != null));
 
-            if (this.commonspec.mesosApiClient.getMesosTask(taskId).getTasks().size() == 0 && notExist != null) {
-                return;
-            } else if (this.commonspec.mesosApiClient.getMesosTask(taskId).getTasks().size() != 0 && notExist == null) {
-                return;
-            }
-
-            Thread.sleep(pause * 1000);
-            time += pause;
-        }
         String message = notExist == null ? "not " : "";
-        assertThat(false)
+        assertThat(outcome.isSatisfied())
                         .as("Mesos task for id " + taskId + " " + message + "found in mesos after " + timeout + " seconds").isTrue();
     }
 
@@ -79,20 +72,11 @@ public class MesosSpec extends BaseGSpec {
 
     @Then("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, task with id '(.+?)' appears with state '(running|killed|failed|finished|staging|starting)' in mesos$")
     public void checkTaskIdStateWithPolling(int timeout, int pause, String taskId, String state) throws Exception {
-        int time = 0;
-        List<MesosTask> tasks;
-        while (time < timeout) {
-
-            tasks = this.commonspec.mesosApiClient.getMesosTask(taskId).getTasks();
-            if (tasks.size() != 0 && tasks.get(0).getState().equals(MesosConstants.statesDict.get(state))) {
-                return;
-            }
-
-            Thread.sleep(pause * 1000);
-            time += pause;
-        }
+        Waiter.Outcome<List<MesosTask>> outcome = Waiter.atMost(timeout, TimeUnit.SECONDS).pollEvery(pause, TimeUnit.SECONDS)
+                .until(() -> this.commonspec.mesosApiClient.getMesosTask(taskId).getTasks(),
+                        tasks -> tasks.size() != 0 && tasks.get(0).getState().equals(MesosConstants.statesDict.get(state)));
 
-        assertThat(false)
+        assertThat(outcome.isSatisfied())
                 .as("Mesos task for id " + taskId + " found in mesos with state " + state + " after " + timeout + " seconds").isTrue();
     }
 
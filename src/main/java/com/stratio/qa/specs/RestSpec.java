@@ -120,62 +120,11 @@ public class RestSpec extends BaseGSpec {
         commonspec.getLogger().debug("Modifying data {} as {}", retrievedData, type);
         String modifiedData = commonspec.modifyData(retrievedData, type, modifications);
 
-        Boolean searchUntilContains;
-        if (contains == null || contains.isEmpty()) {
-            searchUntilContains = Boolean.TRUE;
-        } else {
-            searchUntilContains = Boolean.FALSE;
-        }
-        Boolean found = !searchUntilContains;
-        AssertionError ex = null;
-
-        Future<Response> response;
-
-        Pattern pattern = CommonG.matchesOrContains(responseVal);
-
-        for (int i = 0; (i <= timeout); i += wait) {
-            if (found && searchUntilContains) {
-                break;
-            }
-            try {
-                commonspec.getLogger().debug("Generating request {} to {} with data {} as {}", requestType, endPoint, modifiedData, type);
-                response = commonspec.generateRequest(requestType, false, null, null, endPoint, modifiedData, type);
-                commonspec.getLogger().debug("Saving response");
-                commonspec.setResponse(requestType, response.get());
-                commonspec.getLogger().debug("Checking response value");
-
-                if (searchUntilContains) {
-                    assertThat(commonspec.getResponse().getResponse()).containsPattern(pattern);
-                    found = true;
-                    timeout = i;
-                } else {
-                    assertThat(commonspec.getResponse().getResponse()).doesNotContain(responseVal);
-                    found = false;
-                    timeout = i;
-                }
-            } catch (AssertionError | Exception e) {
-                if (!found) {
-                    commonspec.getLogger().info("Response value not found after " + i + " seconds");
-                } else {
-                    commonspec.getLogger().info("Response value found after " + i + " seconds");
-                }
-                Thread.sleep(wait * 1000);
-                if (e instanceof AssertionError) {
-                    ex = (AssertionError) e;
-                }
-            }
-            if (!found && !searchUntilContains) {
-                break;
-            }
-        }
-        if ((!found && searchUntilContains) || (found && !searchUntilContains)) {
-            throw (ex);
-        }
-        if (searchUntilContains) {
-            commonspec.getLogger().info("Success! Response value found after " + timeout + " seconds");
-        } else {
-            commonspec.getLogger().info("Success! Response value not found after " + timeout + " seconds");
-        }
+        boolean searchUntilContains = contains == null || contains.isEmpty();
+        commonspec.checkResponseWithPolling(timeout, wait, requestType, () -> {
+            commonspec.getLogger().debug("Generating request {} to {} with data {} as {}", requestType, endPoint, modifiedData, type);
+            return commonspec.generateRequest(requestType, false, null, null, endPoint, modifiedData, type);
+        }, searchUntilContains, responseVal);
     }
 
     /**
@@ -276,78 +225,9 @@ public class RestSpec extends BaseGSpec {
      */
     @When("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, I send a '(.+?)' request to '(.+?)'( as '(json|string|gov|scim)')? so that the response( does not)? contains '(.+?)'$")
     public void sendRequestTimeout(Integer timeout, Integer wait, String requestType, String endPoint, String type, String contains, String responseVal) throws Exception {
-        AssertionError ex = null;
-        Future<Response> response;
-
-        if (responseVal != null) {
-            Boolean searchUntilContains;
-            if (contains == null || contains.isEmpty()) {
-                searchUntilContains = Boolean.TRUE;
-            } else {
-                searchUntilContains = Boolean.FALSE;
-            }
-            Boolean found = !searchUntilContains;
-
-            Pattern pattern = CommonG.matchesOrContains(responseVal);
-            for (int i = 0; (i <= timeout); i += wait) {
-                if (found && searchUntilContains) {
-                    break;
-                }
-                try {
-                    response = commonspec.generateRequest(requestType, false, null, null, endPoint, "", type, "");
-                    commonspec.setResponse(requestType, response.get());
-                    commonspec.getLogger().debug("Checking response value");
-
-                    if (searchUntilContains) {
-                        assertThat(commonspec.getResponse().getResponse()).containsPattern(pattern);
-                        found = true;
-                        timeout = i;
-                    } else {
-                        assertThat(commonspec.getResponse().getResponse()).doesNotContain(responseVal);
-                        found = false;
-                        timeout = i;
-                    }
-                } catch (AssertionError | Exception e) {
-                    if (!found) {
-                        commonspec.getLogger().info("Response value not found after " + i + " seconds");
-                    } else {
-                        commonspec.getLogger().info("Response value found after " + i + " seconds");
-                    }
-                    Thread.sleep(wait * 1000);
-                    if (e instanceof AssertionError) {
-                        ex = (AssertionError) e;
-                    }
-                }
-                if (!found && !searchUntilContains) {
-                    break;
-                }
-            }
-            if ((!found && searchUntilContains) || (found && !searchUntilContains)) {
-                throw (ex);
-            }
-            if (searchUntilContains) {
-                commonspec.getLogger().info("Success! Response value found after " + timeout + " seconds");
-            } else {
-                commonspec.getLogger().info("Success! Response value not found after " + timeout + " seconds");
-            }
-        } else {
-
-            for (int i = 0; (i <= timeout); i += wait) {
-                try {
-                    response = commonspec.generateRequest(requestType, false, null, null, endPoint, "", type, "");
-                    commonspec.setResponse(requestType, response.get());
-                    commonspec.getLogger().debug("Checking response value");
-
-                    assertThat(commonspec.getResponse().getResponse());
-                    timeout = i;
-                } catch (AssertionError | Exception e) {
-                    Thread.sleep(wait * 1000);
-                    if (e instanceof AssertionError) {
-                        ex = (AssertionError) e;
-                    }
-                }
-            }
-        }
+        boolean searchUntilContains = contains == null || contains.isEmpty();
+        commonspec.checkResponseWithPolling(timeout, wait, requestType,
+                () -> commonspec.generateRequest(requestType, false, null, null, endPoint, "", type, ""), searchUntilContains, responseVal);
     }
 
     @Then("^the service response must contain the text '(.*?)'$")
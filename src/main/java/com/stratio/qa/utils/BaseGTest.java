@@ -27,15 +27,20 @@ import org.testng.annotations.*;
 import java.lang.reflect.Method;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Properties;
 
 public abstract class BaseGTest {
 
+    public static final String PARALLEL_SCENARIOS = "parallelScenarios";
+
     protected final Logger logger = LoggerFactory.getLogger(this.getClass().getCanonicalName());
 
     protected CucumberRunner cucumberRunner;
 
     protected String browser = "";
 
+    private Properties classProperties = new Properties();
+
     /**
      * Method executed before a suite.
      *
@@ -52,6 +57,8 @@ public abstract class BaseGTest {
      */
     @AfterSuite(alwaysRun = true)
     public void afterGSuite(ITestContext context) {
+        HttpClientPool.closeSharedClient();
+        SSHSessionPool.getInstance().closeAll();
         logger.info("Done executing this test-run.");
     }
 
@@ -63,6 +70,7 @@ public abstract class BaseGTest {
     @BeforeClass(alwaysRun = true)
     public void beforeGClass(ITestContext context) throws Exception {
         ThreadProperty.set("class", this.getClass().getCanonicalName());
+        classProperties = ThreadProperty.snapshot();
         cucumberRunner = new CucumberRunner(this.getClass());
     }
 
@@ -79,6 +87,22 @@ public abstract class BaseGTest {
         return cucumberRunner.provideScenarios();
     }
 
+    /**
+     * Same scenarios as {@link #scenarios()}, run in parallel by TestNG. The worker pool size is the
+     * data-provider-thread-count of the suite (-Ddataproviderthreadcount with maven).
+     * <p>
+     * Each thread runs its scenarios with its own cucumber world, so its own CommonG, and every scenario starts
+     * with a copy of the thread properties of the test class, so variables saved by a scenario are not visible to
+     * the others. A failed step only skips the remaining steps of its own scenario. Reports keep the order of
+     * the features whatever the pool size.
+     *
+     * @return a two dimensional array of scenarios features.
+     */
+    @DataProvider(parallel = true)
+    public Object[][] parallelScenarios() {
+        return scenarios();
+    }
+
     /**
      * Method executed before a test method.
      *
@@ -86,6 +110,10 @@ public abstract class BaseGTest {
      */
     @BeforeMethod(alwaysRun = true)
     public void beforeGMethod(Method method) {
+        Test test = method.getAnnotation(Test.class);
+        if (test != null && PARALLEL_SCENARIOS.equals(test.dataProvider())) {
+            ThreadProperty.restore(classProperties);
+        }
         ThreadProperty.set("browser", this.browser);
     }
 
@@ -118,7 +146,7 @@ public abstract class BaseGTest {
 
                     // Close ssh connection
                     logger.debug("Closing SSH remote connection with ID: " + pair.getKey());
-                    ((RemoteSSHConnection) pair.getValue()).getSession().disconnect();
+                    ((RemoteSSHConnection) pair.getValue()).closeConnection();
                 }
                 it.remove();
             }
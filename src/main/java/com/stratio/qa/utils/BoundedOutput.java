@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Output stream that keeps the last bytes written, up to a limit, in a ring buffer, used to read the output of local
+ * and remote commands. Failures are usually reported at the end of long outputs, so the beginning is discarded.
+ */
+final class BoundedOutput extends OutputStream {
+
+    private final int limit;
+
+    private byte[] buffer;
+
+    /**
+     * Position of the oldest byte kept, always 0 until the buffer is full
+     */
+    private int start;
+
+    private int count;
+
+    private long discarded;
+
+    BoundedOutput(int limit) {
+        this.limit = limit;
+        this.buffer = new byte[Math.min(limit, 256)];
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        if (len >= limit) {
+            discarded += count + len - limit;
+            ensureCapacity(limit);
+            System.arraycopy(b, off + len - limit, buffer, 0, limit);
+            start = 0;
+            count = limit;
+            return;
+        }
+        ensureCapacity(Math.min(limit, count + len));
+        int position = (start + count) % limit;
+        int first = Math.min(len, limit - position);
+        System.arraycopy(b, off, buffer, position, first);
+        System.arraycopy(b, off + first, buffer, 0, len - first);
+        int kept = Math.min(limit, count + len);
+        int dropped = count + len - kept;
+        discarded += dropped;
+        start = (start + dropped) % limit;
+        count = kept;
+    }
+
+    /**
+     * Read a stream until its end, keeping its last bytes.
+     *
+     * @param in stream
+     * @return null, to be submitted as a Callable
+     * @throws IOException if the stream cannot be read
+     */
+    Void readFrom(InputStream in) throws IOException {
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) >= 0) {
+            write(chunk, 0, read);
+        }
+        return null;
+    }
+
+    boolean isTruncated() {
+        return discarded > 0;
+    }
+
+    /**
+     * @return bytes kept, oldest first
+     */
+    synchronized byte[] toByteArray() {
+        byte[] bytes = new byte[count];
+        int first = Math.min(count, buffer.length - start);
+        System.arraycopy(buffer, start, bytes, 0, first);
+        System.arraycopy(buffer, 0, bytes, first, count - first);
+        return bytes;
+    }
+
+    /**
+     * @return bytes kept, after a line saying how many were discarded if the output was truncated
+     */
+    @Override
+    public synchronized String toString() {
+        String kept = new String(toByteArray());
+        if (discarded == 0) {
+            return kept;
+        }
+        return "[" + discarded + " bytes discarded, last " + count + " bytes kept]\n" + kept;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (buffer.length < capacity) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, Math.min(limit, buffer.length * 2)));
+        }
+    }
+}
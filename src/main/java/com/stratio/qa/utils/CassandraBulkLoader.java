@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.utils;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.TimestampGenerator;
+import com.datastax.driver.core.exceptions.CodecNotFoundException;
+import com.datastax.driver.core.exceptions.InvalidTypeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Inserts of many rows, and executions of independent statements, sent asynchronously to Cassandra.
+ * <p>
+ * Inserts are prepared once per table and columns, and the rows of the same partition are sent together in unlogged
+ * batches. Rows are written with the server timestamp, except those sharing their primary key with another row of the
+ * same insert: they get their own client timestamp in the order given, in the past of the client clock, so the last of
+ * them wins as when rows were inserted one by one. If the table cannot be found in the cluster metadata, every row gets
+ * a client timestamp. A later statement using the server timestamp only wins over them if the server clock is not
+ * behind the client clock.
+ * <p>
+ * At most CASSANDRA_MAX_IN_FLIGHT requests (128 by default) are sent at the same time, more requests wait for one of
+ * them to finish. Batches have at most CASSANDRA_BATCH_SIZE rows (50 by default).
+ */
+public class CassandraBulkLoader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CassandraBulkLoader.class);
+
+    private final Session session;
+
+    private final int maxInFlight;
+
+    private final int batchSize;
+
+    private final Map<String, PreparedStatement> inserts = new ConcurrentHashMap<>();
+
+    public CassandraBulkLoader(Session session) {
+        this(session, Integer.parseInt(System.getProperty("CASSANDRA_MAX_IN_FLIGHT", "128")),
+                Integer.parseInt(System.getProperty("CASSANDRA_BATCH_SIZE", "50")));
+    }
+
+    CassandraBulkLoader(Session session, int maxInFlight, int batchSize) {
+        this.session = session;
+        this.maxInFlight = maxInFlight;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Inserts the rows in a table.
+     *
+     * @param table table, with its keyspace if it is not the one in use
+     * @param rows  rows, with their values as CQL literals (as in the steps) or as Java values
+     */
+    public void insert(String table, List<Map<String, Object>> rows) {
+        ProtocolVersion protocolVersion = session.getCluster().getConfiguration().getProtocolOptions().getProtocolVersion();
+        CodecRegistry codecRegistry = session.getCluster().getConfiguration().getCodecRegistry();
+        TimestampGenerator timestamps = session.getCluster().getConfiguration().getPolicies().getTimestampGenerator();
+        long clientTime = System.currentTimeMillis() * 1000 - rows.size();
+
+        // rows sharing their primary key with another one need ordered timestamps
+        List<String> primaryKey = primaryKey(table);
+        Map<List<Object>, Integer> keys = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            keys.merge(primaryKeyValues(primaryKey, row), 1, Integer::sum);
+        }
+
+        // rows of the same partition together, in their order
+        Map<Object, List<Statement>> partitions = new LinkedHashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            Long timestamp = null;
+            if (primaryKey == null || keys.get(primaryKeyValues(primaryKey, rows.get(i))) > 1) {
+                timestamp = timestamps.next();
+                if (timestamp == Long.MIN_VALUE) {
+                    timestamp = clientTime + i;
+                }
+            }
+            Statement statement = bind(table, rows.get(i), timestamp, codecRegistry);
+            ByteBuffer partition = statement.getRoutingKey(protocolVersion, codecRegistry);
+            partitions.computeIfAbsent(partition != null ? partition : new Object(), k -> new ArrayList<>()).add(statement);
+        }
+
+        List<Statement> requests = new ArrayList<>();
+        for (List<Statement> partition : partitions.values()) {
+            for (int i = 0; i < partition.size(); i += batchSize) {
+                List<Statement> rowsInBatch = partition.subList(i, Math.min(i + batchSize, partition.size()));
+                if (rowsInBatch.size() == 1) {
+                    requests.add(rowsInBatch.get(0));
+                } else {
+                    BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                    batch.addAll(rowsInBatch);
+                    requests.add(batch);
+                }
+            }
+        }
+        LOGGER.debug("Inserting {} rows in {} with {} requests", rows.size(), table, requests.size());
+        execute(requests);
+    }
+
+    /**
+     * Executes statements that do not depend on each other, in any order.
+     *
+     * @param statements CQL statements
+     */
+    public void executeAll(List<String> statements) {
+        List<Statement> requests = new ArrayList<>();
+        for (String statement : statements) {
+            requests.add(new SimpleStatement(statement));
+        }
+        execute(requests);
+    }
+
+    /**
+     * @return primary key columns of the table, null if it is not in the cluster metadata
+     */
+    private List<String> primaryKey(String table) {
+        String keyspace = session.getLoggedKeyspace();
+        String name = table;
+        if (table.contains(".")) {
+            keyspace = table.substring(0, table.indexOf('.'));
+            name = table.substring(table.indexOf('.') + 1);
+        }
+        KeyspaceMetadata keyspaceMetadata = keyspace == null ? null : session.getCluster().getMetadata().getKeyspace(keyspace);
+        TableMetadata tableMetadata = keyspaceMetadata == null ? null : keyspaceMetadata.getTable(name);
+        if (tableMetadata == null) {
+            return null;
+        }
+        List<String> columns = new ArrayList<>();
+        for (ColumnMetadata column : tableMetadata.getPrimaryKey()) {
+            columns.add(column.getName());
+        }
+        return columns;
+    }
+
+    /**
+     * @return values of the primary key in the row, as given
+     */
+    private static List<Object> primaryKeyValues(List<String> primaryKey, Map<String, Object> row) {
+        List<Object> values = new ArrayList<>();
+        if (primaryKey != null) {
+            for (String column : primaryKey) {
+                values.add(row.get(column));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return insert with the values of the row, and the timestamp if not null, as a literal CQL query if any value
+     * cannot be parsed
+     */
+    private Statement bind(String table, Map<String, Object> row, Long timestamp, CodecRegistry codecRegistry) {
+        List<String> columns = new ArrayList<>(row.keySet());
+        String key = session.getLoggedKeyspace() + "/" + table + "/" + columns + "/" + (timestamp != null);
+        PreparedStatement insert = inserts.computeIfAbsent(key, k -> session.prepare("INSERT INTO " + table + " ("
+                + String.join(", ", columns) + ") VALUES (" + String.join(", ", Collections.nCopies(columns.size(), "?"))
+                + ")" + (timestamp != null ? " USING TIMESTAMP ?" : "")));
+
+        ColumnDefinitions variables = insert.getVariables();
+        Object[] values = new Object[variables.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            Object value = row.get(columns.get(i));
+            if (value instanceof String) {
+                try {
+                    value = codecRegistry.codecFor(variables.getType(i)).parse((String) value);
+                } catch (InvalidTypeException | CodecNotFoundException e) {
+                    // functions such as now() are only valid in the query
+                    String query = new CassandraQueryUtils().insertData(table, row);
+                    return timestamp == null ? new SimpleStatement(query)
+                            : new SimpleStatement(query.substring(0, query.length() - 1) + " USING TIMESTAMP " + timestamp);
+                }
+            }
+            values[i] = value;
+        }
+        if (timestamp != null) {
+            values[columns.size()] = timestamp;
+        }
+        return insert.bind(values);
+    }
+
+    /**
+     * Sends the requests with at most maxInFlight of them at the same time, stops at the first error.
+     */
+    private void execute(List<Statement> requests) {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (Statement request : requests) {
+            inFlight.acquireUninterruptibly();
+            if (failure.get() != null) {
+                inFlight.release();
+                break;
+            }
+            ResultSetFuture future = session.executeAsync(request);
+            future.addListener(() -> {
+                try {
+                    future.getUninterruptibly();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    inFlight.release();
+                }
+            }, Runnable::run);
+        }
+        // every request finished
+        inFlight.acquireUninterruptibly(maxInFlight);
+
+        Throwable error = failure.get();
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        } else if (error != null) {
+            throw new IllegalStateException(error);
+        }
+    }
+}
@@ -47,6 +47,8 @@ public class CassandraUtils {
 
     private CassandraQueryUtils cassandraqueryUtils;
 
+    private CassandraBulkLoader bulkLoader;
+
     /**
      * Generic contructor of CassandraUtils.
      */
@@ -72,6 +74,7 @@ public class CassandraUtils {
         LOGGER.debug("Connected to cluster (" + host + "): "
                 + metadata.getClusterName() + "\n");
         this.session = this.cluster.connect();
+        this.bulkLoader = new CassandraBulkLoader(this.session);
     }
 
     /**
@@ -104,6 +107,7 @@ public class CassandraUtils {
         LOGGER.debug("Connected to cluster (" + host + "): "
                 + metadata.getClusterName() + "\n");
         this.session = this.cluster.connect();
+        this.bulkLoader = new CassandraBulkLoader(this.session);
     }
 
     /**
@@ -205,6 +209,16 @@ public class CassandraUtils {
         executeQuery(query);
     }
 
+    /**
+     * Insert rows in a keyspace, with prepared statements sent asynchronously.
+     *
+     * @param table
+     * @param rows  values of every row, as CQL literals
+     */
+    public void insertRows(String table, List<Map<String, Object>> rows) {
+        this.bulkLoader.insert(table, rows);
+    }
+
     /**
      * Checks if a keyspace exists in Cassandra.
      *
@@ -337,6 +351,19 @@ public class CassandraUtils {
      * @param path     The path of the CQL script.
      */
     public void loadTestData(String keyspace, String path) {
+        loadTestData(keyspace, path, false);
+    }
+
+    /**
+     * Load a {@code keyspace} in Cassandra using the CQL sentences in the
+     * script path. The script is executed if the keyspace does not exists in
+     * Cassandra.
+     *
+     * @param keyspace The name of the keyspace.
+     * @param path     The path of the CQL script.
+     * @param parallel true to execute the sentences at the same time, when they do not depend on each other.
+     */
+    public void loadTestData(String keyspace, String path, boolean parallel) {
         KeyspaceMetadata md = session.getCluster().getMetadata().getKeyspace(keyspace);
         if (md == null) {
             LOGGER.info("Creating keyspace {} using {}", keyspace, path);
@@ -344,9 +371,13 @@ public class CassandraUtils {
         }
         List<String> scriptLines = loadScript(path);
         LOGGER.info("Executing {} lines ", scriptLines.size());
-        for (String cql : scriptLines) {
-            ResultSet result = session.execute(cql);
-            LOGGER.debug("Executing: {}", cql);
+        if (parallel) {
+            this.bulkLoader.executeAll(scriptLines);
+        } else {
+            for (String cql : scriptLines) {
+                ResultSet result = session.execute(cql);
+                LOGGER.debug("Executing: {}", cql);
+            }
         }
         LOGGER.info("Using existing keyspace {}", keyspace);
     }
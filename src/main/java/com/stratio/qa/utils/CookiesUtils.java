@@ -21,15 +21,26 @@ import com.ning.http.client.cookie.Cookie;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Cookies added to the REST requests of the running scenario. They are kept per thread, so that scenarios running in
+ * parallel do not share them, and cleared when each scenario starts.
+ */
 public class CookiesUtils {
 
-    private static List<Cookie> cookies = new ArrayList<>();
+    private static final ThreadLocal<List<Cookie>> COOKIES = ThreadLocal.withInitial(ArrayList::new);
 
     public static List<Cookie> getCookies() {
-        return cookies;
+        return COOKIES.get();
     }
 
     public static void setCookies(List<Cookie> newCookies) {
-        cookies = newCookies;
+        COOKIES.set(newCookies);
+    }
+
+    /**
+     * Remove the cookies of the current thread.
+     */
+    public static void clear() {
+        COOKIES.remove();
     }
 }
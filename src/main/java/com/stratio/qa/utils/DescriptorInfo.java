@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.utils;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.PathNotFoundException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Information of a cluster descriptor (descriptor.json in the bootstrap), evaluated in memory with the same results as
+ * the jq expressions previously run in the bootstrap.
+ * <p>
+ * Descriptors are parsed once per content, and every information is evaluated once per descriptor.
+ */
+public final class DescriptorInfo {
+
+    private static final int MAX_DESCRIPTORS = 16;
+
+    private static final Map<String, DescriptorInfo> DESCRIPTORS = new ConcurrentHashMap<>();
+
+    private static final Map<String, Function<Object, String>> INFO = new HashMap<>();
+
+    static {
+        INFO.put("MASTERS", document -> String.join(",", ips(document, role("master"))));
+        INFO.put("NODES", document -> String.join(",", ips(document, role("agent"))));
+        INFO.put("PRIV_NODES", document -> String.join(",", ips(document, role("agent").and(isPublic(false)))));
+        INFO.put("PUBLIC_NODES", document -> String.join(",", ips(document, role("agent").and(isPublic(true)))));
+        INFO.put("PUBLIC_NODE", document -> ips(document, role("agent").and(isPublic(true))).stream().findFirst().orElse(null));
+        INFO.put("GOSEC_NODES", document -> String.join(",", ips(document, role("gosec"))));
+        INFO.put("VAULT_HOST", document -> ips(document, role("gosec")).stream().findFirst().orElse(""));
+        INFO.put("IP", document -> ips(document, role("master")).stream().findFirst().orElse(""));
+        INFO.put("ID", field("$.id"));
+        INFO.put("DNS_SEARCH", field("$.dnsSearch"));
+        INFO.put("INTERNAL_DOMAIN", field("$.internalDomain"));
+        INFO.put("ARTIFACT_REPO", field("$.artifactRepository"));
+        INFO.put("DOCKER_REGISTRY", field("$.dockerRegistry"));
+        INFO.put("EXTERNAL_DOCKER_REGISTRY", field("$.externalDockerRegistry"));
+        INFO.put("REALM", field("$.security.kerberos.realm"));
+        INFO.put("KDC_HOST", field("$.security.kerberos.kdcHost"));
+        INFO.put("KDC_PORT", field("$.security.kerberos.kdcPort"));
+        INFO.put("KADMIN_HOST", field("$.security.kerberos.kadminHost"));
+        INFO.put("KADMIN_PORT", field("$.security.kerberos.kadminPort"));
+        INFO.put("LDAP_HOST", field("$.security.ldap.url"));
+        INFO.put("ADMIN_USER", field("$.security.ldap.adminUserUuid"));
+        INFO.put("TENANT", document -> Optional.ofNullable(field("$.security.tenantSSODefault").apply(document)).orElse("NONE"));
+        INFO.put("ACCESS_POINT", document -> Optional.ofNullable(field("$.proxyAccessPointURL").apply(document))
+                .map(url -> url.replace("https://", "")).orElse(null));
+        INFO.put("LDAP_URL", field("$.security.ldap.url"));
+        INFO.put("LDAP_PORT", field("$.security.ldap.port"));
+        INFO.put("LDAP_USER_DN", field("$.security.ldap.userDn"));
+        INFO.put("LDAP_GROUP_DN", field("$.security.ldap.groupDN"));
+        INFO.put("LDAP_BASE", field("$.security.ldap.ldapBase"));
+        INFO.put("LDAP_ADMIN_GROUP", field("$.security.ldap.adminrouterAuthorizedGroup"));
+    }
+
+    private final Object document;
+
+    private final Map<String, Optional<String>> values = new ConcurrentHashMap<>();
+
+    private DescriptorInfo(String json) {
+        this.document = Configuration.defaultConfiguration().jsonProvider().parse(json);
+    }
+
+    /**
+     * @param json content of the descriptor
+     * @return descriptor, parsed only the first time its content is seen
+     */
+    public static DescriptorInfo of(String json) {
+        String hash = hash(json);
+        DescriptorInfo descriptor = DESCRIPTORS.get(hash);
+        if (descriptor == null) {
+            if (DESCRIPTORS.size() >= MAX_DESCRIPTORS) {
+                DESCRIPTORS.clear();
+            }
+            descriptor = DESCRIPTORS.computeIfAbsent(hash, k -> new DescriptorInfo(json));
+        }
+        return descriptor;
+    }
+
+    /**
+     * @param info information, as in the step "I obtain '...' from descriptor"
+     * @return value, null if the descriptor does not have it
+     * @throws IllegalArgumentException if the information is unknown or the descriptor does not have nodes
+     */
+    public String get(String info) {
+        Function<Object, String> evaluation = INFO.get(info);
+        if (evaluation == null) {
+            throw new IllegalArgumentException("Unknown descriptor info: " + info);
+        }
+        return values.computeIfAbsent(info, k -> Optional.ofNullable(evaluation.apply(document))).orElse(null);
+    }
+
+    private static Function<Object, String> field(String path) {
+        return document -> {
+            try {
+                return text(JsonPath.read(document, path));
+            } catch (PathNotFoundException e) {
+                return null;
+            }
+        };
+    }
+
+    private static Predicate<Map<String, Object>> role(String role) {
+        return node -> role.equals(node.get("role"));
+    }
+
+    private static Predicate<Map<String, Object>> isPublic(boolean isPublic) {
+        return node -> Boolean.valueOf(isPublic).equals(node.get("public"));
+    }
+
+    /**
+     * @return first ip of the nodes matching the filter, "null" for the nodes without ip
+     */
+    @SuppressWarnings("unchecked")
+    private static List<String> ips(Object document, Predicate<Map<String, Object>> filter) {
+        Object nodes;
+        try {
+            nodes = JsonPath.read(document, "$.nodes");
+        } catch (PathNotFoundException e) {
+            nodes = null;
+        }
+        if (!(nodes instanceof List)) {
+            throw new IllegalArgumentException("Descriptor without nodes");
+        }
+        List<String> ips = new ArrayList<>();
+        List<Map<String, Object>> matching = ((List<?>) nodes).stream().filter(node -> node instanceof Map)
+                .map(node -> (Map<String, Object>) node).filter(filter).collect(Collectors.toList());
+        for (Map<String, Object> node : matching) {
+            Object networking = node.get("networking");
+            Object ip = null;
+            if (networking instanceof List && !((List<?>) networking).isEmpty() && ((List<?>) networking).get(0) instanceof Map) {
+                ip = ((Map<?, ?>) ((List<?>) networking).get(0)).get("ip");
+            }
+            ips.add(ip == null ? "null" : text(ip));
+        }
+        return ips;
+    }
+
+    /**
+     * @return value as printed by jq -r
+     */
+    private static String text(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Map || value instanceof List) {
+            return Configuration.defaultConfiguration().jsonProvider().toJson(value);
+        }
+        return value.toString();
+    }
+
+    private static String hash(String json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Variables obtained when discovering a cluster in the setup of @dcos scenarios, so that the bootstrap, ETCD and
+ * Marathon are only queried by the first scenario.
+ * <p>
+ * Variables are kept per cluster for DCOS_DISCOVERY_CACHE_TTL seconds (3600 by default). With
+ * -DDCOS_DISCOVERY_CACHE_DIR they are also saved in that directory, readable by the owner only, and reused by later
+ * executions while the local files obtained in the discovery still exist. They are not saved on file systems without
+ * POSIX permissions. Concurrent callers for the same cluster wait for a single discovery. Caching is disabled with
+ * -DDCOS_DISCOVERY_CACHE=false.
+ */
+public final class DiscoveryCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiscoveryCache.class);
+
+    private static final String TIMESTAMP = "timestamp";
+
+    private static final String VARIABLE_PREFIX = "variable.";
+
+    private static final String FILE_PREFIX = "file.";
+
+    private static final FileAttribute<Set<PosixFilePermission>> OWNER_ONLY = PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"));
+
+    private static final DiscoveryCache INSTANCE = new DiscoveryCache(System::currentTimeMillis,
+            TimeUnit.SECONDS.toMillis(Long.parseLong(System.getProperty("DCOS_DISCOVERY_CACHE_TTL", "3600"))),
+            System.getProperty("DCOS_DISCOVERY_CACHE_DIR") != null ? new File(System.getProperty("DCOS_DISCOVERY_CACHE_DIR")) : null,
+            Boolean.parseBoolean(System.getProperty("DCOS_DISCOVERY_CACHE", "true")));
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    private final LongSupplier currentTimeMillis;
+
+    private final long ttlMs;
+
+    private final File directory;
+
+    private final boolean enabled;
+
+    /**
+     * Discovery returning the variables obtained.
+     */
+    @FunctionalInterface
+    public interface Discovery {
+        Properties discover() throws Exception;
+    }
+
+    private static final class Entry {
+
+        private final Properties variables;
+
+        private final List<String> files;
+
+        private final long timestamp;
+
+        private Entry(Properties variables, List<String> files, long timestamp) {
+            this.variables = variables;
+            this.files = files;
+            this.timestamp = timestamp;
+        }
+    }
+
+    DiscoveryCache(LongSupplier currentTimeMillis, long ttlMs, File directory, boolean enabled) {
+        this.currentTimeMillis = currentTimeMillis;
+        this.ttlMs = ttlMs;
+        this.directory = directory;
+        this.enabled = enabled;
+    }
+
+    public static DiscoveryCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param cluster   identity of the cluster
+     * @param files     local files created by the discovery, obtained from its variables; entries are discarded when
+     *                  any of them is missing
+     * @param discovery discovery to run if there are no valid variables
+     * @return copy of the variables
+     * @throws Exception exception thrown by the discovery
+     */
+    public Properties get(String cluster, Function<Properties, List<String>> files, Discovery discovery) throws Exception {
+        if (!enabled) {
+            return discovery.discover();
+        }
+        synchronized (locks.computeIfAbsent(cluster, k -> new Object())) {
+            Entry entry = entries.get(cluster);
+            if (!isValid(entry)) {
+                entry = load(cluster);
+            }
+            if (isValid(entry)) {
+                LOGGER.debug("Using cached discovery of cluster {}", cluster);
+            } else {
+                Properties variables = discovery.discover();
+                entry = new Entry(copy(variables), new ArrayList<>(files.apply(variables)), currentTimeMillis.getAsLong());
+                entries.put(cluster, entry);
+                save(cluster, entry);
+            }
+            return copy(entry.variables);
+        }
+    }
+
+    /**
+     * Discard the variables of all clusters, in memory and on disk.
+     */
+    public void invalidate() {
+        entries.clear();
+        File[] saved = directory != null ? directory.listFiles((dir, name) -> name.endsWith(".properties")) : null;
+        if (saved != null) {
+            for (File file : saved) {
+                if (!file.delete()) {
+                    LOGGER.warn("Could not delete cached discovery {}", file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Discard the variables of a cluster, in memory and on disk.
+     *
+     * @param cluster identity of the cluster
+     */
+    public void invalidate(String cluster) {
+        entries.remove(cluster);
+        File file = file(cluster);
+        if (file != null && file.exists() && !file.delete()) {
+            LOGGER.warn("Could not delete cached discovery {}", file);
+        }
+    }
+
+    private boolean isValid(Entry entry) {
+        if (entry == null || currentTimeMillis.getAsLong() - entry.timestamp >= ttlMs) {
+            return false;
+        }
+        for (String file : entry.files) {
+            if (!new File(file).exists()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Entry load(String cluster) {
+        File file = file(cluster);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        Properties saved = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            saved.load(in);
+        } catch (IOException e) {
+            LOGGER.warn("Could not read cached discovery {}: {}", file, e.getMessage());
+            return null;
+        }
+        Properties variables = new Properties();
+        List<String> files = new ArrayList<>();
+        for (String name : saved.stringPropertyNames()) {
+            if (name.startsWith(VARIABLE_PREFIX)) {
+                variables.setProperty(name.substring(VARIABLE_PREFIX.length()), saved.getProperty(name));
+            } else if (name.startsWith(FILE_PREFIX)) {
+                files.add(saved.getProperty(name));
+            }
+        }
+        Entry entry = new Entry(variables, files, Long.parseLong(saved.getProperty(TIMESTAMP, "0")));
+        entries.put(cluster, entry);
+        return entry;
+    }
+
+    private void save(String cluster, Entry entry) {
+        File file = file(cluster);
+        if (file == null) {
+            return;
+        }
+        Properties saved = new Properties();
+        saved.setProperty(TIMESTAMP, String.valueOf(entry.timestamp));
+        for (String name : entry.variables.stringPropertyNames()) {
+            saved.setProperty(VARIABLE_PREFIX + name, entry.variables.getProperty(name));
+        }
+        for (int i = 0; i < entry.files.size(); i++) {
+            saved.setProperty(FILE_PREFIX + i, entry.files.get(i));
+        }
+        try {
+            Files.createDirectories(directory.toPath());
+            if (!directory.toPath().getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                LOGGER.warn("Cached discovery not saved, {} cannot be made readable by the owner only", directory);
+                return;
+            }
+            // variables include credentials: created readable by the owner only, and replaced in one step
+            Path temp = Files.createTempFile(directory.toPath(), "discovery", ".tmp", OWNER_ONLY);
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    saved.store(out, "Discovery of " + cluster);
+                }
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not save cached discovery {}: {}", file, e.getMessage());
+        }
+    }
+
+    private File file(String cluster) {
+        if (directory == null) {
+            return null;
+        }
+        try {
+            StringBuilder name = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(cluster.getBytes(StandardCharsets.UTF_8))) {
+                name.append(String.format("%02x", b));
+            }
+            return new File(directory, name.append(".properties").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Properties copy(Properties properties) {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        return copy;
+    }
+}
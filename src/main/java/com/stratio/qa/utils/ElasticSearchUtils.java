@@ -20,14 +20,20 @@ import org.apache.http.HttpHost;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkProcessor;
 import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.ClearScrollRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
@@ -37,6 +43,8 @@ import org.elasticsearch.client.indices.GetMappingsResponse;
 import org.elasticsearch.client.indices.PutMappingRequest;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentType;
@@ -53,6 +61,7 @@ import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.TrustManagerFactory;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -61,15 +70,20 @@ import java.nio.file.Paths;
 import java.security.*;
 import java.security.cert.CertificateException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 
 public class ElasticSearchUtils extends RestClient.FailureListener {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ElasticSearchUtil.class);
 
+    private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+
     private String es_host;
 
     private int es_native_port;
@@ -78,12 +92,27 @@ public class ElasticSearchUtils extends RestClient.FailureListener {
 
     private Settings settings;
 
+    private final int bulkActions;
+
+    private final int bulkSizeMb;
+
+    private final int bulkFlushSeconds;
+
+    private final int bulkConcurrentRequests;
+
+    private final int scrollSize;
+
     /**
      * Default constructor.
      */
     public ElasticSearchUtils() {
         this.es_host = System.getProperty("ES_NODE", "127.0.0.1");
         this.es_native_port = Integer.valueOf(System.getProperty("ES_NATIVE_PORT", "9200"));
+        this.bulkActions = Integer.parseInt(System.getProperty("ES_BULK_ACTIONS", "1000"));
+        this.bulkSizeMb = Integer.parseInt(System.getProperty("ES_BULK_SIZE_MB", "5"));
+        this.bulkFlushSeconds = Integer.parseInt(System.getProperty("ES_BULK_FLUSH_SECONDS", "5"));
+        this.bulkConcurrentRequests = Integer.parseInt(System.getProperty("ES_BULK_CONCURRENT_REQUESTS", "2"));
+        this.scrollSize = Integer.parseInt(System.getProperty("ES_SCROLL_SIZE", "1000"));
     }
 
     public Settings getSettings() {
@@ -278,6 +307,23 @@ public class ElasticSearchUtils extends RestClient.FailureListener {
      */
     public List<JSONObject> searchSimpleFilterElasticsearchQuery(String indexName, String columnName, Object value, String filterType) throws Exception {
         List<JSONObject> resultsJSON = new ArrayList<JSONObject>();
+        try (ScrollIterator results = scrollSimpleFilterElasticsearchQuery(indexName, columnName, value, filterType)) {
+            results.forEachRemaining(resultsJSON::add);
+        }
+        return resultsJSON;
+    }
+
+    /**
+     * Simulate a SELET * FROM index.mapping WHERE (One simple filter), reading the rows as they are needed
+     *
+     * @param indexName
+     * @param columnName
+     * @param value
+     * @param filterType  [equals, gt, gte, lt, lte]
+     * @return every row, read in pages of ES_SCROLL_SIZE rows (1000 by default). Close it if not read to the end
+     * @throws Exception
+     */
+    public ScrollIterator scrollSimpleFilterElasticsearchQuery(String indexName, String columnName, Object value, String filterType) throws Exception {
         QueryBuilder query;
         switch (filterType) {
             case "equals":
@@ -298,18 +344,158 @@ public class ElasticSearchUtils extends RestClient.FailureListener {
             default:
                 throw new Exception("Filter not implemented in the library");
         }
+        return scrollElasticsearchQuery(indexName, query);
+    }
 
-        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder().query(query).timeout(new TimeValue(60, TimeUnit.SECONDS));
-        SearchRequest searchRequest = new SearchRequest().indices(indexName).source(searchSourceBuilder);
-        SearchResponse searchResponse = client.search(searchRequest, RequestOptions.DEFAULT);
-        SearchHit[] hits = searchResponse.getHits().getHits();
-        for (SearchHit hit : hits) {
+    /**
+     * Search every document matching a query. The first page is requested when the first document is needed.
+     *
+     * @param indexName
+     * @param query
+     * @return sources of the documents, read in pages of ES_SCROLL_SIZE documents (1000 by default). Close it if not
+     * read to the end
+     */
+    public ScrollIterator scrollElasticsearchQuery(String indexName, QueryBuilder query) {
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder().query(query).size(scrollSize).timeout(new TimeValue(60, TimeUnit.SECONDS));
+        return new ScrollIterator(new SearchRequest().indices(indexName).source(searchSourceBuilder).scroll(SCROLL_KEEP_ALIVE));
+    }
 
+    /**
+     * Pages of a search, the scroll is cleared after the last one or when closed.
+     */
+    public class ScrollIterator implements Iterator<JSONObject>, Closeable {
+
+        private SearchRequest searchRequest;
+
+        private String scrollId;
 
+        private SearchHit[] hits = new SearchHit[0];
 
-            resultsJSON.add(new JSONObject(hit.getSourceAsString()));
+        private int position;
+
+        ScrollIterator(SearchRequest searchRequest) {
+            this.searchRequest = searchRequest;
         }
-        return resultsJSON;
+
+        @Override
+        public boolean hasNext() {
+            if (position < hits.length) {
+                return true;
+            }
+            if (searchRequest == null && scrollId == null) {
+                return false;
+            }
+            try {
+                SearchResponse searchResponse;
+                if (searchRequest != null) {
+                    searchResponse = client.search(searchRequest, RequestOptions.DEFAULT);
+                    searchRequest = null;
+                } else {
+                    searchResponse = client.scroll(new SearchScrollRequest(scrollId).scroll(SCROLL_KEEP_ALIVE), RequestOptions.DEFAULT);
+                }
+                scrollId = searchResponse.getScrollId();
+                hits = searchResponse.getHits().getHits();
+                position = 0;
+                if (hits.length == 0) {
+                    clearScroll();
+                }
+            } catch (IOException e) {
+                throw new ElasticsearchException("Error searching documents", e);
+            }
+            return position < hits.length;
+        }
+
+        private void clearScroll() throws IOException {
+            if (scrollId != null) {
+                ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+                clearScrollRequest.addScrollId(scrollId);
+                scrollId = null;
+                client.clearScroll(clearScrollRequest, RequestOptions.DEFAULT);
+            }
+        }
+
+        /**
+         * Stop reading, clearing the scroll if the last page has not been read.
+         *
+         * @throws IOException exception
+         */
+        @Override
+        public void close() throws IOException {
+            searchRequest = null;
+            hits = new SearchHit[0];
+            clearScroll();
+        }
+
+        @Override
+        public JSONObject next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return new JSONObject(hits[position++].getSourceAsString());
+        }
+    }
+
+    /**
+     * Indexes documents with a bulk processor. Requests are sent every ES_BULK_ACTIONS documents (1000 by default),
+     * ES_BULK_SIZE_MB megabytes (5 by default) or ES_BULK_FLUSH_SECONDS seconds (5 by default), with up to
+     * ES_BULK_CONCURRENT_REQUESTS of them at the same time (2 by default). The index is refreshed at the end.
+     *
+     * @param indexName
+     * @param documents   JSON documents by their unique identifier
+     * @return number of documents indexed
+     */
+    public long indexDocuments(String indexName, Iterator<Map.Entry<String, String>> documents) {
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        BulkProcessor.Listener listener = new BulkProcessor.Listener() {
+            @Override
+            public void beforeBulk(long executionId, BulkRequest request) {
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+                if (response.hasFailures()) {
+                    failures.add(response.buildFailureMessage());
+                }
+                LOGGER.debug("Indexed {} documents in {}: {} docs/s", request.numberOfActions(), indexName,
+                        request.numberOfActions() * 1000L / Math.max(1, response.getTook().millis()));
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+                failures.add(failure.toString());
+            }
+        };
+        BulkProcessor processor = BulkProcessor.builder((request, bulkListener) -> client.bulkAsync(request, RequestOptions.DEFAULT, bulkListener), listener)
+                .setBulkActions(bulkActions)
+                .setBulkSize(new ByteSizeValue(bulkSizeMb, ByteSizeUnit.MB))
+                .setFlushInterval(TimeValue.timeValueSeconds(bulkFlushSeconds))
+                .setConcurrentRequests(bulkConcurrentRequests)
+                .setBackoffPolicy(BackoffPolicy.exponentialBackoff())
+                .build();
+
+        long start = System.nanoTime();
+        long total = 0;
+        while (documents.hasNext()) {
+            Map.Entry<String, String> document = documents.next();
+            processor.add(new IndexRequest(indexName).id(document.getKey()).source(document.getValue(), XContentType.JSON));
+            total++;
+        }
+        try {
+            if (!processor.awaitClose(10, TimeUnit.MINUTES)) {
+                failures.add("Timeout waiting for the bulk requests");
+            }
+            client.indices().refresh(new RefreshRequest(indexName), RequestOptions.DEFAULT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.add(e.toString());
+        } catch (IOException e) {
+            failures.add(e.toString());
+        }
+        if (!failures.isEmpty()) {
+            throw new ElasticsearchException("Error indexing documents: " + failures.get(0));
+        }
+        LOGGER.info("Indexed {} documents in {}: {} docs/s", total, indexName, total * 1000000000L / Math.max(1, System.nanoTime() - start));
+        return total;
     }
 
     /**
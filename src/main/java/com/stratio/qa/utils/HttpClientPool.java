@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.utils;
+
+import com.ning.http.client.AsyncHandler;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClientConfig;
+import com.ning.http.client.filter.FilterContext;
+import com.ning.http.client.filter.FilterException;
+import com.ning.http.client.filter.RequestFilter;
+import com.ning.http.client.uri.Uri;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * HTTP client shared by all the scenarios of the execution, so that connections are kept alive and reused instead of
+ * opened (and TLS negotiated) again for every scenario.
+ * <p>
+ * Requests to the same host are limited to HTTP_MAX_CONNECTIONS_PER_HOST at a time (20 by default); further requests
+ * wait for a free slot up to HTTP_MAX_WAIT_MS milliseconds (60000 by default). Pooled connections that have been idle
+ * for HTTP_POOLED_IDLE_TIMEOUT_MS milliseconds (30000 by default) are closed.
+ * <p>
+ * The client holds no per-scenario state: cookies and headers are added to each request by
+ * {@link com.stratio.qa.specs.CommonG#generateRequest}.
+ */
+public final class HttpClientPool {
+
+    private static final int MAX_CONNECTIONS_PER_HOST = Integer.parseInt(System.getProperty("HTTP_MAX_CONNECTIONS_PER_HOST", "20"));
+
+    private static final long MAX_WAIT_MS = Long.parseLong(System.getProperty("HTTP_MAX_WAIT_MS", "60000"));
+
+    private static final int POOLED_IDLE_TIMEOUT_MS = Integer.parseInt(System.getProperty("HTTP_POOLED_IDLE_TIMEOUT_MS", "30000"));
+
+    private static AsyncHttpClient sharedClient;
+
+    private static boolean shutdownHookAdded;
+
+    private HttpClientPool() {
+    }
+
+    /**
+     * @return client shared by all scenarios, created on first use and closed when the JVM exits
+     */
+    public static synchronized AsyncHttpClient getSharedClient() {
+        if (sharedClient == null || sharedClient.isClosed()) {
+            sharedClient = newClient(MAX_CONNECTIONS_PER_HOST, MAX_WAIT_MS, POOLED_IDLE_TIMEOUT_MS);
+            if (!shutdownHookAdded) {
+                Runtime.getRuntime().addShutdownHook(new Thread(HttpClientPool::closeSharedClient));
+                shutdownHookAdded = true;
+            }
+        }
+        return sharedClient;
+    }
+
+    /**
+     * Close the shared client, the next call to {@link #getSharedClient()} will create a new one.
+     */
+    public static synchronized void closeSharedClient() {
+        if (sharedClient != null) {
+            sharedClient.close();
+            sharedClient = null;
+        }
+    }
+
+    /**
+     * @param maxConnectionsPerHost maximum concurrent requests to the same host
+     * @param maxWaitMs             maximum time a request waits for a free slot to its host
+     * @param idleTimeoutMs         time after which idle pooled connections are closed
+     * @return new pooled client accepting any certificate
+     */
+    static AsyncHttpClient newClient(int maxConnectionsPerHost, long maxWaitMs, int idleTimeoutMs) {
+        return new AsyncHttpClient(new AsyncHttpClientConfig.Builder()
+                .setAcceptAnyCertificate(true)
+                .setAllowPoolingConnections(true)
+                .setAllowPoolingSslConnections(true)
+                .setPooledConnectionIdleTimeout(idleTimeoutMs)
+                .addRequestFilter(new PerHostThrottle(maxConnectionsPerHost, maxWaitMs))
+                .build());
+    }
+
+    /**
+     * Request filter that blocks requests while its host has too many of them in flight.
+     */
+    static final class PerHostThrottle implements RequestFilter {
+
+        private final Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+
+        private final int maxConnections;
+
+        private final long maxWaitMs;
+
+        PerHostThrottle(int maxConnections, long maxWaitMs) {
+            this.maxConnections = maxConnections;
+            this.maxWaitMs = maxWaitMs;
+        }
+
+        @Override
+        public <T> FilterContext<T> filter(FilterContext<T> ctx) throws FilterException {
+            Uri uri = ctx.getRequest().getUri();
+            String host = uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+            Semaphore permits = hosts.computeIfAbsent(host, key -> new Semaphore(maxConnections));
+            try {
+                if (!permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                    throw new FilterException("No free connection to " + host + " after " + maxWaitMs + " ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FilterException("Interrupted waiting for a free connection to " + host);
+            }
+            return new FilterContext.FilterContextBuilder<>(ctx)
+                    .asyncHandler(ReleasingHandler.wrap(ctx.getAsyncHandler(), permits))
+                    .build();
+        }
+
+        int available(String host) {
+            Semaphore permits = hosts.get(host);
+            return permits == null ? maxConnections : permits.availablePermits();
+        }
+    }
+
+    /**
+     * Handler that frees the slot of its request when the response is completed, aborted or fails. It is a proxy
+     * implementing every interface of the wrapped handler, so that callbacks of extensions such as
+     * {@link com.ning.http.client.AsyncHandlerExtensions} or {@link com.ning.http.client.ProgressAsyncHandler} still
+     * reach it.
+     */
+    static final class ReleasingHandler implements InvocationHandler {
+
+        private final AsyncHandler<?> handler;
+
+        private final Semaphore permits;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ReleasingHandler(AsyncHandler<?> handler, Semaphore permits) {
+            this.handler = handler;
+            this.permits = permits;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <T> AsyncHandler<T> wrap(AsyncHandler<T> handler, Semaphore permits) {
+            Set<Class<?>> interfaces = new LinkedHashSet<>();
+            interfaces.add(AsyncHandler.class);
+            for (Class<?> type = handler.getClass(); type != null; type = type.getSuperclass()) {
+                Collections.addAll(interfaces, type.getInterfaces());
+            }
+            return (AsyncHandler<T>) Proxy.newProxyInstance(handler.getClass().getClassLoader(),
+                    interfaces.toArray(new Class<?>[0]), new ReleasingHandler(handler, permits));
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            boolean last = "onCompleted".equals(method.getName()) || "onThrowable".equals(method.getName());
+            try {
+                Object result = method.invoke(handler, args);
+                if (result == AsyncHandler.STATE.ABORT) {
+                    release();
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (last) {
+                    release();
+                }
+            }
+        }
+    }
+}
@@ -16,7 +16,10 @@
 
 package com.stratio.qa.utils;
 
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
 import com.ning.http.client.cookie.Cookie;
+import org.hjson.JsonValue;
 
 import java.util.List;
 
@@ -28,6 +31,8 @@ public class HttpResponse {
 
     private List<Cookie> cookies;
 
+    private DocumentContext document;
+
     /**
      * Constructor of an HttpResponse.
      *
@@ -52,8 +57,21 @@ public class HttpResponse {
         return response;
     }
 
-    public void setResponse(String response) {
+    public synchronized void setResponse(String response) {
         this.response = response;
+        this.document = null;
+    }
+
+    /**
+     * Response parsed as json (or Hjson), parsed only the first time it is used. It must only be read.
+     *
+     * @return parsed response
+     */
+    public synchronized DocumentContext getDocument() {
+        if (document == null) {
+            document = JsonPath.parse(JsonValue.readHjson(response).toString());
+        }
+        return document;
     }
 
     public List<Cookie> getCookies() {
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs commands in a local shell. Standard output and error are read while the command runs, keeping the last
+ * LOCAL_MAX_OUTPUT_BYTES bytes of each (16 MiB by default), so commands with large outputs neither block nor fill the
+ * memory. Truncated outputs start with a line saying how many bytes were discarded. Commands that time out are killed together with the processes they started.
+ */
+public final class LocalCommandExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalCommandExecutor.class);
+
+    /**
+     * Time to wait for the output after the command exits, in case it left processes writing to it in background
+     */
+    private static final long OUTPUT_GRACE_MS = 1000;
+
+    private static final ExecutorService PUMPS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "local-command-output");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final LocalCommandExecutor INSTANCE = new LocalCommandExecutor(
+            Integer.parseInt(System.getProperty("LOCAL_MAX_OUTPUT_BYTES", String.valueOf(16 * 1024 * 1024))));
+
+    private final int maxOutputBytes;
+
+    /**
+     * @param maxOutputBytes bytes kept of the standard output and of the standard error
+     */
+    public LocalCommandExecutor(int maxOutputBytes) {
+        this.maxOutputBytes = maxOutputBytes;
+    }
+
+    public static LocalCommandExecutor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Result of a command.
+     */
+    public static final class Result {
+
+        private final int exitStatus;
+
+        private final String output;
+
+        private final String errorOutput;
+
+        private final boolean truncated;
+
+        private final long duration;
+
+        private Result(int exitStatus, String output, String errorOutput, boolean truncated, long duration) {
+            this.exitStatus = exitStatus;
+            this.output = output;
+            this.errorOutput = errorOutput;
+            this.truncated = truncated;
+            this.duration = duration;
+        }
+
+        public int getExitStatus() {
+            return exitStatus;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        public String getErrorOutput() {
+            return errorOutput;
+        }
+
+        /**
+         * @return whether the standard output or error was longer than the limit and only its end was kept
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        public long getDuration(TimeUnit unit) {
+            return unit.convert(duration, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Run a command with /bin/sh.
+     *
+     * @param command command
+     * @param timeout maximum time to wait for the command, 0 to wait indefinitely
+     * @param unit    unit of the timeout
+     * @return exit status and output of the command
+     * @throws IOException          if the shell cannot be started
+     * @throws TimeoutException     if the command does not finish in time, it is killed with its child processes
+     * @throws InterruptedException if interrupted while waiting, the command is killed with its child processes
+     */
+    public Result run(String command, long timeout, TimeUnit unit) throws IOException, TimeoutException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder("/bin/sh", "-c", command).start();
+        process.getOutputStream().close();
+        BoundedOutput stdout = new BoundedOutput(maxOutputBytes);
+        BoundedOutput stderr = new BoundedOutput(maxOutputBytes);
+        Future<?> outPump = PUMPS.submit(() -> pump(process.getInputStream(), stdout));
+        Future<?> errPump = PUMPS.submit(() -> pump(process.getErrorStream(), stderr));
+        try {
+            if (timeout <= 0) {
+                process.waitFor();
+            } else if (!process.waitFor(timeout, unit)) {
+                throw new TimeoutException("Command '" + command + "' did not finish in " + unit.toMillis(timeout) + " ms");
+            }
+            long outputDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(OUTPUT_GRACE_MS);
+            awaitOutput(outPump, outputDeadline, command);
+            awaitOutput(errPump, outputDeadline, command);
+        } finally {
+            if (process.isAlive()) {
+                destroyTree(process);
+            }
+        }
+        if (stdout.isTruncated() || stderr.isTruncated()) {
+            LOGGER.warn("Output of command '{}' truncated to its last {} bytes", command, maxOutputBytes);
+        }
+        Result result = new Result(process.exitValue(), stdout.toString(), stderr.toString(),
+                stdout.isTruncated() || stderr.isTruncated(), System.nanoTime() - start);
+        if (!result.getErrorOutput().isEmpty()) {
+            LOGGER.debug("Error output of command '{}': {}", command, result.getErrorOutput());
+        }
+        return result;
+    }
+
+    private static Void pump(InputStream in, BoundedOutput out) throws IOException {
+        try (InputStream input = in) {
+            return out.readFrom(input);
+        }
+    }
+
+    private static void awaitOutput(Future<?> pump, long deadline, String command) throws IOException, InterruptedException {
+        try {
+            pump.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.debug("Command '{}' left processes holding its output, not waiting for them", command);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Kill a process and all its descendants.
+     */
+    static void destroyTree(Process process) {
+        long pid = pid(process);
+        List<Long> descendants = new ArrayList<>();
+        if (pid > 0) {
+            collectDescendants(pid, descendants);
+        }
+        process.destroyForcibly();
+        for (Long descendant : descendants) {
+            try {
+                new ProcessBuilder("kill", "-9", String.valueOf(descendant)).start().waitFor();
+            } catch (IOException e) {
+                LOGGER.warn("Could not kill process {}: {}", descendant, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static void collectDescendants(long pid, List<Long> descendants) {
+        try {
+            Process pgrep = new ProcessBuilder("pgrep", "-P", String.valueOf(pid)).redirectErrorStream(true).start();
+            List<Long> children = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(pgrep.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().matches("\\d+")) {
+                        children.add(Long.parseLong(line.trim()));
+                    }
+                }
+            }
+            pgrep.waitFor();
+            for (Long child : children) {
+                descendants.add(child);
+                collectDescendants(child, descendants);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not list the child processes of {}: {}", pid, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return pid of the process, -1 if unknown
+     */
+    private static long pid(Process process) {
+        try {
+            // Java 9 and later
+            return (Long) Process.class.getMethod("pid").invoke(process);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            try {
+                Field field = process.getClass().getDeclaredField("pid");
+                field.setAccessible(true);
+                return field.getLong(process);
+            } catch (ReflectiveOperationException | RuntimeException e1) {
+                return -1;
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.stratio.qa.utils;
 
+import com.csvreader.CsvReader;
 import com.mongodb.*;
 import com.mongodb.util.JSON;
 import com.stratio.qa.exceptions.DBException;
@@ -23,10 +24,18 @@ import io.cucumber.datatable.DataTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -41,6 +50,10 @@ public class MongoDBUtils {
 
     private final int port;
 
+    private final int batchSize;
+
+    private final WriteConcern writeConcern;
+
     private MongoClient mongoClient;
 
     private DB dataBase;
@@ -51,6 +64,12 @@ public class MongoDBUtils {
     public MongoDBUtils() {
         this.host = System.getProperty("MONGO_HOST", "127.0.0.1");
         this.port = Integer.parseInt(System.getProperty("MONGO_PORT", "27017"));
+        this.batchSize = Integer.parseInt(System.getProperty("MONGO_BATCH_SIZE", "1000"));
+        String concern = System.getProperty("MONGO_WRITE_CONCERN", "ACKNOWLEDGED");
+        this.writeConcern = WriteConcern.valueOf(concern);
+        if (this.writeConcern == null) {
+            throw new IllegalArgumentException("Unknown MongoDB write concern: " + concern);
+        }
     }
 
     /**
@@ -200,17 +219,145 @@ public class MongoDBUtils {
     public void insertIntoMongoDBCollection(String collection, DataTable table) {
         // Primero pasamos la fila del datatable a un hashmap de ColumnName-Type
         List<String[]> colRel = coltoArrayList(table);
-        // Vamos insertando fila a fila
-        for (int i = 1; i < table.cells().size(); i++) {
-            // Obtenemos la fila correspondiente
-            BasicDBObject doc = new BasicDBObject();
-            List<String> row = table.cells().get(i);
-            for (int x = 0; x < row.size(); x++) {
-                String[] colNameType = colRel.get(x);
-                Object data = castSTringTo(colNameType[1], row.get(x));
-                doc.put(colNameType[0], data);
+        List<List<String>> rows = table.cells().subList(1, table.cells().size());
+        Iterator<List<String>> rowsIterator = rows.iterator();
+        insertDocumentsIntoMongoDBCollection(collection, new DocumentIterator() {
+            @Override
+            DBObject read() {
+                return rowsIterator.hasNext() ? toDocument(colRel, rowsIterator.next()) : null;
+            }
+        });
+    }
+
+    /**
+     * Insert the documents of a resource in a MongoDB Collection, reading them as they are inserted.
+     *
+     * @param collection
+     * @param path       resource with a JSON document per line or, if its name ends with .csv, a CSV file whose
+     *                   header has the columns as name-Type (String by default)
+     * @return number of documents inserted
+     * @throws DBException if the resource does not exist
+     */
+    public long loadIntoMongoDBCollection(String collection, String path) throws DBException {
+        InputStream stream = getClass().getClassLoader().getResourceAsStream(path);
+        if (stream == null) {
+            throw new DBException("File does not exist: " + path);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            LOGGER.info("Loading documents into {} from {}", collection, path);
+            return insertDocumentsIntoMongoDBCollection(collection, path.endsWith(".csv") ? csvDocuments(reader) : jsonDocuments(reader));
+        } catch (IOException e) {
+            throw new DBException(e.toString());
+        }
+    }
+
+    /**
+     * Insert documents in a MongoDB Collection with unordered bulk operations of MONGO_BATCH_SIZE documents (1000 by
+     * default) and the MONGO_WRITE_CONCERN write concern (ACKNOWLEDGED by default).
+     *
+     * @param collection
+     * @param documents  documents, only a batch of them is kept in memory
+     * @return number of documents inserted
+     */
+    public long insertDocumentsIntoMongoDBCollection(String collection, Iterator<DBObject> documents) {
+        DBCollection dbCollection = this.dataBase.getCollection(collection);
+        long total = 0;
+        long start = System.nanoTime();
+        while (documents.hasNext()) {
+            long batchStart = System.nanoTime();
+            BulkWriteOperation bulk = dbCollection.initializeUnorderedBulkOperation();
+            int size = 0;
+            while (size < batchSize && documents.hasNext()) {
+                bulk.insert(documents.next());
+                size++;
+            }
+            bulk.execute(writeConcern);
+            total += size;
+            LOGGER.debug("Inserted {} documents into {}: {} docs/s", size, collection, perSecond(size, batchStart));
+        }
+        LOGGER.info("Inserted {} documents into {}: {} docs/s", total, collection, perSecond(total, start));
+        return total;
+    }
+
+    private static long perSecond(long documents, long start) {
+        return documents * 1000000000L / Math.max(1, System.nanoTime() - start);
+    }
+
+    /**
+     * @return documents of the JSON lines, blank lines are skipped
+     */
+    static Iterator<DBObject> jsonDocuments(BufferedReader reader) {
+        return new DocumentIterator() {
+            @Override
+            DBObject read() throws IOException {
+                String line;
+                do {
+                    line = reader.readLine();
+                } while (line != null && line.trim().isEmpty());
+                return line == null ? null : (DBObject) JSON.parse(line);
+            }
+        };
+    }
+
+    /**
+     * @return documents of the CSV rows, the header has the columns as name-Type
+     */
+    static Iterator<DBObject> csvDocuments(BufferedReader reader) throws IOException {
+        CsvReader csv = new CsvReader(reader, ',');
+        List<String[]> colRel = new ArrayList<>();
+        if (csv.readHeaders()) {
+            for (String header : csv.getHeaders()) {
+                String[] colNameType = header.split("-");
+                colRel.add(colNameType.length > 1 ? colNameType : new String[]{header, "String"});
             }
-            this.dataBase.getCollection(collection).insert(doc);
+        }
+        return new DocumentIterator() {
+            @Override
+            DBObject read() throws IOException {
+                if (!csv.readRecord()) {
+                    return null;
+                }
+                List<String> row = new ArrayList<>();
+                for (int x = 0; x < colRel.size(); x++) {
+                    row.add(csv.get(x));
+                }
+                return toDocument(colRel, row);
+            }
+        };
+    }
+
+    /**
+     * Documents read one at a time, the next one is read when asked if there is one.
+     */
+    abstract static class DocumentIterator implements Iterator<DBObject> {
+
+        private DBObject next;
+
+        /**
+         * @return next document, null if there are no more
+         */
+        abstract DBObject read() throws IOException;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = read();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public DBObject next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            DBObject document = next;
+            next = null;
+            return document;
         }
     }
 
@@ -241,13 +388,7 @@ public class MongoDBUtils {
         DBCollection aux = this.dataBase.getCollection(collection);
         for (int i = 1; i < table.cells().size(); i++) {
             // Obtenemos la fila correspondiente
-            BasicDBObject doc = new BasicDBObject();
-            List<String> row = table.cells().get(i);
-            for (int x = 0; x < row.size(); x++) {
-                String[] colNameType = colRel.get(x);
-                Object data = castSTringTo(colNameType[1], row.get(x));
-                doc.put(colNameType[0], data);
-            }
+            BasicDBObject doc = toDocument(colRel, table.cells().get(i));
             DBCursor cursor = aux.find(doc);
             try {
                 while (cursor.hasNext()) {
@@ -272,18 +413,28 @@ public class MongoDBUtils {
         return res;
     }
 
-    private Object castSTringTo(String dataType, String data) {
+    private static BasicDBObject toDocument(List<String[]> colRel, List<String> row) {
+        BasicDBObject doc = new BasicDBObject();
+        for (int x = 0; x < row.size(); x++) {
+            String[] colNameType = colRel.get(x);
+            Object data = castSTringTo(colNameType[1], row.get(x));
+            doc.put(colNameType[0], data);
+        }
+        return doc;
+    }
+
+    private static Object castSTringTo(String dataType, String data) {
         switch (dataType) {
             case "String":
                 return data;
             case "Integer":
                 return Integer.parseInt(data);
             case "Double":
-                return Double.parseDouble(dataType);
+                return Double.parseDouble(data);
             case "Boolean":
-                return Boolean.parseBoolean(dataType);
+                return Boolean.parseBoolean(data);
             case "Timestamp":
-                return Timestamp.valueOf(dataType);
+                return Timestamp.valueOf(data);
             default:
                 return null;
         }
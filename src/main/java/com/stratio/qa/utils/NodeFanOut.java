@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a task in several nodes at the same time, with at most a given number of tasks running at once, and collects
+ * the result of each node.
+ */
+public final class NodeFanOut {
+
+    /**
+     * What to do when a node fails.
+     */
+    public enum Policy {
+        /**
+         * Cancel the tasks of the rest of nodes
+         */
+        FAIL_FAST,
+        /**
+         * Let the tasks of the rest of nodes finish
+         */
+        COLLECT_ALL
+    }
+
+    /**
+     * Task run in each node.
+     */
+    @FunctionalInterface
+    public interface NodeTask {
+        RemoteSSHConnection.CommandResult run(String node) throws Exception;
+    }
+
+    public enum Status {
+        SUCCEEDED, FAILED, CANCELLED
+    }
+
+    /**
+     * Result of the task in a node.
+     */
+    public static final class NodeResult {
+
+        private final String node;
+
+        private final Status status;
+
+        private final RemoteSSHConnection.CommandResult result;
+
+        private final Throwable error;
+
+        private final long duration;
+
+        private NodeResult(String node, Status status, RemoteSSHConnection.CommandResult result, Throwable error, long duration) {
+            this.node = node;
+            this.status = status;
+            this.result = result;
+            this.error = error;
+            this.duration = duration;
+        }
+
+        public String getNode() {
+            return node;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return exit status, -1 if the task threw an exception or was cancelled
+         */
+        public int getExitStatus() {
+            return result != null ? result.getExitStatus() : -1;
+        }
+
+        public String getOutput() {
+            return result != null ? result.getOutput() : "";
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        public long getDuration(TimeUnit unit) {
+            return unit.convert(duration, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(node).append(": ").append(status);
+            if (status != Status.CANCELLED) {
+                sb.append(" (exit status ").append(getExitStatus()).append(", ").append(getDuration(TimeUnit.MILLISECONDS)).append(" ms)");
+            }
+            if (error != null) {
+                sb.append(" ").append(error);
+            }
+            if (!getOutput().isEmpty()) {
+                sb.append("\n    ").append(getOutput().replace("\n", "\n    "));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Results of all nodes, in the order of the nodes.
+     */
+    public static final class Report {
+
+        private final List<NodeResult> results;
+
+        private Report(List<NodeResult> results) {
+            this.results = Collections.unmodifiableList(results);
+        }
+
+        public List<NodeResult> getResults() {
+            return results;
+        }
+
+        public List<NodeResult> getFailures() {
+            return results.stream().filter(result -> result.getStatus() != Status.SUCCEEDED).collect(Collectors.toList());
+        }
+
+        public boolean isSuccessful() {
+            return getFailures().isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return results.stream().map(NodeResult::toString).collect(Collectors.joining("\n"));
+        }
+    }
+
+    private final int parallelism;
+
+    private final Policy policy;
+
+    /**
+     * @param parallelism maximum number of nodes running the task at once
+     * @param policy      what to do when a node fails
+     */
+    public NodeFanOut(int parallelism, Policy policy) {
+        this.parallelism = parallelism;
+        this.policy = policy;
+    }
+
+    /**
+     * Run the task in all nodes. A node fails if its task throws an exception or returns a non zero exit status.
+     *
+     * @param nodes nodes
+     * @param task  task
+     * @return results of all nodes
+     * @throws InterruptedException if interrupted while waiting for the nodes, their tasks are cancelled
+     */
+    public Report run(List<String> nodes, NodeTask task) throws InterruptedException {
+        NodeResult[] results = new NodeResult[nodes.size()];
+        if (nodes.isEmpty()) {
+            return new Report(new ArrayList<>());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, nodes.size()), runnable -> {
+            Thread thread = new Thread(runnable, "node-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<NodeResult> completion = new ExecutorCompletionService<>(executor);
+        List<Future<NodeResult>> futures = new ArrayList<>();
+        AtomicBoolean stopped = new AtomicBoolean();
+        try {
+            for (int i = 0; i < nodes.size(); i++) {
+                int index = i;
+                String node = nodes.get(i);
+                futures.add(completion.submit(() -> {
+                    long start = System.nanoTime();
+                    NodeResult result;
+                    if (stopped.get()) {
+                        return null;
+                    }
+                    try {
+                        RemoteSSHConnection.CommandResult commandResult = task.run(node);
+                        Status status = commandResult.getExitStatus() == 0 ? Status.SUCCEEDED : Status.FAILED;
+                        result = new NodeResult(node, status, commandResult, null, System.nanoTime() - start);
+                    } catch (Exception e) {
+                        if (stopped.get()) {
+                            // interrupted by the failure of another node
+                            return null;
+                        }
+                        result = new NodeResult(node, Status.FAILED, null, e, System.nanoTime() - start);
+                    }
+                    results[index] = result;
+                    return result;
+                }));
+            }
+            for (int i = 0; i < nodes.size(); i++) {
+                NodeResult result = completion.take().get();
+                if (result != null && result.getStatus() == Status.FAILED && policy == Policy.FAIL_FAST) {
+                    break;
+                }
+            }
+        } catch (ExecutionException e) {
+            // tasks catch their exceptions
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            stopped.set(true);
+            for (Future<NodeResult> future : futures) {
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = new NodeResult(nodes.get(i), Status.CANCELLED, null, null, 0);
+            }
+        }
+        return new Report(new ArrayList<>(Arrays.asList(results)));
+    }
+}
@@ -23,20 +23,47 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 
 public class RemoteSSHConnection {
 
+    private static final long EXIT_STATUS_POLL_MS = 5;
+
+    /**
+     * Threads reading the output of running commands
+     */
+    private static final ExecutorService PUMPS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ssh-output");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final Logger logger = LoggerFactory.getLogger(RemoteSSHConnection.class);
 
     private Session session;
 
     private String result;
 
+    private String errorResult = "";
+
     private int exitStatus;
 
     private String user;
 
+    private SSHSessionPool pool;
+
+    private SSHSessionPool.Key poolKey;
+
+    private int maxOutputBytes = Integer.parseInt(System.getProperty("SSH_MAX_OUTPUT_BYTES", String.valueOf(16 * 1024 * 1024)));
+
+    private boolean pty = Boolean.parseBoolean(System.getProperty("SSH_PTY", "true"));
+
     /**
      * Default constructor.
      */
@@ -45,6 +72,35 @@ public class RemoteSSHConnection {
     }
 
     public RemoteSSHConnection(String user, String password, String remoteHost, String remotePort, String pemFile) throws Exception {
+        this.session = connect(user, password, remoteHost, remotePort, pemFile);
+        this.user = user;
+    }
+
+    /**
+     * Connection whose commands run in sessions of the pool, shared with other connections with the same host, user
+     * and credentials.
+     */
+    public RemoteSSHConnection(SSHSessionPool pool, String user, String password, String remoteHost, String remotePort, String pemFile) throws Exception {
+        this.pool = pool;
+        this.poolKey = new SSHSessionPool.Key(user, password, remoteHost, remotePort, pemFile);
+        this.session = pool.getSession(poolKey);
+        this.user = user;
+    }
+
+    /**
+     * Connection in the shared session pool, unless disabled with -DSSH_SESSION_POOL=false.
+     */
+    public static RemoteSSHConnection pooled(String user, String password, String remoteHost, String remotePort, String pemFile) throws Exception {
+        if (Boolean.parseBoolean(System.getProperty("SSH_SESSION_POOL", "true"))) {
+            return new RemoteSSHConnection(SSHSessionPool.getInstance(), user, password, remoteHost, remotePort, pemFile);
+        }
+        return new RemoteSSHConnection(user, password, remoteHost, remotePort, pemFile);
+    }
+
+    /**
+     * Open an authenticated session.
+     */
+    static Session connect(String user, String password, String remoteHost, String remotePort, String pemFile) throws JSchException {
         // Create session
         JSch jsch = new JSch();
 
@@ -75,9 +131,7 @@ public class RemoteSSHConnection {
         }
 
         session.connect();
-
-        this.session = session;
-        this.user = user;
+        return session;
     }
 
     public Session getSession() {
@@ -100,6 +154,26 @@ public class RemoteSSHConnection {
         this.result = result;
     }
 
+    public String getErrorResult() {
+        return errorResult.trim();
+    }
+
+    public void setMaxOutputBytes(int maxOutputBytes) {
+        this.maxOutputBytes = maxOutputBytes;
+    }
+
+    /**
+     * Run commands in a pseudo terminal, needed by some commands (e.g. sudo with requiretty). With a pseudo
+     * terminal the server merges the error output into the output, with \r\n line endings, so
+     * {@link #getErrorResult()} is always empty. Enabled by default, disabled with -DSSH_PTY=false to read the error
+     * output separately.
+     *
+     * @param pty true to request a pseudo terminal
+     */
+    public void setPty(boolean pty) {
+        this.pty = pty;
+    }
+
     public int getExitStatus() {
         return exitStatus;
     }
@@ -146,7 +220,7 @@ public class RemoteSSHConnection {
             command = "scp " + (ptimestamp ? "-p" : "") + " -d -t " + remoteDir;
         }
 
-        Channel channel = session.openChannel("exec");
+        Channel channel = openChannel("exec");
         ((ChannelExec) channel).setCommand(command);
 
         // get I/O streams for remote scp
@@ -214,14 +288,14 @@ public class RemoteSSHConnection {
         }
         out.close();
 
-        channel.disconnect();
+        closeChannel(channel);
 
         if (!isDirectory) {
             command = "mv " + remoteDir + File.separator + local.getName() + " " + rfile;
-            channel = session.openChannel("exec");
+            channel = openChannel("exec");
             ((ChannelExec) channel).setCommand(command);
             channel.connect();
-            channel.disconnect();
+            closeChannel(channel);
         }
 
         if (checkAckError) {
@@ -236,47 +310,139 @@ public class RemoteSSHConnection {
      * @param command
      */
     public void runCommand(String command) throws Exception {
-        String result = "";
-        String extras = "export PYTHONWARNINGS=\"ignore:Unverified HTTPS request\" && ";
+        runCommand(command, 0, TimeUnit.SECONDS);
+    }
 
-        Channel channel = session.openChannel("exec");
-        ((ChannelExec) channel).setCommand(extras + command);
+    /**
+     * Execute the command in the session created, returning as soon as it finishes. Its output is kept in
+     * {@link #getResult()} and its error output, when run without a pseudo terminal, in {@link #getErrorResult()}. Only the last
+     * SSH_MAX_OUTPUT_BYTES bytes of each are kept, after a line saying how many bytes were discarded.
+     *
+     * @param command command
+     * @param timeout maximum time to wait for the command, 0 to wait until it finishes
+     * @param unit    unit of timeout
+     * @throws TimeoutException if the command does not finish in time, the channel is closed
+     */
+    public void runCommand(String command, long timeout, TimeUnit unit) throws Exception {
+        CommandResult commandResult = new CommandResult();
+        try {
+            execute(command, timeout, unit, commandResult);
+            this.exitStatus = commandResult.exitStatus;
+        } finally {
+            this.result = commandResult.output;
+            this.errorResult = commandResult.errorOutput;
+        }
+    }
 
+    /**
+     * Execute the command without changing the result of this connection, so that several commands can run
+     * concurrently.
+     *
+     * @param command command
+     * @param timeout maximum time to wait for the command, 0 to wait until it finishes
+     * @param unit    unit of timeout
+     * @return output and exit status
+     * @throws TimeoutException if the command does not finish in time, the channel is closed
+     */
+    public CommandResult execute(String command, long timeout, TimeUnit unit) throws Exception {
+        CommandResult commandResult = new CommandResult();
+        execute(command, timeout, unit, commandResult);
+        return commandResult;
+    }
+
+    private void execute(String command, long timeout, TimeUnit unit, CommandResult commandResult) throws Exception {
+        String extras = "export PYTHONWARNINGS=\"ignore:Unverified HTTPS request\" && ";
+
+        ChannelExec channel = (ChannelExec) openChannel("exec");
+        channel.setCommand(extras + command);
         channel.setInputStream(null);
-        ((ChannelExec) channel).setErrStream(System.err);
+        channel.setPty(pty);
 
+        BoundedOutput stdout = new BoundedOutput(maxOutputBytes);
+        BoundedOutput stderr = new BoundedOutput(maxOutputBytes);
         InputStream in = channel.getInputStream();
-
-        ((ChannelExec) channel).setPty(true);
+        InputStream err = channel.getExtInputStream();
+        long timeoutNanos = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + timeoutNanos;
 
         channel.connect();
-
-        byte[] tmp = new byte[1024];
-        while (true) {
-            while (in.available() > 0) {
-                int i = in.read(tmp, 0, 1024);
-                if (i < 0) {
-                    break;
+        try {
+            Future<?> errPump = PUMPS.submit(() -> stderr.readFrom(err));
+            // reads block until there is output, and return -1 as soon as the remote end sends EOF
+            Future<?> outPump = PUMPS.submit(() -> stdout.readFrom(in));
+            await(outPump, timeoutNanos, deadline, command);
+            await(errPump, timeoutNanos, deadline, command);
+            // exit status follows EOF closely
+            while (channel.getExitStatus() == -1 && !channel.isClosed()) {
+                if (timeoutNanos > 0 && System.nanoTime() - deadline >= 0) {
+                    throw timeout(command, timeoutNanos);
                 }
-                result = result + new String(tmp, 0, i);
+                Thread.sleep(EXIT_STATUS_POLL_MS);
             }
-            this.result = result;
-            this.setResult(result);
+            commandResult.exitStatus = channel.getExitStatus();
+        } finally {
+            closeChannel(channel);
+            commandResult.output = stdout.toString();
+            commandResult.errorOutput = stderr.toString();
+        }
+        if (stdout.isTruncated() || stderr.isTruncated()) {
+            logger.warn("Output of command '{}' truncated to its last {} bytes", command, maxOutputBytes);
+        }
+        if (!commandResult.errorOutput.isEmpty()) {
+            logger.debug("Error output of command '{}': {}", command, commandResult.errorOutput);
+        }
+    }
 
-            if (channel.isClosed()) {
-                if (in.available() > 0) {
-                    continue;
-                }
-                this.exitStatus = channel.getExitStatus();
-                break;
-            }
-            try {
-                Thread.sleep(1000);
-            } catch (Exception ee) {
+    /**
+     * Output and exit status of a command.
+     */
+    public static final class CommandResult {
+
+        private String output = "";
+
+        private String errorOutput = "";
+
+        private int exitStatus = -1;
+
+        private CommandResult() {
+        }
+
+        public CommandResult(String output, String errorOutput, int exitStatus) {
+            this.output = output;
+            this.errorOutput = errorOutput;
+            this.exitStatus = exitStatus;
+        }
+
+        public String getOutput() {
+            return output.trim();
+        }
+
+        public String getErrorOutput() {
+            return errorOutput.trim();
+        }
+
+        public int getExitStatus() {
+            return exitStatus;
+        }
+    }
+
+    private static void await(Future<?> pump, long timeout, long deadline, String command) throws Exception {
+        try {
+            if (timeout > 0) {
+                pump.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } else {
+                pump.get();
             }
+        } catch (TimeoutException e) {
+            pump.cancel(true);
+            throw timeout(command, timeout);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
         }
+    }
 
-        channel.disconnect();
+    private static TimeoutException timeout(String command, long timeout) {
+        return new TimeoutException("Command '" + command + "' did not finish in " + TimeUnit.NANOSECONDS.toMillis(timeout) + " ms");
     }
 
     /**
@@ -308,7 +474,7 @@ public class RemoteSSHConnection {
 
         // exec 'scp -f rfile' remotely
         String command = "scp -f " + remotePath;
-        Channel channel = this.session.openChannel("exec");
+        Channel channel = openChannel("exec");
         ((ChannelExec) channel).setCommand(command);
 
         // get I/O streams for remote scp
@@ -392,14 +558,31 @@ public class RemoteSSHConnection {
             out.write(buf, 0, 1);
             out.flush();
         }
-        channel.disconnect();
+        closeChannel(channel);
     }
 
     /**
-     * Close connection
+     * Close connection. Pooled sessions to the same host and user are closed too, once their running commands
+     * finish, and the next commands open new ones.
      */
     public void closeConnection() throws Exception {
-        session.disconnect();
+        if (pool == null) {
+            session.disconnect();
+        } else {
+            pool.invalidate(poolKey);
+        }
+    }
+
+    private Channel openChannel(String type) throws JSchException {
+        return pool != null ? pool.openChannel(poolKey, type) : session.openChannel(type);
+    }
+
+    private void closeChannel(Channel channel) {
+        if (pool != null) {
+            pool.closeChannel(channel);
+        } else {
+            channel.disconnect();
+        }
     }
 
     /**
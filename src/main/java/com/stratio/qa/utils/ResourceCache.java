@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.utils;
+
+import org.hjson.JsonValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Classpath resources read by the steps and placeholders, loaded once per execution. Resources of type json or scim are
+ * kept already converted from Hjson to json.
+ * <p>
+ * Resources in the filesystem (target/test-classes) are loaded again when their modification time or size changes, so
+ * files copied there during the execution are always up to date. Missing resources are not cached.
+ */
+public final class ResourceCache {
+
+    private static final ResourceCache INSTANCE = new ResourceCache(ResourceCache.class.getClassLoader());
+
+    private final Map<List<String>, Entry> entries = new ConcurrentHashMap<>();
+
+    private final ClassLoader classLoader;
+
+    private static final class Entry {
+
+        private final String content;
+
+        private final File file;
+
+        private final long lastModified;
+
+        private final long length;
+
+        private Entry(String content, File file, long lastModified, long length) {
+            this.content = content;
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        private boolean isStale() {
+            return file != null && (file.lastModified() != lastModified || file.length() != length);
+        }
+    }
+
+    ResourceCache(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    public static ResourceCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param path path of the resource in the classpath
+     * @param type type of information, json and scim are converted from Hjson to json
+     * @return content of the resource, null if it does not exist
+     * @throws UncheckedIOException if the resource cannot be read
+     */
+    public String get(String path, String type) {
+        List<String> key = Arrays.asList(path, "json".equals(type) || "scim".equals(type) ? "json" : "string");
+        Entry entry = entries.get(key);
+        if (entry == null || entry.isStale()) {
+            entry = entries.compute(key, (k, current) -> current == null || current.isStale() ? load(path, k.get(1)) : current);
+        }
+        return entry != null ? entry.content : null;
+    }
+
+    /**
+     * Discard all resources.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private Entry load(String path, String type) {
+        // loader resolved again, the resource may have been created or deleted since the last time
+        URL url = classLoader.getResource(path);
+        if (url == null) {
+            return null;
+        }
+        File file = null;
+        if ("file".equals(url.getProtocol())) {
+            try {
+                file = new File(url.toURI());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                file = null;
+            }
+        }
+        // modification time taken before reading, a change while reading loads it again next time
+        long lastModified = file != null ? file.lastModified() : 0;
+        long length = file != null ? file.length() : 0;
+        String text;
+        try (InputStream stream = url.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading " + path, e);
+        }
+
+        if ("json".equals(type)) {
+            String std = text.replace("\r", "").replace("\n", ""); // make sure we have unix style text regardless of the input
+            text = JsonValue.readHjson(std).asObject().toString();
+        }
+        return new Entry(text, file, lastModified, length);
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.utils;
+
+import io.cucumber.datatable.DataTable;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+/**
+ * Rows of a query result, or the expected ones of a step, kept by columns with their values as text, the way the steps
+ * have always compared them.
+ * <p>
+ * Rows are compared in a single pass over each table: one by one in the same position, or counting the occurrences of
+ * every expected row in a hash of the obtained ones.
+ */
+public final class ResultsTable {
+
+    public static final String OCCURRENCES = "occurrences";
+
+    private static final int MAX_REPORTED = 20;
+
+    private static final ThreadLocal<Map<String, SimpleDateFormat>> DATE_FORMATS = ThreadLocal.withInitial(HashMap::new);
+
+    private final Map<String, List<String>> columns;
+
+    private final int size;
+
+    private ResultsTable(Map<String, List<String>> columns, int size) {
+        this.columns = columns;
+        this.size = size;
+    }
+
+    /**
+     * @param table expected results, the first row has the names of the columns
+     * @return table
+     */
+    public static ResultsTable of(DataTable table) {
+        List<List<String>> cells = table.cells();
+        Map<String, List<String>> columns = new LinkedHashMap<>();
+        if (cells.isEmpty()) {
+            return new ResultsTable(columns, 0);
+        }
+        List<String> header = cells.get(0);
+        for (int c = 0; c < header.size(); c++) {
+            // as with a map per row, the last column with the same name wins
+            List<String> values = new ArrayList<>(cells.size() - 1);
+            for (int r = 1; r < cells.size(); r++) {
+                values.add(cells.get(r).get(c));
+            }
+            columns.put(header.get(c), values);
+        }
+        return new ResultsTable(columns, cells.size() - 1);
+    }
+
+    /**
+     * @param names columns to be kept
+     * @param rows  results
+     * @param value value of a column in a row, null if the row does not have it
+     * @param <T>   type of the rows
+     * @return table
+     */
+    public static <T> ResultsTable of(Collection<String> names, Iterable<T> rows, BiFunction<T, String, Object> value) {
+        Map<String, List<String>> columns = new LinkedHashMap<>();
+        for (String name : names) {
+            columns.put(name, new ArrayList<>());
+        }
+        int size = 0;
+        for (T row : rows) {
+            for (Map.Entry<String, List<String>> column : columns.entrySet()) {
+                Object cell = value.apply(row, column.getKey());
+                column.getValue().add(cell == null ? null : cell.toString());
+            }
+            size++;
+        }
+        return new ResultsTable(columns, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<String> getColumns() {
+        return new ArrayList<>(columns.keySet());
+    }
+
+    /**
+     * @return value of the column in the row, null if the table does not have the column
+     */
+    public String get(int row, String column) {
+        List<String> values = columns.get(column);
+        return values == null ? null : values.get(row);
+    }
+
+    /**
+     * Compares the rows of both tables in the same position, this table being the expected one.
+     * <p>
+     * With patterns, expected values containing regex-timestamp_FORMAT, regex-uuid or not_empty check that the obtained
+     * value is a date with the format, a UUID or not empty, and values containing any other regex or not_check are not
+     * checked.
+     *
+     * @param obtained obtained rows, with the same number of rows
+     * @param patterns true to check the patterns of the expected values
+     * @return mismatches, with their row and column
+     */
+    public List<String> rowMismatches(ResultsTable obtained, boolean patterns) {
+        List<String> mismatches = new ArrayList<>();
+        for (Map.Entry<String, List<String>> column : columns.entrySet()) {
+            String name = column.getKey();
+            List<String> expectedValues = column.getValue();
+            for (int r = 0; r < size; r++) {
+                String expected = expectedValues.get(r);
+                String value = obtained.get(r, name);
+                String mismatch = null;
+                if (patterns && expected != null && (expected.contains("regex") || expected.contains("not_check") || expected.contains("not_empty"))) {
+                    if (expected.contains("regex-timestamp") && !isValidDate(value, expected.split("_")[1])) {
+                        mismatch = "is not a valid timestamp";
+                    } else if (expected.contains("regex-uuid") && !isUUID(value)) {
+                        mismatch = "is not an UUID";
+                    } else if (expected.contains("not_empty") && (value == null || value.isEmpty())) {
+                        mismatch = "is empty";
+                    }
+                } else if (!Objects.equals(expected, value)) {
+                    mismatch = "is not " + expected;
+                }
+                if (mismatch != null) {
+                    mismatches.add(String.format("In row %s and column %s the value %s %s", r, name, value, mismatch));
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * Counts, for every row of this table, the obtained rows with the same values in all of its columns but
+     * occurrences, and compares them with its occurrences.
+     *
+     * @param obtained obtained rows
+     * @return rows whose occurrences do not match
+     */
+    public List<String> occurrenceMismatches(ResultsTable obtained) {
+        List<String> keys = getColumns();
+        keys.remove(OCCURRENCES);
+
+        Map<List<String>, Integer> found = new HashMap<>();
+        for (int r = 0; r < obtained.size(); r++) {
+            found.merge(obtained.row(r, keys), 1, Integer::sum);
+        }
+
+        List<String> mismatches = new ArrayList<>();
+        for (int e = 0; e < size; e++) {
+            int expected = Integer.parseInt(get(e, OCCURRENCES));
+            int occurrences = found.getOrDefault(row(e, keys), 0);
+            if (occurrences != expected) {
+                mismatches.add("In row " + e + " have been found " + occurrences + " results and " + expected + " were expected");
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * @return the first mismatches, one per line
+     */
+    public static String describe(List<String> mismatches) {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < mismatches.size() && i < MAX_REPORTED; i++) {
+            description.append(i > 0 ? "\n" : "").append(mismatches.get(i));
+        }
+        if (mismatches.size() > MAX_REPORTED) {
+            description.append("\n... and ").append(mismatches.size() - MAX_REPORTED).append(" more");
+        }
+        return description.toString();
+    }
+
+    private List<String> row(int row, List<String> names) {
+        String[] values = new String[names.size()];
+        for (int c = 0; c < values.length; c++) {
+            values[c] = get(row, names.get(c));
+        }
+        return Arrays.asList(values);
+    }
+
+    private static boolean isUUID(String uuid) {
+        try {
+            UUID.fromString(uuid);
+            return true;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the value is a date with the format, formats are kept per thread
+     */
+    static boolean isValidDate(String value, String format) {
+        if (value == null) {
+            return false;
+        }
+        SimpleDateFormat dateFormat = DATE_FORMATS.get().computeIfAbsent(format, f -> {
+            SimpleDateFormat sdf = new SimpleDateFormat(f);
+            sdf.setLenient(false);
+            return sdf;
+        });
+        try {
+            dateFormat.parse(value);
+            return true;
+        } catch (ParseException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        List<Map<String, String>> rows = new ArrayList<>(size);
+        for (int r = 0; r < size; r++) {
+            Map<String, String> row = new LinkedHashMap<>();
+            for (String name : columns.keySet()) {
+                row.put(name, get(r, name));
+            }
+            rows.add(row);
+        }
+        return rows.toString();
+    }
+}
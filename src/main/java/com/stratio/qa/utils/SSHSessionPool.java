@@ -0,0 +1,397 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.utils;
+
+import com.jcraft.jsch.Channel;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Authenticated SSH sessions shared by the connections to the same host, user and credentials. Every command or copy
+ * runs in its own channel, and up to SSH_MAX_CHANNELS_PER_SESSION channels (8 by default) run concurrently over a
+ * session. New sessions are opened when all are busy, up to SSH_MAX_SESSIONS (4 by default) per host and user; then
+ * callers wait up to SSH_MAX_WAIT_MS milliseconds (60000 by default) for a free channel.
+ * <p>
+ * Disconnected sessions are discarded and replaced, and sessions without channels for SSH_SESSION_IDLE_TIMEOUT_MS
+ * milliseconds (300000 by default) are closed. Closing a connection closes the sessions of its host and user, once
+ * the commands running in them finish, so connections opened afterwards authenticate again.
+ */
+public final class SSHSessionPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SSHSessionPool.class);
+
+    private static final SSHSessionPool INSTANCE = new SSHSessionPool(
+            Integer.parseInt(System.getProperty("SSH_MAX_SESSIONS", "4")),
+            Integer.parseInt(System.getProperty("SSH_MAX_CHANNELS_PER_SESSION", "8")),
+            Long.parseLong(System.getProperty("SSH_SESSION_IDLE_TIMEOUT_MS", "300000")),
+            Long.parseLong(System.getProperty("SSH_MAX_WAIT_MS", "60000")));
+
+    private final Map<Key, List<PooledSession>> sessions = new HashMap<>();
+
+    /**
+     * Sessions invalidated while running commands, closed when they finish
+     */
+    private final List<PooledSession> invalidated = new ArrayList<>();
+
+    private final int maxSessions;
+
+    private final int maxChannels;
+
+    private final long idleTimeoutMs;
+
+    private final long maxWaitMs;
+
+    SSHSessionPool(int maxSessions, int maxChannels, long idleTimeoutMs, long maxWaitMs) {
+        this.maxSessions = maxSessions;
+        this.maxChannels = maxChannels;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    public static SSHSessionPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Host, port, user and credentials of a session.
+     */
+    public static final class Key {
+
+        private final String user;
+
+        private final String password;
+
+        private final String host;
+
+        private final String port;
+
+        private final String pemFile;
+
+        public Key(String user, String password, String host, String port, String pemFile) {
+            this.user = user;
+            this.password = password;
+            this.host = host;
+            this.port = port;
+            this.pemFile = pemFile;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(user, key.user) && Objects.equals(password, key.password) && Objects.equals(host, key.host)
+                    && Objects.equals(port, key.port) && Objects.equals(pemFile, key.pemFile);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(user, password, host, port, pemFile);
+        }
+
+        @Override
+        public String toString() {
+            return user + "@" + host + (port != null ? ":" + port : "");
+        }
+    }
+
+    private static final class PooledSession {
+
+        private Session session;
+
+        private boolean connecting = true;
+
+        private JSchException failure;
+
+        private final List<Channel> channels = new ArrayList<>();
+
+        /**
+         * Channels reserved and not opened yet
+         */
+        private int reserved;
+
+        private long lastUsed = System.currentTimeMillis();
+
+        private int load() {
+            if (channels.removeIf(Channel::isClosed)) {
+                lastUsed = System.currentTimeMillis();
+            }
+            return channels.size() + reserved;
+        }
+
+        private boolean isBroken() {
+            return failure != null || (!connecting && !session.isConnected());
+        }
+    }
+
+    /**
+     * Open a channel in a session with free channels, opening a new session if needed.
+     *
+     * @param key  session
+     * @param type channel type, "exec" or "sftp"
+     * @return channel, not connected
+     * @throws JSchException if no channel is free in time, or the session cannot be opened
+     */
+    public Channel openChannel(Key key, String type) throws JSchException {
+        while (true) {
+            PooledSession pooled = reserve(key);
+            try {
+                Channel channel = pooled.session.openChannel(type);
+                synchronized (this) {
+                    pooled.reserved--;
+                    pooled.channels.add(channel);
+                }
+                return channel;
+            } catch (JSchException e) {
+                synchronized (this) {
+                    pooled.reserved--;
+                    notifyAll();
+                }
+                if (pooled.session.isConnected()) {
+                    throw e;
+                }
+                LOGGER.debug("SSH session to {} lost, opening another one", key);
+            }
+        }
+    }
+
+    /**
+     * Close a channel opened by {@link #openChannel}, freeing it for other callers.
+     *
+     * @param channel channel
+     */
+    public void closeChannel(Channel channel) {
+        channel.disconnect();
+        synchronized (this) {
+            for (List<PooledSession> pooledSessions : sessions.values()) {
+                for (PooledSession pooled : pooledSessions) {
+                    if (pooled.channels.remove(channel)) {
+                        pooled.lastUsed = System.currentTimeMillis();
+                    }
+                }
+            }
+            for (PooledSession pooled : invalidated) {
+                pooled.channels.remove(channel);
+            }
+            closeInvalidated();
+            notifyAll();
+        }
+    }
+
+    /**
+     * @param key session
+     * @return a connected session, opened if there is none
+     * @throws JSchException if the session cannot be opened
+     */
+    public Session getSession(Key key) throws JSchException {
+        synchronized (this) {
+            for (PooledSession pooled : live(key)) {
+                if (!pooled.connecting) {
+                    return pooled.session;
+                }
+            }
+        }
+        PooledSession pooled = reserve(key);
+        synchronized (this) {
+            pooled.reserved--;
+            notifyAll();
+        }
+        return pooled.session;
+    }
+
+    /**
+     * @param key session
+     * @return number of sessions opened
+     */
+    public synchronized int size(Key key) {
+        return live(key).size();
+    }
+
+    /**
+     * Remove the sessions of a key from the pool, so that new channels are opened in new sessions. Sessions are
+     * closed now, or when their running channels are closed.
+     *
+     * @param key session
+     */
+    public synchronized void invalidate(Key key) {
+        List<PooledSession> pooledSessions = sessions.remove(key);
+        if (pooledSessions != null) {
+            invalidated.addAll(pooledSessions);
+            closeInvalidated();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Close all sessions.
+     */
+    public synchronized void closeAll() {
+        for (List<PooledSession> pooledSessions : sessions.values()) {
+            for (PooledSession pooled : pooledSessions) {
+                if (pooled.session != null) {
+                    pooled.session.disconnect();
+                }
+            }
+        }
+        for (PooledSession pooled : invalidated) {
+            if (pooled.session != null) {
+                pooled.session.disconnect();
+            }
+        }
+        sessions.clear();
+        invalidated.clear();
+        notifyAll();
+    }
+
+    /**
+     * Reserve a channel in the least loaded session with free channels, or in a new session.
+     */
+    private PooledSession reserve(Key key) throws JSchException {
+        long deadline = System.currentTimeMillis() + maxWaitMs;
+        PooledSession pooled;
+        synchronized (this) {
+            while (true) {
+                evictIdle();
+                List<PooledSession> live = live(key);
+                pooled = null;
+                for (PooledSession candidate : live) {
+                    if (candidate.load() < maxChannels && (pooled == null || candidate.load() < pooled.load())) {
+                        pooled = candidate;
+                    }
+                }
+                if (pooled == null && live.size() < maxSessions) {
+                    pooled = new PooledSession();
+                    live.add(pooled);
+                    pooled.reserved++;
+                    break;
+                }
+                if (pooled != null) {
+                    pooled.reserved++;
+                    pooled.lastUsed = System.currentTimeMillis();
+                    // wait for the session if another caller is opening it
+                    try {
+                        while (pooled.connecting) {
+                            waitFor(deadline, key);
+                        }
+                    } catch (JSchException e) {
+                        pooled.reserved--;
+                        throw e;
+                    }
+                    if (pooled.failure != null) {
+                        pooled.reserved--;
+                        throw new JSchException("SSH session to " + key + " could not be opened: " + pooled.failure.getMessage(), pooled.failure);
+                    }
+                    return pooled;
+                }
+                waitFor(deadline, key);
+            }
+        }
+
+        try {
+            Session session = RemoteSSHConnection.connect(key.user, key.password, key.host, key.port, key.pemFile);
+            synchronized (this) {
+                pooled.session = session;
+                pooled.connecting = false;
+                pooled.lastUsed = System.currentTimeMillis();
+                notifyAll();
+            }
+            LOGGER.debug("Opened SSH session {} to {}", size(key), key);
+            return pooled;
+        } catch (JSchException e) {
+            synchronized (this) {
+                pooled.failure = e;
+                pooled.connecting = false;
+                pooled.reserved--;
+                List<PooledSession> pooledSessions = sessions.get(key);
+                if (pooledSessions != null) {
+                    pooledSessions.remove(pooled);
+                }
+                invalidated.remove(pooled);
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return sessions of the key, after discarding the disconnected ones
+     */
+    private List<PooledSession> live(Key key) {
+        List<PooledSession> pooledSessions = sessions.computeIfAbsent(key, k -> new ArrayList<>());
+        pooledSessions.removeIf(PooledSession::isBroken);
+        return pooledSessions;
+    }
+
+    /**
+     * Close the invalidated sessions without channels
+     */
+    private void closeInvalidated() {
+        Iterator<PooledSession> it = invalidated.iterator();
+        while (it.hasNext()) {
+            PooledSession pooled = it.next();
+            if (!pooled.connecting && pooled.load() == 0) {
+                if (pooled.session != null) {
+                    pooled.session.disconnect();
+                }
+                it.remove();
+            }
+        }
+    }
+
+    private void evictIdle() {
+        closeInvalidated();
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Key, List<PooledSession>> entry : sessions.entrySet()) {
+            Iterator<PooledSession> it = entry.getValue().iterator();
+            while (it.hasNext()) {
+                PooledSession pooled = it.next();
+                if (!pooled.connecting && pooled.load() == 0 && now - pooled.lastUsed > idleTimeoutMs) {
+                    LOGGER.debug("Closing idle SSH session to {}", entry.getKey());
+                    pooled.session.disconnect();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private void waitFor(long deadline, Key key) throws JSchException {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new JSchException("No free SSH channel to " + key + " after " + maxWaitMs + " ms");
+        }
+        try {
+            // channels closed by their owners without closeChannel are only noticed when checking again
+            wait(Math.min(remaining, 100));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JSchException("Interrupted waiting for a free SSH channel to " + key);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.utils;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Tokens obtained from Gosec SSO logins, shared by all the scenarios of the execution so that every step does not log
+ * in again.
+ * <p>
+ * Tokens are kept per SSO host, user, password, tenant and kind of login, until the expiration of their JWT cookies
+ * or SSO_TOKEN_TTL seconds (600 by default), whatever comes first. During the last SSO_TOKEN_REFRESH_MARGIN seconds
+ * (60 by default) of their life, the first caller logs in again while the rest keep using the current tokens. When
+ * there are no valid tokens, concurrent callers wait for a single login. Failed logins (no tokens) are not cached.
+ * Caching is disabled with -DSSO_TOKEN_CACHE=false.
+ */
+public final class SsoTokenCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SsoTokenCache.class);
+
+    private static final SsoTokenCache INSTANCE = new SsoTokenCache(System::nanoTime, System::currentTimeMillis,
+            TimeUnit.SECONDS.toNanos(Long.parseLong(System.getProperty("SSO_TOKEN_TTL", "600"))),
+            TimeUnit.SECONDS.toNanos(Long.parseLong(System.getProperty("SSO_TOKEN_REFRESH_MARGIN", "60"))),
+            Boolean.parseBoolean(System.getProperty("SSO_TOKEN_CACHE", "true")));
+
+    private final Map<List<String>, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Map<List<String>, CompletableFuture<Entry>> logins = new ConcurrentHashMap<>();
+
+    private final LongSupplier nanoTime;
+
+    private final LongSupplier currentTimeMillis;
+
+    private final long ttl;
+
+    private final long refreshMargin;
+
+    private final boolean enabled;
+
+    /**
+     * SSO login returning the cookies obtained.
+     */
+    @FunctionalInterface
+    public interface Login {
+        Map<String, String> login() throws Exception;
+    }
+
+    private static final class Entry {
+
+        private final Map<String, String> tokens;
+
+        private final long refreshAt;
+
+        private final long expiresAt;
+
+        private Entry(Map<String, String> tokens, long refreshAt, long expiresAt) {
+            this.tokens = tokens;
+            this.refreshAt = refreshAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    SsoTokenCache(LongSupplier nanoTime, LongSupplier currentTimeMillis, long ttl, long refreshMargin, boolean enabled) {
+        this.nanoTime = nanoTime;
+        this.currentTimeMillis = currentTimeMillis;
+        this.ttl = ttl;
+        this.refreshMargin = refreshMargin;
+        this.enabled = enabled;
+    }
+
+    public static SsoTokenCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param ssoHost  SSO host
+     * @param user     user
+     * @param password password
+     * @param tenant   tenant, may be null
+     * @param kind     kind of login, logins of different kinds are cached separately
+     * @param login    login to run if there are no valid tokens
+     * @return copy of the tokens
+     * @throws Exception exception thrown by the login
+     */
+    public HashMap<String, String> getTokens(String ssoHost, String user, String password, String tenant, String kind, Login login) throws Exception {
+        if (!enabled) {
+            return new HashMap<>(login.login());
+        }
+        List<String> key = Arrays.asList(ssoHost, user, password, tenant, kind);
+        long now = nanoTime.getAsLong();
+        Entry entry = entries.get(key);
+        if (entry != null && now - entry.expiresAt < 0) {
+            if (now - entry.refreshAt >= 0) {
+                CompletableFuture<Entry> refresh = new CompletableFuture<>();
+                if (logins.putIfAbsent(key, refresh) == null) {
+                    LOGGER.debug("Refreshing SSO tokens of {} in {}", user, ssoHost);
+                    try {
+                        entry = refresh(key, login, refresh, entry);
+                    } catch (Exception e) {
+                        LOGGER.warn("SSO token refresh failed, using current tokens: {}", e.getMessage());
+                    }
+                }
+            }
+            return new HashMap<>(entry.tokens);
+        }
+
+        CompletableFuture<Entry> pending = new CompletableFuture<>();
+        CompletableFuture<Entry> running = logins.putIfAbsent(key, pending);
+        if (running != null) {
+            LOGGER.debug("Waiting for SSO login of {} in {}", user, ssoHost);
+            try {
+                return new HashMap<>(running.get().tokens);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+        // a login may have finished between the lookup and the registration of this one
+        entry = entries.get(key);
+        if (entry != null && nanoTime.getAsLong() - entry.refreshAt < 0) {
+            logins.remove(key, pending);
+            pending.complete(entry);
+            return new HashMap<>(entry.tokens);
+        }
+        return new HashMap<>(login(key, login, pending).tokens);
+    }
+
+    /**
+     * Forget all tokens, so that next calls log in again.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Login ahead of the expiration of the current tokens, which are kept if the login fails or returns no tokens.
+     */
+    private Entry refresh(List<String> key, Login login, CompletableFuture<Entry> result, Entry current) throws Exception {
+        try {
+            Map<String, String> tokens = login.login();
+            if (tokens.isEmpty()) {
+                LOGGER.warn("SSO token refresh returned no tokens, using current tokens");
+                result.complete(current);
+                return current;
+            }
+            Entry entry = newEntry(tokens);
+            entries.put(key, entry);
+            result.complete(entry);
+            return entry;
+        } catch (Exception e) {
+            // waiting callers get the current tokens too, they are still valid
+            result.complete(current);
+            throw e;
+        } finally {
+            logins.remove(key, result);
+        }
+    }
+
+    private Entry newEntry(Map<String, String> tokens) {
+        long lifetime = lifetime(tokens);
+        long expiresAt = nanoTime.getAsLong() + lifetime;
+        return new Entry(new HashMap<>(tokens), expiresAt - Math.min(refreshMargin, lifetime / 2), expiresAt);
+    }
+
+    private Entry login(List<String> key, Login login, CompletableFuture<Entry> result) throws Exception {
+        try {
+            Map<String, String> tokens = login.login();
+            Entry entry = newEntry(tokens);
+            if (tokens.isEmpty()) {
+                entries.remove(key);
+            } else {
+                entries.put(key, entry);
+            }
+            result.complete(entry);
+            return entry;
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            logins.remove(key, result);
+        }
+    }
+
+    /**
+     * @return nanoseconds until the first JWT token expires, limited by the TTL
+     */
+    private long lifetime(Map<String, String> tokens) {
+        long lifetime = ttl;
+        for (String token : tokens.values()) {
+            Long exp = expiration(token);
+            if (exp != null) {
+                lifetime = Math.min(lifetime, Math.max(0, TimeUnit.MILLISECONDS.toNanos(exp * 1000 - currentTimeMillis.getAsLong())));
+            }
+        }
+        return lifetime;
+    }
+
+    /**
+     * @return "exp" claim of a JWT, in seconds since the epoch, or null if the token is not a JWT or has none
+     */
+    static Long expiration(String token) {
+        String[] parts = token == null ? new String[0] : token.split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            JSONObject claims = new JSONObject(new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8));
+            return claims.has("exp") ? claims.getLong("exp") : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -17,18 +17,18 @@
 package com.stratio.qa.utils;
 
 /**
- * Exception list class(Singleton).
+ * Exception of the failed step of the scenario running in the current thread (Singleton).
  */
 public enum StepException {
     INSTANCE;
 
-    private Exception exception = null;
+    private final ThreadLocal<Exception> exception = new ThreadLocal<>();
 
     public Exception getException() {
-        return exception;
+        return exception.get();
     }
 
     public void setException(Exception e) {
-        exception = e;
+        exception.set(e);
     }
 }
\ No newline at end of file
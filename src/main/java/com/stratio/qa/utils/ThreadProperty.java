@@ -58,4 +58,26 @@ public final class ThreadProperty {
         PROPS.get().remove(key);
     }
 
+    /**
+     * Copy of the properties shared in the current thread.
+     *
+     * @return Properties
+     */
+    public static Properties snapshot() {
+        Properties copy = new Properties();
+        copy.putAll(PROPS.get());
+        return copy;
+    }
+
+    /**
+     * Replace the properties shared in the current thread with a copy of the given ones.
+     *
+     * @param properties
+     */
+    public static void restore(Properties properties) {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        PROPS.set(copy);
+    }
+
 }
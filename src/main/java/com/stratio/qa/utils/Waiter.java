@@ -0,0 +1,396 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.stratio.qa.utils;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Polls a probe until a condition holds or a timeout expires, used by "in less than X seconds, checking each Y
+ * seconds" steps.
+ * <p>
+ * Time is measured with a monotonic {@link Clock}, so the time spent by the probes counts against the timeout. The
+ * first probe runs immediately, and the last one when the timeout expires. Exceptions thrown by probes are propagated
+ * unless their type is {@link #ignoring ignored}, in which case they count as a failed attempt. A
+ * {@link TimeoutException} always counts as a failed attempt.
+ *
+ * <pre>{@code
+ * Waiter.Outcome<App> outcome = Waiter.atMost(timeout, TimeUnit.SECONDS).pollEvery(pause, TimeUnit.SECONDS)
+ *         .until(() -> client.getApp(appId), app -> app.isRunning());
+ * }</pre>
+ */
+public final class Waiter {
+
+    private final long timeout;
+
+    private Backoff backoff = Backoff.fixed(1, TimeUnit.SECONDS);
+
+    private long firstRetryDelay = -1;
+
+    private Class<?>[] ignored = new Class<?>[0];
+
+    private RetryListener retryListener;
+
+    private Clock clock = Clock.SYSTEM;
+
+    private Waiter(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Source of time, replaced by a virtual clock in tests.
+     */
+    public interface Clock {
+
+        Clock SYSTEM = new Clock() {
+            @Override
+            public long nanoTime() {
+                return System.nanoTime();
+            }
+
+            @Override
+            public void sleep(long nanos) throws InterruptedException {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            }
+        };
+
+        /**
+         * @return monotonic time in nanoseconds, only meaningful as a difference between two calls
+         */
+        long nanoTime();
+
+        void sleep(long nanos) throws InterruptedException;
+
+        /**
+         * Wait for an asynchronous probe.
+         *
+         * @param future probe result
+         * @param nanos  maximum time to wait
+         * @param <T>    result type
+         * @return result
+         * @throws TimeoutException if the result is not available in time
+         */
+        default <T> T await(Future<T> future, long nanos) throws InterruptedException, ExecutionException, TimeoutException {
+            return future.get(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Delay between attempts.
+     */
+    @FunctionalInterface
+    public interface Backoff {
+
+        /**
+         * @param retry number of the retry, starting at 1
+         * @return delay in nanoseconds
+         */
+        long delay(int retry);
+
+        static Backoff fixed(long interval, TimeUnit unit) {
+            long nanos = unit.toNanos(interval);
+            return retry -> nanos;
+        }
+
+        /**
+         * @param initial    delay before the first retry
+         * @param max        maximum delay
+         * @param unit       unit of initial and max
+         * @param multiplier growth of the delay on each retry
+         * @return Backoff
+         */
+        static Backoff exponential(long initial, long max, TimeUnit unit, double multiplier) {
+            long initialNanos = unit.toNanos(initial);
+            long maxNanos = unit.toNanos(max);
+            return retry -> (long) Math.min(maxNanos, initialNanos * Math.pow(multiplier, retry - 1));
+        }
+
+        /**
+         * @param ratio maximum deviation of each delay, as a fraction of it
+         * @return Backoff whose delays are randomly spread, so that concurrent waiters do not probe at once
+         */
+        default Backoff withJitter(double ratio) {
+            return withJitter(ratio, () -> ThreadLocalRandom.current().nextDouble());
+        }
+
+        /**
+         * @param ratio  maximum deviation of each delay, as a fraction of it
+         * @param random uniform values in [0, 1)
+         * @return Backoff
+         */
+        default Backoff withJitter(double ratio, DoubleSupplier random) {
+            return retry -> {
+                long delay = delay(retry);
+                return Math.max(0, (long) (delay * (1 + ratio * (2 * random.getAsDouble() - 1))));
+            };
+        }
+    }
+
+    /**
+     * Synchronous probe.
+     */
+    @FunctionalInterface
+    public interface Probe<T> {
+        T probe() throws Exception;
+    }
+
+    /**
+     * Probe that starts an asynchronous operation. The operation is cancelled if it has not finished when the timeout
+     * expires.
+     */
+    @FunctionalInterface
+    public interface AsyncProbe<T> {
+        Future<T> start() throws Exception;
+    }
+
+    /**
+     * Condition evaluated with the result of each probe, that may fail throwing an assertion error.
+     */
+    @FunctionalInterface
+    public interface Condition<T> {
+        boolean test(T value) throws Exception;
+    }
+
+    /**
+     * Notified after every failed attempt that will be retried.
+     */
+    @FunctionalInterface
+    public interface RetryListener {
+        /**
+         * @param attempt number of the failed attempt, starting at 1
+         * @param elapsed nanoseconds elapsed since the first attempt started
+         * @param error   error thrown by the attempt, or null if the condition did not hold
+         */
+        void onRetry(int attempt, long elapsed, Throwable error);
+    }
+
+    /**
+     * Result of a wait.
+     */
+    public static final class Outcome<T> {
+
+        private final boolean satisfied;
+
+        private final T value;
+
+        private final Throwable lastError;
+
+        private final int attempts;
+
+        private final long elapsed;
+
+        private Outcome(boolean satisfied, T value, Throwable lastError, int attempts, long elapsed) {
+            this.satisfied = satisfied;
+            this.value = value;
+            this.lastError = lastError;
+            this.attempts = attempts;
+            this.elapsed = elapsed;
+        }
+
+        public boolean isSatisfied() {
+            return satisfied;
+        }
+
+        /**
+         * @return value of the last probe that returned one
+         */
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * @return error thrown by the last attempt, null if it just did not satisfy the condition
+         */
+        public Throwable getLastError() {
+            return lastError;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public long getElapsed(TimeUnit unit) {
+            return unit.convert(elapsed, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return value, if the condition was satisfied
+         * @throws Exception the error of the last attempt, or an AssertionError if it did not throw any
+         */
+        public T getOrThrow() throws Exception {
+            if (satisfied) {
+                return value;
+            } else if (lastError instanceof Exception) {
+                throw (Exception) lastError;
+            } else if (lastError instanceof Error) {
+                throw (Error) lastError;
+            }
+            throw new AssertionError("Condition not satisfied after " + getElapsed(TimeUnit.SECONDS) + " seconds");
+        }
+    }
+
+    /**
+     * @param timeout maximum time to wait
+     * @param unit    unit of timeout
+     * @return Waiter probing every second
+     */
+    public static Waiter atMost(long timeout, TimeUnit unit) {
+        return new Waiter(unit.toNanos(timeout));
+    }
+
+    public Waiter pollEvery(long interval, TimeUnit unit) {
+        return backoff(Backoff.fixed(interval, unit));
+    }
+
+    public Waiter backoff(Backoff backoff) {
+        this.backoff = backoff;
+        return this;
+    }
+
+    /**
+     * Retry the first failed probe after a short delay, instead of the one given by the backoff.
+     *
+     * @param delay delay before the second probe
+     * @param unit  unit of delay
+     * @return Waiter
+     */
+    public Waiter fastFirstProbe(long delay, TimeUnit unit) {
+        this.firstRetryDelay = unit.toNanos(delay);
+        return this;
+    }
+
+    /**
+     * @param types exceptions or errors thrown by probes or conditions that must be retried
+     * @return Waiter
+     */
+    public Waiter ignoring(Class<?>... types) {
+        this.ignored = types;
+        return this;
+    }
+
+    public Waiter onRetry(RetryListener listener) {
+        this.retryListener = listener;
+        return this;
+    }
+
+    public Waiter clock(Clock clock) {
+        this.clock = clock;
+        return this;
+    }
+
+    /**
+     * Probe until the probe returns true.
+     *
+     * @param probe probe
+     * @return Outcome
+     * @throws Exception exception thrown by the probe and not ignored
+     */
+    public Outcome<Boolean> until(Probe<Boolean> probe) throws Exception {
+        return until(probe, Boolean.TRUE::equals);
+    }
+
+    /**
+     * Probe until the probed value satisfies the condition.
+     *
+     * @param probe     probe
+     * @param condition condition
+     * @param <T>       probed value type
+     * @return Outcome
+     * @throws Exception exception thrown by the probe or the condition and not ignored
+     */
+    public <T> Outcome<T> until(Probe<T> probe, Condition<? super T> condition) throws Exception {
+        return poll(remaining -> probe.probe(), condition);
+    }
+
+    /**
+     * Probe until the result of the asynchronous operation satisfies the condition. Each operation is waited for as
+     * long as the timeout allows, and cancelled when it expires. With a zero timeout, the only operation is waited for
+     * until it finishes.
+     *
+     * @param probe     asynchronous probe
+     * @param condition condition
+     * @param <T>       probed value type
+     * @return Outcome
+     * @throws Exception exception thrown by the probe, the operation or the condition and not ignored
+     */
+    public <T> Outcome<T> untilAsync(AsyncProbe<T> probe, Condition<? super T> condition) throws Exception {
+        return poll(remaining -> {
+            Future<T> future = probe.start();
+            try {
+                return clock.await(future, timeout == 0 ? Long.MAX_VALUE : Math.max(0, remaining));
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } catch (TimeoutException | InterruptedException e) {
+                future.cancel(true);
+                throw e;
+            }
+        }, condition);
+    }
+
+    @FunctionalInterface
+    private interface Attempt<T> {
+        T run(long remaining) throws Exception;
+    }
+
+    private <T> Outcome<T> poll(Attempt<T> attempt, Condition<? super T> condition) throws Exception {
+        long start = clock.nanoTime();
+        long deadline = start + timeout;
+        T value = null;
+        int attempts = 0;
+        while (true) {
+            attempts++;
+            Throwable error = null;
+            try {
+                T probed = attempt.run(deadline - clock.nanoTime());
+                value = probed;
+                if (condition.test(probed)) {
+                    return new Outcome<>(true, value, null, attempts, clock.nanoTime() - start);
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception | AssertionError e) {
+                if (!isIgnored(e) && !(e instanceof TimeoutException)) {
+                    throw e;
+                }
+                error = e;
+            }
+
+            long now = clock.nanoTime();
+            if (now - deadline >= 0) {
+                return new Outcome<>(false, value, error, attempts, now - start);
+            }
+            if (retryListener != null) {
+                retryListener.onRetry(attempts, now - start, error);
+            }
+            long delay = attempts == 1 && firstRetryDelay >= 0 ? firstRetryDelay : backoff.delay(attempts);
+            clock.sleep(Math.min(delay, deadline - now));
+        }
+    }
+
+    private boolean isIgnored(Throwable e) {
+        for (Class<?> type : ignored) {
+            if (type.isInstance(e)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
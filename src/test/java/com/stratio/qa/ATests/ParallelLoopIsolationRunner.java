@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.ATests;
+
+import com.stratio.qa.cucumber.testng.CucumberFeatureWrapper;
+import com.stratio.qa.cucumber.testng.PickleEventWrapper;
+import com.stratio.qa.utils.BaseGTest;
+import cucumber.api.CucumberOptions;
+import org.testng.annotations.Test;
+
+/**
+ * Run by {@link ParallelLoopTagIT}, one of its iterations fails.
+ */
+@CucumberOptions(plugin = "json:target/cucumber.json", features = {
+        "src/test/resources/features/parallelLoopIsolation.feature",
+})
+public class ParallelLoopIsolationRunner extends BaseGTest {
+
+    @Test(dataProvider = "scenarios")
+    public void run(PickleEventWrapper pickleWrapper, CucumberFeatureWrapper featureWrapper) throws Throwable {
+        runScenario(pickleWrapper, featureWrapper);
+    }
+}
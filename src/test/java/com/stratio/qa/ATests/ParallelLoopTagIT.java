@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.ATests;
+
+import org.mockserver.configuration.ConfigurationProperties;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.socket.PortFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.TestNG;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+public class ParallelLoopTagIT {
+
+    private static final int ELEMENTS = 6;
+
+    private static final long LATENCY_MS = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(ParallelLoopTagIT.class);
+
+    private ClientAndServer mockServer;
+
+    @BeforeClass
+    public void startMockServer() {
+        ConfigurationProperties.logLevel("ERROR");
+        int port = PortFactory.findFreePort();
+        mockServer = ClientAndServer.startClientAndServer(port);
+        for (int i = 1; i <= ELEMENTS; i++) {
+            mockServer.when(request().withMethod("GET").withPath("/slow/" + i))
+                    .respond(response().withStatusCode(200).withBody("element " + i).withDelay(TimeUnit.MILLISECONDS, LATENCY_MS));
+        }
+        System.setProperty("PARALLEL_LOOP_MOCK", "localhost:" + port);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopMockServer() {
+        System.clearProperty("PARALLEL_LOOP_MOCK");
+        mockServer.stop();
+    }
+
+    @Test
+    public void parallelLoopIsFasterAndKeepsReportOrder() throws IOException {
+        long sequential = run(SequentialLoopTagRunner.class);
+        long parallel = run(ParallelLoopTagRunner.class);
+        logger.info("{} slow requests in loop: {} ms sequential, {} ms with @parallelLoop", ELEMENTS, sequential, parallel);
+
+        assertThat(parallel).isLessThan(sequential);
+        assertThat(sequential - parallel).isGreaterThan(LATENCY_MS * (ELEMENTS - 1) / 2);
+        assertThat(testMethods(ParallelLoopTagRunner.class)).isEqualTo(testMethods(SequentialLoopTagRunner.class));
+        assertThat(testMethods(ParallelLoopTagRunner.class)).containsExactly("Save loop elements", "Slow request 1",
+                "Slow request 2", "Slow request 3", "Slow request 4", "Slow request 5", "Slow request 6");
+    }
+
+    @Test
+    public void parallelLoopIterationsAreIsolated() throws IOException {
+        TestNG testNG = testNG(ParallelLoopIsolationRunner.class);
+        testNG.run();
+        assertThat(testNG.getStatus()).as("Failed iteration").isNotEqualTo(0);
+
+        Map<String, String> statuses = testMethodStatuses(ParallelLoopIsolationRunner.class);
+        assertThat(statuses.keySet()).containsExactly("Save loop elements", "Isolated iteration 1", "Isolated iteration 2",
+                "Isolated iteration 3", "Isolated iteration 4", "Isolated iteration 5", "Isolated iteration 6");
+        for (Map.Entry<String, String> status : statuses.entrySet()) {
+            assertThat(status.getValue()).as(status.getKey()).isEqualTo(status.getKey().endsWith(" 3") ? "FAIL" : "PASS");
+        }
+    }
+
+    private long run(Class<?> runnerClass) {
+        TestNG testNG = testNG(runnerClass);
+        long start = System.currentTimeMillis();
+        testNG.run();
+        long time = System.currentTimeMillis() - start;
+        assertThat(testNG.getStatus()).as(runnerClass.getSimpleName() + " failed").isEqualTo(0);
+        return time;
+    }
+
+    private TestNG testNG(Class<?> runnerClass) {
+        TestNG testNG = new TestNG(false);
+        testNG.setVerbose(0);
+        testNG.setTestClasses(new Class[]{runnerClass});
+        return testNG;
+    }
+
+    private List<String> testMethods(Class<?> runnerClass) throws IOException {
+        return new ArrayList<>(testMethodStatuses(runnerClass).keySet());
+    }
+
+    /**
+     * @return status of every test method in the TestNG report, by name
+     */
+    private Map<String, String> testMethodStatuses(Class<?> runnerClass) throws IOException {
+        String testSuffix = System.getProperty("TESTSUFFIX");
+        String report = "target/executions/" + (testSuffix != null ? testSuffix + "/" : "") + runnerClass.getCanonicalName() + "TESTNG.xml";
+        Matcher matcher = Pattern.compile("<test-method [^>]*name=\"([^\"]*)\"([^>]*status=\"([^\"]*)\")?")
+                .matcher(new String(Files.readAllBytes(Paths.get(report)), StandardCharsets.UTF_8));
+        Map<String, String> statuses = new LinkedHashMap<>();
+        while (matcher.find()) {
+            statuses.put(matcher.group(1), matcher.group(3));
+        }
+        return statuses;
+    }
+}
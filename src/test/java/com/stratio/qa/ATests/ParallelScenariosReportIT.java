@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.ATests;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.TestNG;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class ParallelScenariosReportIT {
+
+    private final Logger logger = LoggerFactory.getLogger(ParallelScenariosReportIT.class);
+
+    @Test
+    public void sameReportsWhateverThePoolSize() throws IOException {
+        long start = System.currentTimeMillis();
+        String[] sequential = runWithPoolSize(1);
+        long sequentialTime = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        String[] parallel = runWithPoolSize(5);
+        long parallelTime = System.currentTimeMillis() - start;
+
+        logger.info("{} executed in {} ms with 1 worker, {} ms with 5 workers", ParallelScenariosIT.class.getSimpleName(),
+                sequentialTime, parallelTime);
+        assertThat(parallel[0]).isEqualTo(sequential[0]);
+        assertThat(parallel[1]).isEqualTo(sequential[1]);
+        assertThat(parallelTime).isLessThan(sequentialTime);
+    }
+
+    @Test
+    public void parallelScenariosAreIsolated() throws IOException {
+        TestNG testNG = testNG(ParallelScenariosIsolationRunner.class, 5);
+        testNG.run();
+        assertThat(testNG.getStatus()).as("Failed scenario").isNotEqualTo(0);
+
+        Matcher matcher = Pattern.compile("<test-method [^>]*name=\"([^\"]*)\"[^>]*status=\"([^\"]*)\"")
+                .matcher(new String(Files.readAllBytes(Paths.get(reportPath(ParallelScenariosIsolationRunner.class) + "TESTNG.xml")), StandardCharsets.UTF_8));
+        Map<String, String> statuses = new LinkedHashMap<>();
+        while (matcher.find()) {
+            statuses.put(matcher.group(1), matcher.group(2));
+        }
+        assertThat(statuses).containsExactly(entry("First scenario with its own command output", "PASS"),
+                entry("Failed scenario", "FAIL"),
+                entry("Second scenario with its own command output", "PASS"),
+                entry("Outline with its own command output", "PASS"),
+                entry("Outline with its own command output_2", "PASS"),
+                entry("Outline with its own command output_3", "PASS"));
+    }
+
+    private String[] runWithPoolSize(int threads) throws IOException {
+        TestNG testNG = testNG(ParallelScenariosIT.class, threads);
+        testNG.run();
+        assertThat(testNG.getStatus()).as("Parallel scenarios failed with " + threads + " workers").isEqualTo(0);
+
+        String path = reportPath(ParallelScenariosIT.class);
+        return new String[]{normalize(path + "TESTNG.xml"), normalize(path + "JUNIT.xml")};
+    }
+
+    private TestNG testNG(Class<?> testClass, int threads) {
+        TestNG testNG = new TestNG(false);
+        testNG.setVerbose(0);
+        testNG.setTestClasses(new Class[]{testClass});
+        testNG.setDataProviderThreadCount(threads);
+        return testNG;
+    }
+
+    private String reportPath(Class<?> testClass) {
+        String testSuffix = System.getProperty("TESTSUFFIX");
+        return "target/executions/" + (testSuffix != null ? testSuffix + "/" : "") + testClass.getCanonicalName();
+    }
+
+    /**
+     * Remove dates and durations from a report
+     */
+    private String normalize(String report) throws IOException {
+        return new String(Files.readAllBytes(Paths.get(report)), StandardCharsets.UTF_8)
+                .replaceAll("(started-at|finished-at|duration-ms|time|timestamp)=\"[^\"]*\"", "$1=\"\"");
+    }
+}
@@ -19,7 +19,13 @@ package com.stratio.qa.aspects;
 import com.stratio.qa.exceptions.IncludeException;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatExceptionOfType;
@@ -165,4 +171,106 @@ public class IncludeTagAspectTest {
         assertThat(lines.get(3)).as("Test that Scenario line was moved after other scenario tags").isEqualTo("Scenario: Scenario with include");
         assertThat(lines).as("Test that array doesn't contains @include tag").doesNotContain("@include");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDeepAndRepeatedIncludesAreReadOnce() throws Exception {
+        Path dir = Files.createTempDirectory("includes");
+        write(dir, "level3.feature", "Feature: Level 3",
+                "  Scenario Outline: Leaf",
+                "    Given I run 'echo <value>' locally",
+                "    Examples:",
+                "      | value |",
+                "      | 0     |");
+        write(dir, "level2.feature", "Feature: Level 2",
+                "  @include(feature:level3.feature,scenario:Leaf,params:[value:2])",
+                "  Scenario: Middle",
+                "    Given I wait '2' seconds",
+                "      | a \\| b | c |");
+        write(dir, "level1.feature", "Feature: Level 1",
+                "  @include(feature:level2.feature,scenario:Middle)",
+                "  @include(feature:level3.feature,scenario:Leaf,params:[value:1])",
+                "  Scenario: Top",
+                "    Given I wait '1' seconds");
+        Map<String, Integer> reads = new ConcurrentHashMap<>();
+        LoopIncludeTagAspect aspect = new LoopIncludeTagAspect(countingCache(reads));
+
+        String[] originalFeature = new String[]
+                {"Feature: Test",
+                 "@include(feature:level1.feature,scenario:Top)",
+                 "@include(feature:level2.feature,scenario:Middle)",
+                 "Scenario: Scenario with include",
+                 "Given I run 'echo 1' locally"};
+        List<String> lines = new ArrayList<>(Arrays.asList(originalFeature));
+        aspect.parseLines(lines, dir + "/");
+        String middle = "    Given I run 'echo 2' locally\n    Given I wait '2' seconds\n      | a \\| b | c |\n";
+        assertThat(lines.get(1)).as("Test that Scenario line was moved to first include line").isEqualTo("Scenario: Scenario with include");
+        assertThat(lines.get(3)).as("Test that included scenarios are resolved depth first")
+                .isEqualTo(middle + "    Given I run 'echo 1' locally\n    Given I wait '1' seconds\n" + middle);
+
+        aspect.featureStepConverter(dir + "/level1.feature", "Top", null);
+        assertThat(reads).as("Test that every included feature is read once").containsOnly(
+                new AbstractMap.SimpleEntry<>("level1.feature", 1),
+                new AbstractMap.SimpleEntry<>("level2.feature", 1),
+                new AbstractMap.SimpleEntry<>("level3.feature", 1));
+    }
+
+    @Test
+    public void testModifiedIncludedFeatureIsReadAgain() throws Exception {
+        Path dir = Files.createTempDirectory("includes");
+        Path feature = write(dir, "modified.feature", "Feature: Modified", "  Scenario: Changing", "    Given I wait '1' seconds");
+        Map<String, Integer> reads = new ConcurrentHashMap<>();
+        LoopIncludeTagAspect aspect = new LoopIncludeTagAspect(countingCache(reads));
+
+        assertThat(aspect.featureStepConverter(feature.toString(), "Changing", null)).isEqualTo("    Given I wait '1' seconds\n");
+        assertThat(aspect.featureStepConverter(feature.toString(), "Changing", null)).isEqualTo("    Given I wait '1' seconds\n");
+        FileTime modified = Files.getLastModifiedTime(feature);
+        write(dir, "modified.feature", "Feature: Modified", "  Scenario: Changing", "    Given I wait '2' seconds");
+        Files.setLastModifiedTime(feature, FileTime.fromMillis(modified.toMillis() + 10000));
+        assertThat(aspect.featureStepConverter(feature.toString(), "Changing", null)).isEqualTo("    Given I wait '2' seconds\n");
+        assertThat(reads.get("modified.feature")).as("Test that the feature is read again after being modified").isEqualTo(2);
+    }
+
+    @Test
+    public void testCyclicIncludes() throws Exception {
+        Path dir = Files.createTempDirectory("includes");
+        write(dir, "cycleA.feature", "Feature: Cycle A",
+                "  @include(feature:cycleB.feature,scenario:B)",
+                "  Scenario: A",
+                "    Given I wait '1' seconds");
+        write(dir, "cycleB.feature", "Feature: Cycle B",
+                "  @include(feature:cycleA.feature,scenario:A)",
+                "  Scenario: B",
+                "    Given I wait '1' seconds");
+
+        assertThatExceptionOfType(IncludeException.class).isThrownBy(() -> inctag.featureStepConverter(dir + "/cycleA.feature", "A", null));
+    }
+
+    @Test
+    public void testIncludeFromNotGherkinFeature() throws Exception {
+        Path dir = Files.createTempDirectory("includes");
+        write(dir, "background.feature", "Feature: Conditional background",
+                "  Background:",
+                "  @background(VAR)",
+                "    Given I wait '1' seconds",
+                "  @/background",
+                "  Scenario: Legacy scenario",
+                "    Given I wait '2' seconds");
+
+        assertThat(inctag.featureStepConverter(dir + "/background.feature", "Legacy scenario", null))
+                .as("Test that steps are found line by line when gherkin can not parse the feature").isEqualTo("    Given I wait '2' seconds\n");
+    }
+
+    private ParsedFeatureCache countingCache(Map<String, Integer> reads) {
+        return new ParsedFeatureCache() {
+            @Override
+            List<String> read(Path file) throws IOException {
+                reads.merge(file.getFileName().toString(), 1, Integer::sum);
+                return super.read(file);
+            }
+        };
+    }
+
+    private Path write(Path dir, String name, String... lines) throws IOException {
+        return Files.write(dir.resolve(name), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.aspects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatExceptionOfType;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.stratio.qa.exceptions.NonReplaceableException;
+import com.stratio.qa.utils.ResourceCache;
+import com.stratio.qa.utils.ThreadProperty;
+
+public class PlaceholderTemplateTest {
+
+    private final Logger logger = LoggerFactory.getLogger(PlaceholderTemplateTest.class);
+
+    /**
+     * Compares, for every element replaced, the compiled replacement with the sequential one
+     */
+    private static final class ComparingReplacementAspect extends ReplacementAspect {
+
+        private boolean comparing;
+
+        private int compared;
+
+        @Override
+        protected String replacedElement(String el, JoinPoint jp) throws NonReplaceableException {
+            compare(el, jp);
+            return super.replacedElement(el, jp);
+        }
+
+        @Override
+        protected String replaceCodePlaceholders(String element, JoinPoint pjp) throws NonReplaceableException {
+            compare(element, pjp);
+            return super.replaceCodePlaceholders(element, pjp);
+        }
+
+        @Override
+        protected String replaceReflectionPlaceholders(String element, JoinPoint pjp) throws NonReplaceableException {
+            compare(element, pjp);
+            return super.replaceReflectionPlaceholders(element, pjp);
+        }
+
+        @Override
+        protected String replaceEnvironmentPlaceholders(String element, JoinPoint jp) throws NonReplaceableException {
+            compare(element, jp);
+            return super.replaceEnvironmentPlaceholders(element, jp);
+        }
+
+        private void compare(String el, JoinPoint jp) throws NonReplaceableException {
+            if (comparing) {
+                return;
+            }
+            comparing = true;
+            try {
+                String expected;
+                try {
+                    expected = replacedElementSequentially(el, jp);
+                } catch (Exception e) {
+                    assertThatExceptionOfType(Exception.class).as("Unexpected replacement for " + el)
+                            .isThrownBy(() -> super.replacedElement(el, jp));
+                    return;
+                }
+                assertThat(super.replacedElement(el, jp)).as("Unexpected replacement for " + el).isEqualTo(expected);
+                // Second call is served by the cached template
+                assertThat(super.replacedElement(el, jp)).as("Unexpected cached replacement for " + el).isEqualTo(expected);
+            } finally {
+                compared++;
+                comparing = false;
+            }
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+        System.setProperty("STRATIOBDD_TPL1", "aa");
+        System.setProperty("STRATIOBDD_TPL2", "bB");
+        System.setProperty("STRATIOBDD_TPL3", "cc");
+        System.setProperty("STRATIOBDD_TPL_NESTED", "!{STRATIOBDD_TPL_LOCAL1}");
+        System.setProperty("STRATIOBDD_TPL_BRACE", "{STRATIOBDD_TPL1}");
+        ThreadProperty.set("STRATIOBDD_TPL_LOCAL1", "LOCAL");
+        ThreadProperty.set("STRATIOBDD_TPL_LOCAL2", "dD");
+        ThreadProperty.set("STRATIOBDD_TPL_LOCAL_NESTED", "@{JSON.schemas/simple1.json}");
+        PlaceholderTemplate.clearCache();
+    }
+
+    @Test
+    public void compiledOutputMatchesSequentialReplacementTest() throws Exception {
+        ComparingReplacementAspect repAspect = new ComparingReplacementAspect();
+        ReplacementAspectTest cases = new ReplacementAspectTest() {
+            @Override
+            ReplacementAspect newReplacementAspect() {
+                return repAspect;
+            }
+        };
+
+        for (Method method : ReplacementAspectTest.class.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(Test.class)) {
+                try {
+                    method.invoke(cases);
+                } catch (InvocationTargetException e) {
+                    throw new AssertionError("ReplacementAspectTest." + method.getName() + " failed", e.getCause());
+                }
+            }
+        }
+        assertThat(repAspect.compared).as("Elements compared").isGreaterThan(40);
+    }
+
+    @Test
+    public void compileSegmentsTest() {
+        PlaceholderTemplate template = PlaceholderTemplate.compile("a ${ENV.toUpper:-x} b !{LOCAL} @{FILE.data.txt}");
+
+        assertThat(template.isCompiled()).isTrue();
+        assertThat(template.getSegments()).hasSize(6);
+        assertThat(template.getSegments().get(1).getKind()).isEqualTo(PlaceholderTemplate.Kind.ENVIRONMENT);
+        assertThat(template.getSegments().get(1).getName()).isEqualTo("ENV");
+        assertThat(template.getSegments().get(1).getArgument()).isEqualTo("x");
+        assertThat(template.getSegments().get(1).applyModifier("y")).isEqualTo("Y");
+        assertThat(template.getSegments().get(3).getName()).isEqualTo("LOCAL");
+        assertThat(template.getSegments().get(5).getName()).isEqualTo("file");
+        assertThat(template.getSegments().get(5).getArgument()).isEqualTo("data.txt");
+        assertThat(PlaceholderTemplate.compile("a ${ENV.toUpper:-x} b !{LOCAL} @{FILE.data.txt}")).isSameAs(template);
+    }
+
+    @Test
+    public void compileIrregularPlaceholdersTest() {
+        assertThat(PlaceholderTemplate.compile("plain text").hasPlaceholders()).isFalse();
+        assertThat(PlaceholderTemplate.compile("{\"json\": 1}").hasPlaceholders()).isFalse();
+        assertThat(PlaceholderTemplate.compile("${UNCLOSED").isCompiled()).isFalse();
+        assertThat(PlaceholderTemplate.compile("!{a${b}}").isCompiled()).isFalse();
+    }
+
+    @Test
+    public void unreplaceablePlaceholdersTest() {
+        ReplacementAspect repAspect = new ReplacementAspect();
+        ProceedingJoinPoint pjp = null;
+
+        assertThatExceptionOfType(Exception.class).isThrownBy(() -> repAspect.replacedElement("!{NO_VAL}", pjp));
+        assertThatExceptionOfType(Exception.class).isThrownBy(() -> repAspect.replacedElement("${STRATIOBDD_TPL1} ${NO_VAL}", pjp));
+        assertThatExceptionOfType(Exception.class).isThrownBy(() -> repAspect.replacedElement("@{IP.10.10.10.10}", pjp));
+        assertThatExceptionOfType(Exception.class).isThrownBy(() -> repAspect.replacedElement("${UNCLOSED", pjp));
+    }
+
+    @Test(groups = "benchmark")
+    public void replacementBenchmarkTest() throws NonReplaceableException {
+        ReplacementAspect repAspect = new ReplacementAspect();
+        ProceedingJoinPoint pjp = null;
+        String step = "I send a 'POST' request to '/service/${STRATIOBDD_TPL1}/!{STRATIOBDD_TPL_LOCAL1}/${STRATIOBDD_TPL2.toLower}' "
+                + "based on 'schemas/simple1.json' as 'json' with user '!{STRATIOBDD_TPL_LOCAL2}' and tenant '${STRATIOBDD_TPL_UNDEF:-NONE}'";
+        int warmup = 20000;
+        int iterations = 200000;
+
+        for (int i = 0; i < warmup; i++) {
+            repAspect.replacedElementSequentially(step, pjp);
+            repAspect.replacedElement(step, pjp);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            repAspect.replacedElementSequentially(step, pjp);
+        }
+        long sequential = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            repAspect.replacedElement(step, pjp);
+        }
+        long compiled = System.nanoTime() - start;
+
+        logger.info("Placeholder replacement: sequential {} ns/op, compiled {} ns/op", sequential / iterations, compiled / iterations);
+        assertThat(repAspect.replacedElement(step, pjp)).isEqualTo(repAspect.replacedElementSequentially(step, pjp));
+    }
+
+    @Test(groups = "benchmark")
+    public void jsonPlaceholderBenchmarkTest() throws NonReplaceableException {
+        ReplacementAspect repAspect = new ReplacementAspect();
+        ProceedingJoinPoint pjp = null;
+        String step = "I send a 'POST' request to '/service' with body '@{JSON.schemas/simple1.json}'";
+        int iterations = 20000;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            ResourceCache.getInstance().clear();
+            repAspect.replacedElement(step, pjp);
+        }
+        long uncached = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            repAspect.replacedElement(step, pjp);
+        }
+        long cached = System.nanoTime() - start;
+
+        logger.info("@{JSON.file} resolution: loading {} ns/op, cached {} ns/op", uncached / iterations, cached / iterations);
+        assertThat(repAspect.replacedElement(step, pjp)).isEqualTo("I send a 'POST' request to '/service' with body '{\"a\":true}'");
+    }
+}
@@ -26,10 +26,17 @@ import com.stratio.qa.utils.ThreadProperty;
 
 public class ReplacementAspectTest {
 
+    /**
+     * @return aspect used by the cases, see PlaceholderTemplateTest
+     */
+    ReplacementAspect newReplacementAspect() {
+        return new ReplacementAspect();
+    }
+
     @Test
     public void replaceEmptyPlaceholdersTest() throws NonReplaceableException {
         ThreadProperty.set("class", this.getClass().getCanonicalName());
-        ReplacementAspect repAspect = new ReplacementAspect();
+        ReplacementAspect repAspect = newReplacementAspect();
         ProceedingJoinPoint pjp = null;
         assertThat(repAspect.replaceEnvironmentPlaceholders("", pjp)).as("Replacing an empty placeholded string should not modify it").isEqualTo("");
     }
@@ -37,7 +44,7 @@ public class ReplacementAspectTest {
     @Test
     public void replaceSinglePlaceholdersTest() throws NonReplaceableException {
         ThreadProperty.set("class", this.getClass().getCanonicalName());
-        ReplacementAspect repAspect = new ReplacementAspect();
+        ReplacementAspect repAspect = newReplacementAspect();
         ProceedingJoinPoint pjp = null;
         System.setProperty("STRATIOBDD_ENV1", "33");
         System.setProperty("STRATIOBDD_ENV2", "aa");
@@ -55,7 +62,7 @@ public class ReplacementAspectTest {
     @Test
     public void replaceSinglePlaceholderCaseTest() throws NonReplaceableException {
         ThreadProperty.set("class", this.getClass().getCanonicalName());
-        ReplacementAspect repAspect = new ReplacementAspect();
+        ReplacementAspect repAspect = newReplacementAspect();
         ProceedingJoinPoint pjp = null;
         System.setProperty("STRATIOBDD_ENV1", "33");
         System.setProperty("STRATIOBDD_ENV2", "aA");
@@ -72,7 +79,7 @@ public class ReplacementAspectTest {
     @Test
     public void replaceElementPlaceholderCaseTest() throws NonReplaceableException {
         ThreadProperty.set("class", this.getClass().getCanonicalName());
-        ReplacementAspect repAspect = new ReplacementAspect();
+        ReplacementAspect repAspect = newReplacementAspect();
         ProceedingJoinPoint pjp = null;
         System.setProperty("STRATIOBDD_ENV4", "33");
         System.setProperty("STRATIOBDD_ENV5", "aA");
@@ -97,7 +104,7 @@ public class ReplacementAspectTest {
     @Test
     public void replaceReflectionPlaceholderCaseTest() throws NonReplaceableException {
         ThreadProperty.set("class", this.getClass().getCanonicalName());
-        ReplacementAspect repAspect = new ReplacementAspect();
+        ReplacementAspect repAspect = newReplacementAspect();
         ProceedingJoinPoint pjp = null;
 
         assertThatExceptionOfType(Exception.class).isThrownBy(() -> repAspect.replaceReflectionPlaceholders("!{NO_VAL}", pjp));
@@ -106,7 +113,7 @@ public class ReplacementAspectTest {
     @Test
     public void replaceCodePlaceholderCaseTest() throws NonReplaceableException {
         ThreadProperty.set("class", this.getClass().getCanonicalName());
-        ReplacementAspect repAspect = new ReplacementAspect();
+        ReplacementAspect repAspect = newReplacementAspect();
         ProceedingJoinPoint pjp = null;
 
         assertThat(repAspect.replaceCodePlaceholders("@{schemas/simple1.json}", pjp)).isEqualTo("");
@@ -119,7 +126,7 @@ public class ReplacementAspectTest {
         ThreadProperty.set("class", this.getClass().getCanonicalName());
         ThreadProperty.set("STRATIOBDD_LOCAL1", "LOCAL");
         ProceedingJoinPoint pjp = null;
-        ReplacementAspect repAspect = new ReplacementAspect();
+        ReplacementAspect repAspect = newReplacementAspect();
         System.setProperty("STRATIOBDD_ENV2", "aa");
 
         assertThat(repAspect.replaceReflectionPlaceholders(repAspect.replaceEnvironmentPlaceholders("!{STRATIOBDD_LOCAL1}:${STRATIOBDD_ENV2}", pjp), pjp))
@@ -128,11 +135,27 @@ public class ReplacementAspectTest {
                 .as("Unexpected replacement").isEqualTo("aa:LOCAL");
     }
 
+    @Test
+    public void replaceNestedPlaceholdersTest() throws Exception {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+        ProceedingJoinPoint pjp = null;
+        ReplacementAspect repAspect = newReplacementAspect();
+        System.setProperty("STRATIOBDD_ENV1", "aa");
+        System.setProperty("STRATIOBDD_ENV8", "!{STRATIOBDD_LOCAL1}");
+        ThreadProperty.set("STRATIOBDD_LOCAL1", "LOCAL");
+        ThreadProperty.set("STRATIOBDD_LOCAL2", "@{JSON.schemas/simple1.json}");
+
+        assertThat(repAspect.replacedElement("${STRATIOBDD_ENV8}", pjp)).isEqualTo("LOCAL");
+        assertThat(repAspect.replacedElement("!{STRATIOBDD_LOCAL2}", pjp)).isEqualTo("{\"a\":true}");
+        assertThat(repAspect.replacedElement("a ${STRATIOBDD_ENV1} b !{STRATIOBDD_LOCAL1} c @{JSON.schemas/simple1.json} d", pjp))
+                .isEqualTo("a aa b LOCAL c {\"a\":true} d");
+    }
+
     @Test
     public void replaceDefaultValue() throws Exception {
         ThreadProperty.set("class", this.getClass().getCanonicalName());
         ProceedingJoinPoint pjp = null;
-        ReplacementAspect repAspect = new ReplacementAspect();
+        ReplacementAspect repAspect = newReplacementAspect();
         System.setProperty("STRATIOBDD_ENV1", "aa");
         System.setProperty("STRATIOBDD_ENV3", "cc");
 
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.cucumber.converter;
+
+import com.stratio.qa.utils.ThreadProperty;
+import gherkin.events.PickleEvent;
+import gherkin.pickles.Argument;
+import gherkin.pickles.Pickle;
+import gherkin.pickles.PickleCell;
+import gherkin.pickles.PickleLocation;
+import gherkin.pickles.PickleRow;
+import gherkin.pickles.PickleStep;
+import gherkin.pickles.PickleString;
+import gherkin.pickles.PickleTable;
+import gherkin.pickles.PickleTag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoopConverterTest {
+
+    private final Logger logger = LoggerFactory.getLogger(LoopConverterTest.class);
+
+    private static final PickleLocation LOCATION = new PickleLocation(1, 1);
+
+    @Test
+    public void substitutionPlanTest() {
+        String[] placeholders = {"<V>", "<V.id>"};
+        Pattern[] patterns = SubstitutionPlan.compilePlaceholders(placeholders);
+        String[] texts = {"plain <V> and <V.id> and <VXid>", "<V><V.id>", "no placeholders", "", "a < b <V>", "<V<V>>", "<V.id"};
+        for (String text : texts) {
+            SubstitutionPlan plan = SubstitutionPlan.compile(text, placeholders, patterns);
+            assertThat(plan.expand("elem", "3")).as(text).isEqualTo(text.replaceAll("<V>", "elem").replaceAll("<V.id>", "3"));
+        }
+        assertThat(SubstitutionPlan.compile("plain <V> and <V.id> and <VXid>", placeholders, patterns).isCompiled()).isTrue();
+        assertThat(SubstitutionPlan.compile("a < b <V>", placeholders, patterns).isCompiled()).isFalse();
+        assertThat(SubstitutionPlan.compilePlaceholders("<V(x>")).isNull();
+        assertThat(SubstitutionPlan.areSafeValues("a", "b c")).isTrue();
+        assertThat(SubstitutionPlan.areSafeValues("a", "$1")).isFalse();
+        assertThat(SubstitutionPlan.areSafeValues("<V>")).isFalse();
+    }
+
+    @Test
+    public void loopTagTest() {
+        assertThat(LoopConverter.LoopTag.of("@loop(LIST,NAME)").getKind()).isEqualTo(LoopConverter.LoopTag.Kind.LOOP);
+        assertThat(LoopConverter.LoopTag.of("@progloop(TIMES,NAME)").getKind()).isEqualTo(LoopConverter.LoopTag.Kind.PROGLOOP);
+        assertThat(LoopConverter.LoopTag.of("@MultiLoop(A=>B,C=>D)").getKind()).isEqualTo(LoopConverter.LoopTag.Kind.MULTILOOP);
+        assertThat(LoopConverter.LoopTag.of("@include(feature:a.feature,scenario:b)").getKind()).isEqualTo(LoopConverter.LoopTag.Kind.NONE);
+        assertThat(LoopConverter.LoopTag.of("@loop(LIST,NAME)").getArguments()).containsExactly("LIST", "NAME");
+        assertThat(LoopConverter.LoopTag.of("@MultiLoop(A=>B,C=>D)").getArguments()).containsExactly("A=>B", "C=>D");
+    }
+
+    @Test
+    public void loopTest() {
+        ThreadProperty.set("LOOP_CONVERTER_LIST", "a,b,c");
+        PickleEvent pe = pickleEvent("Scenario <NAME>", "@loop(LOOP_CONVERTER_LIST,NAME)",
+                "I save '<NAME>' with id '<NAME.id>'", "I run 'echo $1 < file'");
+        List<PickleEvent> pickles = LoopConverter.transformPickleEventWithLoopTags(pe);
+
+        assertThat(pickles).hasSize(3);
+        assertThat(pickles.get(1).pickle.getName()).isEqualTo("Scenario b");
+        assertThat(pickles.get(1).pickle.getSteps().get(0).getText()).isEqualTo("I save 'b' with id '1'");
+        assertThat(pickles.get(1).pickle.getSteps().get(1).getText()).isEqualTo("I run 'echo $1 < file'");
+        // ids in data tables are replaced with the element
+        assertThat(cells(pickles.get(1), 0)).containsExactly("I save 'b' with id 'b'", "b");
+        assertThat(pickles.get(1).pickle.getSteps().get(1).getArgument().get(0)).isInstanceOf(PickleString.class);
+    }
+
+    @Test
+    public void progLoopTest() {
+        ThreadProperty.set("LOOP_CONVERTER_TIMES", "2");
+        PickleEvent pe = pickleEvent("Scenario <N>", "@progloop(LOOP_CONVERTER_TIMES,N)", "I wait '<N>' seconds");
+        List<PickleEvent> pickles = LoopConverter.transformPickleEventWithLoopTags(pe);
+
+        assertThat(pickles).hasSize(2);
+        assertThat(pickles.get(0).pickle.getSteps().get(0).getText()).isEqualTo("I wait '1' seconds");
+        assertThat(pickles.get(1).pickle.getSteps().get(0).getText()).isEqualTo("I wait '2' seconds");
+    }
+
+    @Test
+    public void multiLoopTest() {
+        ThreadProperty.set("LOOP_CONVERTER_SERVERS", "s1,s2");
+        ThreadProperty.set("LOOP_CONVERTER_CLIENTS", "c1,c2,c3");
+        PickleEvent pe = pickleEvent("<SERVER> to <CLIENT>", "@multiloop(LOOP_CONVERTER_SERVERS=>SERVER,LOOP_CONVERTER_CLIENTS=>CLIENT)",
+                "I run 'echo \"<SERVER>,<CLIENT>\"' locally");
+        List<String> texts = new ArrayList<>();
+        for (PickleEvent pickle : LoopConverter.transformPickleEventWithLoopTags(pe)) {
+            texts.add(pickle.pickle.getSteps().get(0).getText());
+        }
+        assertThat(texts).hasSize(6).containsOnly("I run 'echo \"s1,c1\"' locally", "I run 'echo \"s2,c1\"' locally",
+                "I run 'echo \"s1,c2\"' locally", "I run 'echo \"s2,c2\"' locally", "I run 'echo \"s1,c3\"' locally",
+                "I run 'echo \"s2,c3\"' locally");
+    }
+
+    @Test
+    public void unsafeValuesTest() {
+        ThreadProperty.set("LOOP_CONVERTER_UNSAFE", "a<NAME.id>,b");
+        PickleEvent pe = pickleEvent("Scenario <NAME>", "@loop(LOOP_CONVERTER_UNSAFE,NAME)", "I save '<NAME>'");
+        List<PickleEvent> pickles = LoopConverter.transformPickleEventWithLoopTags(pe);
+        assertThat(pickles.get(0).pickle.getSteps().get(0).getText()).isEqualTo("I save 'a0'");
+        assertThat(pickles.get(1).pickle.getSteps().get(0).getText()).isEqualTo("I save 'b'");
+
+        ThreadProperty.set("LOOP_CONVERTER_UNSAFE", "$1");
+        pe = pickleEvent("Scenario <NAME>", "@loop(LOOP_CONVERTER_UNSAFE,NAME)", "I save '<NAME>'");
+        pickles = LoopConverter.transformPickleEventWithLoopTags(pe);
+        assertThat(pickles).hasSize(1);
+        assertThat(pickles.get(0).pickle.getTags().get(1).getName()).isEqualTo("@error");
+    }
+
+    private static final String MULTILOOP_TAG = "@multiloop(LOOP_CONVERTER_A=>A,LOOP_CONVERTER_B=>B,LOOP_CONVERTER_C=>C)";
+
+    private static String[] multiLoopTexts() {
+        ThreadProperty.set("LOOP_CONVERTER_A", "a1,a2,a3,a4,a5");
+        ThreadProperty.set("LOOP_CONVERTER_B", "b1,b2,b3,b4,b5");
+        ThreadProperty.set("LOOP_CONVERTER_C", "c1,c2,c3,c4,c5");
+        String[] texts = new String[200];
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = "I send '<A>' with '<B>' to '<C>' number " + i;
+        }
+        return texts;
+    }
+
+    @Test
+    public void multiLoopAllCombinationsTest() {
+        String[] texts = multiLoopTexts();
+        String tag = MULTILOOP_TAG;
+
+        List<PickleEvent> pickles = LoopConverter.transformPickleEventWithLoopTags(pickleEvent("S", tag, texts));
+        assertThat(pickles).hasSize(125);
+        for (PickleEvent pickle : pickles) {
+            String text = pickle.pickle.getSteps().get(199).getText();
+            assertThat(text).matches("I send 'a\\d' with 'b\\d' to 'c\\d' number 199");
+            assertThat(cells(pickle, 0).get(0)).isEqualTo(pickle.pickle.getSteps().get(0).getText());
+        }
+    }
+
+    @Test(groups = "benchmark")
+    public void multiLoopBenchmarkTest() {
+        String[] texts = multiLoopTexts();
+        String tag = MULTILOOP_TAG;
+
+        int iterations = 20;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            replaceAllExpansion(pickleEvent("S", tag, texts), new String[]{"A", "B", "C"}, new String[][]{
+                {"a1", "a2", "a3", "a4", "a5"}, {"b1", "b2", "b3", "b4", "b5"}, {"c1", "c2", "c3", "c4", "c5"}});
+        }
+        long replaceAll = (System.nanoTime() - start) / iterations;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            LoopConverter.transformPickleEventWithLoopTags(pickleEvent("S", tag, texts));
+        }
+        long plans = (System.nanoTime() - start) / iterations;
+        logger.info("5x5x5 @multiloop over 200 steps: {} ms with replaceAll, {} ms with substitution plans",
+                replaceAll / 1000000, plans / 1000000);
+    }
+
+    /**
+     * Expansion applying String.replaceAll to every text for each combination of values
+     */
+    private List<String> replaceAllExpansion(PickleEvent pe, String[] keys, String[][] values) {
+        List<String> result = new ArrayList<>();
+        for (String a : values[0]) {
+            for (String b : values[1]) {
+                for (String c : values[2]) {
+                    String[] combination = {a, b, c};
+                    for (PickleStep step : pe.pickle.getSteps()) {
+                        String text = step.getText();
+                        for (int i = 0; i < keys.length; i++) {
+                            text = text.replaceAll("<" + keys[i] + ">", combination[i]);
+                        }
+                        result.add(text);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<String> cells(PickleEvent pe, int step) {
+        List<String> values = new ArrayList<>();
+        for (PickleRow row : ((PickleTable) pe.pickle.getSteps().get(step).getArgument().get(0)).getRows()) {
+            for (PickleCell cell : row.getCells()) {
+                values.add(cell.getValue());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Pickle whose even steps have a data table with the step text and the id placeholder, and odd steps a doc string
+     */
+    private PickleEvent pickleEvent(String name, String tag, String... texts) {
+        List<PickleStep> steps = new ArrayList<>();
+        for (int i = 0; i < texts.length; i++) {
+            Argument argument;
+            if (i % 2 == 0) {
+                argument = new PickleTable(Collections.singletonList(new PickleRow(Arrays.asList(
+                        new PickleCell(LOCATION, texts[i]), new PickleCell(LOCATION, "<NAME.id>")))));
+            } else {
+                argument = new PickleString(LOCATION, texts[i]);
+            }
+            steps.add(new PickleStep(texts[i], Collections.singletonList(argument), Collections.singletonList(LOCATION)));
+        }
+        List<PickleTag> tags = new ArrayList<>(Collections.singletonList(new PickleTag(LOCATION, tag)));
+        return new PickleEvent("loop.feature", new Pickle(name, "en", steps, tags, Collections.singletonList(LOCATION)));
+    }
+}
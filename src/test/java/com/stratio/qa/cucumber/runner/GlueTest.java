@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.cucumber.runner;
+
+import cucumber.runtime.StepDefinition;
+import gherkin.pickles.PickleStep;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GlueTest {
+
+    private static final String[] VERBS = {"create", "delete", "update", "check"};
+
+    private static final int THREADS = 8;
+
+    private static StepDefinition stepDefinition(String pattern) {
+        StepDefinition stepDefinition = mock(StepDefinition.class);
+        when(stepDefinition.getPattern()).thenReturn(pattern);
+        when(stepDefinition.matchedArguments(any(PickleStep.class))).thenAnswer(invocation ->
+                ((PickleStep) invocation.getArguments()[0]).getText().matches(pattern) ? Collections.emptyList() : null);
+        return stepDefinition;
+    }
+
+    @Test
+    public void concurrentMatchesTest() throws Exception {
+        Glue glue = new Glue(null);
+        for (String verb : VERBS) {
+            glue.addStepDefinition(stepDefinition("^I " + verb + " element (\\d+)$"));
+        }
+
+        // more step texts than cached, so that matching threads evict entries from the cache
+        int stepTexts = 2 * Glue.MAX_CACHED_STEP_TEXTS;
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Callable<Void>> matchers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            matchers.add(() -> {
+                for (int i = 0; i < stepTexts; i++) {
+                    String verb = VERBS[(i + thread) % VERBS.length];
+                    PickleStep step = new PickleStep("I " + verb + " element " + i, Collections.emptyList(), Collections.emptyList());
+                    PickleStepDefinitionMatch match = glue.stepDefinitionMatch("concurrent.feature", step);
+                    assertThat(match.getStepDefinition().getPattern()).isEqualTo("^I " + verb + " element (\\d+)$");
+                }
+                return null;
+            });
+        }
+        for (Future<Void> matcher : executor.invokeAll(matchers)) {
+            matcher.get();
+        }
+        executor.shutdown();
+
+        assertThat(glue.stepDefinitionsByStepText.size()).isLessThanOrEqualTo(Glue.MAX_CACHED_STEP_TEXTS);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.cucumber.runner;
+
+import cucumber.api.java.en.Given;
+import cucumber.api.java.en.Then;
+import cucumber.api.java.en.When;
+import io.cucumber.cucumberexpressions.Expression;
+import io.cucumber.cucumberexpressions.ExpressionFactory;
+import io.cucumber.cucumberexpressions.ParameterTypeRegistry;
+import org.reflections.Reflections;
+import org.reflections.scanners.MethodAnnotationsScanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StepDefinitionIndexTest {
+
+    private final Logger logger = LoggerFactory.getLogger(StepDefinitionIndexTest.class);
+
+    /**
+     * Step patterns of the framework and step texts of its features
+     */
+    private final List<String> patterns = new ArrayList<>();
+
+    private final List<Expression> expressions = new ArrayList<>();
+
+    private final List<String> stepTexts = new ArrayList<>();
+
+    @Test
+    public void regularExpressionLiteralsTest() {
+        StepDefinitionIndex.Literals literals = StepDefinitionIndex.Literals.of("^I send a '(.+?)' request to '(.+?)'( with user and password '(.+:.+?)')?$");
+        assertThat(literals.getPrefix()).isEqualTo("I send a '");
+        assertThat(literals.getTokens()).containsExactly("' request to '");
+
+        literals = StepDefinitionIndex.Literals.of("^in less than '(\\d+)' seconds, checking each '(\\d+)' seconds, the command output '(.+?)' contains '(.+?)'$");
+        assertThat(literals.getPrefix()).isEqualTo("in less than '");
+        assertThat(literals.getTokens()).contains("' seconds, checking each '", "' contains '");
+
+        literals = StepDefinitionIndex.Literals.of("^I wait '(\\d+)' seconds?$");
+        assertThat(literals.getPrefix()).isEqualTo("I wait '");
+        assertThat(literals.getTokens()).containsExactly("' second");
+
+        literals = StepDefinitionIndex.Literals.of("^I save \\$\\{(.+?)\\} in '(.+?)'$");
+        assertThat(literals.getPrefix()).isEqualTo("I save ${");
+    }
+
+    @Test
+    public void unsafeRegularExpressionLiteralsTest() {
+        assertThat(StepDefinitionIndex.Literals.of("^I (?:do|don't) something$").getPrefix()).isEqualTo("I ");
+        assertThat(StepDefinitionIndex.Literals.of("^first|second$").getPrefix()).isEmpty();
+        assertThat(StepDefinitionIndex.Literals.of("^first|second$").getTokens()).isEmpty();
+        assertThat(StepDefinitionIndex.Literals.of("^(?i)case insensitive$").getPrefix()).isEmpty();
+        assertThat(StepDefinitionIndex.Literals.of("^(?i)case insensitive$").getTokens()).isEmpty();
+        assertThat(StepDefinitionIndex.Literals.of("no anchor at start$").getPrefix()).isEmpty();
+        assertThat(StepDefinitionIndex.Literals.of("no anchor at start$").getTokens()).containsExactly("no anchor at start");
+    }
+
+    @Test
+    public void cucumberExpressionLiteralsTest() {
+        StepDefinitionIndex.Literals literals = StepDefinitionIndex.Literals.of("I send message {string} to topic {string} in partition {string}");
+        assertThat(literals.getPrefix()).isEqualTo("I send message ");
+        assertThat(literals.getTokens()).containsExactly(" to topic ", " in partition ");
+
+        literals = StepDefinitionIndex.Literals.of("I have {int} cucumber(s) in my belly/stomach");
+        assertThat(literals.getPrefix()).isEqualTo("I have ");
+        assertThat(literals.getTokens()).containsExactly(" cucumber", " in my ");
+    }
+
+    @Test
+    public void candidatesTest() {
+        StepDefinitionIndex index = new StepDefinitionIndex(Arrays.asList(
+                "^I wait '(\\d+)' seconds?$",
+                "^I send a '(.+?)' request to '(.+?)'$",
+                "^I send a '(.+?)' request to '(.+?)' based on '(.+?)'$",
+                "topic {string} exists",
+                "^(.+?) is a generic step$"));
+
+        assertThat(index.size()).isEqualTo(5);
+        assertThat(index.candidates("I wait '10' seconds")).isEqualTo(bits(0));
+        assertThat(index.candidates("I send a 'GET' request to '/path'")).isEqualTo(bits(1));
+        assertThat(index.candidates("I send a 'GET' request to '/path' based on 'file'")).isEqualTo(bits(1, 2));
+        assertThat(index.candidates("topic 'a' exists")).isEqualTo(bits(3));
+        assertThat(index.candidates("this is a generic step")).isEqualTo(bits(4));
+        assertThat(index.candidates("nothing matches")).isEqualTo(bits());
+    }
+
+    private void loadStepCatalogue() throws IOException {
+        if (!patterns.isEmpty()) {
+            return;
+        }
+        ExpressionFactory expressionFactory = new ExpressionFactory(new ParameterTypeRegistry(Locale.ENGLISH));
+        Reflections reflections = new Reflections("com.stratio.qa.specs", new MethodAnnotationsScanner());
+        List<Method> methods = new ArrayList<>();
+        methods.addAll(reflections.getMethodsAnnotatedWith(Given.class));
+        methods.addAll(reflections.getMethodsAnnotatedWith(When.class));
+        methods.addAll(reflections.getMethodsAnnotatedWith(Then.class));
+        for (Method method : methods) {
+            String pattern = method.isAnnotationPresent(Given.class) ? method.getAnnotation(Given.class).value()
+                    : method.isAnnotationPresent(When.class) ? method.getAnnotation(When.class).value()
+                    : method.getAnnotation(Then.class).value();
+            try {
+                expressions.add(expressionFactory.createExpression(pattern));
+                patterns.add(pattern);
+            } catch (RuntimeException e) {
+                // custom parameter types are not registered here
+            }
+        }
+
+        File[] features = new File("src/test/resources/features").listFiles((dir, name) -> name.endsWith(".feature"));
+        for (File feature : features) {
+            for (String line : Files.readAllLines(feature.toPath())) {
+                String trimmed = line.trim();
+                for (String keyword : new String[]{"Given ", "When ", "Then ", "And ", "But ", "* "}) {
+                    if (trimmed.startsWith(keyword)) {
+                        stepTexts.add(trimmed.substring(keyword.length()));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void stepCatalogueTest() throws IOException {
+        loadStepCatalogue();
+        StepDefinitionIndex index = new StepDefinitionIndex(patterns);
+        int evaluated = 0;
+        for (String stepText : stepTexts) {
+            BitSet candidates = index.candidates(stepText);
+            for (int i = 0; i < expressions.size(); i++) {
+                if (expressions.get(i).match(stepText) != null) {
+                    assertThat(candidates.get(i)).as("Pattern '" + patterns.get(i) + "' not candidate for '" + stepText + "'").isTrue();
+                }
+            }
+            evaluated += candidates.cardinality();
+        }
+
+        logger.info("{} patterns, {} step texts: {} regex evaluations with full scan, {} with index",
+                patterns.size(), stepTexts.size(), patterns.size() * stepTexts.size(), evaluated);
+        assertThat(evaluated).isLessThan(patterns.size() * stepTexts.size());
+    }
+
+    @Test(groups = "benchmark")
+    public void stepCatalogueBenchmarkTest() throws IOException {
+        loadStepCatalogue();
+        StepDefinitionIndex index = new StepDefinitionIndex(patterns);
+
+        long start = System.nanoTime();
+        for (String stepText : stepTexts) {
+            for (Expression expression : expressions) {
+                expression.match(stepText);
+            }
+        }
+        long fullScan = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (String stepText : stepTexts) {
+            BitSet candidates = index.candidates(stepText);
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                expressions.get(i).match(stepText);
+            }
+        }
+        long indexed = System.nanoTime() - start;
+
+        logger.info("{} patterns, {} step texts: full scan {} ms, with index {} ms", patterns.size(), stepTexts.size(),
+                fullScan / 1000000, indexed / 1000000);
+    }
+
+    private BitSet bits(int... ordinals) {
+        BitSet bitSet = new BitSet();
+        for (int ordinal : ordinals) {
+            bitSet.set(ordinal);
+        }
+        return bitSet;
+    }
+}
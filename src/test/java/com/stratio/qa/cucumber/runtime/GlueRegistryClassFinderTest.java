@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.cucumber.runtime;
+
+import cucumber.runtime.ClassFinder;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GlueRegistryClassFinderTest {
+
+    private static final URI PACKAGE = URI.create("classpath:com/stratio/qa/cucumber/runtime");
+
+    private static ClassFinder classFinder(List<Class<?>> classes, List<URI> lookups) {
+        return new ClassFinder() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> Collection<Class<? extends T>> getDescendants(Class<T> parentType, URI packageName) {
+                lookups.add(packageName);
+                List<Class<? extends T>> result = new ArrayList<>();
+                for (Class<?> clazz : classes) {
+                    result.add((Class<? extends T>) clazz);
+                }
+                return result;
+            }
+
+            @Override
+            public <T> Class<? extends T> loadClass(String className) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Test
+    public void registryAndClasspathGlueTest() throws Exception {
+        GlueRegistry registry = new GlueRegistry();
+        registry.read(new StringReader("glue com.stratio.qa.cucumber.runtime\n"
+                + "class com.stratio.qa.cucumber.runtime.GlueRegistry\n"));
+        List<URI> lookups = new ArrayList<>();
+        // GlueRegistryClassFinder stands for a glue class compiled without the processor
+        ClassFinder finder = new GlueRegistryClassFinder(registry,
+                classFinder(Arrays.asList(GlueRegistry.class, GlueRegistryClassFinder.class), lookups), getClass().getClassLoader());
+
+        assertThat(finder.getDescendants(Object.class, PACKAGE)).containsExactly(GlueRegistry.class, GlueRegistryClassFinder.class);
+        assertThat(lookups).containsExactly(PACKAGE);
+    }
+
+    @Test
+    public void otherPackageTest() throws Exception {
+        GlueRegistry registry = new GlueRegistry();
+        registry.read(new StringReader("glue com.acme.specs\nclass com.acme.specs.AcmeSpec\n"));
+        List<URI> lookups = new ArrayList<>();
+        ClassFinder finder = new GlueRegistryClassFinder(registry,
+                classFinder(Collections.singletonList(GlueRegistry.class), lookups), getClass().getClassLoader());
+
+        assertThat(finder.getDescendants(Object.class, PACKAGE)).containsExactly(GlueRegistry.class);
+        assertThat(lookups).containsExactly(PACKAGE);
+    }
+}
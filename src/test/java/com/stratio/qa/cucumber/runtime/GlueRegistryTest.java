@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.cucumber.runtime;
+
+import com.stratio.qa.processor.GlueRegistryProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GlueRegistryTest {
+
+    private final Logger logger = LoggerFactory.getLogger(GlueRegistryTest.class);
+
+    @Test
+    public void readRegistryTest() throws Exception {
+        GlueRegistry registry = new GlueRegistry();
+        registry.read(new StringReader("# comment\n"
+                + "glue com.acme.specs\n"
+                + "class com.acme.specs.AcmeSpec\n"
+                + "class com.acme.specs.sub.OtherSpec\n"
+                + "listener com.stratio.qa.utils.AcmeListener\n"
+                + "step com.acme.specs.AcmeSpec ^I do '(.+?)' with spaces$\n"));
+
+        assertThat(registry.isEmpty()).isFalse();
+        assertThat(registry.getGluePackages()).containsExactly("com.acme.specs");
+        assertThat(registry.getGlue()).containsExactly(URI.create("classpath:com/acme/specs"));
+        assertThat(registry.getGlueClasses("com.acme.specs")).containsExactly("com.acme.specs.AcmeSpec", "com.acme.specs.sub.OtherSpec");
+        assertThat(registry.getGlueClasses("com.acme.specs.sub")).containsExactly("com.acme.specs.sub.OtherSpec");
+        assertThat(registry.isGluePackage("com.acme.specs.sub")).isTrue();
+        assertThat(registry.isGluePackage("com.acme")).isFalse();
+        assertThat(registry.getListenerClasses()).containsExactly("com.stratio.qa.utils.AcmeListener");
+    }
+
+    @Test
+    public void processorTest() throws Exception {
+        Path sources = Files.createTempDirectory("glue-sources");
+        Path classes = Files.createTempDirectory("glue-classes");
+        File spec = sources.resolve("AcmeSpec.java").toFile();
+        Files.write(spec.toPath(), ("package com.acme.specs;\n"
+                + "public class AcmeSpec {\n"
+                + "    @cucumber.api.java.en.Given(\"^I do '(.+?)'$\")\n"
+                + "    public void step(String s) { }\n"
+                + "    @cucumber.api.java.Before\n"
+                + "    public void hook() { }\n"
+                + "}\n").getBytes(StandardCharsets.UTF_8));
+        File plain = sources.resolve("Plain.java").toFile();
+        Files.write(plain.toPath(), "package com.acme.model;\npublic class Plain { }\n".getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        int result = compiler.run(null, null, null, "-proc:only", "-processor", GlueRegistryProcessor.class.getName(),
+                "-cp", System.getProperty("java.class.path"), "-d", classes.toString(), spec.getPath(), plain.getPath());
+        assertThat(result).isEqualTo(0);
+
+        GlueRegistry registry = new GlueRegistry();
+        registry.read(new StringReader(new String(Files.readAllBytes(classes.resolve(GlueRegistry.RESOURCE)), StandardCharsets.UTF_8)));
+        assertThat(registry.getGluePackages()).containsExactly("com.acme.specs");
+        assertThat(registry.getGlueClasses()).containsExactly("com.acme.specs.AcmeSpec");
+    }
+
+    @Test
+    public void frameworkRegistryTest() throws Exception {
+        GlueRegistry registry = GlueRegistry.load(getClass().getClassLoader());
+        if (registry.isEmpty()) {
+            logger.warn("Glue registry not generated, compile with maven to generate it");
+            return;
+        }
+        assertThat(registry.getGluePackages()).contains("com.stratio.qa.specs", "com.stratio.qa.cucumber.converter");
+        assertThat(registry.getGlueClasses()).contains("com.stratio.qa.specs.RestSpec", "com.stratio.qa.cucumber.converter.TypeRegistryConfiguration");
+        assertThat(registry.getListenerClasses()).contains("com.stratio.qa.utils.CukesGHooks");
+    }
+}
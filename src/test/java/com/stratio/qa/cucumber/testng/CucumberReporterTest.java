@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.cucumber.testng;
+
+import cucumber.api.PickleStepTestStep;
+import cucumber.api.Result;
+import cucumber.api.TestCase;
+import cucumber.api.event.TestCaseFinished;
+import cucumber.api.event.TestCaseStarted;
+import cucumber.api.event.TestRunFinished;
+import cucumber.api.event.TestStepFinished;
+import cucumber.runner.EventBus;
+import cucumber.runner.TimeService;
+import cucumber.runner.TimeServiceEventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CucumberReporterTest {
+
+    private final Logger logger = LoggerFactory.getLogger(CucumberReporterTest.class);
+
+    private static final String REPORTS = "target/executions/cucumberReporter/";
+
+    private static final String STRESS_SUFFIX = "cucumberReporterStress";
+
+    private static final int STRESS_RESULTS = 100000;
+
+    @Test
+    public void reportTest() throws Exception {
+        new File(REPORTS).mkdirs();
+        CucumberReporter reporter = new CucumberReporter(REPORTS, "com.stratio.qa.Report");
+        EventBus bus = new TimeServiceEventBus(TimeService.SYSTEM);
+        reporter.setEventPublisher(bus);
+
+        runTestCase(bus, testCase("Passed scenario"), new Result(Result.Type.PASSED, 1000000L, null));
+        String spooled = new String(Files.readAllBytes(new File(REPORTS + "com.stratio.qa.ReportTESTNG.xml" + CucumberReporter.SPOOL_SUFFIX).toPath()), StandardCharsets.UTF_8);
+        assertThat(spooled).as("Test that results are written as soon as they finish").contains("name=\"Passed scenario\"");
+
+        runTestCase(bus, testCase("Failed scenario"), new Result(Result.Type.FAILED, 2000000L, new AssertionError("boom ]]> end")));
+        runTestCase(bus, testCase("Skipped scenario"), new Result(Result.Type.UNDEFINED, 0L, null));
+        bus.send(new TestRunFinished(bus.getTime(), bus.getTimeMillis()));
+
+        Document testng = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new File(REPORTS + "com.stratio.qa.ReportTESTNG.xml"));
+        Element results = testng.getDocumentElement();
+        assertThat(results.getAttribute("total")).isEqualTo("3");
+        assertThat(results.getAttribute("passed")).isEqualTo("1");
+        assertThat(results.getAttribute("failed")).isEqualTo("1");
+        assertThat(results.getAttribute("skipped")).isEqualTo("1");
+        NodeList methods = testng.getElementsByTagName("test-method");
+        assertThat(methods.getLength()).isEqualTo(3);
+        assertThat(((Element) methods.item(0)).getAttribute("status")).isEqualTo("PASS");
+        assertThat(((Element) methods.item(0)).getAttribute("started-at")).matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}Z");
+        assertThat(((Element) methods.item(1)).getAttribute("status")).isEqualTo("FAIL");
+        assertThat(((Element) methods.item(1)).getElementsByTagName("full-stacktrace").item(0).getTextContent()).contains("boom ]]> end");
+        assertThat(((Element) methods.item(2)).getAttribute("status")).isEqualTo("SKIP");
+
+        Document junit = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new File(REPORTS + "com.stratio.qa.ReportJUNIT.xml"));
+        Element suite = (Element) junit.getElementsByTagName("testsuite").item(0);
+        assertThat(suite.getAttribute("tests")).isEqualTo("3");
+        assertThat(suite.getAttribute("errors")).isEqualTo("1");
+        assertThat(suite.getAttribute("failures")).isEqualTo("1");
+        assertThat(suite.getAttribute("skipped")).isEqualTo("1");
+        assertThat(junit.getElementsByTagName("testcase").getLength()).isEqualTo(3);
+        assertThat(new File(REPORTS + "com.stratio.qa.ReportTESTNG.xml" + CucumberReporter.SPOOL_SUFFIX)).doesNotExist();
+    }
+
+    @Test
+    public void emptyReportTest() throws Exception {
+        new File(REPORTS).mkdirs();
+        CucumberReporter reporter = new CucumberReporter(REPORTS, "com.stratio.qa.EmptyReport");
+        EventBus bus = new TimeServiceEventBus(TimeService.SYSTEM);
+        reporter.setEventPublisher(bus);
+        bus.send(new TestRunFinished(bus.getTime(), bus.getTimeMillis()));
+
+        Document junit = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new File(REPORTS + "com.stratio.qa.EmptyReportJUNIT.xml"));
+        assertThat(((Element) junit.getElementsByTagName("testcase").item(0)).getAttribute("name")).isEqualTo("dummy");
+        Document testng = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new File(REPORTS + "com.stratio.qa.EmptyReportTESTNG.xml"));
+        assertThat(testng.getDocumentElement().getAttribute("total")).isEqualTo("0");
+    }
+
+    /**
+     * Reports 100k results in a separate JVM with a heap too small to hold them
+     */
+    @Test
+    public void streamingStressTest() throws Exception {
+        String path = "target/executions/" + STRESS_SUFFIX + "/";
+        new File(path).mkdirs();
+        File log = new File(path + "stress.log");
+        ProcessBuilder processBuilder = new ProcessBuilder(System.getProperty("java.home") + "/bin/java", "-Xmx32m",
+                "-DTESTSUFFIX=" + STRESS_SUFFIX, "-cp", System.getProperty("java.class.path"),
+                StressRun.class.getName(), String.valueOf(STRESS_RESULTS));
+        processBuilder.redirectErrorStream(true);
+        processBuilder.redirectOutput(log);
+
+        long start = System.nanoTime();
+        Process process = processBuilder.start();
+        assertThat(process.waitFor(10, TimeUnit.MINUTES)).isTrue();
+        assertThat(process.exitValue()).as(new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8)).isEqualTo(0);
+        logger.info("{} results reported with -Xmx32m in {} ms", STRESS_RESULTS, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        File testng = new File(path + StressRun.class.getName() + "TESTNG.xml");
+        File junit = new File(path + StressRun.class.getName() + "JUNIT.xml");
+        Map<String, String> rootAttributes = new HashMap<>();
+        assertThat(countElements(testng, "test-method", rootAttributes)).isEqualTo(STRESS_RESULTS);
+        assertThat(rootAttributes.get("total")).isEqualTo(String.valueOf(STRESS_RESULTS));
+        assertThat(rootAttributes.get("failed")).isEqualTo(String.valueOf(STRESS_RESULTS / 100));
+        assertThat(countElements(junit, "testcase", new HashMap<>())).isEqualTo(STRESS_RESULTS);
+        Files.delete(testng.toPath());
+        Files.delete(junit.toPath());
+    }
+
+    /**
+     * Count elements with StAX, so that big reports are not loaded in memory
+     */
+    private int countElements(File report, String name, Map<String, String> rootAttributes) throws Exception {
+        int count = 0;
+        try (InputStream in = new FileInputStream(report)) {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            boolean root = true;
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    if (root) {
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            rootAttributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                        }
+                        root = false;
+                    }
+                    if (name.equals(reader.getLocalName())) {
+                        count++;
+                    }
+                }
+            }
+            reader.close();
+        }
+        return count;
+    }
+
+    public static final class StressRun {
+
+        public static void main(String[] args) throws Exception {
+            int results = Integer.parseInt(args[0]);
+            String path = "target/executions/" + System.getProperty("TESTSUFFIX") + "/";
+            CucumberReporter reporter = new CucumberReporter(path, StressRun.class.getName());
+            EventBus bus = new TimeServiceEventBus(TimeService.SYSTEM);
+            reporter.setEventPublisher(bus);
+
+            TestCase[] testCases = new TestCase[100];
+            for (int i = 0; i < testCases.length; i++) {
+                testCases[i] = testCase("Stress scenario " + i);
+            }
+            for (int i = 0; i < results; i++) {
+                Result result = i % 100 == 99 ? new Result(Result.Type.FAILED, 1000L, new AssertionError("Failed result " + i))
+                        : new Result(Result.Type.PASSED, 1000L, null);
+                runTestCase(bus, testCases[i % testCases.length], result);
+            }
+            bus.send(new TestRunFinished(bus.getTime(), bus.getTimeMillis()));
+        }
+    }
+
+    private static void runTestCase(EventBus bus, TestCase testCase, Result result) {
+        PickleStepTestStep step = stub(PickleStepTestStep.class, Collections.singletonMap("getStepText", "I run a synthetic step"));
+        bus.send(new TestCaseStarted(bus.getTime(), bus.getTimeMillis(), testCase));
+        bus.send(new TestStepFinished(bus.getTime(), bus.getTimeMillis(), testCase, step, result));
+        bus.send(new TestCaseFinished(bus.getTime(), bus.getTimeMillis(), testCase, result));
+    }
+
+    private static TestCase testCase(String name) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("getName", name);
+        values.put("getUri", "file:reporter.feature");
+        return stub(TestCase.class, values);
+    }
+
+    /**
+     * Interface implementation returning the given values by method name, and defaults otherwise. Unlike mocks, it
+     * does not record invocations.
+     */
+    private static <T> T stub(Class<T> type, Map<String, Object> values) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (values.containsKey(method.getName())) {
+                return values.get(method.getName());
+            } else if ("equals".equals(method.getName())) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(method.getName())) {
+                return System.identityHashCode(proxy);
+            } else if (method.getReturnType() == int.class) {
+                return 0;
+            } else if (method.getReturnType() == boolean.class) {
+                return false;
+            } else if (method.getReturnType() == List.class) {
+                return Collections.emptyList();
+            }
+            return null;
+        }));
+    }
+}
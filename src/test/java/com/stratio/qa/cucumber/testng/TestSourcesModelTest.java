@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.cucumber.testng;
+
+import cucumber.api.event.TestSourceRead;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestSourcesModelTest {
+
+    private final Logger logger = LoggerFactory.getLogger(TestSourcesModelTest.class);
+
+    private static final String[] KEYWORDS = {"Given ", "When ", "Then ", "And ", "But ", "* "};
+
+    private static final int HEADER_LINES = 3;
+
+    private String generateFeature(int steps) {
+        StringBuilder sb = new StringBuilder("Feature: Generated feature\n\n  Scenario: Generated scenario\n");
+        for (int i = 0; i < steps; i++) {
+            sb.append("    ").append(KEYWORDS[i % KEYWORDS.length]).append("I wait '").append(i).append("' seconds\r\n");
+        }
+        return sb.toString();
+    }
+
+    private long resolveAllKeywords(int steps) {
+        TestSourcesModel model = new TestSourcesModel();
+        String uri = "generated" + steps + ".feature";
+        model.addTestSourceReadEvent(uri, new TestSourceRead(0L, 0L, uri, generateFeature(steps)));
+
+        // First lookup parses the feature
+        assertThat(model.getKeywordFromSource(uri, HEADER_LINES + 1)).isEqualTo("Given ");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < steps; i++) {
+            assertThat(model.getKeywordFromSource(uri, HEADER_LINES + 1 + i)).isEqualTo(KEYWORDS[i % KEYWORDS.length]);
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void lineStartsTest() {
+        assertThat(TestSourcesModel.lineStarts("")).containsExactly(0);
+        assertThat(TestSourcesModel.lineStarts("a\nbc\n\nd")).containsExactly(0, 2, 5, 6);
+        assertThat(TestSourcesModel.lineStarts("a\n")).containsExactly(0, 2);
+    }
+
+    @Test
+    public void getKeywordFromSourceTest() {
+        TestSourcesModel model = new TestSourcesModel();
+        String source = "Feature: Keywords\n\n  Scenario: Keywords\n    Given a step\n    # comment\n    When another step\n";
+        model.addTestSourceReadEvent("keywords.feature", new TestSourceRead(0L, 0L, "keywords.feature", source));
+
+        assertThat(model.getKeywordFromSource("keywords.feature", 4)).isEqualTo("Given ");
+        assertThat(model.getKeywordFromSource("keywords.feature", 5)).isEqualTo("");
+        assertThat(model.getKeywordFromSource("keywords.feature", 6)).isEqualTo("When ");
+        assertThat(model.getKeywordFromSource("keywords.feature", 100)).isEqualTo("");
+        assertThat(model.getKeywordFromSource("unknown.feature", 1)).isEqualTo("");
+    }
+
+    @Test
+    public void getKeywordFromSourceManyStepsTest() {
+        resolveAllKeywords(2500);
+    }
+
+    @Test(groups = "benchmark")
+    public void getKeywordFromSourceBenchmarkTest() {
+        resolveAllKeywords(1000);
+        long small = resolveAllKeywords(2500);
+        long large = resolveAllKeywords(10000);
+
+        logger.info("Keyword lookup: 2500 steps in {} ms, 10000 steps in {} ms", small / 1000000, large / 1000000);
+    }
+}
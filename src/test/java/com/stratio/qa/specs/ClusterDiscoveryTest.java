@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.specs;
+
+import com.ning.http.client.cookie.Cookie;
+import com.stratio.qa.utils.DiscoveryCache;
+import com.stratio.qa.utils.HttpResponse;
+import com.stratio.qa.utils.RemoteSSHConnection;
+import com.stratio.qa.utils.RemoteSSHConnectionsUtil;
+import com.stratio.qa.utils.ThreadProperty;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class ClusterDiscoveryTest {
+
+    private static final String CLUSTER = "EOS_CLUSTER_ID=cluster-discovery-test";
+
+    private final AtomicInteger discoveries = new AtomicInteger();
+
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    private File directory;
+
+    private Properties initialThreadProperties;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+        discoveries.set(0);
+        sessions.set(0);
+        directory = Files.createTempDirectory("test-classes").toFile();
+        initialThreadProperties = ThreadProperty.snapshot();
+        DiscoveryCache.getInstance().invalidate(CLUSTER);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() {
+        DiscoveryCache.getInstance().invalidate(CLUSTER);
+        ThreadProperty.restore(initialThreadProperties);
+        System.clearProperty("CLUSTER_DISCOVERY_TEST_USER");
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Same effects as the discovery of a @dcos scenario
+     */
+    private void discover(CommonG commonspec) throws Exception {
+        discoveries.incrementAndGet();
+        ThreadProperty.set("EOS_ACCESS_POINT", "eos.labs.stratio.com");
+        ThreadProperty.set("DCOS_USER", "admin");
+        if (System.getProperty("CLUSTER_DISCOVERY_TEST_USER") == null) {
+            System.setProperty("CLUSTER_DISCOVERY_TEST_USER", "operador");
+        }
+        Files.write(new File(directory, "descriptor_10.200.0.1.json").toPath(), "{}".getBytes(StandardCharsets.UTF_8));
+
+        RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().put("bootstrap_connection", mock(RemoteSSHConnection.class));
+        RemoteSSHConnectionsUtil.setLastRemoteSSHConnectionId("bootstrap_connection");
+        RemoteSSHConnectionsUtil.setLastRemoteSSHConnection(RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().get("bootstrap_connection"));
+        commonspec.setCommandResult("tar: done");
+        commonspec.setCommandExitStatus(0);
+        RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().remove("bootstrap_connection");
+        RemoteSSHConnectionsUtil.setLastRemoteSSHConnectionId(null);
+        RemoteSSHConnectionsUtil.setLastRemoteSSHConnection(null);
+
+        commonspec.setResponse(new HttpResponse(200, "{\"eos\": {\"internalDomain\": \"labs.stratio.com\"}}", new ArrayList<>()));
+        openSession(commonspec);
+    }
+
+    private void openSession(CommonG commonspec) {
+        sessions.incrementAndGet();
+        HashMap<String, String> ssoCookies = new HashMap<>();
+        ssoCookies.put("dcos-acs-auth-cookie", "token-" + sessions.get());
+        commonspec.setCookies(commonspec.addSsoToken(ssoCookies, new String[]{"dcos-acs-auth-cookie"}));
+        ThreadProperty.set("dcosAuthCookie", ssoCookies.get("dcos-acs-auth-cookie"));
+        commonspec.setRestProtocol("https://");
+        commonspec.setRestHost(ThreadProperty.get("EOS_ACCESS_POINT"));
+        commonspec.setRestPort(":443");
+    }
+
+    /**
+     * Runs the @dcos hook of a new scenario and returns the state it leaves
+     */
+    private Properties scenario() throws Exception {
+        ThreadProperty.restore(initialThreadProperties);
+        System.clearProperty("CLUSTER_DISCOVERY_TEST_USER");
+        CommonG commonspec = new CommonG();
+        commonspec.setCommandExitStatus(-1);
+        new ClusterDiscovery(commonspec, directory).setup(DiscoveryCache.getInstance(), CLUSTER,
+                () -> discover(commonspec), () -> openSession(commonspec));
+        return state(commonspec);
+    }
+
+    private static Properties state(CommonG commonspec) {
+        Properties state = ThreadProperty.snapshot();
+        state.remove("dcosAuthCookie");
+        state.setProperty("system.CLUSTER_DISCOVERY_TEST_USER", System.getProperty("CLUSTER_DISCOVERY_TEST_USER"));
+        state.setProperty("restProtocol", commonspec.getRestProtocol());
+        state.setProperty("restHost", commonspec.getRestHost());
+        state.setProperty("restPort", commonspec.getRestPort());
+        state.setProperty("responseStatus", String.valueOf(commonspec.getResponse().getStatusCode()));
+        state.setProperty("responseBody", commonspec.getResponse().getResponse());
+        state.setProperty("commandResult", commonspec.getCommandResult());
+        state.setProperty("commandExitStatus", String.valueOf(commonspec.getCommandExitStatus()));
+        state.setProperty("sshConnections", RemoteSSHConnectionsUtil.getRemoteSSHConnectionsMap().keySet().toString());
+        state.setProperty("lastSshConnection", String.valueOf(RemoteSSHConnectionsUtil.getLastRemoteSSHConnectionId()));
+        List<String> cookies = new ArrayList<>();
+        for (Cookie cookie : commonspec.getCookies()) {
+            cookies.add(cookie.getName());
+        }
+        state.setProperty("cookies", cookies.toString());
+        return state;
+    }
+
+    @Test
+    public void replayedDiscoveryTest() throws Exception {
+        Properties discovered = scenario();
+        Properties replayed = scenario();
+
+        assertThat(discoveries.get()).as("Discoveries").isEqualTo(1);
+        assertThat(sessions.get()).as("Sessions opened").isEqualTo(2);
+        assertThat(replayed).isEqualTo(discovered);
+        assertThat(replayed.getProperty("commandExitStatus")).isEqualTo("0");
+        assertThat(replayed.getProperty("lastSshConnection")).isEqualTo("null");
+        assertThat(replayed.getProperty("sshConnections")).doesNotContain("bootstrap_connection");
+        assertThat(ThreadProperty.get("dcosAuthCookie")).as("Cookie of the new session").isEqualTo("token-2");
+    }
+
+    @Test
+    public void missingFileTest() throws Exception {
+        Properties discovered = scenario();
+        Files.delete(new File(directory, "descriptor_10.200.0.1.json").toPath());
+
+        Properties rediscovered = scenario();
+
+        assertThat(discoveries.get()).as("Discovery without its local files").isEqualTo(2);
+        assertThat(new File(directory, "descriptor_10.200.0.1.json")).exists();
+        assertThat(rediscovered).isEqualTo(discovered);
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.stratio.qa.specs;
 
+import com.jayway.jsonpath.DocumentContext;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.Response;
 import com.stratio.qa.utils.ThreadProperty;
@@ -26,6 +27,8 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.openqa.selenium.Cookie;
 import org.skyscreamer.jsonassert.JSONAssert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
@@ -37,11 +40,15 @@ import java.util.regex.Pattern;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import org.everit.json.schema.ValidationException;
 
 public class CommonGTest {
 
+    private final Logger logger = LoggerFactory.getLogger(CommonGTest.class);
+
     private JSONObject jsonObject1_1, jsonObject1;
     private JSONObject jsonObject2, jsonObject3;
     private JSONObject jsonObject4_1, jsonObject4;
@@ -843,6 +850,119 @@ public class CommonGTest {
         JSONAssert.assertEquals(expectedData, modifiedData, false);
     }
 
+    @Test
+    public void modifyDataSeveralRowsJsonTest() throws Exception {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+        CommonG commong = new CommonG();
+        String data = "{\"key1\":\"value1\",\"key2\":{\"key3\":\"value3\"},\"key4\":null}";
+        String expectedData = "{\"key2\":{\"key3\":\"vaLUe3Append\",\"key5\":\"prevalue5\"},\"key4\":null,\"list\":[1,2,3]}";
+        String type = "json";
+        List<List<String>> rawData = Arrays.asList(
+                Arrays.asList("key1", "DELETE", "N/A", "N/A"),
+                Arrays.asList("$.key2.key5", "ADD", "value5", "string"),
+                Arrays.asList("key2.key3", "APPEND", "Append", "N/A"),
+                Arrays.asList("key2.key5", "PREPEND", "pre", "N/A"),
+                Arrays.asList("$.list", "ADD", "[1, 2]", "array"),
+                Arrays.asList("list", "ADDTO", "3", "number"),
+                Arrays.asList("key2.key3", "REPLACE", "lu->LU", "N/A"));
+        DataTable modifications = DataTable.create(rawData);
+
+        String modifiedData = commong.modifyData(data, type, modifications);
+        JSONAssert.assertEquals(expectedData, modifiedData, true);
+    }
+
+    @Test
+    public void modifyDataJsonArrayTest() throws Exception {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+        CommonG commong = new CommonG();
+        String data = "[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"}]";
+        String expectedData = "[{\"id\":1,\"name\":\"z\"},{\"name\":\"b\"}]";
+        String type = "json";
+        List<List<String>> rawData = Arrays.asList(
+                Arrays.asList("$[0].name", "UPDATE", "z"),
+                Arrays.asList("$[1].id", "DELETE", "N/A"));
+        DataTable modifications = DataTable.create(rawData);
+
+        String modifiedData = commong.modifyData(data, type, modifications);
+        assertThat(modifiedData).startsWith("[").endsWith("]");
+        JSONAssert.assertEquals(expectedData, modifiedData, true);
+    }
+
+    @Test
+    public void modifyDataHjsonTest() throws Exception {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+        CommonG commong = new CommonG();
+        String data = "{\n  # comment\n  key1: value1\n  key2: null\n  key3: {\n    key4: null\n  }\n}";
+        String expectedData = "{\"key1\":\"new\",\"key2\":null,\"key3\":{\"key4\":null}}";
+        String type = "json";
+        List<List<String>> rawData = Arrays.asList(Arrays.asList("key1", "UPDATE", "new"));
+        DataTable modifications = DataTable.create(rawData);
+
+        String modifiedData = commong.modifyData(data, type, modifications);
+        JSONAssert.assertEquals(expectedData, modifiedData, true);
+    }
+
+    @Test
+    public void modifyDataRowsAfterNullValueJsonTest() throws Exception {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+        CommonG commong = new CommonG();
+        String data = jsonObject1.toString();
+        String expectedData = "{\"key1\":\"new\",\"key2\":{\"key3\":null}}";
+        String type = "json";
+        List<List<String>> rawData = Arrays.asList(
+                Arrays.asList("key2.key3", "REPLACE", "null", "null"),
+                Arrays.asList("key1", "UPDATE", "new", "N/A"));
+        DataTable modifications = DataTable.create(rawData);
+
+        String modifiedData = commong.modifyData(data, type, modifications);
+        JSONAssert.assertEquals(expectedData, modifiedData, true);
+    }
+
+    private void assertModifiedData(int[] sizes, int[] rowCounts) throws Exception {
+        CommonG commong = new CommonG();
+
+        for (int size : sizes) {
+            StringBuilder data = new StringBuilder("{");
+            for (int i = 0; i < size; i++) {
+                data.append(i > 0 ? "," : "").append("\"key").append(i).append("\":{\"value\":\"value").append(i).append("\"}");
+            }
+            String document = data.append("}").toString();
+
+            for (int rows : rowCounts) {
+                List<List<String>> rawData = new ArrayList<>();
+                for (int i = 0; i < rows; i++) {
+                    rawData.add(Arrays.asList("key" + i + ".value", "UPDATE", "new" + i));
+                }
+                DataTable modifications = DataTable.create(rawData);
+                int iterations = size < 10000 ? 200 : 5;
+
+                commong.modifyData(document, "json", modifications);
+                long start = System.nanoTime();
+                String modifiedData = null;
+                for (int i = 0; i < iterations; i++) {
+                    modifiedData = commong.modifyData(document, "json", modifications);
+                }
+                long elapsed = System.nanoTime() - start;
+
+                logger.info("modifyData: {} bytes, {} rows, {} us/op", document.length(), rows, elapsed / iterations / 1000);
+                assertThat(new JSONObject(modifiedData).getJSONObject("key" + (rows - 1)).getString("value")).isEqualTo("new" + (rows - 1));
+                assertThat(new JSONObject(modifiedData).length()).isEqualTo(size);
+            }
+        }
+    }
+
+    @Test
+    public void modifyDataManyRowsTest() throws Exception {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+        assertModifiedData(new int[]{100}, new int[]{1, 40});
+    }
+
+    @Test(groups = "benchmark")
+    public void modifyDataBenchmarkTest() throws Exception {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+        assertModifiedData(new int[]{100, 10000, 50000}, new int[]{1, 10, 40});
+    }
+
     @Test
     public void generateRequestNoAppURLTest() throws Exception {
         ThreadProperty.set("class", this.getClass().getCanonicalName());
@@ -1227,6 +1347,67 @@ public class CommonGTest {
         assertThat(value1).as("Value for search does not match").isEqualTo("paaslab34.stratio.com");
     }
 
+    private static Response response(String body) throws Exception {
+        Response response = mock(Response.class);
+        when(response.getStatusCode()).thenReturn(200);
+        when(response.getResponseBody()).thenReturn(body);
+        when(response.getCookies()).thenReturn(new ArrayList<>());
+        return response;
+    }
+
+    @Test
+    public void testParseJSONResponseParsedOnce() throws Exception {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+        CommonG commong = new CommonG();
+
+        commong.setResponse("GET", response("{\"id\": \"first\", \"element\": {\"name\": \"a\"}}"));
+        String json = new String(commong.getResponse().getResponse());
+        assertThat(commong.getJSONPathString(json, "$.id", null)).isEqualTo("first");
+        DocumentContext document = commong.getResponse().getDocument();
+        assertThat(commong.getJSONPathString(json, "$.element.name", null)).isEqualTo("a");
+        assertThat(commong.getJSONPathString(json, "$.element.~", null)).isEqualTo("[\"name\"]");
+        assertThat(commong.getResponse().getDocument()).as("Same response, same document").isSameAs(document);
+
+        commong.setResponse("GET", response("{\"id\": \"second\"}"));
+        assertThat(commong.getJSONPathString(commong.getResponse().getResponse(), "$.id", null)).isEqualTo("second");
+        assertThat(commong.getJSONPathString(json, "$.id", null)).as("Json of a previous response").isEqualTo("first");
+
+        commong.getResponse().setResponse("{\"id\": \"third\"}");
+        assertThat(commong.getJSONPathString(commong.getResponse().getResponse(), "$.id", null)).isEqualTo("third");
+    }
+
+    @Test(groups = "benchmark")
+    public void testParseJSONResponseBenchmark() throws Exception {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+        StringBuilder body = new StringBuilder("{\"items\":[");
+        for (int i = 0; body.length() < 5 * 1024 * 1024; i++) {
+            body.append(i > 0 ? "," : "").append("{\"id\":").append(i).append(",\"name\":\"item").append(i)
+                    .append("\",\"description\":\"a description long enough to make the response grow quickly\"}");
+        }
+        String json = body.append("]}").toString();
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            paths.add("$.items[" + (i * 100) + "].name");
+        }
+
+        CommonG commong = new CommonG();
+        long start = System.nanoTime();
+        for (String path : paths) {
+            commong.getJSONPathString(json, path, null);
+        }
+        long parsingEach = System.nanoTime() - start;
+
+        commong.setResponse("GET", response(json));
+        start = System.nanoTime();
+        for (int i = 0; i < paths.size(); i++) {
+            assertThat(commong.getJSONPathString(commong.getResponse().getResponse(), paths.get(i), null)).isEqualTo("item" + (i * 100));
+        }
+        long parsedOnce = System.nanoTime() - start;
+
+        logger.info("100 paths from a {} bytes response: parsing each time {} ms, parsed once {} ms", json.length(),
+                parsingEach / 1000000, parsedOnce / 1000000);
+    }
+
     @Test
     public void retrieveDataJsonASYaml() throws Exception {
         ThreadProperty.set("class", this.getClass().getCanonicalName());
@@ -15,10 +15,20 @@
  */
 package com.stratio.qa.specs;
 
+import com.stratio.qa.utils.RemoteSSHConnection;
+import com.stratio.qa.utils.RemoteSSHConnectionsUtil;
 import com.stratio.qa.utils.ThreadProperty;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 public class DcosTest {
 
     @Test
@@ -63,4 +73,53 @@ public class DcosTest {
         String[] hostnames = {"\"10.200.0.183\"", "\"10.200.0.182\"", "\"10.200.0.184\""};
         dcos.checkConstraintType("arango-agent", "arango", "hostname", "LIKE", "10.200.0.18[2-4]", hostnames);
     }
+
+    @Test
+    public void testDescriptorReadOncePerConnection() throws Exception {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+        String[] content = {"{\"id\": \"cluster-1\"}"};
+        List<String> commands = new ArrayList<>();
+        descriptorConnection(content, commands);
+        try {
+            DcosSpec dcos = new DcosSpec(new CommonG());
+            dcos.obtainInfoFromDescriptor("ID", "descriptorId");
+            dcos.obtainInfoFromDescriptor("ID", "descriptorId");
+            Assert.assertEquals(ThreadProperty.get("descriptorId"), "cluster-1");
+            Assert.assertEquals(commands.size(), 1, "Descriptor read once");
+
+            content[0] = "{\"id\": \"cluster-2\"}";
+            dcos.obtainInfoFromDescriptor("ID", "descriptorId");
+            Assert.assertEquals(ThreadProperty.get("descriptorId"), "cluster-1", "Descriptor of the scenario");
+            dcos.refreshDescriptor();
+            dcos.obtainInfoFromDescriptor("ID", "descriptorId");
+            Assert.assertEquals(ThreadProperty.get("descriptorId"), "cluster-2", "Descriptor read again");
+            Assert.assertEquals(commands.size(), 2);
+
+            content[0] = "{\"id\": \"cluster-3\"}";
+            descriptorConnection(content, commands);
+            dcos.obtainInfoFromDescriptor("ID", "descriptorId");
+            Assert.assertEquals(ThreadProperty.get("descriptorId"), "cluster-3", "Descriptor of the new connection");
+            Assert.assertEquals(commands.size(), 3);
+        } finally {
+            RemoteSSHConnectionsUtil.setLastRemoteSSHConnection(null);
+            ThreadProperty.remove("descriptorId");
+        }
+    }
+
+    /**
+     * Current SSH connection, whose commands print the descriptor
+     */
+    private RemoteSSHConnection descriptorConnection(String[] content, List<String> commands) throws Exception {
+        String[] result = new String[1];
+        RemoteSSHConnection connection = mock(RemoteSSHConnection.class);
+        doAnswer(invocation -> {
+            commands.add((String) invocation.getArguments()[0]);
+            result[0] = content[0];
+            return null;
+        }).when(connection).runCommand(anyString());
+        when(connection.getResult()).thenAnswer(invocation -> result[0]);
+        when(connection.getExitStatus()).thenReturn(0);
+        RemoteSSHConnectionsUtil.setLastRemoteSSHConnection(connection);
+        return connection;
+    }
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BoundedOutputTest {
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void shortOutputTest() throws Exception {
+        BoundedOutput output = new BoundedOutput(10);
+        output.readFrom(new ByteArrayInputStream(bytes("0123456789")));
+        assertThat(output.isTruncated()).isFalse();
+        assertThat(output.toString()).isEqualTo("0123456789");
+    }
+
+    @Test
+    public void lastBytesKeptTest() throws Exception {
+        BoundedOutput output = new BoundedOutput(10);
+        for (String chunk : new String[]{"0123", "4567", "89ab", "cdefgh", "i", "jklmnopqrstu", "vwx"}) {
+            output.write(bytes(chunk), 0, chunk.length());
+        }
+        assertThat(output.isTruncated()).isTrue();
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8)).isEqualTo("opqrstuvwx");
+        assertThat(output.toString()).isEqualTo("[24 bytes discarded, last 10 bytes kept]\nopqrstuvwx");
+    }
+
+    @Test
+    public void largeOutputTest() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            text.append(i).append('\n');
+        }
+        BoundedOutput output = new BoundedOutput(1000);
+        output.readFrom(new ByteArrayInputStream(bytes(text.toString())));
+        assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(text.substring(text.length() - 1000));
+    }
+}
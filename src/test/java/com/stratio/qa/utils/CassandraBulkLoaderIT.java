@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.stratio.qa.exceptions.DBException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CassandraBulkLoaderIT {
+
+    private static final String KEYSPACE = "bulkloader";
+
+    private static final int ROWS = 20000;
+
+    private final Logger logger = LoggerFactory.getLogger(CassandraBulkLoaderIT.class);
+
+    private CassandraUtils cassandra;
+
+    @BeforeClass
+    public void connect() {
+        cassandra = new CassandraUtils();
+        cassandra.setHost(System.getProperty("CASSANDRA_HOST", "127.0.0.1"));
+        cassandra.connect(null);
+        cassandra.dropKeyspace(true, KEYSPACE);
+        cassandra.createKeyspace(KEYSPACE);
+        cassandra.useKeyspace(KEYSPACE);
+    }
+
+    @BeforeMethod
+    public void createTable() {
+        cassandra.executeQuery("DROP TABLE IF EXISTS " + KEYSPACE + ".events;");
+        cassandra.executeQuery("CREATE TABLE " + KEYSPACE + ".events (device text, id int, value text, PRIMARY KEY (device, id));");
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void disconnect() throws DBException {
+        cassandra.dropKeyspace(true, KEYSPACE);
+        cassandra.disconnect();
+    }
+
+    private static List<Map<String, Object>> rows(int size) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("device", "'device" + (i % 100) + "'");
+            row.put("id", String.valueOf(i));
+            row.put("value", "'value" + i + "'");
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Test
+    public void insertRowsTest() {
+        List<Map<String, Object>> rows = rows(ROWS);
+
+        long start = System.nanoTime();
+        cassandra.insertRows(KEYSPACE + ".events", rows);
+        long bulk = System.nanoTime() - start;
+
+        assertThat(cassandra.executeQuery("SELECT COUNT(*) FROM " + KEYSPACE + ".events;").one().getLong(0)).isEqualTo(ROWS);
+        Row row = cassandra.executeQuery("SELECT value FROM " + KEYSPACE + ".events WHERE device = 'device7' AND id = 1207;").one();
+        assertThat(row.getString("value")).isEqualTo("value1207");
+
+        cassandra.truncateTable(KEYSPACE + ".events");
+        List<Map<String, Object>> sample = rows.subList(0, ROWS / 10);
+        start = System.nanoTime();
+        for (Map<String, Object> fields : sample) {
+            cassandra.insertData(KEYSPACE + ".events", fields);
+        }
+        long oneByOne = System.nanoTime() - start;
+
+        logger.info("{} rows: prepared batches {} rows/s, one by one {} rows/s", ROWS,
+                ROWS * 1000000000L / bulk, sample.size() * 1000000000L / oneByOne);
+    }
+
+    @Test
+    public void lastRowWinsTest() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("device", "'device'");
+            row.put("id", String.valueOf(i % 3));
+            row.put("value", "'value" + i + "'");
+            rows.add(row);
+        }
+        cassandra.insertRows(KEYSPACE + ".events", rows);
+
+        List<String> values = new ArrayList<>();
+        for (Row row : cassandra.executeQuery("SELECT value FROM " + KEYSPACE + ".events WHERE device = 'device';").all()) {
+            values.add(row.getString("value"));
+        }
+        assertThat(values).containsExactly("value498", "value499", "value497");
+    }
+
+    @Test
+    public void serverTimestampTest() {
+        List<Map<String, Object>> rows = rows(10);
+        rows.add(new LinkedHashMap<>(rows.get(3)));
+        rows.get(10).put("value", "'again'");
+        long before = System.currentTimeMillis() * 1000;
+        cassandra.insertRows(KEYSPACE + ".events", rows);
+
+        // rows with a unique primary key are written by the server, the repeated one in the past of the client
+        Row row = cassandra.executeQuery("SELECT value, WRITETIME(value) FROM " + KEYSPACE + ".events WHERE device = 'device1' AND id = 1;").one();
+        assertThat(row.getLong(1)).isGreaterThanOrEqualTo(before);
+        row = cassandra.executeQuery("SELECT value, WRITETIME(value) FROM " + KEYSPACE + ".events WHERE device = 'device3' AND id = 3;").one();
+        assertThat(row.getString(0)).isEqualTo("again");
+        assertThat(row.getLong(1)).isLessThanOrEqualTo(System.currentTimeMillis() * 1000);
+
+        cassandra.executeQuery("DELETE FROM " + KEYSPACE + ".events WHERE device = 'device3' AND id = 3;");
+        assertThat(cassandra.executeQuery("SELECT COUNT(*) FROM " + KEYSPACE + ".events;").one().getLong(0)).isEqualTo(9);
+    }
+
+    @Test
+    public void literalValuesTest() {
+        cassandra.executeQuery("CREATE TABLE IF NOT EXISTS " + KEYSPACE + ".ids (id timeuuid PRIMARY KEY, name text);");
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", "now()");
+            row.put("name", "'name" + i + "'");
+            rows.add(row);
+        }
+        cassandra.insertRows(KEYSPACE + ".ids", rows);
+
+        assertThat(cassandra.executeQuery("SELECT COUNT(*) FROM " + KEYSPACE + ".ids;").one().getLong(0)).isEqualTo(10);
+    }
+
+    @Test
+    public void failedInsertTest() {
+        List<Map<String, Object>> rows = rows(10);
+        rows.get(5).put("missing", "1");
+
+        assertThatThrownBy(() -> cassandra.insertRows(KEYSPACE + ".events", rows)).isInstanceOf(InvalidQueryException.class);
+    }
+
+    @Test
+    public void parallelScriptTest() {
+        cassandra.loadTestData(KEYSPACE, "/schemas/cassandraInserts.cql", true);
+
+        assertThat(cassandra.executeQuery("SELECT COUNT(*) FROM " + KEYSPACE + ".events;").one().getLong(0)).isEqualTo(5);
+    }
+}
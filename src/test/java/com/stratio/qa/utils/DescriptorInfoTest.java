@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DescriptorInfoTest {
+
+    private static String read(String resource) throws Exception {
+        return new String(Files.readAllBytes(Paths.get(DescriptorInfoTest.class.getClassLoader().getResource(resource).toURI())), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Results of the jq expressions run in the bootstrap over the same descriptors, null when jq printed "null"
+     */
+    @DataProvider
+    public Object[][] jqResults() {
+        return new Object[][]{
+            {"descriptorJSON.conf", "MASTERS", "10.200.0.10,10.200.0.11,10.200.0.12"},
+            {"descriptorJSON.conf", "NODES", "10.200.0.20,10.200.0.21,10.200.0.30,10.200.0.31,10.200.0.22"},
+            {"descriptorJSON.conf", "PRIV_NODES", "10.200.0.20,10.200.0.21"},
+            {"descriptorJSON.conf", "PUBLIC_NODES", "10.200.0.30,10.200.0.31"},
+            {"descriptorJSON.conf", "PUBLIC_NODE", "10.200.0.30"},
+            {"descriptorJSON.conf", "GOSEC_NODES", "10.200.0.40,10.200.0.41"},
+            {"descriptorJSON.conf", "ID", "nightly"},
+            {"descriptorJSON.conf", "DNS_SEARCH", "nightly.labs.stratio.com"},
+            {"descriptorJSON.conf", "INTERNAL_DOMAIN", "nightly.int"},
+            {"descriptorJSON.conf", "ARTIFACT_REPO", "http://qa.int.stratio.com/repository"},
+            {"descriptorJSON.conf", "DOCKER_REGISTRY", "qa.int.stratio.com:5000"},
+            {"descriptorJSON.conf", "EXTERNAL_DOCKER_REGISTRY", "qa.stratio.com"},
+            {"descriptorJSON.conf", "REALM", "NIGHTLY.STRATIO.COM"},
+            {"descriptorJSON.conf", "KDC_HOST", "kdc.nightly.int"},
+            {"descriptorJSON.conf", "KDC_PORT", "88"},
+            {"descriptorJSON.conf", "KADMIN_HOST", "kadmin.nightly.int"},
+            {"descriptorJSON.conf", "KADMIN_PORT", "749"},
+            {"descriptorJSON.conf", "LDAP_HOST", "ldaps://idp.nightly.int"},
+            {"descriptorJSON.conf", "VAULT_HOST", "10.200.0.40"},
+            {"descriptorJSON.conf", "IP", "10.200.0.10"},
+            {"descriptorJSON.conf", "ADMIN_USER", "admin"},
+            {"descriptorJSON.conf", "TENANT", "NONE_TENANT"},
+            {"descriptorJSON.conf", "ACCESS_POINT", "nightly.labs.stratio.com"},
+            {"descriptorJSON.conf", "LDAP_URL", "ldaps://idp.nightly.int"},
+            {"descriptorJSON.conf", "LDAP_PORT", "636"},
+            {"descriptorJSON.conf", "LDAP_USER_DN", "ou=People,dc=stratio,dc=com"},
+            {"descriptorJSON.conf", "LDAP_GROUP_DN", "ou=Groups,dc=stratio,dc=com"},
+            {"descriptorJSON.conf", "LDAP_BASE", "dc=stratio,dc=com"},
+            {"descriptorJSON.conf", "LDAP_ADMIN_GROUP", "admins"},
+            {"descriptorMinimalJSON.conf", "MASTERS", "10.0.0.10"},
+            {"descriptorMinimalJSON.conf", "NODES", "10.0.0.20,null"},
+            {"descriptorMinimalJSON.conf", "PRIV_NODES", "10.0.0.20"},
+            {"descriptorMinimalJSON.conf", "PUBLIC_NODES", ""},
+            {"descriptorMinimalJSON.conf", "PUBLIC_NODE", null},
+            {"descriptorMinimalJSON.conf", "GOSEC_NODES", ""},
+            {"descriptorMinimalJSON.conf", "DNS_SEARCH", null},
+            {"descriptorMinimalJSON.conf", "KDC_PORT", null},
+            {"descriptorMinimalJSON.conf", "VAULT_HOST", ""},
+            {"descriptorMinimalJSON.conf", "IP", "10.0.0.10"},
+            {"descriptorMinimalJSON.conf", "TENANT", "NONE"},
+            {"descriptorMinimalJSON.conf", "ACCESS_POINT", "minimal.labs.stratio.com/"},
+            {"descriptorMinimalJSON.conf", "LDAP_PORT", "636"},
+            {"descriptorMinimalJSON.conf", "LDAP_BASE", null},
+        };
+    }
+
+    @Test(dataProvider = "jqResults")
+    public void sameResultsAsJqTest(String descriptor, String info, String expected) throws Exception {
+        assertThat(DescriptorInfo.of(read(descriptor)).get(info)).as(info).isEqualTo(expected);
+    }
+
+    @Test
+    public void parsedOncePerContentTest() throws Exception {
+        DescriptorInfo descriptor = DescriptorInfo.of(read("descriptorJSON.conf"));
+        assertThat(DescriptorInfo.of(read("descriptorJSON.conf"))).isSameAs(descriptor);
+        assertThat(DescriptorInfo.of(read("descriptorMinimalJSON.conf"))).isNotSameAs(descriptor);
+    }
+
+    @Test
+    public void wrongDescriptorTest() {
+        assertThatThrownBy(() -> DescriptorInfo.of("{\"id\": \"empty\"}").get("MASTERS")).isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Descriptor without nodes");
+        assertThatThrownBy(() -> DescriptorInfo.of("{\"id\": \"empty\"}").get("SCHEMA")).isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unknown descriptor info: SCHEMA");
+    }
+}
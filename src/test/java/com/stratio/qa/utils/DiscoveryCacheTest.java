@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.mockserver.configuration.ConfigurationProperties;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.ClearType;
+import org.mockserver.socket.PortFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+public class DiscoveryCacheTest {
+
+    private static final long TTL = 3600000;
+
+    private SshServer bootstrap;
+
+    private ClientAndServer etcd;
+
+    private final AtomicInteger sshCommands = new AtomicInteger();
+
+    private final SSHSessionPool pool = new SSHSessionPool(1, 8, 60000, 30000);
+
+    private final long[] now = {0};
+
+    private File caTrust;
+
+    @BeforeClass
+    public void startCluster() throws Exception {
+        SimpleGeneratorHostKeyProvider hostKeys = new SimpleGeneratorHostKeyProvider();
+        hostKeys.setAlgorithm("RSA");
+        bootstrap = SshServer.setUpDefaultServer();
+        bootstrap.setHost("localhost");
+        bootstrap.setPort(0);
+        bootstrap.setKeyPairProvider(hostKeys);
+        bootstrap.setPasswordAuthenticator((user, password, session) -> "stratio".equals(password));
+        bootstrap.setCommandFactory((channel, command) -> {
+            sshCommands.incrementAndGet();
+            return new RemoteSSHConnectionTest.ShellCommand(command);
+        });
+        bootstrap.start();
+
+        ConfigurationProperties.logLevel("ERROR");
+        etcd = ClientAndServer.startClientAndServer(PortFactory.findFreePort());
+        etcd.when(request().withMethod("GET").withPath("/etcd"))
+                .respond(response().withStatusCode(200).withBody("{\"eos\": {\"internalDomain\": \"labs.stratio.com\"}}"));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopCluster() throws IOException {
+        pool.closeAll();
+        bootstrap.stop();
+        etcd.stop();
+    }
+
+    @BeforeMethod
+    public void reset() throws IOException {
+        sshCommands.set(0);
+        etcd.clear(request().withPath("/etcd"), ClearType.LOG);
+        now[0] = 0;
+        caTrust = File.createTempFile("ca_test", ".crt");
+        caTrust.deleteOnExit();
+    }
+
+    /**
+     * Reads the vault token from the bootstrap and the internal domain from ETCD
+     */
+    private Properties discover() throws Exception {
+        Properties variables = new Properties();
+        RemoteSSHConnection connection = new RemoteSSHConnection(pool, "stratio", "stratio", "localhost", String.valueOf(bootstrap.getPort()), null);
+        connection.runCommand("echo token-1234");
+        variables.setProperty("VAULT_TOKEN", connection.getResult());
+
+        HttpURLConnection http = (HttpURLConnection) new URL("http://localhost:" + etcd.getLocalPort() + "/etcd").openConnection();
+        try (InputStream in = http.getInputStream()) {
+            String body = new String(readAll(in), StandardCharsets.UTF_8);
+            variables.setProperty("EOS_INTERNAL_DOMAIN", body.replaceAll(".*\"internalDomain\": \"([^\"]+)\".*", "$1"));
+        }
+        return variables;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private int etcdCalls() {
+        return etcd.retrieveRecordedRequests(request().withPath("/etcd")).length;
+    }
+
+    private Function<Properties, List<String>> files() {
+        return variables -> Collections.singletonList(caTrust.getAbsolutePath());
+    }
+
+    @Test
+    public void repeatedSetupsTest() throws Exception {
+        DiscoveryCache cache = new DiscoveryCache(() -> now[0], TTL, null, true);
+        for (int i = 0; i < 300; i++) {
+            Properties variables = cache.get("BOOTSTRAP_IP=10.200.0.1:22", files(), this::discover);
+            assertThat(variables.getProperty("VAULT_TOKEN")).isEqualTo("token-1234");
+            assertThat(variables.getProperty("EOS_INTERNAL_DOMAIN")).isEqualTo("labs.stratio.com");
+            variables.setProperty("VAULT_TOKEN", "modified by the scenario");
+        }
+
+        assertThat(sshCommands.get()).as("SSH commands to the bootstrap").isEqualTo(1);
+        assertThat(etcdCalls()).as("ETCD requests").isEqualTo(1);
+
+        cache.get("BOOTSTRAP_IP=10.200.0.2:22", files(), this::discover);
+        assertThat(sshCommands.get()).as("Other cluster discovered").isEqualTo(2);
+    }
+
+    @Test
+    public void expirationAndInvalidationTest() throws Exception {
+        DiscoveryCache cache = new DiscoveryCache(() -> now[0], TTL, null, true);
+        cache.get("EOS_CLUSTER_ID=nightly", files(), this::discover);
+
+        now[0] = TTL - 1;
+        cache.get("EOS_CLUSTER_ID=nightly", files(), this::discover);
+        assertThat(sshCommands.get()).isEqualTo(1);
+
+        now[0] = TTL;
+        cache.get("EOS_CLUSTER_ID=nightly", files(), this::discover);
+        assertThat(sshCommands.get()).as("Expired discovery").isEqualTo(2);
+
+        cache.invalidate();
+        cache.get("EOS_CLUSTER_ID=nightly", files(), this::discover);
+        assertThat(sshCommands.get()).as("Invalidated discovery").isEqualTo(3);
+
+        Files.delete(caTrust.toPath());
+        cache.get("EOS_CLUSTER_ID=nightly", files(), this::discover);
+        assertThat(sshCommands.get()).as("Discovery without its local files").isEqualTo(4);
+        assertThat(etcdCalls()).isEqualTo(4);
+    }
+
+    @Test
+    public void diskTest() throws Exception {
+        File directory = Files.createTempDirectory("discovery").toFile();
+        new DiscoveryCache(() -> now[0], TTL, directory, true).get("EOS_CLUSTER_ID=nightly", files(), this::discover);
+        assertThat(directory.listFiles()).hasSize(1);
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(directory.listFiles()[0].toPath())))
+                .as("Saved credentials readable by the owner only").isEqualTo("rw-------");
+
+        // next execution
+        DiscoveryCache cache = new DiscoveryCache(() -> now[0], TTL, directory, true);
+        Properties variables = cache.get("EOS_CLUSTER_ID=nightly", files(), this::discover);
+        assertThat(variables.getProperty("VAULT_TOKEN")).isEqualTo("token-1234");
+        assertThat(sshCommands.get()).isEqualTo(1);
+        assertThat(etcdCalls()).isEqualTo(1);
+
+        now[0] = TTL;
+        new DiscoveryCache(() -> now[0], TTL, directory, true).get("EOS_CLUSTER_ID=nightly", files(), this::discover);
+        assertThat(sshCommands.get()).as("Expired on disk").isEqualTo(2);
+
+        cache.invalidate();
+        assertThat(directory.listFiles()).isEmpty();
+        Files.delete(directory.toPath());
+    }
+
+    @Test
+    public void concurrentSetupsTest() throws Exception {
+        DiscoveryCache cache = new DiscoveryCache(() -> now[0], TTL, null, true);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Properties>> setups = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            setups.add(() -> cache.get("EOS_CLUSTER_ID=nightly", files(), this::discover));
+        }
+        for (Future<Properties> variables : executor.invokeAll(setups)) {
+            assertThat(variables.get().getProperty("VAULT_TOKEN")).isEqualTo("token-1234");
+        }
+        executor.shutdown();
+        assertThat(sshCommands.get()).isEqualTo(1);
+        assertThat(etcdCalls()).isEqualTo(1);
+    }
+
+    @Test
+    public void disabledTest() throws Exception {
+        DiscoveryCache cache = new DiscoveryCache(() -> now[0], TTL, null, false);
+        cache.get("EOS_CLUSTER_ID=nightly", files(), this::discover);
+        cache.get("EOS_CLUSTER_ID=nightly", files(), this::discover);
+        assertThat(sshCommands.get()).isEqualTo(2);
+        assertThat(etcdCalls()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Bulk indexing and scroll searches against a mock of the Elasticsearch HTTP endpoints they use.
+ */
+public class ElasticSearchUtilsTest {
+
+    private static final int DOCUMENTS = 2500;
+
+    private HttpServer server;
+
+    private final Map<String, String> indexed = new LinkedHashMap<>();
+
+    private final AtomicInteger bulkRequests = new AtomicInteger();
+
+    private final AtomicInteger searchRequests = new AtomicInteger();
+
+    private final AtomicInteger clearedScrolls = new AtomicInteger();
+
+    private ElasticSearchUtils esUtils;
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+
+        System.setProperty("ES_BULK_ACTIONS", "1000");
+        System.setProperty("ES_SCROLL_SIZE", "1000");
+        esUtils = new ElasticSearchUtils();
+        System.clearProperty("ES_BULK_ACTIONS");
+        System.clearProperty("ES_SCROLL_SIZE");
+        esUtils.setHost("127.0.0.1");
+        esUtils.setNativePort(server.getAddress().getPort());
+        esUtils.connect();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServer() throws IOException {
+        esUtils.getClient().close();
+        server.stop(0);
+    }
+
+    @BeforeMethod
+    @AfterMethod
+    public void reset() {
+        synchronized (indexed) {
+            indexed.clear();
+        }
+        bulkRequests.set(0);
+        searchRequests.set(0);
+        clearedScrolls.set(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String body = IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+        String path = exchange.getRequestURI().getPath();
+        String response;
+        if (path.equals("/_bulk")) {
+            response = bulk(body);
+        } else if (path.endsWith("/_refresh")) {
+            response = "{\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0}}";
+        } else if (path.equals("/_search/scroll") && exchange.getRequestMethod().equals("DELETE")) {
+            clearedScrolls.incrementAndGet();
+            response = "{\"succeeded\":true,\"num_freed\":1}";
+        } else if (path.equals("/_search/scroll")) {
+            response = page(Integer.parseInt(new JSONObject(body).getString("scroll_id")), 1000);
+        } else if (path.endsWith("/_search")) {
+            response = page(0, new JSONObject(body).getInt("size"));
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Indexes the documents of the request, those with "fail" are rejected
+     */
+    private String bulk(String body) {
+        bulkRequests.incrementAndGet();
+        String[] lines = body.split("\n");
+        JSONArray items = new JSONArray();
+        boolean errors = false;
+        for (int i = 0; i + 1 < lines.length; i += 2) {
+            JSONObject action = new JSONObject(lines[i]).getJSONObject("index");
+            String id = action.getString("_id");
+            JSONObject item = new JSONObject().put("_index", action.getString("_index")).put("_type", "_doc").put("_id", id);
+            if (new JSONObject(lines[i + 1]).has("fail")) {
+                errors = true;
+                item.put("status", 400).put("error", new JSONObject().put("type", "mapper_parsing_exception").put("reason", "failed to parse"));
+            } else {
+                synchronized (indexed) {
+                    indexed.put(id, lines[i + 1]);
+                }
+                item.put("_version", 1).put("result", "created").put("_seq_no", 0).put("_primary_term", 1).put("status", 201)
+                        .put("_shards", new JSONObject().put("total", 1).put("successful", 1).put("failed", 0));
+            }
+            items.put(new JSONObject().put("index", item));
+        }
+        return new JSONObject().put("took", 1).put("errors", errors).put("items", items).toString();
+    }
+
+    /**
+     * Page of every indexed document, whatever the query, with the position of the next page as scroll id
+     */
+    private String page(int from, int size) {
+        searchRequests.incrementAndGet();
+        List<Map.Entry<String, String>> documents;
+        synchronized (indexed) {
+            documents = new ArrayList<>(indexed.entrySet());
+        }
+        JSONArray hits = new JSONArray();
+        for (int i = from; i < Math.min(from + size, documents.size()); i++) {
+            hits.put(new JSONObject().put("_index", "testindex").put("_type", "_doc").put("_id", documents.get(i).getKey())
+                    .put("_score", 1.0).put("_source", new JSONObject(documents.get(i).getValue())));
+        }
+        return new JSONObject()
+                .put("_scroll_id", String.valueOf(from + hits.length()))
+                .put("took", 1)
+                .put("timed_out", false)
+                .put("_shards", new JSONObject().put("total", 1).put("successful", 1).put("skipped", 0).put("failed", 0))
+                .put("hits", new JSONObject()
+                        .put("total", new JSONObject().put("value", documents.size()).put("relation", "eq"))
+                        .put("max_score", 1.0)
+                        .put("hits", hits))
+                .toString();
+    }
+
+    private static Iterator<Map.Entry<String, String>> documents(int size) {
+        List<Map.Entry<String, String>> documents = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            documents.add(new AbstractMap.SimpleEntry<>(String.valueOf(i), "{\"id\":" + i + ",\"name\":\"name" + i + "\"}"));
+        }
+        return documents.iterator();
+    }
+
+    @Test
+    public void indexDocumentsTest() {
+        assertThat(esUtils.indexDocuments("testindex", documents(DOCUMENTS))).isEqualTo(DOCUMENTS);
+
+        assertThat(bulkRequests.get()).isEqualTo(3);
+        synchronized (indexed) {
+            assertThat(indexed).hasSize(DOCUMENTS);
+            assertThat(new JSONObject(indexed.get("1234")).getString("name")).isEqualTo("name1234");
+        }
+    }
+
+    @Test
+    public void indexDocumentsFailureTest() {
+        List<Map.Entry<String, String>> documents = new ArrayList<>();
+        documents.add(new AbstractMap.SimpleEntry<>("1", "{\"id\":1}"));
+        documents.add(new AbstractMap.SimpleEntry<>("2", "{\"fail\":true}"));
+
+        assertThatThrownBy(() -> esUtils.indexDocuments("testindex", documents.iterator()))
+                .isInstanceOf(ElasticsearchException.class)
+                .hasMessageContaining("failed to parse");
+    }
+
+    @Test
+    public void scrollTest() {
+        esUtils.indexDocuments("testindex", documents(DOCUMENTS));
+
+        Iterator<JSONObject> results = esUtils.scrollElasticsearchQuery("testindex", QueryBuilders.matchAllQuery());
+        assertThat(searchRequests.get()).as("No request until the first document is needed").isEqualTo(0);
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(results.next().getInt("id")).isEqualTo(i);
+        }
+        assertThat(searchRequests.get()).as("One page read").isEqualTo(1);
+
+        int read = 1000;
+        while (results.hasNext()) {
+            assertThat(results.next().getInt("id")).isEqualTo(read++);
+        }
+        assertThat(read).isEqualTo(DOCUMENTS);
+        assertThat(searchRequests.get()).as("Three pages and an empty one").isEqualTo(4);
+        assertThat(clearedScrolls.get()).isEqualTo(1);
+        assertThat(results.hasNext()).isFalse();
+    }
+
+    @Test
+    public void scrollClosedTest() throws Exception {
+        esUtils.indexDocuments("testindex", documents(DOCUMENTS));
+
+        ElasticSearchUtils.ScrollIterator results = esUtils.scrollElasticsearchQuery("testindex", QueryBuilders.matchAllQuery());
+        assertThat(results.next().getInt("id")).isEqualTo(0);
+        results.close();
+
+        assertThat(clearedScrolls.get()).isEqualTo(1);
+        assertThat(results.hasNext()).isFalse();
+        results.close();
+        assertThat(searchRequests.get()).isEqualTo(1);
+        assertThat(clearedScrolls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void searchSimpleFilterNotTruncatedTest() throws Exception {
+        esUtils.indexDocuments("testindex", documents(DOCUMENTS));
+
+        List<JSONObject> results = esUtils.searchSimpleFilterElasticsearchQuery("testindex", "id", 0, "gte");
+
+        assertThat(results).hasSize(DOCUMENTS);
+        assertThat(results.get(DOCUMENTS - 1).getString("name")).isEqualTo("name2499");
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import com.ning.http.client.AsyncCompletionHandlerBase;
+import com.ning.http.client.AsyncHandler;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClientConfig;
+import com.ning.http.client.HttpResponseStatus;
+import com.ning.http.client.ProgressAsyncHandler;
+import com.ning.http.client.Response;
+import com.ning.http.client.cookie.Cookie;
+import com.stratio.qa.specs.CommonG;
+import com.stratio.qa.specs.HookGSpec;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.mockserver.configuration.ConfigurationProperties;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.ClearType;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.socket.PortFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+public class HttpClientPoolTest {
+
+    private ClientAndServer mockServer;
+
+    private int mockPort;
+
+    private HttpServer server;
+
+    private String url;
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @BeforeClass
+    public void start() throws Exception {
+        ConfigurationProperties.logLevel("ERROR");
+        mockPort = PortFactory.findFreePort();
+        mockServer = ClientAndServer.startClientAndServer(mockPort);
+        mockServer.when(request().withPath("/scenario")).respond(response().withStatusCode(200).withBody("ok"));
+
+        // Server that records the client port of every request, so that connections can be counted
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(10));
+        server.createContext("/count", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            reply(exchange, 0);
+        });
+        server.createContext("/slow", exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                reply(exchange, 300);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private static void reply(HttpExchange exchange, long delay) throws IOException {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stop() {
+        mockServer.stop();
+        server.stop(0);
+    }
+
+    @Test
+    public void connectionReuseTest() throws Exception {
+        clientPorts.clear();
+        AsyncHttpClient unpooled = new AsyncHttpClient(new AsyncHttpClientConfig.Builder().setAcceptAnyCertificate(true)
+                .setAllowPoolingConnections(false).build());
+        for (int i = 0; i < 20; i++) {
+            assertThat(unpooled.prepareGet(url + "/count").execute().get().getStatusCode()).isEqualTo(200);
+        }
+        unpooled.close();
+        int unpooledConnections = clientPorts.size();
+
+        clientPorts.clear();
+        AsyncHttpClient pooled = HttpClientPool.newClient(5, 1000, 30000);
+        for (int i = 0; i < 20; i++) {
+            assertThat(pooled.prepareGet(url + "/count").execute().get().getStatusCode()).isEqualTo(200);
+        }
+        pooled.close();
+        int pooledConnections = clientPorts.size();
+
+        assertThat(unpooledConnections).isEqualTo(20);
+        assertThat(pooledConnections).as("Connections opened by 20 sequential requests").isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    public void perHostThrottleTest() throws Exception {
+        HttpClientPool.PerHostThrottle throttle = new HttpClientPool.PerHostThrottle(2, 10000);
+        AsyncHttpClient client = new AsyncHttpClient(new AsyncHttpClientConfig.Builder().addRequestFilter(throttle).build());
+        maxInFlight.set(0);
+        List<Future<Response>> responses = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            responses.add(client.prepareGet(url + "/slow").execute());
+        }
+        for (Future<Response> response : responses) {
+            assertThat(response.get().getStatusCode()).isEqualTo(200);
+        }
+
+        assertThat(maxInFlight.get()).as("Concurrent requests to the same host").isBetween(1, 2);
+        assertThat(throttle.available("http://localhost:" + server.getAddress().getPort())).as("Released slots").isEqualTo(2);
+
+        HttpClientPool.PerHostThrottle single = new HttpClientPool.PerHostThrottle(1, 100);
+        AsyncHttpClient singleClient = new AsyncHttpClient(new AsyncHttpClientConfig.Builder().addRequestFilter(single).build());
+        Future<Response> busy = singleClient.prepareGet(url + "/slow").execute();
+        try {
+            singleClient.prepareGet(url + "/slow").execute().get();
+            fail("Expected no free connection");
+        } catch (Exception e) {
+            assertThat(causes(e)).anyMatch(message -> message != null && message.startsWith("No free connection to http://localhost:"));
+        }
+        assertThat(busy.get().getStatusCode()).isEqualTo(200);
+        client.close();
+        singleClient.close();
+    }
+
+    @Test
+    public void abortedResponseTest() throws Exception {
+        HttpClientPool.PerHostThrottle throttle = new HttpClientPool.PerHostThrottle(1, 1000);
+        AsyncHttpClient client = new AsyncHttpClient(new AsyncHttpClientConfig.Builder().addRequestFilter(throttle).build());
+        String host = "http://localhost:" + server.getAddress().getPort();
+        for (int i = 0; i < 3; i++) {
+            Future<Response> aborted = client.prepareGet(url + "/count").execute(new AsyncCompletionHandlerBase() {
+                @Override
+                public AsyncHandler.STATE onStatusReceived(HttpResponseStatus status) {
+                    return AsyncHandler.STATE.ABORT;
+                }
+            });
+            try {
+                aborted.get();
+            } catch (Exception e) {
+                // an aborted response may complete exceptionally
+            }
+            assertThat(throttle.available(host)).as("Slot released by aborted response " + i).isEqualTo(1);
+        }
+        assertThat(client.prepareGet(url + "/count").execute().get().getStatusCode()).isEqualTo(200);
+        client.close();
+    }
+
+    @Test
+    public void handlerExtensionsTest() throws Exception {
+        Semaphore permits = new Semaphore(1);
+        permits.acquire();
+        List<String> progress = new ArrayList<>();
+        AsyncHandler<Response> handler = HttpClientPool.ReleasingHandler.wrap(new AsyncCompletionHandlerBase() {
+            @Override
+            public AsyncHandler.STATE onContentWriteProgress(long amount, long current, long total) {
+                progress.add(current + "/" + total);
+                return AsyncHandler.STATE.CONTINUE;
+            }
+        }, permits);
+
+        assertThat(handler).isInstanceOf(ProgressAsyncHandler.class);
+        ((ProgressAsyncHandler<Response>) handler).onContentWriteProgress(10, 10, 20);
+        assertThat(progress).containsExactly("10/20");
+        assertThat(permits.availablePermits()).isEqualTo(0);
+
+        handler.onThrowable(new IOException("closed"));
+        handler.onThrowable(new IOException("closed again"));
+        assertThat(permits.availablePermits()).as("Slot released once").isEqualTo(1);
+    }
+
+    @Test
+    public void sharedClientTest() {
+        AsyncHttpClient shared = HttpClientPool.getSharedClient();
+        assertThat(HttpClientPool.getSharedClient()).isSameAs(shared);
+        HttpClientPool.closeSharedClient();
+        assertThat(shared.isClosed()).isTrue();
+        assertThat(HttpClientPool.getSharedClient()).isNotSameAs(shared);
+    }
+
+    @Test
+    public void scenarioIsolationTest() throws Exception {
+        ThreadProperty.set("class", this.getClass().getCanonicalName());
+        mockServer.clear(request().withPath("/scenario"), ClearType.LOG);
+
+        // First scenario sets a cookie and a header
+        CommonG first = scenario();
+        first.getHeaders().put("X-Scenario", "first");
+        first.setCookies(new ArrayList<>(Collections.singletonList(new Cookie("session", "first", false, null, null, 999999, false, false))));
+        assertThat(first.generateRequest("GET", false, null, null, "/scenario", "", "json").get().getStatusCode()).isEqualTo(200);
+
+        // Cookies set in other threads are not seen
+        Thread other = new Thread(() -> CookiesUtils.setCookies(new ArrayList<>(Collections.singletonList(
+                new Cookie("session", "other", false, null, null, 999999, false, false)))));
+        other.start();
+        other.join();
+
+        // Second scenario, on the same pooled client
+        CommonG second = scenario();
+        assertThat(second.getClient()).isSameAs(first.getClient());
+        assertThat(second.generateRequest("GET", false, null, null, "/scenario", "", "json").get().getStatusCode()).isEqualTo(200);
+
+        HttpRequest[] recorded = mockServer.retrieveRecordedRequests(request().withPath("/scenario"));
+        assertThat(recorded).hasSize(2);
+        assertThat(recorded[0].getFirstHeader("Cookie")).contains("session=first");
+        assertThat(recorded[0].getFirstHeader("X-Scenario")).isEqualTo("first");
+        assertThat(recorded[1].getFirstHeader("Cookie")).isEmpty();
+        assertThat(recorded[1].getFirstHeader("X-Scenario")).isEmpty();
+    }
+
+    /**
+     * CommonG prepared as the hooks do for a new @rest scenario
+     */
+    private CommonG scenario() throws Exception {
+        CommonG commong = new CommonG();
+        HookGSpec hooks = new HookGSpec(commong);
+        hooks.globalSetup();
+        hooks.restClientSetup();
+        commong.setRestHost("localhost");
+        commong.setRestPort(":" + mockPort);
+        return commong;
+    }
+
+    private static List<String> causes(Throwable e) {
+        List<String> messages = new ArrayList<>();
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            messages.add(cause.getMessage());
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class LocalCommandExecutorTest {
+
+    private static final int MB = 1024 * 1024;
+
+    @Test
+    public void exitStatusAndOutputsTest() throws Exception {
+        LocalCommandExecutor.Result result = new LocalCommandExecutor(MB).run("echo out; echo err >&2; exit 3", 0, TimeUnit.SECONDS);
+
+        assertThat(result.getExitStatus()).isEqualTo(3);
+        assertThat(result.getOutput()).isEqualTo("out\n");
+        assertThat(result.getErrorOutput()).isEqualTo("err\n");
+        assertThat(result.isTruncated()).isFalse();
+    }
+
+    @Test(timeOut = 120000)
+    public void largeOutputTest() throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        // 100 MB in both outputs, far more than the pipe buffers
+        LocalCommandExecutor.Result result = new LocalCommandExecutor(MB)
+                .run("head -c 104857600 /dev/zero >&2; head -c 104857600 /dev/zero; echo", 0, TimeUnit.SECONDS);
+
+        long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+        assertThat(result.getExitStatus()).isEqualTo(0);
+        assertThat(result.isTruncated()).isTrue();
+        String outputKept = "[" + (100 * MB + 1 - MB) + " bytes discarded, last " + MB + " bytes kept]\n";
+        assertThat(result.getOutput()).startsWith(outputKept).endsWith("\0\n").hasSize(outputKept.length() + MB);
+        String errorKept = "[" + (99 * MB) + " bytes discarded, last " + MB + " bytes kept]\n";
+        assertThat(result.getErrorOutput()).startsWith(errorKept).hasSize(errorKept.length() + MB);
+        assertThat(usedAfter - usedBefore).as("Memory used reading 200 MB of output").isLessThan(64L * MB);
+    }
+
+    @Test
+    public void timeoutKillsChildProcessesTest() throws Exception {
+        File marker = File.createTempFile("local-command", ".marker");
+        marker.delete();
+        long start = System.nanoTime();
+        try {
+            new LocalCommandExecutor(MB).run("(sleep 2; touch " + marker.getAbsolutePath() + ") & wait", 300, TimeUnit.MILLISECONDS);
+            fail("Expected TimeoutException");
+        } catch (TimeoutException e) {
+            assertThat(e.getMessage()).endsWith("did not finish in 300 ms");
+        }
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2000L);
+
+        Thread.sleep(3000);
+        assertThat(marker).as("Child process killed").doesNotExist();
+    }
+
+    @Test
+    public void backgroundProcessTest() throws Exception {
+        long start = System.nanoTime();
+        LocalCommandExecutor.Result result = new LocalCommandExecutor(MB).run("sleep 10 & echo started", 0, TimeUnit.SECONDS);
+
+        assertThat(result.getOutput()).isEqualTo("started\n");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).as("Not waiting for background processes").isLessThan(5000L);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.stratio.qa.exceptions.DBException;
+import io.cucumber.datatable.DataTable;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MongoDBUtilsIT {
+
+    private static final String DATABASE = "mongoBulkIT";
+
+    private static final String COLLECTION = "documents";
+
+    private static final int DOCUMENTS = 100000;
+
+    private MongoDBUtils mongo;
+
+    @BeforeClass
+    public void connect() throws DBException {
+        mongo = new MongoDBUtils();
+        mongo.connect();
+        mongo.connectToMongoDBDataBase(DATABASE);
+    }
+
+    @BeforeMethod
+    public void dropCollection() {
+        mongo.dropMongoDBCollection(COLLECTION);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void disconnect() {
+        mongo.dropMongoDBDataBase(DATABASE);
+        mongo.disconnect();
+    }
+
+    @Test
+    public void insertDocumentsTest() {
+        // generated as they are inserted, never all of them in memory
+        Iterator<DBObject> documents = new Iterator<DBObject>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < DOCUMENTS;
+            }
+
+            @Override
+            public DBObject next() {
+                return new BasicDBObject("id", next).append("name", "name" + next++);
+            }
+        };
+
+        assertThat(mongo.insertDocumentsIntoMongoDBCollection(COLLECTION, documents)).isEqualTo(DOCUMENTS);
+        assertThat(mongo.getMongoDBCollection(COLLECTION).getCount()).isEqualTo(DOCUMENTS);
+        assertThat(mongo.getMongoDBCollection(COLLECTION).findOne(new BasicDBObject("id", 54321)).get("name")).isEqualTo("name54321");
+    }
+
+    @Test
+    public void insertDataTableTest() {
+        List<List<String>> cells = new ArrayList<>();
+        cells.add(Arrays.asList("id-Integer", "name-String", "price-Double"));
+        for (int i = 0; i < 2500; i++) {
+            cells.add(Arrays.asList(String.valueOf(i), "name" + i, "1.5"));
+        }
+        mongo.insertIntoMongoDBCollection(COLLECTION, DataTable.create(cells));
+
+        assertThat(mongo.getMongoDBCollection(COLLECTION).getCount()).isEqualTo(2500);
+        assertThat(mongo.getMongoDBCollection(COLLECTION).findOne(new BasicDBObject("id", 2499)).get("price")).isEqualTo(1.5);
+    }
+
+    @Test
+    public void loadFilesTest() throws DBException {
+        assertThat(mongo.loadIntoMongoDBCollection(COLLECTION, "schemas/mongoDocuments.jsonl")).isEqualTo(3);
+        assertThat(mongo.loadIntoMongoDBCollection(COLLECTION, "schemas/mongoDocuments.csv")).isEqualTo(2);
+        assertThat(mongo.getMongoDBCollection(COLLECTION).getCount()).isEqualTo(5);
+        assertThatThrownBy(() -> mongo.loadIntoMongoDBCollection(COLLECTION, "schemas/missing.jsonl")).isInstanceOf(DBException.class);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import com.mongodb.DBObject;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MongoDBUtilsTest {
+
+    private static List<DBObject> read(Iterator<DBObject> documents) {
+        List<DBObject> result = new ArrayList<>();
+        documents.forEachRemaining(result::add);
+        return result;
+    }
+
+    @Test
+    public void jsonDocumentsTest() {
+        String lines = "{\"id\": 1, \"name\": \"first\"}\n\n   \n{\"id\": 2, \"roles\": [\"admin\"]}\n";
+        List<DBObject> documents = read(MongoDBUtils.jsonDocuments(new BufferedReader(new StringReader(lines))));
+
+        assertThat(documents).hasSize(2);
+        assertThat(documents.get(0).get("name")).isEqualTo("first");
+        assertThat(documents.get(1).get("id")).isEqualTo(2);
+        assertThat((List<?>) documents.get(1).get("roles")).containsExactly("admin");
+    }
+
+    @Test
+    public void csvDocumentsTest() throws Exception {
+        String lines = "id-Integer,name,price-Double,active-Boolean\n1,first,1.5,true\n2,\"second, with comma\",2.25,false\n";
+        List<DBObject> documents = read(MongoDBUtils.csvDocuments(new BufferedReader(new StringReader(lines))));
+
+        assertThat(documents).hasSize(2);
+        assertThat(documents.get(0).toMap()).containsEntry("id", 1).containsEntry("name", "first")
+                .containsEntry("price", 1.5).containsEntry("active", true);
+        assertThat(documents.get(1).get("name")).isEqualTo("second, with comma");
+        assertThat(documents.get(1).get("active")).isEqualTo(false);
+    }
+
+    @Test
+    public void documentsReadWhenNeededTest() {
+        // a reader that would never end if it were read completely
+        Reader endless = new Reader() {
+            private int position;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                for (int i = 0; i < length; i++) {
+                    buffer[offset + i] = "{\"a\": 1}\n".charAt(position++ % 9);
+                }
+                return length;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Iterator<DBObject> documents = MongoDBUtils.jsonDocuments(new BufferedReader(endless));
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(documents.next().get("a")).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void noMoreDocumentsTest() {
+        Iterator<DBObject> documents = MongoDBUtils.jsonDocuments(new BufferedReader(new StringReader("{\"a\": 1}")));
+
+        assertThat(documents.hasNext()).isTrue();
+        assertThat(documents.hasNext()).isTrue();
+        assertThat(documents.next().keySet()).containsExactly("a");
+        assertThat(documents.hasNext()).isFalse();
+        assertThatThrownBy(documents::next).isInstanceOf(NoSuchElementException.class);
+    }
+}
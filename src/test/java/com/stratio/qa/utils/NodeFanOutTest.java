@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NodeFanOutTest {
+
+    private final Map<String, SshServer> nodes = new HashMap<>();
+
+    private final SSHSessionPool pool = new SSHSessionPool(2, 8, 60000, 30000);
+
+    @BeforeClass
+    public void startNodes() throws Exception {
+        startNode("ok1", command -> command);
+        startNode("ok2", command -> command);
+        startNode("slow", command -> "sleep 1; " + command);
+        startNode("hung", command -> "sleep 30; " + command);
+        startNode("failing", command -> command + "; exit 7");
+    }
+
+    private void startNode(String name, UnaryOperator<String> behaviour) throws IOException {
+        SimpleGeneratorHostKeyProvider hostKeys = new SimpleGeneratorHostKeyProvider();
+        hostKeys.setAlgorithm("RSA");
+        SshServer sshd = SshServer.setUpDefaultServer();
+        sshd.setHost("localhost");
+        sshd.setPort(0);
+        sshd.setKeyPairProvider(hostKeys);
+        sshd.setPasswordAuthenticator((user, password, session) -> "stratio".equals(password));
+        sshd.setCommandFactory((channel, command) -> new RemoteSSHConnectionTest.ShellCommand(behaviour.apply(command)));
+        sshd.start();
+        nodes.put(name, sshd);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopNodes() throws IOException {
+        pool.closeAll();
+        for (SshServer sshd : nodes.values()) {
+            sshd.stop();
+        }
+    }
+
+    /**
+     * Task running the command in the SSHD of the node
+     */
+    private NodeFanOut.NodeTask command(String command) {
+        return node -> new RemoteSSHConnection(pool, "stratio", "stratio", "localhost", String.valueOf(nodes.get(node).getPort()), null)
+                .execute(command + " " + node, 0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void collectAllTest() throws Exception {
+        long start = System.nanoTime();
+        NodeFanOut.Report report = new NodeFanOut(4, NodeFanOut.Policy.COLLECT_ALL)
+                .run(Arrays.asList("ok1", "slow", "failing", "ok2"), command("echo hello"));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(report.getResults()).extracting(NodeFanOut.NodeResult::getNode).containsExactly("ok1", "slow", "failing", "ok2");
+        assertThat(report.getResults()).extracting(NodeFanOut.NodeResult::getStatus).containsExactly(
+                NodeFanOut.Status.SUCCEEDED, NodeFanOut.Status.SUCCEEDED, NodeFanOut.Status.FAILED, NodeFanOut.Status.SUCCEEDED);
+        assertThat(report.getResults()).extracting(NodeFanOut.NodeResult::getOutput).containsExactly(
+                "hello ok1", "hello slow", "hello failing", "hello ok2");
+        assertThat(report.getResults().get(2).getExitStatus()).isEqualTo(7);
+        assertThat(report.getResults().get(1).getDuration(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(1000L);
+        assertThat(report.isSuccessful()).isFalse();
+        assertThat(report.getFailures()).extracting(NodeFanOut.NodeResult::getNode).containsExactly("failing");
+        assertThat(report.toString()).contains("failing: FAILED (exit status 7, ");
+        assertThat(elapsed).as("Nodes run at the same time").isLessThan(1900L);
+    }
+
+    @Test
+    public void failFastTest() throws Exception {
+        long start = System.nanoTime();
+        NodeFanOut.Report report = new NodeFanOut(2, NodeFanOut.Policy.FAIL_FAST)
+                .run(Arrays.asList("hung", "failing", "ok1", "ok2"), command("echo hello"));
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).as("Hung node cancelled").isLessThan(10000L);
+        assertThat(report.getResults().get(0).getStatus()).isEqualTo(NodeFanOut.Status.CANCELLED);
+        assertThat(report.getResults().get(0).getExitStatus()).isEqualTo(-1);
+        assertThat(report.getResults().get(1).getStatus()).isEqualTo(NodeFanOut.Status.FAILED);
+        // the next node may start while the failure is reported, but never fails
+        assertThat(report.getFailures()).extracting(NodeFanOut.NodeResult::getNode).containsExactly("hung", "failing");
+        assertThat(report.getResults().get(3).getStatus()).isNotEqualTo(NodeFanOut.Status.FAILED);
+    }
+
+    @Test
+    public void boundedParallelismTest() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<String> manyNodes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            manyNodes.add("node" + i);
+        }
+        NodeFanOut.Report report = new NodeFanOut(3, NodeFanOut.Policy.COLLECT_ALL).run(manyNodes, node -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                if ("node13".equals(node)) {
+                    throw new IOException("unreachable");
+                }
+                return new RemoteSSHConnection.CommandResult(node, "", 0);
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+
+        assertThat(maxRunning.get()).isBetween(1, 3);
+        assertThat(report.getFailures()).hasSize(1);
+        assertThat(report.getFailures().get(0).getNode()).isEqualTo("node13");
+        assertThat(report.getFailures().get(0).getError()).hasMessage("unreachable");
+        assertThat(report.getResults().get(19).getOutput()).isEqualTo("node19");
+        assertThat(new NodeFanOut(3, NodeFanOut.Policy.FAIL_FAST).run(new ArrayList<>(), node -> null).isSuccessful()).isTrue();
+    }
+}
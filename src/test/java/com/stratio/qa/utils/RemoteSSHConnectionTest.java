@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import org.apache.sshd.server.Environment;
+import org.apache.sshd.server.ExitCallback;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.server.command.Command;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class RemoteSSHConnectionTest {
+
+    private final Logger logger = LoggerFactory.getLogger(RemoteSSHConnectionTest.class);
+
+    private SshServer sshd;
+
+    private RemoteSSHConnection connection;
+
+    @BeforeClass
+    public void startServer() throws Exception {
+        SimpleGeneratorHostKeyProvider hostKeys = new SimpleGeneratorHostKeyProvider();
+        hostKeys.setAlgorithm("RSA");
+        sshd = SshServer.setUpDefaultServer();
+        sshd.setHost("localhost");
+        sshd.setPort(0);
+        sshd.setKeyPairProvider(hostKeys);
+        sshd.setPasswordAuthenticator((user, password, session) -> "stratio".equals(password));
+        sshd.setCommandFactory((channel, command) -> new ShellCommand(command));
+        sshd.start();
+        connection = new RemoteSSHConnection("stratio", "stratio", "localhost", String.valueOf(sshd.getPort()), null);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServer() throws Exception {
+        connection.closeConnection();
+        sshd.stop();
+    }
+
+    @Test
+    public void outputAndExitStatusTest() throws Exception {
+        // pseudo terminal by default, the error output is part of the output
+        connection.runCommand("echo hello; echo oops >&2; exit 3");
+        assertThat(connection.getResult()).isEqualTo("hello\r\noops");
+        assertThat(connection.getErrorResult()).isEmpty();
+        assertThat(connection.getExitStatus()).isEqualTo(3);
+
+        connection.runCommand("seq 1 20000");
+        assertThat(connection.getResult().split("\r\n")).hasSize(20000).endsWith("20000");
+        assertThat(connection.getExitStatus()).isEqualTo(0);
+    }
+
+    @Test
+    public void withoutPtyTest() throws Exception {
+        connection.setPty(false);
+        try {
+            connection.runCommand("echo hello; echo oops >&2; exit 3");
+            assertThat(connection.getResult()).isEqualTo("hello");
+            assertThat(connection.getErrorResult()).isEqualTo("oops");
+            assertThat(connection.getExitStatus()).isEqualTo(3);
+        } finally {
+            connection.setPty(true);
+        }
+    }
+
+    @Test
+    public void latencyTest() throws Exception {
+        connection.runCommand("true");
+        int runs = 20;
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            connection.runCommand("echo " + i);
+            assertThat(connection.getResult()).isEqualTo(String.valueOf(i));
+        }
+        long average = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) / runs;
+        logger.info("Average latency of trivial commands: {} ms", average);
+        assertThat(average).as("Average latency of trivial commands in ms").isLessThan(100L);
+    }
+
+    @Test
+    public void timeoutTest() throws Exception {
+        long start = System.nanoTime();
+        try {
+            connection.runCommand("echo started; sleep 10", 500, TimeUnit.MILLISECONDS);
+            fail("Expected TimeoutException");
+        } catch (TimeoutException e) {
+            assertThat(e.getMessage()).contains("did not finish in 500 ms");
+        }
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5000L);
+        assertThat(connection.getResult()).isEqualTo("started");
+
+        connection.runCommand("echo still connected", 5, TimeUnit.SECONDS);
+        assertThat(connection.getResult()).isEqualTo("still connected");
+    }
+
+    @Test
+    public void boundedOutputTest() throws Exception {
+        connection.setMaxOutputBytes(1000);
+        try {
+            connection.runCommand("seq 1 10000");
+            // last 1000 of 58894 bytes kept, and trimmed
+            assertThat(connection.getResult()).startsWith("[57894 bytes discarded, last 1000 bytes kept]\n")
+                    .endsWith("9998\r\n9999\r\n10000");
+            assertThat(connection.getExitStatus()).isEqualTo(0);
+        } finally {
+            connection.setMaxOutputBytes(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Runs exec requests with the local shell. As OpenSSH does, with a pseudo terminal the error output is merged into
+     * the output and line endings are \r\n.
+     */
+    static final class ShellCommand implements Command {
+
+        private final String command;
+
+        private OutputStream out;
+
+        private OutputStream err;
+
+        private ExitCallback callback;
+
+        private Process process;
+
+        ShellCommand(String command) {
+            this.command = command;
+        }
+
+        @Override
+        public void setInputStream(InputStream in) {
+        }
+
+        @Override
+        public void setOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void setErrorStream(OutputStream err) {
+            this.err = err;
+        }
+
+        @Override
+        public void setExitCallback(ExitCallback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void start(ChannelSession channel, Environment env) throws IOException {
+            boolean pty = env.getEnv().containsKey(Environment.ENV_TERM);
+            process = new ProcessBuilder("/bin/sh", "-c", command).redirectErrorStream(pty).start();
+            Thread errCopy = new Thread(() -> copy(process.getErrorStream(), err, false));
+            errCopy.start();
+            new Thread(() -> {
+                copy(process.getInputStream(), out, pty);
+                try {
+                    errCopy.join();
+                    callback.onExit(process.waitFor());
+                } catch (InterruptedException e) {
+                    callback.onExit(-1);
+                }
+            }).start();
+        }
+
+        @Override
+        public void destroy(ChannelSession channel) {
+            process.destroyForcibly();
+        }
+
+        private static void copy(InputStream in, OutputStream out, boolean crlf) {
+            byte[] buffer = new byte[8192];
+            try {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    if (crlf) {
+                        out.write(new String(buffer, 0, read, StandardCharsets.UTF_8).replace("\n", "\r\n").getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        out.write(buffer, 0, read);
+                    }
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // channel closed
+            }
+        }
+    }
+}
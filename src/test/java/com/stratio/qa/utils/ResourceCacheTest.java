@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResourceCacheTest {
+
+    private Path directory;
+
+    private URLClassLoader classLoader;
+
+    private ResourceCache cache;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("resources");
+        classLoader = new URLClassLoader(new URL[]{directory.toUri().toURL()}, null);
+        cache = new ResourceCache(classLoader);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws Exception {
+        classLoader.close();
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Replaces the file atomically, readers never see it half written
+     */
+    private File write(String name, String content, long lastModified) throws Exception {
+        File temp = File.createTempFile(name, ".tmp");
+        Files.write(temp.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        temp.setLastModified(lastModified);
+        return Files.move(temp.toPath(), directory.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE).toFile();
+    }
+
+    @Test
+    public void loadedOnceTest() throws Exception {
+        write("example.json", "{\n  # Hjson comment\n  key: value\n}", 1000000);
+
+        String json = cache.get("example.json", "json");
+        assertThat(json).isEqualTo("{\"key\":\"value\"}");
+        assertThat(cache.get("example.json", "json")).isSameAs(json);
+        assertThat(cache.get("example.json", "scim")).isSameAs(json);
+        assertThat(cache.get("example.json", "string")).isEqualTo("{\n  # Hjson comment\n  key: value\n}");
+        assertThat(cache.get("missing.json", "json")).isNull();
+    }
+
+    @Test
+    public void invalidationTest() throws Exception {
+        File file = write("example.json", "{\"key\": \"first\"}", 1000000);
+        assertThat(cache.get("example.json", "json")).isEqualTo("{\"key\":\"first\"}");
+
+        write("example.json", "{\"key\": \"second\"}", 1000000);
+        assertThat(cache.get("example.json", "json")).as("Same modification time, different size").isEqualTo("{\"key\":\"second\"}");
+
+        write("example.json", "{\"key\": \"third!\"}", 2000000);
+        assertThat(cache.get("example.json", "json")).as("Different modification time, same size").isEqualTo("{\"key\":\"third!\"}");
+
+        assertThat(file.delete()).isTrue();
+        assertThat(cache.get("example.json", "json")).as("Deleted").isNull();
+
+        assertThat(cache.get("created.json", "json")).isNull();
+        write("created.json", "{\"key\": \"created\"}", 1000000);
+        assertThat(cache.get("created.json", "json")).as("Missing resources not cached").isEqualTo("{\"key\":\"created\"}");
+    }
+
+    @Test
+    public void concurrencyTest() throws Exception {
+        List<String> versions = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            versions.add("{\"version\":" + i + "}");
+        }
+        write("example.json", versions.get(0), 1000000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(9);
+        List<Callable<List<String>>> readers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            readers.add(() -> {
+                List<String> read = new ArrayList<>();
+                for (int j = 0; j < 2000; j++) {
+                    read.add(cache.get("example.json", "json"));
+                }
+                return read;
+            });
+        }
+        Future<?> writer = executor.submit(() -> {
+            for (int i = 1; i < versions.size(); i++) {
+                write("example.json", versions.get(i), 1000000 + i * 1000L);
+            }
+            return null;
+        });
+        List<Future<List<String>>> results = executor.invokeAll(readers);
+        writer.get();
+        executor.shutdown();
+
+        for (Future<List<String>> result : results) {
+            assertThat(result.get()).allMatch(versions::contains);
+        }
+        assertThat(cache.get("example.json", "json")).isEqualTo(versions.get(versions.size() - 1));
+    }
+
+    @Test
+    public void sharedInstanceTest() {
+        assertThat(ResourceCache.getInstance().get("schemas/simple1.json", "json")).isEqualTo("{\"a\":true}");
+    }
+}
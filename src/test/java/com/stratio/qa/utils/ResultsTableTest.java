@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import io.cucumber.datatable.DataTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResultsTableTest {
+
+    private static final int ROWS = 100000;
+
+    private final Logger logger = LoggerFactory.getLogger(ResultsTableTest.class);
+
+    private static List<Map<String, Object>> obtainedRows(int size) {
+        Random random = new Random(42);
+        List<Map<String, Object>> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", random.nextInt(size / 4));
+            row.put("place", "place" + random.nextInt(3));
+            row.put("ignored", i);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Occurrences of every expected row counted as the steps did before, comparing it with every obtained row
+     */
+    private static List<String> nestedLoopMismatches(List<List<String>> expected, List<Map<String, Object>> obtained) {
+        List<String> mismatches = new ArrayList<>();
+        List<String> header = expected.get(0);
+        for (int e = 1; e < expected.size(); e++) {
+            int occurrences = 0;
+            for (Map<String, Object> row : obtained) {
+                boolean matches = true;
+                for (int c = 0; c < header.size(); c++) {
+                    if (!"occurrences".equals(header.get(c)) && !row.get(header.get(c)).toString().equals(expected.get(e).get(c))) {
+                        matches = false;
+                    }
+                }
+                if (matches) {
+                    occurrences++;
+                }
+            }
+            int expectedOccurrences = Integer.parseInt(expected.get(e).get(header.indexOf("occurrences")));
+            if (occurrences != expectedOccurrences) {
+                mismatches.add("In row " + (e - 1) + " have been found " + occurrences + " results and " + expectedOccurrences + " were expected");
+            }
+        }
+        return mismatches;
+    }
+
+    private static List<List<String>> expectedOccurrences(List<Map<String, Object>> obtained, int size) {
+        Map<List<String>, Integer> counts = new HashMap<>();
+        for (Map<String, Object> row : obtained) {
+            counts.merge(Arrays.asList(row.get("id").toString(), row.get("place").toString()), 1, Integer::sum);
+        }
+        Random random = new Random(7);
+        List<List<String>> expected = new ArrayList<>();
+        expected.add(Arrays.asList("id", "occurrences", "place"));
+        for (int i = 0; i < size; i++) {
+            String id = String.valueOf(random.nextInt(size / 4));
+            String place = "place" + random.nextInt(3);
+            int occurrences = counts.getOrDefault(Arrays.asList(id, place), 0);
+            // every tenth row expects one occurrence too many
+            expected.add(Arrays.asList(id, String.valueOf(i % 10 == 0 ? occurrences + 1 : occurrences), place));
+        }
+        return expected;
+    }
+
+    @Test
+    public void sameOccurrencesAsNestedLoopsTest() {
+        List<Map<String, Object>> obtained = obtainedRows(2000);
+        List<List<String>> expected = expectedOccurrences(obtained, 2000);
+
+        ResultsTable expectedTable = ResultsTable.of(DataTable.create(expected));
+        List<String> mismatches = expectedTable.occurrenceMismatches(ResultsTable.of(expectedTable.getColumns(), obtained, Map::get));
+
+        assertThat(mismatches).hasSize(200).isEqualTo(nestedLoopMismatches(expected, obtained));
+    }
+
+    private void assertOccurrenceMismatches(int size) {
+        List<Map<String, Object>> obtained = obtainedRows(size);
+        List<List<String>> expected = expectedOccurrences(obtained, size);
+
+        long start = System.nanoTime();
+        ResultsTable expectedTable = ResultsTable.of(DataTable.create(expected));
+        List<String> mismatches = expectedTable.occurrenceMismatches(ResultsTable.of(expectedTable.getColumns(), obtained, Map::get));
+        logger.info("Occurrences of {} expected rows in {} rows: {} ms", size, size, (System.nanoTime() - start) / 1000000);
+
+        assertThat(mismatches).hasSize(size / 10);
+        assertThat(mismatches.get(0)).startsWith("In row 0 have been found ").endsWith(" were expected");
+        assertThat(mismatches.get(1)).startsWith("In row 10 have been found ");
+    }
+
+    private void assertRowMismatches(int size) {
+        List<List<String>> expected = new ArrayList<>();
+        List<Map<String, Object>> obtained = new ArrayList<>();
+        expected.add(Arrays.asList("id", "uuid", "date", "name"));
+        for (int i = 0; i < size; i++) {
+            expected.add(Arrays.asList(String.valueOf(i), "regex-uuid", "regex-timestamp_yyyy-MM-dd HH:mm:ss.SSS", "not_empty"));
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", i);
+            row.put("uuid", "c83d3a0b-0d4d-474d-aed5-bd407a3e5ae8");
+            row.put("date", "2019-04-03 09:23:23.763");
+            row.put("name", "name" + i);
+            obtained.add(row);
+        }
+        obtained.get(5).put("id", 6);
+        obtained.get(7).put("uuid", "c83d3a0b");
+        obtained.get(9).put("date", "2019-04-03");
+        obtained.get(11).put("name", "");
+
+        long start = System.nanoTime();
+        ResultsTable expectedTable = ResultsTable.of(DataTable.create(expected));
+        List<String> mismatches = expectedTable.rowMismatches(ResultsTable.of(expectedTable.getColumns(), obtained, Map::get), true);
+        logger.info("Comparison of {} rows: {} ms", size, (System.nanoTime() - start) / 1000000);
+
+        assertThat(mismatches).containsExactly(
+                "In row 5 and column id the value 6 is not 5",
+                "In row 7 and column uuid the value c83d3a0b is not an UUID",
+                "In row 9 and column date the value 2019-04-03 is not a valid timestamp",
+                "In row 11 and column name the value  is empty");
+        assertThat(ResultsTable.describe(mismatches)).hasLineCount(4);
+    }
+
+    @Test
+    public void occurrencesTest() {
+        assertOccurrenceMismatches(2000);
+    }
+
+    @Test(groups = "benchmark")
+    public void occurrencesBenchmarkTest() {
+        assertOccurrenceMismatches(ROWS);
+    }
+
+    @Test
+    public void rowsTest() {
+        assertRowMismatches(2000);
+    }
+
+    @Test(groups = "benchmark")
+    public void rowsBenchmarkTest() {
+        assertRowMismatches(ROWS);
+    }
+
+    @Test
+    public void withoutPatternsTest() {
+        ResultsTable expected = ResultsTable.of(DataTable.create(Arrays.asList(Arrays.asList("id", "name"), Arrays.asList("1", "not_check"))));
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", 1);
+        row.put("name", "a");
+
+        assertThat(expected.rowMismatches(ResultsTable.of(expected.getColumns(), Arrays.asList(row), Map::get), true)).isEmpty();
+        assertThat(expected.rowMismatches(ResultsTable.of(expected.getColumns(), Arrays.asList(row), Map::get), false))
+                .containsExactly("In row 0 and column name the value a is not not_check");
+    }
+
+    @Test
+    public void describeTest() {
+        List<String> mismatches = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            mismatches.add("mismatch " + i);
+        }
+        assertThat(ResultsTable.describe(mismatches)).hasLineCount(21).startsWith("mismatch 0\n").endsWith("\n... and 5 more");
+    }
+
+    @Test
+    public void dateFormatsPerThreadTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Boolean>> checks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            checks.add(() -> {
+                boolean valid = true;
+                for (int j = 0; j < 5000; j++) {
+                    valid &= ResultsTable.isValidDate("2019-04-" + (10 + j % 18) + " 09:23:23.763", "yyyy-MM-dd HH:mm:ss.SSS");
+                    valid &= !ResultsTable.isValidDate("2019-13-01 09:23:23.763", "yyyy-MM-dd HH:mm:ss.SSS");
+                }
+                return valid;
+            });
+        }
+        for (Future<Boolean> check : executor.invokeAll(checks)) {
+            assertThat(check.get()).isTrue();
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import com.jcraft.jsch.Channel;
+import com.jcraft.jsch.JSchException;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.common.session.SessionListener;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class SSHSessionPoolTest {
+
+    private SshServer sshd;
+
+    private String port;
+
+    private final AtomicInteger sessionsCreated = new AtomicInteger();
+
+    @BeforeClass
+    public void startServer() throws Exception {
+        SimpleGeneratorHostKeyProvider hostKeys = new SimpleGeneratorHostKeyProvider();
+        hostKeys.setAlgorithm("RSA");
+        sshd = SshServer.setUpDefaultServer();
+        sshd.setHost("localhost");
+        sshd.setPort(0);
+        sshd.setKeyPairProvider(hostKeys);
+        sshd.setPasswordAuthenticator((user, password, session) -> "stratio".equals(password));
+        sshd.setCommandFactory((channel, command) -> new RemoteSSHConnectionTest.ShellCommand(command));
+        sshd.addSessionListener(new SessionListener() {
+            @Override
+            public void sessionCreated(Session session) {
+                sessionsCreated.incrementAndGet();
+            }
+        });
+        sshd.start();
+        port = String.valueOf(sshd.getPort());
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServer() throws Exception {
+        sshd.stop();
+    }
+
+    @Test
+    public void concurrentCommandsTest() throws Exception {
+        SSHSessionPool pool = new SSHSessionPool(3, 8, 60000, 30000);
+        int created = sessionsCreated.get();
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        List<Callable<String>> commands = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String expected = "command " + i;
+            commands.add(() -> {
+                RemoteSSHConnection connection = new RemoteSSHConnection(pool, "stratio", "stratio", "localhost", port, null);
+                connection.runCommand("sleep 0.05; echo " + expected);
+                assertThat(connection.getExitStatus()).isEqualTo(0);
+                return connection.getResult();
+            });
+        }
+        List<Future<String>> results = executor.invokeAll(commands);
+        executor.shutdown();
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i).get()).isEqualTo("command " + i);
+        }
+
+        SSHSessionPool.Key key = new SSHSessionPool.Key("stratio", "stratio", "localhost", port, null);
+        assertThat(sessionsCreated.get() - created).as("Sessions opened for 100 concurrent commands").isBetween(1, 3);
+        assertThat(pool.size(key)).isBetween(1, 3);
+        pool.closeAll();
+        assertThat(pool.size(key)).isEqualTo(0);
+    }
+
+    @Test
+    public void brokenSessionTest() throws Exception {
+        SSHSessionPool pool = new SSHSessionPool(1, 8, 60000, 30000);
+        RemoteSSHConnection connection = new RemoteSSHConnection(pool, "stratio", "stratio", "localhost", port, null);
+        connection.runCommand("echo first");
+
+        SSHSessionPool.Key key = new SSHSessionPool.Key("stratio", "stratio", "localhost", port, null);
+        pool.getSession(key).disconnect();
+        connection.runCommand("echo second");
+        assertThat(connection.getResult()).isEqualTo("second");
+        assertThat(pool.size(key)).isEqualTo(1);
+        pool.closeAll();
+
+        try {
+            new RemoteSSHConnection(pool, "stratio", "wrong", "localhost", port, null);
+            fail("Expected JSchException");
+        } catch (JSchException e) {
+            assertThat(e.getMessage()).contains("Auth fail");
+        }
+    }
+
+    @Test
+    public void closeConnectionTest() throws Exception {
+        SSHSessionPool pool = new SSHSessionPool(2, 8, 60000, 5000);
+        SSHSessionPool.Key key = new SSHSessionPool.Key("stratio", "stratio", "localhost", port, null);
+        RemoteSSHConnection running = new RemoteSSHConnection(pool, "stratio", "stratio", "localhost", port, null);
+        RemoteSSHConnection closed = new RemoteSSHConnection(pool, "stratio", "stratio", "localhost", port, null);
+        com.jcraft.jsch.Session first = pool.getSession(key);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<String> command = executor.submit(() -> {
+            running.runCommand("sleep 0.5; echo finished");
+            return running.getResult();
+        });
+        Thread.sleep(200);
+        closed.closeConnection();
+        assertThat(first.isConnected()).as("Session kept until its running command finishes").isTrue();
+        assertThat(command.get()).isEqualTo("finished");
+        executor.shutdown();
+        assertThat(first.isConnected()).as("Session closed with the connection").isFalse();
+
+        RemoteSSHConnection reopened = new RemoteSSHConnection(pool, "stratio", "stratio", "localhost", port, null);
+        reopened.runCommand("echo reopened");
+        assertThat(reopened.getResult()).isEqualTo("reopened");
+        assertThat(pool.getSession(key)).as("Reopened connection authenticated again").isNotSameAs(first);
+        assertThat(pool.size(key)).isEqualTo(1);
+        pool.closeAll();
+    }
+
+    @Test
+    public void idleEvictionTest() throws Exception {
+        SSHSessionPool pool = new SSHSessionPool(2, 8, 100, 5000);
+        SSHSessionPool.Key key = new SSHSessionPool.Key("stratio", "stratio", "localhost", port, null);
+        RemoteSSHConnection connection = new RemoteSSHConnection(pool, "stratio", "stratio", "localhost", port, null);
+        connection.runCommand("echo first");
+        com.jcraft.jsch.Session first = pool.getSession(key);
+
+        Thread.sleep(300);
+        connection.runCommand("echo second");
+        assertThat(first.isConnected()).as("Idle session closed").isFalse();
+        assertThat(pool.getSession(key)).isNotSameAs(first);
+        assertThat(pool.size(key)).isEqualTo(1);
+        pool.closeAll();
+    }
+
+    @Test
+    public void maxChannelsTest() throws Exception {
+        SSHSessionPool pool = new SSHSessionPool(1, 1, 60000, 200);
+        SSHSessionPool.Key key = new SSHSessionPool.Key("stratio", "stratio", "localhost", port, null);
+        Channel busy = pool.openChannel(key, "exec");
+        long start = System.currentTimeMillis();
+        try {
+            pool.openChannel(key, "exec");
+            fail("Expected JSchException");
+        } catch (JSchException e) {
+            assertThat(e.getMessage()).isEqualTo("No free SSH channel to stratio@localhost:" + port + " after 200 ms");
+        }
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(200L);
+
+        pool.closeChannel(busy);
+        pool.closeChannel(pool.openChannel(key, "exec"));
+        pool.closeAll();
+    }
+}
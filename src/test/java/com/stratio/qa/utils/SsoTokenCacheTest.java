@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import org.mockserver.configuration.ConfigurationProperties;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.Header;
+import org.mockserver.socket.PortFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+public class SsoTokenCacheTest {
+
+    private static final long TTL = TimeUnit.SECONDS.toNanos(600);
+
+    private static final long MARGIN = TimeUnit.SECONDS.toNanos(60);
+
+    private ClientAndServer ssoServer;
+
+    private String ssoHost;
+
+    private final long[] now = {0};
+
+    @BeforeClass
+    public void startSso() {
+        ConfigurationProperties.logLevel("ERROR");
+        int port = PortFactory.findFreePort();
+        ssoHost = "localhost:" + port;
+        ssoServer = ClientAndServer.startClientAndServer(port);
+        // mockserver answers https on the same port
+        ssoServer.when(request().withMethod("GET").withPath("/login"))
+                .respond(response().withStatusCode(302).withHeader("Location", "https://" + ssoHost + "/cas/login?service=gosec"));
+        ssoServer.when(request().withMethod("GET").withPath("/cas/login"))
+                .respond(response().withStatusCode(200).withDelay(TimeUnit.MILLISECONDS, 300)
+                        .withBody("<html><form><input name=\"lt\" value=\"LT-1\"/><input name=\"execution\" value=\"e1s1\"/></form></html>"));
+        ssoServer.when(request().withMethod("POST").withPath("/cas/login"))
+                .respond(response().withStatusCode(200).withHeaders(
+                        new Header("Set-Cookie", "dcos-acs-auth-cookie=" + jwt(System.currentTimeMillis() / 1000 + 7200) + "; Path=/"),
+                        new Header("Set-Cookie", "user=admin; Path=/")));
+        ssoServer.when(request().withMethod("GET").withPath("/service/gosecmanagement"))
+                .respond(response().withStatusCode(200));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopSso() {
+        ssoServer.stop();
+    }
+
+    @Test
+    public void singleLoginPerKeyTest() throws Exception {
+        SsoTokenCache cache = new SsoTokenCache(() -> now[0], System::currentTimeMillis, TTL, MARGIN, true);
+        int before = logins();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<HashMap<String, String>>> callers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            callers.add(() -> getTokens(cache, "admin"));
+        }
+        for (Future<HashMap<String, String>> tokens : executor.invokeAll(callers)) {
+            assertThat(tokens.get()).containsKeys("dcos-acs-auth-cookie", "user");
+        }
+        executor.shutdown();
+        assertThat(logins()).as("Logins of concurrent callers").isEqualTo(before + 1);
+
+        now[0] += TTL / 2;
+        getTokens(cache, "admin");
+        assertThat(logins()).as("Logins within the TTL").isEqualTo(before + 1);
+
+        getTokens(cache, "other");
+        assertThat(logins()).as("Logins of another user").isEqualTo(before + 2);
+
+        now[0] += TTL;
+        getTokens(cache, "admin");
+        assertThat(logins()).as("Logins after the TTL").isEqualTo(before + 3);
+    }
+
+    @Test
+    public void jwtExpirationTest() throws Exception {
+        long wallTime = 1_600_000_000_000L;
+        SsoTokenCache cache = new SsoTokenCache(() -> now[0], () -> wallTime, TTL, MARGIN, true);
+        AtomicInteger logins = new AtomicInteger();
+        SsoTokenCache.Login login = () -> Collections.singletonMap("dcos-acs-auth-cookie", jwt(wallTime / 1000 + 120) + logins.incrementAndGet());
+        long start = now[0];
+
+        assertThat(cache.getTokens("sso", "admin", "1234", null, "management", login)).containsKey("dcos-acs-auth-cookie");
+        now[0] = start + TimeUnit.SECONDS.toNanos(30);
+        cache.getTokens("sso", "admin", "1234", null, "management", login);
+        assertThat(logins.get()).isEqualTo(1);
+
+        // token expires at 120s: refreshed ahead, from 60s on
+        now[0] = start + TimeUnit.SECONDS.toNanos(61);
+        cache.getTokens("sso", "admin", "1234", null, "management", login);
+        assertThat(logins.get()).isEqualTo(2);
+        cache.getTokens("sso", "admin", "1234", null, "management", login);
+        assertThat(logins.get()).isEqualTo(2);
+
+        assertThat(SsoTokenCache.expiration(jwt(1234))).isEqualTo(1234L);
+        assertThat(SsoTokenCache.expiration("not-a-jwt")).isNull();
+        assertThat(SsoTokenCache.expiration("a.b.c")).isNull();
+    }
+
+    @Test
+    public void failedRefreshKeepsTokensTest() throws Exception {
+        SsoTokenCache cache = new SsoTokenCache(() -> now[0], System::currentTimeMillis, TTL, MARGIN, true);
+        AtomicInteger logins = new AtomicInteger();
+        SsoTokenCache.Login login = () -> {
+            if (logins.incrementAndGet() > 1) {
+                throw new IOException("SSO down");
+            }
+            return Collections.singletonMap("user", "admin");
+        };
+        long start = now[0];
+        cache.getTokens("sso", "admin", "1234", "tenant", "management", login);
+        now[0] = start + TTL - MARGIN / 2;
+        assertThat(cache.getTokens("sso", "admin", "1234", "tenant", "management", login)).containsEntry("user", "admin");
+        assertThat(logins.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void emptyRefreshKeepsTokensTest() throws Exception {
+        SsoTokenCache cache = new SsoTokenCache(() -> now[0], System::currentTimeMillis, TTL, MARGIN, true);
+        long start = now[0];
+        HashMap<String, String> tokens = getTokens(cache, "refresh");
+        assertThat(tokens).containsKeys("dcos-acs-auth-cookie", "user");
+
+        // SSO unreachable during the refresh window: the login returns no tokens instead of throwing
+        GosecSSOUtils down = new GosecSSOUtils("localhost:" + PortFactory.findFreePort(), "refresh", "1234", null, null);
+        down.setVerifyHost(false);
+        now[0] = start + TTL - MARGIN / 2;
+        assertThat(cache.getTokens(ssoHost, "refresh", "1234", null, "management", down::ssoTokenGenerator)).isEqualTo(tokens);
+
+        int logins = logins();
+        assertThat(getTokens(cache, "refresh")).as("Tokens kept after the failed refresh").containsKeys("dcos-acs-auth-cookie", "user");
+        assertThat(logins()).as("Refreshed with the SSO back").isEqualTo(logins + 1);
+    }
+
+    @Test
+    public void uncachedLoginsTest() throws Exception {
+        AtomicInteger logins = new AtomicInteger();
+        SsoTokenCache.Login failed = () -> {
+            logins.incrementAndGet();
+            return new HashMap<>();
+        };
+        SsoTokenCache cache = new SsoTokenCache(() -> now[0], System::currentTimeMillis, TTL, MARGIN, true);
+        cache.getTokens("sso", "admin", "1234", null, "management", failed);
+        cache.getTokens("sso", "admin", "1234", null, "management", failed);
+        assertThat(logins.get()).as("Logins without tokens are not cached").isEqualTo(2);
+
+        SsoTokenCache disabled = new SsoTokenCache(() -> now[0], System::currentTimeMillis, TTL, MARGIN, false);
+        Map<String, String> tokens = disabled.getTokens("sso", "admin", "1234", null, "management", () -> {
+            logins.incrementAndGet();
+            return Collections.singletonMap("user", "admin");
+        });
+        disabled.getTokens("sso", "admin", "1234", null, "management", () -> {
+            logins.incrementAndGet();
+            return Collections.singletonMap("user", "admin");
+        });
+        assertThat(tokens).containsEntry("user", "admin");
+        assertThat(logins.get()).isEqualTo(4);
+    }
+
+    private HashMap<String, String> getTokens(SsoTokenCache cache, String user) throws Exception {
+        GosecSSOUtils ssoUtils = new GosecSSOUtils(ssoHost, user, "1234", null, null);
+        ssoUtils.setVerifyHost(false);
+        return cache.getTokens(ssoHost, user, "1234", null, "management", ssoUtils::ssoTokenGenerator);
+    }
+
+    private int logins() {
+        return ssoServer.retrieveRecordedRequests(request().withMethod("POST").withPath("/cas/login")).length;
+    }
+
+    private static String jwt(long exp) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(("{\"uid\":\"admin\",\"exp\":" + exp + "}").getBytes(StandardCharsets.UTF_8)) + ".signature";
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2014 Stratio (http://stratio.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.qa.utils;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class WaiterTest {
+
+    /**
+     * Clock whose time only moves when sleeping, or when a probe advances it
+     */
+    private static final class VirtualClock implements Waiter.Clock {
+
+        private long now = 1000L;
+
+        private final List<Long> sleeps = new ArrayList<>();
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public void sleep(long nanos) {
+            sleeps.add(TimeUnit.NANOSECONDS.toMillis(nanos));
+            now += nanos;
+        }
+
+        @Override
+        public <T> T await(Future<T> future, long nanos) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!future.isDone()) {
+                now += nanos;
+                throw new TimeoutException();
+            }
+            return future.get();
+        }
+
+        void advance(long millis) {
+            now += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+    }
+
+    @Test
+    public void fixedPollingTest() throws Exception {
+        VirtualClock clock = new VirtualClock();
+        int[] calls = {0};
+        Waiter.Outcome<Integer> outcome = Waiter.atMost(10, TimeUnit.SECONDS).pollEvery(2, TimeUnit.SECONDS).clock(clock)
+                .until(() -> ++calls[0], value -> value == 3);
+
+        assertThat(outcome.isSatisfied()).isTrue();
+        assertThat(outcome.getValue()).isEqualTo(3);
+        assertThat(outcome.getAttempts()).isEqualTo(3);
+        assertThat(outcome.getElapsed(TimeUnit.SECONDS)).isEqualTo(4);
+        assertThat(clock.sleeps).containsExactly(2000L, 2000L);
+    }
+
+    @Test
+    public void timeoutTest() throws Exception {
+        VirtualClock clock = new VirtualClock();
+        Waiter.Outcome<Boolean> outcome = Waiter.atMost(5, TimeUnit.SECONDS).pollEvery(2, TimeUnit.SECONDS).clock(clock)
+                .until(() -> false);
+
+        assertThat(outcome.isSatisfied()).isFalse();
+        // last sleep is shortened so that the final probe runs when the timeout expires
+        assertThat(clock.sleeps).containsExactly(2000L, 2000L, 1000L);
+        assertThat(outcome.getAttempts()).isEqualTo(4);
+        assertThat(outcome.getElapsed(TimeUnit.SECONDS)).isEqualTo(5);
+        try {
+            outcome.getOrThrow();
+            fail("Expected AssertionError");
+        } catch (AssertionError e) {
+            assertThat(e.getMessage()).isEqualTo("Condition not satisfied after 5 seconds");
+        }
+    }
+
+    @Test
+    public void probeTimeCountsTest() throws Exception {
+        VirtualClock clock = new VirtualClock();
+        Waiter.Outcome<Boolean> outcome = Waiter.atMost(10, TimeUnit.SECONDS).pollEvery(1, TimeUnit.SECONDS).clock(clock)
+                .until(() -> {
+                    clock.advance(3000);
+                    return false;
+                });
+
+        // probes of 3s every 1s: 0-3, 4-7, 8-11
+        assertThat(outcome.getAttempts()).isEqualTo(3);
+        assertThat(outcome.getElapsed(TimeUnit.SECONDS)).isEqualTo(11);
+    }
+
+    @Test
+    public void exponentialBackoffTest() throws Exception {
+        VirtualClock clock = new VirtualClock();
+        Waiter.atMost(60, TimeUnit.SECONDS).backoff(Waiter.Backoff.exponential(1, 8, TimeUnit.SECONDS, 2)).clock(clock)
+                .until(() -> false);
+
+        assertThat(clock.sleeps).startsWith(1000L, 2000L, 4000L, 8000L, 8000L);
+        assertThat(clock.sleeps.stream().mapToLong(Long::longValue).sum()).isEqualTo(60000L);
+    }
+
+    @Test
+    public void jitterTest() {
+        Waiter.Backoff fixed = Waiter.Backoff.fixed(10, TimeUnit.SECONDS);
+        assertThat(fixed.withJitter(0.5, () -> 0.0).delay(1)).isEqualTo(TimeUnit.SECONDS.toNanos(5));
+        assertThat(fixed.withJitter(0.5, () -> 0.5).delay(1)).isEqualTo(TimeUnit.SECONDS.toNanos(10));
+        assertThat(fixed.withJitter(0.5, () -> 0.75).delay(1)).isEqualTo(TimeUnit.SECONDS.toNanos(12) + TimeUnit.MILLISECONDS.toNanos(500));
+        assertThat(fixed.withJitter(2, () -> 0.0).delay(1)).isEqualTo(0L);
+        for (int i = 0; i < 100; i++) {
+            assertThat(fixed.withJitter(0.2).delay(1)).isBetween(TimeUnit.SECONDS.toNanos(8), TimeUnit.SECONDS.toNanos(12));
+        }
+    }
+
+    @Test
+    public void fastFirstProbeTest() throws Exception {
+        VirtualClock clock = new VirtualClock();
+        int[] calls = {0};
+        Waiter.atMost(10, TimeUnit.SECONDS).pollEvery(3, TimeUnit.SECONDS).fastFirstProbe(100, TimeUnit.MILLISECONDS)
+                .clock(clock).until(() -> ++calls[0] == 4);
+
+        assertThat(clock.sleeps).containsExactly(100L, 3000L, 3000L);
+    }
+
+    @Test
+    public void ignoredExceptionsTest() throws Exception {
+        VirtualClock clock = new VirtualClock();
+        int[] calls = {0};
+        List<Throwable> retried = new ArrayList<>();
+        Waiter.Outcome<String> outcome = Waiter.atMost(10, TimeUnit.SECONDS).clock(clock)
+                .ignoring(IOException.class, AssertionError.class)
+                .onRetry((attempt, elapsed, error) -> retried.add(error))
+                .until(() -> {
+                    calls[0]++;
+                    if (calls[0] == 1) {
+                        throw new IOException("not ready");
+                    }
+                    return "value " + calls[0];
+                }, value -> {
+                    assertThat(value).isEqualTo("value 3");
+                    return true;
+                });
+
+        assertThat(outcome.getOrThrow()).isEqualTo("value 3");
+        assertThat(retried).hasSize(2);
+        assertThat(retried.get(0)).isInstanceOf(IOException.class);
+        assertThat(retried.get(1)).isInstanceOf(AssertionError.class);
+
+        outcome = Waiter.atMost(3, TimeUnit.SECONDS).clock(clock).ignoring(AssertionError.class)
+                .until(() -> "other", value -> {
+                    assertThat(value).as("last error").isEqualTo("value");
+                    return true;
+                });
+        assertThat(outcome.isSatisfied()).isFalse();
+        assertThat(outcome.getValue()).isEqualTo("other");
+        try {
+            outcome.getOrThrow();
+            fail("Expected AssertionError");
+        } catch (AssertionError e) {
+            assertThat(e.getMessage()).contains("last error");
+        }
+    }
+
+    @Test
+    public void propagatedExceptionsTest() throws Exception {
+        VirtualClock clock = new VirtualClock();
+        int[] calls = {0};
+        try {
+            Waiter.atMost(10, TimeUnit.SECONDS).clock(clock).ignoring(AssertionError.class).until(() -> {
+                calls[0]++;
+                throw new IOException("fatal");
+            });
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).isEqualTo("fatal");
+        }
+        assertThat(calls[0]).isEqualTo(1);
+        assertThat(clock.sleeps).isEmpty();
+    }
+
+    @Test
+    public void asyncProbeTest() throws Exception {
+        VirtualClock clock = new VirtualClock();
+        List<CompletableFuture<String>> started = new ArrayList<>();
+        Waiter.Outcome<String> outcome = Waiter.atMost(5, TimeUnit.SECONDS).pollEvery(1, TimeUnit.SECONDS).clock(clock)
+                .untilAsync(() -> {
+                    CompletableFuture<String> future = new CompletableFuture<>();
+                    if (started.isEmpty()) {
+                        future.complete("starting");
+                    }
+                    started.add(future);
+                    return future;
+                }, "ready"::equals);
+
+        // second request never answers: it is waited for until the timeout expires and then cancelled
+        assertThat(outcome.isSatisfied()).isFalse();
+        assertThat(outcome.getValue()).isEqualTo("starting");
+        assertThat(outcome.getLastError()).isInstanceOf(TimeoutException.class);
+        assertThat(outcome.getElapsed(TimeUnit.SECONDS)).isEqualTo(5);
+        assertThat(started).hasSize(2);
+        assertThat(started.get(1).isCancelled()).isTrue();
+    }
+
+    @Test
+    public void asyncProbeFailureTest() throws Exception {
+        VirtualClock clock = new VirtualClock();
+        try {
+            Waiter.atMost(5, TimeUnit.SECONDS).clock(clock).untilAsync(() -> {
+                CompletableFuture<String> future = new CompletableFuture<>();
+                future.completeExceptionally(new IOException("connection refused"));
+                return future;
+            }, value -> true);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).isEqualTo("connection refused");
+        }
+    }
+
+    @Test
+    public void systemClockTest() throws Exception {
+        Waiter.Outcome<Boolean> outcome = Waiter.atMost(300, TimeUnit.MILLISECONDS).pollEvery(50, TimeUnit.MILLISECONDS)
+                .until(() -> false);
+        assertThat(outcome.isSatisfied()).isFalse();
+        assertThat(outcome.getElapsed(TimeUnit.MILLISECONDS)).isBetween(300L, 2000L);
+    }
+}
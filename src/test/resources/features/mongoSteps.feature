@@ -20,4 +20,9 @@ Feature: Mongo steps test
     And I execute a query 'db.local.find()' of type 'string' in mongo 'local' database using collection 'startup_log' with:
     | hello |
   Scenario: Drop document in Mongo
-    Given I drop every document at a MongoDB database 'local' and table 'System'
\ No newline at end of file
+    Given I drop every document at a MongoDB database 'local' and table 'System'
+
+  Scenario: Insert documents from a file in Mongo
+    Given I insert into MongoDB database 'test' and collection 'documents' the documents from file 'schemas/mongoDocuments.jsonl'
+    And I insert into MongoDB database 'test' and collection 'documents' the documents from file 'schemas/mongoDocuments.csv'
+    Then I drop a MongoDB database 'test'
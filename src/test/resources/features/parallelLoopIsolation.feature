@@ -0,0 +1,12 @@
+Feature: Feature used in testing the isolation of parallel loop iterations
+
+  Scenario: Save loop elements
+    Given I save '1,2,3,4,5,6' in variable 'ISOLATED_LOOP_LIST'
+
+  @parallelLoop(6)
+  @loop(ISOLATED_LOOP_LIST,ELEMENT)
+  Scenario: Isolated iteration <ELEMENT>
+    Given '<ELEMENT>' is different from '3'
+    When I run 'sleep 1 && echo iteration <ELEMENT>' locally
+    And I wait '1' seconds
+    Then the command output contains 'iteration <ELEMENT>'
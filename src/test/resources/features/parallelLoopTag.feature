@@ -0,0 +1,12 @@
+@rest
+Feature: Feature used in testing parallel loop tag
+
+  Scenario: Save loop elements
+    Given I save '1,2,3,4,5,6' in variable 'PARALLEL_LOOP_LIST'
+
+  @parallelLoop(6)
+  @loop(PARALLEL_LOOP_LIST,ELEMENT)
+  Scenario: Slow request <ELEMENT>
+    Given My app is running in '${PARALLEL_LOOP_MOCK}'
+    When I send a 'GET' request to '/slow/<ELEMENT>'
+    Then the service response status must be '200' and its response must contain the text 'element <ELEMENT>'
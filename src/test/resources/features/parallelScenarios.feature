@@ -0,0 +1,24 @@
+Feature: Parallel scenarios
+
+  Scenario: First scenario with its own variables
+    Given I save 'first' in variable 'PARALLEL_VAR'
+    And I wait '1' seconds
+    Then '!{PARALLEL_VAR}' is 'first'
+    And '!{class}' is 'com.stratio.qa.ATests.ParallelScenariosIT'
+
+  Scenario: Second scenario with its own variables
+    Given I save 'second' in variable 'PARALLEL_VAR'
+    And I wait '1' seconds
+    Then '!{PARALLEL_VAR}' is 'second'
+    And '!{class}' is 'com.stratio.qa.ATests.ParallelScenariosIT'
+
+  Scenario Outline: Outline with its own variables
+    Given I save '<value>' in variable 'PARALLEL_VAR'
+    And I wait '1' seconds
+    Then '!{PARALLEL_VAR}' is '<value>'
+
+    Examples:
+    | value |
+    | a     |
+    | b     |
+    | c     |
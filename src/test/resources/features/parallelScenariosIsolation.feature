@@ -0,0 +1,26 @@
+Feature: Isolation of parallel scenarios
+
+  Scenario: First scenario with its own command output
+    Given I run 'sleep 1 && echo first output' locally
+    And I wait '1' seconds
+    Then the command output contains 'first output'
+
+  Scenario: Failed scenario
+    Given 'failed' is 'passed'
+    Then the command output contains 'failed output'
+
+  Scenario: Second scenario with its own command output
+    Given I run 'sleep 1 && echo second output' locally
+    And I wait '1' seconds
+    Then the command output contains 'second output'
+
+  Scenario Outline: Outline with its own command output
+    Given I run 'sleep 1 && echo <value> output' locally
+    And I wait '1' seconds
+    Then the command output contains '<value> output'
+
+    Examples:
+    | value |
+    | a     |
+    | b     |
+    | c     |